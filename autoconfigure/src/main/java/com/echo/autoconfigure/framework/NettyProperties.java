@@ -42,6 +42,21 @@ public class NettyProperties {
      **/
     private String protocolPackage;
 
+    /**
+     * 远程调用超时时间(毫秒)
+     **/
+    private long rpcTimeoutMillis;
+
+    /**
+     * 与每个远程服务建立的连接数
+     **/
+    private int clientConnectionNum;
+
+    /**
+     * 业务线程单个身份标识邮箱最大堆积任务数
+     **/
+    private int businessMailboxCapacity;
+
 
     /**
      * ssl
@@ -100,6 +115,30 @@ public class NettyProperties {
         this.protocolPackage = protocolPackage;
     }
 
+    public long getRpcTimeoutMillis() {
+        return rpcTimeoutMillis;
+    }
+
+    public void setRpcTimeoutMillis(long rpcTimeoutMillis) {
+        this.rpcTimeoutMillis = rpcTimeoutMillis;
+    }
+
+    public int getClientConnectionNum() {
+        return clientConnectionNum;
+    }
+
+    public void setClientConnectionNum(int clientConnectionNum) {
+        this.clientConnectionNum = clientConnectionNum;
+    }
+
+    public int getBusinessMailboxCapacity() {
+        return businessMailboxCapacity;
+    }
+
+    public void setBusinessMailboxCapacity(int businessMailboxCapacity) {
+        this.businessMailboxCapacity = businessMailboxCapacity;
+    }
+
     public int getId() {
         return id;
     }
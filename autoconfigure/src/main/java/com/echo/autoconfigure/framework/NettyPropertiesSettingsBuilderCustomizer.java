@@ -23,6 +23,9 @@ public class NettyPropertiesSettingsBuilderCustomizer implements SettingsBuilder
         builder.threadNum(nettyProperties.getWorkerThreadNum());
         builder.businessThreadNum(nettyProperties.getBusinessThreadNum());
         builder.serializeType(nettyProperties.getSerializeType());
+        builder.rpcTimeoutMillis(nettyProperties.getRpcTimeoutMillis());
+        builder.clientConnectionNum(nettyProperties.getClientConnectionNum());
+        builder.businessMailboxCapacity(nettyProperties.getBusinessMailboxCapacity());
         applySLL(builder);
     }
 
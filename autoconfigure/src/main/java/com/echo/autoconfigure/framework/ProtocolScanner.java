@@ -31,7 +31,7 @@ public class ProtocolScanner {
                 if (annotation == null) {
                     continue;
                 }
-                Class<?> oldClass = responseTypeMap.putIfAbsent(new SocketProtocol(annotation.module(), annotation.id()), targetClass);
+                Class<?> oldClass = responseTypeMap.putIfAbsent(SocketProtocol.intern(annotation.module(), annotation.id()), targetClass);
                 if (oldClass != null) {
                     throw new IllegalStateException("same socket protocol, module:" + annotation.module() + " id:" + annotation.id()
                             + " " + oldClass.getName() + " and " + targetClass.getName());
@@ -89,12 +89,14 @@ public class GatewayDispatcher extends AbstractDispatcher<OuterMessage, PlayerSe
         final long identity = session.getIdentity();
 
         ForwardInvocation forwardInvocation = new ForwardInvocation(innerMessage.getSn()
-                , message.getSn(), identity, session, messageFactory);
+                , message.getSn(), identity, session, messageFactory, message.getProtocol());
 
         try {
             nettyClient.send(innerMessage, forwardInvocation);
             return true;
         } catch (InterruptedException e) {
+            // 未写出的内部消息持有外部消息体的引用
+            innerMessage.release();
             log.error("消息转发至[{}]发生未知异常", nettyClient.getAddress(), e);
             return false;
         }
@@ -1,14 +1,27 @@
 package com.echo.autoconfigure.ramcache;
 
+import com.echo.mongo.core.BulkOperations;
 import com.echo.mongo.core.MongoTemplate;
+import com.echo.mongo.mapping.MongoPersistentEntity;
+import com.echo.mongo.mapping.MongoPersistentProperty;
 import com.echo.mongo.query.Criteria;
 import com.echo.mongo.query.Query;
+import com.echo.mongo.query.Update;
 import com.echo.ramcache.entity.AbstractEntity;
 import com.echo.ramcache.entity.DataAccessor;
+import com.echo.ramcache.entity.EntityUpdate;
 import com.echo.ramcache.entity.IEntity;
+import com.mongodb.bulk.BulkWriteResult;
 
 import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 基于mongodb的数据访问
@@ -18,9 +31,14 @@ import java.util.Collection;
 public class MongoDataAccessor implements DataAccessor {
 
     private final MongoTemplate mongoTemplate;
+    /**
+     * 实体字段对应的文档字段名
+     **/
+    private final ConcurrentHashMap<Field, String> fieldNames;
 
     public MongoDataAccessor(MongoTemplate mongoTemplate) {
         this.mongoTemplate = mongoTemplate;
+        this.fieldNames = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -28,6 +46,15 @@ public class MongoDataAccessor implements DataAccessor {
         return mongoTemplate.findById(id, tClass);
     }
 
+    @Override
+    public <PK extends Comparable<PK> & Serializable, T extends IEntity<PK>> List<T> loadAll(Collection<PK> ids, Class<T> tClass) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Criteria criteria = Criteria.where("_id").in(ids);
+        return mongoTemplate.find(Query.query(criteria), tClass);
+    }
+
     @Override
     public void remove(AbstractEntity<?> entity) {
         mongoTemplate.remove(entity);
@@ -38,11 +65,128 @@ public class MongoDataAccessor implements DataAccessor {
         mongoTemplate.save(entity);
     }
 
+    @Override
+    public void update(AbstractEntity<?> entity, List<Field> fields) {
+        mongoTemplate.updateFirst(idQuery(entity), toUpdate(entity, fields), entity.getClass());
+    }
+
     @Override
     public void create(AbstractEntity<?> entity) {
         mongoTemplate.insert(entity);
     }
 
+    @Override
+    public void writeBatch(Class<?> entityClass, List<AbstractEntity<?>> creates
+            , List<EntityUpdate> updates, List<AbstractEntity<?>> removes) {
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, entityClass);
+        // 新建实体同样使用save(upsert),保证整批重试时的幂等性
+        bulkOps.save(creates);
+        int saves = creates.size();
+        List<AbstractEntity<?>> partials = new ArrayList<>();
+        for (EntityUpdate update : updates) {
+            AbstractEntity<?> entity = update.getEntity();
+            List<Field> fields = update.getFields();
+            if (fields == null) {
+                bulkOps.save(entity);
+                saves++;
+            } else {
+                // 部分更新不使用upsert,避免文档不存在时写入残缺的文档
+                bulkOps.updateOne(idQuery(entity), toUpdate(entity, fields));
+                partials.add(entity);
+            }
+        }
+        for (AbstractEntity<?> entity : removes) {
+            bulkOps.remove(entity);
+        }
+        BulkWriteResult result = bulkOps.execute();
+        if (partials.isEmpty() || allMatched(result, saves + partials.size())) {
+            return;
+        }
+        // 存在未匹配的部分更新(文档不存在),仅将文档不存在的实体整体回写
+        List<AbstractEntity<?>> missing = findMissing(entityClass, partials);
+        if (!missing.isEmpty()) {
+            BulkOperations saveOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, entityClass);
+            saveOps.save(missing);
+            saveOps.execute();
+        }
+    }
+
+    /**
+     * 根据批量写入结果判断save与部分更新是否全部匹配,仅作为跳过存在性查询的快速判断
+     * 假设:save为按主键的upsert替换,每个操作恰好计入一次matched或upsert;部分更新按主键匹配,最多计入一次matched;
+     * 删除不计入matched。未确认的写入(unacknowledged)无法读取计数,视为未知
+     *
+     * @param result   批量写入结果
+     * @param expected save与部分更新的操作数
+     * @return true 全部匹配
+     */
+    private boolean allMatched(BulkWriteResult result, int expected) {
+        if (!result.wasAcknowledged()) {
+            return false;
+        }
+        return result.getMatchedCount() + result.getUpserts().size() >= expected;
+    }
+
+    /**
+     * 查询文档不存在的实体,部分更新不使用upsert,批量执行后文档仍不存在即表示该更新未匹配
+     *
+     * @param entityClass 实体类型
+     * @param entities    部分更新的实体
+     * @return 文档不存在的实体
+     */
+    private List<AbstractEntity<?>> findMissing(Class<?> entityClass, List<AbstractEntity<?>> entities) {
+        List<Object> ids = new ArrayList<>(entities.size());
+        for (AbstractEntity<?> entity : entities) {
+            ids.add(entity.getId());
+        }
+        Query query = Query.query(Criteria.where("_id").in(ids));
+        query.fields().include("_id");
+        Set<Object> existing = new HashSet<>(ids.size());
+        for (Object document : mongoTemplate.find(query, entityClass)) {
+            existing.add(((IEntity<?>) document).getId());
+        }
+        List<AbstractEntity<?>> missing = new ArrayList<>(entities.size() - existing.size());
+        for (AbstractEntity<?> entity : entities) {
+            if (!existing.contains(entity.getId())) {
+                missing.add(entity);
+            }
+        }
+        return missing;
+    }
+
+    private Query idQuery(AbstractEntity<?> entity) {
+        return Query.query(Criteria.where("_id").is(entity.getId()));
+    }
+
+    private Update toUpdate(AbstractEntity<?> entity, List<Field> fields) {
+        Update update = new Update();
+        for (Field field : fields) {
+            String name = fieldNames.computeIfAbsent(field, k -> getFieldName(entity.getClass(), k));
+            Object value;
+            try {
+                value = field.get(entity);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("读取实体[" + entity.getClass().getName() + "]字段[" + field.getName() + "]失败", e);
+            }
+            if (value == null) {
+                update.unset(name);
+            } else {
+                update.set(name, value);
+            }
+        }
+        return update;
+    }
+
+    private String getFieldName(Class<?> entityClass, Field field) {
+        MongoPersistentEntity persistentEntity = mongoTemplate.getEntityOperations().getPersistentEntity(entityClass);
+        for (MongoPersistentProperty property : persistentEntity) {
+            if (property.getField().equals(field)) {
+                return property.getFieldName();
+            }
+        }
+        throw new IllegalArgumentException("实体[" + entityClass.getName() + "]不存在持久化字段[" + field.getName() + "]");
+    }
+
     @Override
     public <FK extends Comparable<FK> & Serializable, T extends IEntity<?>> Collection<T> list(FK owner, Class<T> tClass) {
         Criteria criteria = Criteria.where("owner").is(owner);
@@ -1,19 +1,30 @@
 package com.echo.autoconfigure.ramcache;
 
+import com.echo.common.hotswap.agent.HotSwap;
 import com.echo.ioc.anno.Bean;
 import com.echo.ioc.anno.ConditionalOnClass;
 import com.echo.ioc.anno.Configuration;
+import com.echo.ioc.anno.EnableConfigurationProperties;
 import com.echo.mongo.core.MongoTemplate;
+import com.echo.ramcache.enhance.Enhancer;
+import com.echo.ramcache.enhance.EntityCommitEnhancer;
+import com.echo.ramcache.enhance.EntityCommitWeaver;
 import com.echo.ramcache.entity.DataAccessor;
 import com.echo.ramcache.entity.DataPersistence;
 import com.echo.ramcache.entity.GenericDataPersistence;
 import com.echo.ramcache.entity.GenericEntityCacheService;
+import com.echo.ramcache.journal.Journal;
+import com.echo.ramcache.journal.MappedJournal;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author: li-yuanwen
  */
 @Configuration
 @ConditionalOnClass("com.mongodb.client.MongoClient")
+@EnableConfigurationProperties(RamCacheProperties.class)
 public class MongoRamCacheAutoConfiguration {
 
 
@@ -23,13 +34,24 @@ public class MongoRamCacheAutoConfiguration {
     }
 
     @Bean
-    public DataPersistence dataPersistence(DataAccessor dataAccessor) {
-        return new GenericDataPersistence(dataAccessor);
+    public DataPersistence dataPersistence(DataAccessor dataAccessor, RamCacheProperties properties) {
+        Journal journal = null;
+        if (properties.isJournalEnabled()) {
+            journal = new MappedJournal(new File(properties.getJournalPath()), properties.getJournalSegmentSize()
+                    , properties.getJournalGroupCommitMicros(), TimeUnit.MICROSECONDS);
+        }
+        // 开启预写日志时,构造时重放日志,GenericEntityCacheService依赖本Bean,保证重放先于查询
+        return new GenericDataPersistence(dataAccessor, properties.getPersistenceThreadNum(), journal);
     }
 
     @Bean
-    public GenericEntityCacheService genericEntityCacheService(DataAccessor dataAccessor, DataPersistence dataPersistence) {
-        return new GenericEntityCacheService(dataAccessor, dataPersistence);
+    public GenericEntityCacheService genericEntityCacheService(DataAccessor dataAccessor, DataPersistence dataPersistence
+            , RamCacheProperties properties) {
+        Enhancer enhancer = properties.isEntityWeaving()
+                ? new EntityCommitWeaver(dataPersistence, HotSwap.getInstrumentation())
+                : new EntityCommitEnhancer(dataPersistence);
+        return new GenericEntityCacheService(dataAccessor, dataPersistence, properties.getEntityCacheMaximum()
+                , properties.getEntityCacheExpire(), enhancer);
     }
 
     @Bean
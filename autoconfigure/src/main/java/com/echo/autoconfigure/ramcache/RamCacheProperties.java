@@ -0,0 +1,123 @@
+package com.echo.autoconfigure.ramcache;
+
+import com.echo.ioc.anno.ConfigurationProperties;
+import com.echo.ramcache.core.CacheConstants;
+import com.echo.ramcache.journal.MappedJournal;
+
+/**
+ * 内存缓存相关配置
+ *
+ * @author: li-yuanwen
+ */
+@ConfigurationProperties(prefix = "ramcache")
+public class RamCacheProperties {
+
+    /**
+     * 持久化线程数
+     **/
+    private int persistenceThreadNum = Runtime.getRuntime().availableProcessors() + 1;
+
+    /**
+     * 是否开启预写日志
+     **/
+    private boolean journalEnabled;
+
+    /**
+     * 预写日志目录
+     **/
+    private String journalPath = "journal";
+
+    /**
+     * 预写日志文件段大小(字节)
+     **/
+    private int journalSegmentSize = MappedJournal.DEFAULT_SEGMENT_SIZE;
+
+    /**
+     * 预写日志组提交等待时间(微秒)
+     **/
+    private long journalGroupCommitMicros = MappedJournal.DEFAULT_GROUP_COMMIT_MICROS;
+
+    /**
+     * 每个实体类型的缓存最大容量
+     **/
+    private long entityCacheMaximum = CacheConstants.DEFAULT_MAXIMUM;
+
+    /**
+     * 实体缓存过期时间(秒)
+     **/
+    private long entityCacheExpire = CacheConstants.DOUBLE_DEFAULT_EXPIRE_SECOND;
+
+    /**
+     * 是否将@Commit回写直接织入实体类(需通过hotswap-agent获取Instrumentation,JDK9+需开启-Djdk.attach.allowAttachSelf=true)
+     * 关闭时生成实体子类包装实体
+     **/
+    private boolean entityWeaving;
+
+
+    // --------------------------------------------------------------
+
+
+    public int getPersistenceThreadNum() {
+        return persistenceThreadNum;
+    }
+
+    public void setPersistenceThreadNum(int persistenceThreadNum) {
+        this.persistenceThreadNum = persistenceThreadNum;
+    }
+
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+
+    public void setJournalEnabled(boolean journalEnabled) {
+        this.journalEnabled = journalEnabled;
+    }
+
+    public String getJournalPath() {
+        return journalPath;
+    }
+
+    public void setJournalPath(String journalPath) {
+        this.journalPath = journalPath;
+    }
+
+    public int getJournalSegmentSize() {
+        return journalSegmentSize;
+    }
+
+    public void setJournalSegmentSize(int journalSegmentSize) {
+        this.journalSegmentSize = journalSegmentSize;
+    }
+
+    public long getJournalGroupCommitMicros() {
+        return journalGroupCommitMicros;
+    }
+
+    public void setJournalGroupCommitMicros(long journalGroupCommitMicros) {
+        this.journalGroupCommitMicros = journalGroupCommitMicros;
+    }
+
+    public long getEntityCacheMaximum() {
+        return entityCacheMaximum;
+    }
+
+    public void setEntityCacheMaximum(long entityCacheMaximum) {
+        this.entityCacheMaximum = entityCacheMaximum;
+    }
+
+    public long getEntityCacheExpire() {
+        return entityCacheExpire;
+    }
+
+    public void setEntityCacheExpire(long entityCacheExpire) {
+        this.entityCacheExpire = entityCacheExpire;
+    }
+
+    public boolean isEntityWeaving() {
+        return entityWeaving;
+    }
+
+    public void setEntityWeaving(boolean entityWeaving) {
+        this.entityWeaving = entityWeaving;
+    }
+}
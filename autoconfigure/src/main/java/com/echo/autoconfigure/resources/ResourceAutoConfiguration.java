@@ -2,9 +2,7 @@ package com.echo.autoconfigure.resources;
 
 import com.echo.common.convert.core.ConfigurableConversionService;
 import com.echo.common.convert.core.ConversionService;
-import com.echo.common.convert.support.DefaultConversionService;
-import com.echo.common.convert.support.JsonToObjConverter;
-import com.echo.common.convert.support.ObjToJsonConverter;
+import com.echo.common.resource.reader.ResourceConversionService;
 import com.echo.common.resource.reader.XlsxReader;
 import com.echo.common.resource.reader.XmlReader;
 import com.echo.common.resource.storage.StorageManager;
@@ -23,10 +21,8 @@ public class ResourceAutoConfiguration {
     @Bean
     @ConditionalOnMissingBean("com.echo.common.convert.core.ConfigurableConversionService")
     public ConfigurableConversionService conversionService() {
-        ConfigurableConversionService conversionService = new DefaultConversionService();
-        conversionService.addConverterFactory(new JsonToObjConverter());
-        conversionService.addConverter(new ObjToJsonConverter());
-        return conversionService;
+        // 与ResourceSnapshotCompiler编译快照时相同的转换服务
+        return new ResourceConversionService();
     }
 
     @Bean
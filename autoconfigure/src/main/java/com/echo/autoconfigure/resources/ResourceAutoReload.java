@@ -2,7 +2,6 @@ package com.echo.autoconfigure.resources;
 
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.thread.NamedThreadFactory;
-import com.echo.common.resource.storage.ResourceStorage;
 import com.echo.common.resource.storage.StorageManager;
 import com.echo.common.util.StringUtils;
 import lombok.extern.slf4j.Slf4j;
@@ -94,7 +93,7 @@ public class ResourceAutoReload implements Runnable {
                 watchKey = watcher.take();
 
                 List<WatchEvent<?>> watchEvents = watchKey.pollEvents();
-                List<ResourceStorage<?, ?>> storages = new LinkedList<>();
+                List<Class<?>> classes = new LinkedList<>();
                 for (WatchEvent<?> event : watchEvents) {
                     WatchEvent<Path> e = (WatchEvent<Path>) event;
                     Path path = e.context();
@@ -105,33 +104,20 @@ public class ResourceAutoReload implements Runnable {
                     }
 
                     log.error("更新的文件名是: {}", classSimpleName);
-                    ResourceStorage<?, ?> storage = storageManager.getResourceStorage(classSimpleName);
-                    if (storage == null) {
+                    Class<?> clz = storageManager.getResourceClass(classSimpleName);
+                    if (clz == null) {
                         log.error("不是服务端表,忽略: {}", classSimpleName);
-                    } else {
-                        storage.load();
-                        storages.add(storage);
+                    } else if (!classes.contains(clz)) {
+                        classes.add(clz);
                     }
                 }
-                // 校验
-                boolean validate = true;
-                for (ResourceStorage<?, ?> storage : storages) {
-                    try {
-                        storage.validate(storageManager);
-                    } catch (Exception e) {
-                        validate = false;
-                        log.error(e.getMessage(), e);
-                        break;
-                    }
-                }
-                if (!validate) {
-                    // 一个校验失败,全部还原
-                    storages.forEach(ResourceStorage::validateFailure);
-                    return;
+                if (classes.isEmpty()) {
+                    continue;
                 }
-                for (ResourceStorage<?, ?> storage : storages) {
-                    storage.validateSuccessfully();
-                    log.error("更新成功,文件名是: {}", storage.getLocation());
+                // 加载并校验,全部通过后整体生效,任一失败全部保持原数据
+                storageManager.reload(classes);
+                for (Class<?> clz : classes) {
+                    log.error("更新成功,文件名是: {}", storageManager.getResourceStorage(clz).getLocation());
                 }
             } catch (InterruptedException e) {
                 // ignore
@@ -37,4 +37,10 @@ public @interface ResourceInject {
      */
     boolean required() default true;
 
+    /**
+     * 索引名 (当注入索引句柄{@link com.echo.common.resource.storage.IndexHandle}时使用)
+     * @return 索引名
+     */
+    String index() default "";
+
 }
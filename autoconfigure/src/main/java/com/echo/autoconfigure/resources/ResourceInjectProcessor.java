@@ -3,6 +3,7 @@ package com.echo.autoconfigure.resources;
 import com.echo.common.convert.core.ConversionService;
 import com.echo.common.convert.core.TypeDescriptor;
 import com.echo.common.resource.anno.ResourceId;
+import com.echo.common.resource.storage.IndexHandle;
 import com.echo.common.resource.storage.ResourceStorage;
 import com.echo.common.resource.storage.StorageManager;
 import com.echo.common.util.ReflectionUtils;
@@ -37,6 +38,9 @@ public class ResourceInjectProcessor implements InstantiationAwareBeanPostProces
             if (ResourceStorage.class.isAssignableFrom(field.getType())) {
                 // 注入Storage
                 injectStorage(bean, field);
+            } else if (IndexHandle.class.isAssignableFrom(field.getType())) {
+                // 注入索引句柄
+                injectIndex(bean, field, field.getAnnotation(ResourceInject.class));
             } else {
                 // 注入实例
                 ResourceInject annotation = field.getAnnotation(ResourceInject.class);
@@ -52,6 +56,33 @@ public class ResourceInjectProcessor implements InstantiationAwareBeanPostProces
      * @param field 注入属性目标
      */
     private void injectStorage(final Object bean, final Field field) {
+        inject(bean, field, getResourceStorage(getResourceClass(bean, field, 1)));
+    }
+
+    /**
+     * 注入索引句柄,注入时解析索引,查询时不再按索引名查找
+     * @param bean bean
+     * @param field 注入属性目标
+     * @param annotation 注解数据
+     */
+    private void injectIndex(final Object bean, final Field field, final ResourceInject annotation) {
+        if (!StringUtils.hasLength(annotation.index())) {
+            String message = MessageFormatter.format("beanClass:{} 属性:{} 注解index属性未定义"
+                    , bean.getClass().getName(), field.getName()).getMessage();
+            throw new IllegalArgumentException(message);
+        }
+        Class<?> clz = getResourceClass(bean, field, 0);
+        inject(bean, field, getResourceStorage(clz).getIndex(annotation.index()));
+    }
+
+    /**
+     * 解析属性声明中的资源类型
+     * @param bean bean
+     * @param field 注入属性目标
+     * @param index 资源类型所在的泛型参数下标
+     * @return 资源类型
+     */
+    private Class<?> getResourceClass(final Object bean, final Field field, int index) {
         Type genericType = field.getGenericType();
         if (!(genericType instanceof ParameterizedType)) {
             String message = MessageFormatter.format("beanClass:{} field:{} 类型声明不正确"
@@ -61,18 +92,14 @@ public class ResourceInjectProcessor implements InstantiationAwareBeanPostProces
 
         // 拿到泛型参数实际类型
         Type[] actualTypeArguments = ((ParameterizedType) genericType).getActualTypeArguments();
-        Class<?> clz;
-        if (actualTypeArguments[1] instanceof Class) {
-            clz = (Class<?>) actualTypeArguments[1];
-        } else if (actualTypeArguments[1] instanceof ParameterizedType) {
-            clz = (Class<?>) ((ParameterizedType) actualTypeArguments[1]).getRawType();
-        } else {
-            String message = MessageFormatter.format("beanClass:{} field:{} 类型声明不正确"
-                    , bean.getClass().getName(), field.getName()).getMessage();
-            throw new IllegalArgumentException(message);
+        if (actualTypeArguments[index] instanceof Class) {
+            return (Class<?>) actualTypeArguments[index];
+        } else if (actualTypeArguments[index] instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) actualTypeArguments[index]).getRawType();
         }
-
-        inject(bean, field, getResourceStorage(clz));
+        String message = MessageFormatter.format("beanClass:{} field:{} 类型声明不正确"
+                , bean.getClass().getName(), field.getName()).getMessage();
+        throw new IllegalArgumentException(message);
     }
 
     /**
@@ -4,11 +4,17 @@ import cn.hutool.core.annotation.AnnotationUtil;
 import cn.hutool.core.lang.ClassScanner;
 import com.echo.common.resource.ResourceDefinition;
 import com.echo.common.resource.anno.ResourceObj;
+import com.echo.common.resource.reader.ResourceReader;
+import com.echo.common.resource.reader.SnapshotReader;
 import com.echo.common.resource.storage.StorageManager;
 import com.echo.ioc.anno.Value;
 import com.echo.ioc.core.ConfigurableBeanFactory;
 import com.echo.ioc.processor.BeanFactoryPostProcessor;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * 资源表扫描bean
  */
@@ -21,6 +27,12 @@ public class ResourceScanBeanPostFactory implements BeanFactoryPostProcessor {
     /** 资源类包名前缀 **/
     @Value("resource.class.basePackage:com.echo")
     private String basePackage;
+    /** 是否优先读取资源快照 **/
+    @Value("resource.snapshot:false")
+    private boolean snapshot;
+    /** 资源并行加载的并行度,默认CPU核数 **/
+    @Value("resource.parallelism:0")
+    private int parallelism;
 
     public String getPath() {
         return path;
@@ -29,6 +41,8 @@ public class ResourceScanBeanPostFactory implements BeanFactoryPostProcessor {
     @Override
     public void postProcessBeanFactory(ConfigurableBeanFactory beanFactory) {
         StorageManager storageManager = beanFactory.getBean(StorageManager.class);
+        Map<Class<? extends ResourceReader>, ResourceReader> readers = new HashMap<>(4);
+        Map<ResourceDefinition, ResourceReader> definitions = new LinkedHashMap<>();
         for (Class<?> clz : new ClassScanner(basePackage).scan()) {
             ResourceObj resourceObj = AnnotationUtil.getAnnotation(clz, ResourceObj.class);
             if (resourceObj == null) {
@@ -38,9 +52,16 @@ public class ResourceScanBeanPostFactory implements BeanFactoryPostProcessor {
             if (resourceDefinition == null) {
                 continue;
             }
-            storageManager.initialize(resourceDefinition, beanFactory.getBean(resourceObj.reader()));
+            ResourceReader reader = readers.computeIfAbsent(resourceObj.reader(), k -> createReader(beanFactory, k));
+            definitions.put(resourceDefinition, reader);
         }
+        storageManager.initialize(definitions, parallelism);
+
+    }
 
+    private ResourceReader createReader(ConfigurableBeanFactory beanFactory, Class<? extends ResourceReader> readerClass) {
+        ResourceReader reader = beanFactory.getBean(readerClass);
+        return snapshot ? new SnapshotReader(reader) : reader;
     }
 
     private ResourceDefinition parseResourceDefinition(Class<?> clz, String rootPath) {
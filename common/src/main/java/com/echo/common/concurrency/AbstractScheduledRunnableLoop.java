@@ -3,11 +3,8 @@ package com.echo.common.concurrency;
 
 import com.echo.common.util.ObjectUtils;
 import com.echo.common.util.queue.DefaultDynamicsPriorityQueue;
-import com.echo.common.util.queue.DynamicsPriorityQueue;
 import com.echo.common.util.queue.PriorityQueueNode;
 
-import java.util.Comparator;
-import java.util.Queue;
 import java.util.concurrent.*;
 
 /**
@@ -16,8 +13,6 @@ import java.util.concurrent.*;
  */
 public abstract class AbstractScheduledRunnableLoop extends AbstractRunnableLoopGroup implements RunnableLoop {
 
-    private static final Comparator<ScheduledFutureTask<?>> SCHEDULED_FUTURE_TASK_COMPARATOR = ScheduledFutureTask::compareTo;
-
     // Do nothing
     static final Runnable WAKEUP_TASK = () -> {
     };
@@ -33,14 +28,33 @@ public abstract class AbstractScheduledRunnableLoop extends AbstractRunnableLoop
      **/
     long nextTaskId;
 
+    /**
+     * 时间轮tick(纳秒),小于等于0时使用优先级队列存放延时任务
+     **/
+    private final long timingWheelTickNanos;
+
     /**
      * 延时任务队列
      **/
-    DynamicsPriorityQueue<ScheduledFutureTask<?>> scheduledTaskQueue;
+    ScheduledTaskQueue scheduledTaskQueue;
+
+    protected AbstractScheduledRunnableLoop() {
+        this(0);
+    }
 
-    DynamicsPriorityQueue<ScheduledFutureTask<?>> scheduledTaskQueue() {
+    /**
+     * @param timingWheelTickNanos 时间轮tick(纳秒),大于0时延时任务使用分层时间轮存放(插入/取消O(1),精度为一个tick),
+     *                             否则使用优先级队列(插入/取消O(log n),精确到期)
+     */
+    protected AbstractScheduledRunnableLoop(long timingWheelTickNanos) {
+        this.timingWheelTickNanos = timingWheelTickNanos;
+    }
+
+    ScheduledTaskQueue scheduledTaskQueue() {
         if (scheduledTaskQueue == null) {
-            scheduledTaskQueue = new DefaultDynamicsPriorityQueue<>(SCHEDULED_FUTURE_TASK_COMPARATOR);
+            scheduledTaskQueue = timingWheelTickNanos > 0
+                    ? new TimingWheelScheduledTaskQueue(timingWheelTickNanos, nanoTime())
+                    : new HeapScheduledTaskQueue();
         }
         return scheduledTaskQueue;
     }
@@ -51,11 +65,14 @@ public abstract class AbstractScheduledRunnableLoop extends AbstractRunnableLoop
 
     protected final Runnable pollScheduledTask(long nanoTime) {
         assert inRunnableLoop();
-        ScheduledFutureTask<?> scheduledTask = peekScheduledTask();
-        if (scheduledTask == null || scheduledTask.deadlineNanos - nanoTime > 0) {
+        ScheduledTaskQueue scheduledTaskQueue = this.scheduledTaskQueue;
+        if (scheduledTaskQueue == null) {
+            return null;
+        }
+        ScheduledFutureTask<?> scheduledTask = scheduledTaskQueue.poll(nanoTime);
+        if (scheduledTask == null) {
             return null;
         }
-        scheduledTaskQueue.remove();
         scheduledTask.setConsumed();
         return scheduledTask;
     }
@@ -127,13 +144,20 @@ public abstract class AbstractScheduledRunnableLoop extends AbstractRunnableLoop
     }
 
     /**
-     * 获取最快执行的延时任务
+     * 获取距离下次检查延时任务的时长
      *
-     * @return 延时任务 or null
+     * @return 纳秒, -1表示无延时任务
      */
-    final ScheduledFutureTask<?> peekScheduledTask() {
-        Queue<ScheduledFutureTask<?>> scheduledTaskQueue = this.scheduledTaskQueue;
-        return scheduledTaskQueue != null ? scheduledTaskQueue.peek() : null;
+    final long nextScheduledTaskDelayNanos() {
+        ScheduledTaskQueue scheduledTaskQueue = this.scheduledTaskQueue;
+        if (scheduledTaskQueue == null) {
+            return -1;
+        }
+        long deadlineNanos = scheduledTaskQueue.nextDeadlineNanos();
+        if (deadlineNanos == -1) {
+            return -1;
+        }
+        return Math.max(0L, deadlineNanos - nanoTime());
     }
 
     final void removeScheduledTask(final ScheduledFutureTask<?> task) {
@@ -149,19 +173,12 @@ public abstract class AbstractScheduledRunnableLoop extends AbstractRunnableLoop
 
     protected void cancelScheduledTasks() {
         assert inRunnableLoop();
-        DynamicsPriorityQueue<ScheduledFutureTask<?>> scheduledTaskQueue = this.scheduledTaskQueue;
+        ScheduledTaskQueue scheduledTaskQueue = this.scheduledTaskQueue;
         if (scheduledTaskQueue == null || scheduledTaskQueue.isEmpty()) {
             return;
         }
 
-        final ScheduledFutureTask<?>[] scheduledTasks =
-                scheduledTaskQueue.toArray(new ScheduledFutureTask<?>[0]);
-
-        for (ScheduledFutureTask<?> task : scheduledTasks) {
-            task.cancelWithoutRemove(false);
-        }
-
-        scheduledTaskQueue.clearIgnoringIndexes();
+        scheduledTaskQueue.cancelAll();
     }
 
     static long deadlineToDelayNanos(long deadlineNanos) {
@@ -197,6 +214,13 @@ public abstract class AbstractScheduledRunnableLoop extends AbstractRunnableLoop
          **/
         private int index = PriorityQueueNode.INDEX_NOT_IN_QUEUE;
 
+        /**
+         * 时间轮槽下标及槽内链表
+         **/
+        int wheelIndex = TimingWheelScheduledTaskQueue.NOT_IN_WHEEL;
+        ScheduledFutureTask<?> wheelPrev;
+        ScheduledFutureTask<?> wheelNext;
+
         ScheduledFutureTask(AbstractScheduledRunnableLoop executor, Runnable runnable, long nanoTime) {
             this(executor, runnable, nanoTime, 0);
         }
@@ -270,6 +294,10 @@ public abstract class AbstractScheduledRunnableLoop extends AbstractRunnableLoop
             return deadlineToDelayNanos(deadlineNanos);
         }
 
+        long deadlineNanos() {
+            return deadlineNanos;
+        }
+
         @Override
         public void run() {
             assert executor().inRunnableLoop();
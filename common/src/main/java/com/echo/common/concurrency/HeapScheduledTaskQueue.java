@@ -0,0 +1,63 @@
+package com.echo.common.concurrency;
+
+import com.echo.common.concurrency.AbstractScheduledRunnableLoop.ScheduledFutureTask;
+import com.echo.common.util.queue.DefaultDynamicsPriorityQueue;
+import com.echo.common.util.queue.DynamicsPriorityQueue;
+
+import java.util.Comparator;
+
+/**
+ * 基于优先级队列(小顶堆)的延时任务容器,插入/删除O(log n),到期时间精确
+ *
+ * @author li-yuanwen
+ */
+final class HeapScheduledTaskQueue implements ScheduledTaskQueue {
+
+    private static final Comparator<ScheduledFutureTask<?>> SCHEDULED_FUTURE_TASK_COMPARATOR = ScheduledFutureTask::compareTo;
+
+    private final DynamicsPriorityQueue<ScheduledFutureTask<?>> queue
+            = new DefaultDynamicsPriorityQueue<>(SCHEDULED_FUTURE_TASK_COMPARATOR);
+
+    @Override
+    public void add(ScheduledFutureTask<?> task) {
+        queue.add(task);
+    }
+
+    @Override
+    public void remove(ScheduledFutureTask<?> task) {
+        queue.remove(task);
+    }
+
+    @Override
+    public ScheduledFutureTask<?> poll(long nanoTime) {
+        ScheduledFutureTask<?> task = queue.peek();
+        if (task == null || task.deadlineNanos() - nanoTime > 0) {
+            return null;
+        }
+        queue.remove();
+        return task;
+    }
+
+    @Override
+    public long nextDeadlineNanos() {
+        ScheduledFutureTask<?> task = queue.peek();
+        return task == null ? -1 : task.deadlineNanos();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    @Override
+    public void cancelAll() {
+        if (queue.isEmpty()) {
+            return;
+        }
+        final ScheduledFutureTask<?>[] scheduledTasks = queue.toArray(new ScheduledFutureTask<?>[0]);
+        for (ScheduledFutureTask<?> task : scheduledTasks) {
+            task.cancelWithoutRemove(false);
+        }
+        queue.clearIgnoringIndexes();
+    }
+}
@@ -0,0 +1,178 @@
+package com.echo.common.concurrency;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 标识邮箱,同一标识的任务按提交顺序串行执行,执行时借用工作线程池中的任意线程,
+ * 每次最多连续执行{@link #throughput}个任务后让出线程,保证同线程其他标识的公平性
+ *
+ * @author li-yuanwen
+ */
+@Slf4j
+final class IdentityMailbox implements Executor, Runnable {
+
+    /**
+     * 空闲,未提交至工作线程
+     **/
+    private static final int ST_IDLE = 0;
+    /**
+     * 已提交至工作线程(等待执行或执行中)
+     **/
+    private static final int ST_SCHEDULED = 1;
+
+    /**
+     * 邮箱已关闭时的任务数标识
+     **/
+    private static final int CLOSED = -1;
+
+    private final Object identity;
+    private final IdentityRunnableLoopGroup group;
+    private final int capacity;
+    private final int throughput;
+
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    /**
+     * 任务数,为CLOSED时邮箱已被回收
+     **/
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicInteger state = new AtomicInteger(ST_IDLE);
+
+    /**
+     * 最近提交任务时间(毫秒)
+     **/
+    private volatile long lastActiveTime = System.currentTimeMillis();
+    /**
+     * 最近一次提交至工作线程的时间(纳秒)
+     **/
+    private volatile long scheduleNanoTime;
+
+    IdentityMailbox(Object identity, IdentityRunnableLoopGroup group, int capacity, int throughput) {
+        this.identity = identity;
+        this.group = group;
+        this.capacity = capacity;
+        this.throughput = throughput;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!offer(task, true)) {
+            // 邮箱已被回收,重新获取
+            group.execute(identity, task);
+        }
+    }
+
+    /**
+     * 投递任务
+     *
+     * @param task    任务
+     * @param bounded 是否受邮箱任务数上限约束
+     * @return false 邮箱已关闭
+     */
+    boolean offer(Runnable task, boolean bounded) {
+        for (; ; ) {
+            int current = depth.get();
+            if (current == CLOSED) {
+                return false;
+            }
+            if (bounded && current >= capacity) {
+                // 任务交由拒绝策略处理,正常返回即任务已被丢弃(资源由拒绝策略释放)
+                group.rejected(identity, task, current);
+                return true;
+            }
+            if (depth.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+
+        queue.offer(task);
+        lastActiveTime = System.currentTimeMillis();
+        if (state.get() == ST_IDLE && state.compareAndSet(ST_IDLE, ST_SCHEDULED)) {
+            try {
+                schedule();
+            } catch (RejectedExecutionException e) {
+                if (queue.remove(task)) {
+                    depth.decrementAndGet();
+                }
+                state.set(ST_IDLE);
+                throw e;
+            }
+        }
+        return true;
+    }
+
+    private void schedule() {
+        scheduleNanoTime = System.nanoTime();
+        group.workers().execute(this);
+    }
+
+    @Override
+    public void run() {
+        group.recordScheduleLatency(System.nanoTime() - scheduleNanoTime);
+        try {
+            for (int i = 0; i < throughput; i++) {
+                Runnable task = queue.poll();
+                if (task == null) {
+                    break;
+                }
+                depth.decrementAndGet();
+                safeExecute(task);
+            }
+        } finally {
+            state.set(ST_IDLE);
+            if (!queue.isEmpty() && state.compareAndSet(ST_IDLE, ST_SCHEDULED)) {
+                try {
+                    schedule();
+                } catch (RejectedExecutionException e) {
+                    // 工作线程池已关闭,在当前线程执行完剩余任务
+                    runRemaining();
+                }
+            }
+        }
+    }
+
+    private void runRemaining() {
+        for (; ; ) {
+            Runnable task = queue.poll();
+            if (task == null) {
+                break;
+            }
+            depth.decrementAndGet();
+            safeExecute(task);
+        }
+        state.set(ST_IDLE);
+    }
+
+    private void safeExecute(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable t) {
+            log.warn("标识[{}]执行任务时出现异常. 任务: {} ", identity, task, t);
+        }
+    }
+
+    /**
+     * 尝试关闭空闲邮箱
+     *
+     * @return true 关闭成功
+     */
+    boolean tryClose() {
+        return state.get() == ST_IDLE && depth.compareAndSet(0, CLOSED);
+    }
+
+    /**
+     * 当前任务数
+     **/
+    int depth() {
+        return Math.max(depth.get(), 0);
+    }
+
+    long getLastActiveTime() {
+        return lastActiveTime;
+    }
+}
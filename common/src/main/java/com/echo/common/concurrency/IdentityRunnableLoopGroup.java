@@ -1,15 +1,18 @@
 package com.echo.common.concurrency;
 
 import cn.hutool.core.thread.NamedThreadFactory;
+import com.echo.common.util.ObjectUtils;
 
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 根据标识来分配线程执行,实现同一标识顺序执行任务
+ * 每个标识拥有独立的邮箱,邮箱有任务时才提交至工作线程池(默认为work-stealing的ForkJoinPool)执行,
+ * 热点标识不会固定占用某个线程,邮箱任务数超过上限时由{@link MailboxRejectedHandler}处理
  *
  * @author: li-yuanwen
  */
@@ -21,18 +24,62 @@ public class IdentityRunnableLoopGroup implements Executor {
     static final int SLEEP_SECOND = 30 * 60 * 1000;
 
     /**
-     * 线程池
+     * 默认单个邮箱最大任务数
+     **/
+    public static final int DEFAULT_MAILBOX_CAPACITY = 2048;
+
+    /**
+     * 邮箱每次占用线程最多连续执行的任务数
+     **/
+    static final int MAILBOX_THROUGHPUT = 32;
+
+    /**
+     * 工作线程池
+     **/
+    private final Executor workers;
+    /**
+     * 外部传入的线程池,为null时workers为内部创建的ForkJoinPool
      **/
     private final RunnableLoopGroup group;
+    /**
+     * 空闲邮箱清理线程
+     **/
+    private final ScheduledExecutorService cleaner;
+
+    private final int mailboxCapacity;
+    private final MailboxRejectedHandler rejectedHandler;
+
+    private final ConcurrentHashMap<Object, IdentityMailbox> mailboxes = new ConcurrentHashMap<>();
 
-    private final ConcurrentHashMap<Object, TimeRunnableSource> identityExecutors = new ConcurrentHashMap<>();
+    // ------------------------ 统计 ------------------------
+
+    /**
+     * 被拒绝的任务数
+     **/
+    private final LongAdder rejectedCount = new LongAdder();
+    /**
+     * 邮箱调度次数
+     **/
+    private final LongAdder scheduleCount = new LongAdder();
+    /**
+     * 邮箱调度延迟总和(纳秒)
+     **/
+    private final LongAdder scheduleLatencyNanos = new LongAdder();
+    /**
+     * 邮箱最大调度延迟(纳秒)
+     **/
+    private final AtomicLong maxScheduleLatencyNanos = new AtomicLong();
 
     public IdentityRunnableLoopGroup() {
         this(Runtime.getRuntime().availableProcessors() << 1);
     }
 
     public IdentityRunnableLoopGroup(int threadNum) {
-        this(new MultiThreadRunnableLoopGroup(threadNum, new NamedThreadFactory("Identity-Thread", false)));
+        this(threadNum, DEFAULT_MAILBOX_CAPACITY, MailboxRejectedHandler.ABORT);
+    }
+
+    public IdentityRunnableLoopGroup(int threadNum, int mailboxCapacity, MailboxRejectedHandler rejectedHandler) {
+        this(newWorkStealingPool(threadNum), null, mailboxCapacity, rejectedHandler, true);
     }
 
     public IdentityRunnableLoopGroup(RunnableLoopGroup group) {
@@ -40,55 +87,232 @@ public class IdentityRunnableLoopGroup implements Executor {
     }
 
     public IdentityRunnableLoopGroup(RunnableLoopGroup group, boolean scheduleClear) {
+        this(group, group, DEFAULT_MAILBOX_CAPACITY, MailboxRejectedHandler.ABORT, scheduleClear);
+    }
+
+    private IdentityRunnableLoopGroup(Executor workers, RunnableLoopGroup group, int mailboxCapacity
+            , MailboxRejectedHandler rejectedHandler, boolean scheduleClear) {
+        ObjectUtils.checkPositive(mailboxCapacity, "mailboxCapacity");
+        this.workers = workers;
         this.group = group;
+        this.mailboxCapacity = mailboxCapacity;
+        this.rejectedHandler = ObjectUtils.checkNotNull(rejectedHandler, "rejectedHandler");
         if (scheduleClear) {
             // 2小时清理一次
-            this.group.scheduleAtFixedRate(this::clear, 2 * 60 * 60, 2 * 60 * 60, TimeUnit.SECONDS);
+            if (group != null) {
+                this.cleaner = null;
+                group.scheduleAtFixedRate(this::clear, 2 * 60 * 60, 2 * 60 * 60, TimeUnit.SECONDS);
+            } else {
+                this.cleaner = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Identity-Cleaner", true));
+                this.cleaner.scheduleAtFixedRate(this::clear, 2 * 60 * 60, 2 * 60 * 60, TimeUnit.SECONDS);
+            }
+        } else {
+            this.cleaner = null;
         }
     }
 
+    private static ForkJoinPool newWorkStealingPool(int threadNum) {
+        ObjectUtils.checkPositive(threadNum, "threadNum");
+        AtomicInteger threadId = new AtomicInteger();
+        return new ForkJoinPool(threadNum, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("Identity-Thread" + threadId.incrementAndGet());
+            return thread;
+        }, null, true);
+    }
+
 
     @Override
     public void execute(Runnable command) {
         if (command instanceof IdentityRunnable) {
             execute((IdentityRunnable) command);
         } else {
-            group.next().execute(command);
+            workers.execute(command);
         }
     }
 
     public void execute(IdentityRunnable runnable) {
-        getExecutor(runnable.getIdentity()).execute(runnable);
+        execute(runnable.getIdentity(), runnable);
     }
 
-    public Executor getExecutor(Object identity) {
-        RunnableSource runnableSource = identityExecutors.computeIfAbsent(identity, TimeRunnableSource::new);
-        if (!runnableSource.isRegisterRunnableLoop()) {
-            synchronized (runnableSource) {
-                if (!runnableSource.isRegisterRunnableLoop()) {
-                    runnableSource.register(group.next());
-                }
+    /**
+     * 提交标识任务
+     *
+     * @param identity 标识
+     * @param task     任务
+     * @throws RejectedExecutionException 邮箱已满(默认拒绝策略)或线程池已关闭
+     */
+    public void execute(Object identity, Runnable task) {
+        execute(identity, task, true);
+    }
+
+    /**
+     * 提交标识任务,不受邮箱任务数上限约束
+     * 用于已被接收请求的后续处理(如远程调用的响应回调),避免其被拒绝而丢失
+     *
+     * @param identity 标识
+     * @param task     任务
+     */
+    public void forceExecute(Object identity, Runnable task) {
+        execute(identity, task, false);
+    }
+
+    private void execute(Object identity, Runnable task, boolean bounded) {
+        for (; ; ) {
+            IdentityMailbox mailbox = mailbox(identity);
+            if (mailbox.offer(task, bounded)) {
+                return;
             }
+            // 邮箱刚被回收
+            mailboxes.remove(identity, mailbox);
         }
-        return runnableSource.runnableLoop();
+    }
+
+    public Executor getExecutor(Object identity) {
+        return mailbox(identity);
+    }
+
+    private IdentityMailbox mailbox(Object identity) {
+        IdentityMailbox mailbox = mailboxes.get(identity);
+        if (mailbox != null) {
+            return mailbox;
+        }
+        return mailboxes.computeIfAbsent(identity
+                , k -> new IdentityMailbox(k, this, mailboxCapacity, MAILBOX_THROUGHPUT));
     }
 
     public Executor next() {
-        return group.next();
+        return group != null ? group.next() : workers;
     }
 
     public Future<?> shutdownGracefully() {
-        return group.shutdownGracefully();
+        if (cleaner != null) {
+            cleaner.shutdownNow();
+        }
+        if (group != null) {
+            return group.shutdownGracefully();
+        }
+
+        ForkJoinPool pool = (ForkJoinPool) workers;
+        pool.shutdown();
+        return CompletableFuture.runAsync(() -> {
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
     }
 
     public void clear() {
         long now = System.currentTimeMillis();
-        for (Map.Entry<Object, TimeRunnableSource> entry : identityExecutors.entrySet()) {
-            if (now - entry.getValue().getTime() < SLEEP_SECOND) {
+        for (Map.Entry<Object, IdentityMailbox> entry : mailboxes.entrySet()) {
+            IdentityMailbox mailbox = entry.getValue();
+            if (now - mailbox.getLastActiveTime() < SLEEP_SECOND) {
                 continue;
             }
-            identityExecutors.remove(entry.getKey());
+            if (mailbox.tryClose()) {
+                mailboxes.remove(entry.getKey(), mailbox);
+            }
+        }
+    }
+
+    // ------------------------ 邮箱回调 ------------------------
+
+    Executor workers() {
+        return workers;
+    }
+
+    /**
+     * 任务被拒绝,任务所有权转交拒绝策略{@link MailboxRejectedHandler}
+     **/
+    void rejected(Object identity, Runnable task, int depth) {
+        rejectedCount.increment();
+        rejectedHandler.rejected(identity, task, depth);
+    }
+
+    void recordScheduleLatency(long latencyNanos) {
+        scheduleCount.increment();
+        scheduleLatencyNanos.add(latencyNanos);
+        long max;
+        while (latencyNanos > (max = maxScheduleLatencyNanos.get())) {
+            if (maxScheduleLatencyNanos.compareAndSet(max, latencyNanos)) {
+                break;
+            }
         }
     }
 
+    // ------------------------ 统计 ------------------------
+
+    /**
+     * 当前邮箱数量
+     **/
+    public int getMailboxCount() {
+        return mailboxes.size();
+    }
+
+    /**
+     * 标识邮箱当前堆积任务数
+     *
+     * @param identity 标识
+     * @return 任务数, 无邮箱返回0
+     */
+    public int getMailboxDepth(Object identity) {
+        IdentityMailbox mailbox = mailboxes.get(identity);
+        return mailbox == null ? 0 : mailbox.depth();
+    }
+
+    /**
+     * 所有邮箱中最大的堆积任务数(遍历统计,勿高频调用)
+     **/
+    public int getMaxMailboxDepth() {
+        int max = 0;
+        for (IdentityMailbox mailbox : mailboxes.values()) {
+            max = Math.max(max, mailbox.depth());
+        }
+        return max;
+    }
+
+    /**
+     * 所有邮箱堆积任务总数(遍历统计,勿高频调用)
+     **/
+    public long getTotalMailboxDepth() {
+        long total = 0;
+        for (IdentityMailbox mailbox : mailboxes.values()) {
+            total += mailbox.depth();
+        }
+        return total;
+    }
+
+    /**
+     * 被拒绝的任务数
+     **/
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * 邮箱平均调度延迟(纳秒),即邮箱提交至工作线程到开始执行的时间
+     **/
+    public long getAverageScheduleLatencyNanos() {
+        long count = scheduleCount.sum();
+        return count == 0 ? 0 : scheduleLatencyNanos.sum() / count;
+    }
+
+    /**
+     * 邮箱最大调度延迟(纳秒)
+     **/
+    public long getMaxScheduleLatencyNanos() {
+        return maxScheduleLatencyNanos.get();
+    }
+
+    /**
+     * 重置调度延迟统计
+     */
+    public void resetScheduleLatency() {
+        scheduleCount.reset();
+        scheduleLatencyNanos.reset();
+        maxScheduleLatencyNanos.set(0);
+    }
+
 }
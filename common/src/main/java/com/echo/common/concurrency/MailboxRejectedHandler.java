@@ -0,0 +1,31 @@
+package com.echo.common.concurrency;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 标识邮箱任务堆积超过上限时的拒绝策略
+ * 处理器取得被拒绝任务的所有权: 正常返回即视为任务被丢弃,处理器需释放任务持有的资源
+ * (如任务实现了引用计数,需调用ReferenceCountUtil.release(task)释放其持有的ByteBuf);
+ * 抛出异常时所有权交还任务提交方,由提交方负责释放,此时处理器不得再释放任务
+ *
+ * @author li-yuanwen
+ */
+public interface MailboxRejectedHandler {
+
+    /**
+     * 直接抛出{@link RejectedExecutionException},任务交还提交方处理(如分发器响应服务器繁忙并释放消息)
+     **/
+    MailboxRejectedHandler ABORT = (identity, task, depth) -> {
+        throw new RejectedExecutionException("identity[" + identity + "] mailbox is full, depth:" + depth);
+    };
+
+    /**
+     * 任务被拒绝
+     *
+     * @param identity 标识
+     * @param task     被拒绝的任务,正常返回时由处理器负责释放其资源
+     * @param depth    邮箱当前任务数
+     */
+    void rejected(Object identity, Runnable task, int depth);
+
+}
@@ -0,0 +1,169 @@
+package com.echo.common.concurrency;
+
+import com.echo.common.util.ObjectUtils;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 有界无锁多生产者单消费者数组队列(参考JCTools MpscArrayQueue)
+ * 生产者CAS竞争生产序号后写入槽位,消费者只能有一个线程,不支持删除指定元素
+ * 迭代器为弱一致性:遍历创建时的序号区间,跳过已被消费或尚未写入的槽位,可在任意线程使用,不支持remove
+ *
+ * @author li-yuanwen
+ */
+public class MpscArrayQueue<E> extends AbstractQueue<E> {
+
+    private static final AtomicLongFieldUpdater<MpscArrayQueue> PRODUCER_INDEX_UPDATER
+            = AtomicLongFieldUpdater.newUpdater(MpscArrayQueue.class, "producerIndex");
+    private static final AtomicLongFieldUpdater<MpscArrayQueue> CONSUMER_INDEX_UPDATER
+            = AtomicLongFieldUpdater.newUpdater(MpscArrayQueue.class, "consumerIndex");
+
+    private final AtomicReferenceArray<E> buffer;
+    private final int mask;
+    private final int capacity;
+
+    /**
+     * 生产序号
+     **/
+    private volatile long producerIndex;
+    /**
+     * 消费序号(仅消费者线程写)
+     **/
+    private volatile long consumerIndex;
+
+    /**
+     * @param capacity 容量,向上取整为2的幂
+     */
+    public MpscArrayQueue(int capacity) {
+        ObjectUtils.checkPositive(capacity, "capacity");
+        int actualCapacity = roundToPowerOfTwo(capacity);
+        this.buffer = new AtomicReferenceArray<>(actualCapacity);
+        this.mask = actualCapacity - 1;
+        this.capacity = actualCapacity;
+    }
+
+    static int roundToPowerOfTwo(int value) {
+        if (value > (1 << 30)) {
+            throw new IllegalArgumentException("capacity: " + value + " (expected: <= 2^30)");
+        }
+        return value == 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        ObjectUtils.checkNotNull(e, "e");
+        long index;
+        do {
+            index = producerIndex;
+            if (index - consumerIndex >= capacity) {
+                return false;
+            }
+        } while (!PRODUCER_INDEX_UPDATER.compareAndSet(this, index, index + 1));
+
+        buffer.lazySet((int) index & mask, e);
+        return true;
+    }
+
+    /**
+     * 仅消费者线程调用
+     **/
+    @Override
+    public E poll() {
+        long index = consumerIndex;
+        int offset = (int) index & mask;
+        E e = buffer.get(offset);
+        if (e == null) {
+            if (index == producerIndex) {
+                return null;
+            }
+            // 生产者已占用序号但还未写入,自旋等待
+            do {
+                e = buffer.get(offset);
+            } while (e == null);
+        }
+        buffer.lazySet(offset, null);
+        CONSUMER_INDEX_UPDATER.lazySet(this, index + 1);
+        return e;
+    }
+
+    /**
+     * 仅消费者线程调用
+     **/
+    @Override
+    public E peek() {
+        long index = consumerIndex;
+        int offset = (int) index & mask;
+        E e = buffer.get(offset);
+        if (e == null && index != producerIndex) {
+            do {
+                e = buffer.get(offset);
+            } while (e == null);
+        }
+        return e;
+    }
+
+    @Override
+    public int size() {
+        long size = producerIndex - consumerIndex;
+        return (int) Math.max(0, Math.min(size, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return producerIndex == consumerIndex;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new WeakIterator(consumerIndex, producerIndex);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 弱一致性迭代器,区间长度不超过容量,因此每个槽位至多访问一次,不会返回重复元素
+     **/
+    private final class WeakIterator implements Iterator<E> {
+
+        private final long limit;
+        private long index;
+        private E next;
+
+        private WeakIterator(long start, long limit) {
+            this.index = start;
+            this.limit = limit;
+            this.next = advance();
+        }
+
+        private E advance() {
+            while (index < limit) {
+                E e = buffer.get((int) index++ & mask);
+                if (e != null) {
+                    return e;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public E next() {
+            E e = next;
+            if (e == null) {
+                throw new NoSuchElementException();
+            }
+            next = advance();
+            return e;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.echo.common.concurrency;
+
+import com.echo.common.util.ObjectUtils;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * 无界无锁多生产者单消费者队列(参考JCTools MpscUnboundedXaddArrayQueue)
+ * 元素存放在固定大小的数组块中,生产者通过getAndIncrement获取序号,按需追加数组块,
+ * 每个元素不再单独分配链表节点;消费者只能有一个线程,不支持删除指定元素
+ * 迭代器为弱一致性:遍历创建时的序号区间,跳过已被消费或尚未写入的槽位,可在任意线程使用,不支持remove
+ *
+ * @author li-yuanwen
+ */
+public class MpscChunkedQueue<E> extends AbstractQueue<E> {
+
+    /**
+     * 默认数组块大小
+     **/
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    private static final AtomicLongFieldUpdater<MpscChunkedQueue> PRODUCER_INDEX_UPDATER
+            = AtomicLongFieldUpdater.newUpdater(MpscChunkedQueue.class, "producerIndex");
+    private static final AtomicLongFieldUpdater<MpscChunkedQueue> CONSUMER_INDEX_UPDATER
+            = AtomicLongFieldUpdater.newUpdater(MpscChunkedQueue.class, "consumerIndex");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<MpscChunkedQueue, Chunk> PRODUCER_CHUNK_UPDATER
+            = AtomicReferenceFieldUpdater.newUpdater(MpscChunkedQueue.class, Chunk.class, "producerChunk");
+
+    private final int chunkShift;
+    private final int chunkMask;
+
+    private volatile long producerIndex;
+    private volatile long consumerIndex;
+    /**
+     * 生产者最近使用的数组块(只前进)
+     **/
+    private volatile Chunk<E> producerChunk;
+    /**
+     * 消费者当前数组块(仅消费者线程写,迭代器读取)
+     **/
+    private volatile Chunk<E> consumerChunk;
+
+    public MpscChunkedQueue() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize 数组块大小,向上取整为2的幂
+     */
+    public MpscChunkedQueue(int chunkSize) {
+        ObjectUtils.checkPositive(chunkSize, "chunkSize");
+        int size = MpscArrayQueue.roundToPowerOfTwo(chunkSize);
+        this.chunkShift = Integer.numberOfTrailingZeros(size);
+        this.chunkMask = size - 1;
+        Chunk<E> first = new Chunk<>(0, size, null);
+        this.producerChunk = first;
+        this.consumerChunk = first;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        ObjectUtils.checkNotNull(e, "e");
+        long index = PRODUCER_INDEX_UPDATER.getAndIncrement(this);
+        Chunk<E> chunk = producerChunk(index >>> chunkShift);
+        chunk.buffer.lazySet((int) index & chunkMask, e);
+        return true;
+    }
+
+    /**
+     * 定位序号所在的数组块,不存在则追加
+     **/
+    private Chunk<E> producerChunk(long chunkIndex) {
+        Chunk<E> current = producerChunk;
+        Chunk<E> chunk = current;
+        while (chunk.index < chunkIndex) {
+            Chunk<E> next = chunk.next;
+            if (next == null) {
+                next = new Chunk<>(chunk.index + 1, chunkMask + 1, chunk);
+                if (!chunk.casNext(null, next)) {
+                    next = chunk.next;
+                }
+            }
+            chunk = next;
+        }
+        // 序号落后的生产者回溯,消费者不会越过尚未写入的数组块,故回溯链路完整
+        while (chunk.index > chunkIndex) {
+            chunk = chunk.prev;
+        }
+        if (chunk.index > current.index) {
+            PRODUCER_CHUNK_UPDATER.compareAndSet(this, current, chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * 仅消费者线程调用
+     **/
+    @Override
+    public E poll() {
+        long index = consumerIndex;
+        if (index == producerIndex) {
+            return null;
+        }
+
+        Chunk<E> chunk = consumerChunk(index);
+        int offset = (int) index & chunkMask;
+        E e = chunk.buffer.get(offset);
+        if (e == null) {
+            // 生产者已占用序号但还未写入,自旋等待
+            do {
+                e = chunk.buffer.get(offset);
+            } while (e == null);
+        }
+        chunk.buffer.lazySet(offset, null);
+        CONSUMER_INDEX_UPDATER.lazySet(this, index + 1);
+        return e;
+    }
+
+    /**
+     * 仅消费者线程调用
+     **/
+    @Override
+    public E peek() {
+        long index = consumerIndex;
+        if (index == producerIndex) {
+            return null;
+        }
+
+        Chunk<E> chunk = consumerChunk(index);
+        int offset = (int) index & chunkMask;
+        E e;
+        do {
+            e = chunk.buffer.get(offset);
+        } while (e == null);
+        return e;
+    }
+
+    private Chunk<E> consumerChunk(long index) {
+        Chunk<E> chunk = consumerChunk;
+        long chunkIndex = index >>> chunkShift;
+        if (chunk.index == chunkIndex) {
+            return chunk;
+        }
+
+        // 已消费完当前数组块,等待生产者链接下一块
+        Chunk<E> next;
+        do {
+            next = chunk.next;
+        } while (next == null);
+        // 断开回溯链,旧数组块可被回收
+        next.prev = null;
+        consumerChunk = next;
+        return next;
+    }
+
+    @Override
+    public int size() {
+        long size = producerIndex - consumerIndex;
+        return (int) Math.max(0, Math.min(size, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return producerIndex == consumerIndex;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        // 先读消费序号再读消费者数组块,数组块不会落后于该序号
+        long start = consumerIndex;
+        Chunk<E> chunk = consumerChunk;
+        return new WeakIterator(chunk, Math.max(start, chunk.index << chunkShift), producerIndex);
+    }
+
+    /**
+     * 弱一致性迭代器,数组块不复用,每个序号至多访问一次,不会返回重复元素
+     **/
+    private final class WeakIterator implements Iterator<E> {
+
+        private final long limit;
+        private Chunk<E> chunk;
+        private long index;
+        private E next;
+
+        private WeakIterator(Chunk<E> chunk, long start, long limit) {
+            this.chunk = chunk;
+            this.index = start;
+            this.limit = limit;
+            this.next = advance();
+        }
+
+        private E advance() {
+            while (index < limit) {
+                long chunkIndex = index >>> chunkShift;
+                while (chunk.index < chunkIndex) {
+                    Chunk<E> nextChunk = chunk.next;
+                    if (nextChunk == null) {
+                        // 生产者已占用序号但还未链接数组块
+                        index = limit;
+                        return null;
+                    }
+                    chunk = nextChunk;
+                }
+                E e = chunk.buffer.get((int) index++ & chunkMask);
+                if (e != null) {
+                    return e;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public E next() {
+            E e = next;
+            if (e == null) {
+                throw new NoSuchElementException();
+            }
+            next = advance();
+            return e;
+        }
+    }
+
+
+    private static final class Chunk<E> {
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Chunk, Chunk> NEXT_UPDATER
+                = AtomicReferenceFieldUpdater.newUpdater(Chunk.class, Chunk.class, "next");
+
+        private final long index;
+        private final AtomicReferenceArray<E> buffer;
+        private volatile Chunk<E> prev;
+        private volatile Chunk<E> next;
+
+        private Chunk(long index, int size, Chunk<E> prev) {
+            this.index = index;
+            this.buffer = new AtomicReferenceArray<>(size);
+            this.prev = prev;
+        }
+
+        private boolean casNext(Chunk<E> expect, Chunk<E> update) {
+            return NEXT_UPDATER.compareAndSet(this, expect, update);
+        }
+    }
+}
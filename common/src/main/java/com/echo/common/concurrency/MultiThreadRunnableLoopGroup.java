@@ -27,6 +27,14 @@ public class MultiThreadRunnableLoopGroup extends AbstractRunnableLoopGroup {
     private final AtomicInteger terminatedChildren = new AtomicInteger();
     private final CompletableFuture<?> terminationFuture = new CompletableFuture<>();
     private final RunnableLoopChooserFactory.RunnableLoopChooser chooser;
+    /**
+     * 线程任务队列工厂
+     **/
+    private final TaskQueueFactory taskQueueFactory;
+    /**
+     * 线程延时任务时间轮tick(纳秒),0表示使用优先级队列
+     **/
+    private final long timingWheelTickNanos;
 
     public MultiThreadRunnableLoopGroup() {
         this(0);
@@ -37,7 +45,30 @@ public class MultiThreadRunnableLoopGroup extends AbstractRunnableLoopGroup {
     }
 
     public MultiThreadRunnableLoopGroup(int nThreads, ThreadFactory threadFactory) {
+        this(nThreads, threadFactory, TaskQueueFactory.BLOCKING);
+    }
+
+    /**
+     * @param nThreads         线程数
+     * @param threadFactory    线程工厂
+     * @param taskQueueFactory 线程任务队列工厂,如{@link TaskQueueFactory#MPSC}
+     */
+    public MultiThreadRunnableLoopGroup(int nThreads, ThreadFactory threadFactory, TaskQueueFactory taskQueueFactory) {
+        this(nThreads, threadFactory, taskQueueFactory, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param nThreads         线程数
+     * @param threadFactory    线程工厂
+     * @param taskQueueFactory 线程任务队列工厂,如{@link TaskQueueFactory#MPSC}
+     * @param timingWheelTick  延时任务时间轮tick,大于0时延时任务使用分层时间轮(插入/取消O(1),精度为一个tick)
+     * @param tickUnit         tick时间单位
+     */
+    public MultiThreadRunnableLoopGroup(int nThreads, ThreadFactory threadFactory, TaskQueueFactory taskQueueFactory
+            , long timingWheelTick, TimeUnit tickUnit) {
         ObjectUtils.checkPositive(nThreads, "nThreads");
+        this.taskQueueFactory = ObjectUtils.checkNotNull(taskQueueFactory, "taskQueueFactory");
+        this.timingWheelTickNanos = timingWheelTick > 0 ? ObjectUtils.checkNotNull(tickUnit, "tickUnit").toNanos(timingWheelTick) : 0;
 
         if (threadFactory == null) {
             threadFactory = newDefaultThreadFactory();
@@ -135,7 +166,7 @@ public class MultiThreadRunnableLoopGroup extends AbstractRunnableLoopGroup {
     }
 
     protected RunnableLoop newChild(ThreadFactory threadFactory) {
-        return new SingleThreadRunnableLoop(threadFactory);
+        return new SingleThreadRunnableLoop(threadFactory, taskQueueFactory, timingWheelTickNanos);
     }
 
 }
@@ -0,0 +1,53 @@
+package com.echo.common.concurrency;
+
+import com.echo.common.concurrency.AbstractScheduledRunnableLoop.ScheduledFutureTask;
+
+/**
+ * RunnableLoop延时任务容器(非线程安全,仅在RunnableLoop线程中访问)
+ *
+ * @author li-yuanwen
+ */
+interface ScheduledTaskQueue {
+
+    /**
+     * 添加延时任务
+     *
+     * @param task 任务
+     */
+    void add(ScheduledFutureTask<?> task);
+
+    /**
+     * 移除延时任务,任务不在容器中时忽略
+     *
+     * @param task 任务
+     */
+    void remove(ScheduledFutureTask<?> task);
+
+    /**
+     * 取出一个已到期的任务
+     *
+     * @param nanoTime 当前时间
+     * @return 到期任务 or null
+     */
+    ScheduledFutureTask<?> poll(long nanoTime);
+
+    /**
+     * 下次需要检查到期任务的时间点
+     *
+     * @return 时间点, -1表示无任务
+     */
+    long nextDeadlineNanos();
+
+    /**
+     * 是否无任务
+     *
+     * @return true 无任务
+     */
+    boolean isEmpty();
+
+    /**
+     * 取消并清空所有任务
+     */
+    void cancelAll();
+
+}
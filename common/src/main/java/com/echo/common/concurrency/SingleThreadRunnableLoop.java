@@ -7,6 +7,7 @@ import lombok.extern.slf4j.Slf4j;
 import java.util.Queue;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * 单线程处理任务队列的所有任务
@@ -43,10 +44,14 @@ public class SingleThreadRunnableLoop extends AbstractScheduledRunnableLoop {
 
     private volatile int state = ST_NOT_STARTED;
 
-    private final BlockingQueue<Runnable> taskQueue;
+    private final Queue<Runnable> taskQueue;
     private final Executor executor;
 
     private volatile Thread thread;
+    /**
+     * 线程是否挂起等待任务,仅挂起时提交任务才唤醒线程
+     **/
+    private volatile boolean parked;
 
     /**
      * 线程关闭延缓周期时间
@@ -68,8 +73,17 @@ public class SingleThreadRunnableLoop extends AbstractScheduledRunnableLoop {
     private final CompletableFuture<?> terminationFuture = new CompletableFuture<>();
 
     SingleThreadRunnableLoop(ThreadFactory threadFactory) {
+        this(threadFactory, TaskQueueFactory.BLOCKING);
+    }
+
+    SingleThreadRunnableLoop(ThreadFactory threadFactory, TaskQueueFactory taskQueueFactory) {
+        this(threadFactory, taskQueueFactory, 0);
+    }
+
+    SingleThreadRunnableLoop(ThreadFactory threadFactory, TaskQueueFactory taskQueueFactory, long timingWheelTickNanos) {
+        super(timingWheelTickNanos);
         this.executor = new ThreadPerTaskExecutor(threadFactory);
-        this.taskQueue = new LinkedBlockingQueue<>();
+        this.taskQueue = ObjectUtils.checkNotNull(taskQueueFactory, "taskQueueFactory").newTaskQueue();
     }
 
     @Override
@@ -128,6 +142,7 @@ public class SingleThreadRunnableLoop extends AbstractScheduledRunnableLoop {
         if (wakeup) {
             // 唤醒线程
             taskQueue.offer(WAKEUP_TASK);
+            wakeupIfParked();
         }
 
         return terminationFuture;
@@ -159,6 +174,7 @@ public class SingleThreadRunnableLoop extends AbstractScheduledRunnableLoop {
         addTask(task);
         if (!inRunnableLoop) {
             startThread();
+            wakeupIfParked();
             if (isShutDown()) {
                 boolean reject = false;
                 try {
@@ -337,27 +353,22 @@ public class SingleThreadRunnableLoop extends AbstractScheduledRunnableLoop {
         assert inRunnableLoop();
 
         for (; ; ) {
-            AbstractScheduledRunnableLoop.ScheduledFutureTask<?> scheduledTask = peekScheduledTask();
-            if (scheduledTask == null) {
-                Runnable task = null;
-                try {
-                    task = taskQueue.take();
-                    if (task == WAKEUP_TASK) {
-                        task = null;
-                    }
-                } catch (InterruptedException e) {
-                    // Ignore
+            long delayNanos = nextScheduledTaskDelayNanos();
+            if (delayNanos == -1) {
+                Runnable task = taskQueue.poll();
+                if (task == null) {
+                    task = parkTask(-1);
+                }
+                if (task == WAKEUP_TASK) {
+                    task = null;
                 }
                 return task;
             } else {
                 Runnable task = null;
-                long delayNanos = scheduledTask.delayNanos();
                 if (delayNanos > 0) {
-                    try {
-                        task = taskQueue.poll(delayNanos, TimeUnit.NANOSECONDS);
-                    } catch (InterruptedException e) {
-                        // Waken Up
-                        return null;
+                    task = taskQueue.poll();
+                    if (task == null) {
+                        task = parkTask(delayNanos);
                     }
                 }
                 if (task == null) {
@@ -373,6 +384,45 @@ public class SingleThreadRunnableLoop extends AbstractScheduledRunnableLoop {
         }
     }
 
+    /**
+     * 挂起线程等待任务
+     * 先声明挂起状态再检查一次队列,提交方在入队后检查挂起状态,保证任务不会漏唤醒
+     *
+     * @param nanos 最长等待时间,小于0则一直等待
+     * @return 任务, 超时或被中断返回null
+     */
+    private Runnable parkTask(long nanos) {
+        parked = true;
+        try {
+            Runnable task = taskQueue.poll();
+            if (task != null) {
+                return task;
+            }
+            if (nanos < 0) {
+                LockSupport.park(this);
+            } else {
+                LockSupport.parkNanos(this, nanos);
+            }
+            // 清除中断标识,避免park失效
+            Thread.interrupted();
+            return taskQueue.poll();
+        } finally {
+            parked = false;
+        }
+    }
+
+    /**
+     * 线程挂起时唤醒线程
+     */
+    private void wakeupIfParked() {
+        if (parked) {
+            Thread thread = this.thread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
     private boolean fetchFromScheduledTaskQueue() {
         if (scheduledTaskQueue == null || scheduledTaskQueue.isEmpty()) {
             return true;
@@ -0,0 +1,42 @@
+package com.echo.common.concurrency;
+
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * {@link SingleThreadRunnableLoop}任务队列工厂
+ * 队列需支持多线程offer,单线程(RunnableLoop线程)poll
+ *
+ * @author li-yuanwen
+ */
+@FunctionalInterface
+public interface TaskQueueFactory {
+
+    /**
+     * 基于锁的无界阻塞队列
+     **/
+    TaskQueueFactory BLOCKING = LinkedBlockingQueue::new;
+
+    /**
+     * 无锁无界多生产者单消费者队列
+     **/
+    TaskQueueFactory MPSC = MpscChunkedQueue::new;
+
+    /**
+     * 无锁有界多生产者单消费者队列,队列满时提交任务抛出RejectedExecutionException
+     *
+     * @param capacity 容量
+     * @return 工厂
+     */
+    static TaskQueueFactory mpsc(int capacity) {
+        return () -> new MpscArrayQueue<>(capacity);
+    }
+
+    /**
+     * 创建任务队列
+     *
+     * @return 任务队列
+     */
+    Queue<Runnable> newTaskQueue();
+
+}
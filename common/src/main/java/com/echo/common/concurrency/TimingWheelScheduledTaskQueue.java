@@ -0,0 +1,291 @@
+package com.echo.common.concurrency;
+
+import com.echo.common.concurrency.AbstractScheduledRunnableLoop.ScheduledFutureTask;
+
+/**
+ * 分层时间轮延时任务容器,插入/删除O(1),到期精度为一个tick(任务不会早于到期时间执行)
+ * 共{@link #LEVELS}层,每层{@link #SLOTS}个槽,第n层每槽跨度为tick * 64^n,
+ * 低层转完一圈时将高层对应槽的任务下放(cascade)到低层,超出总跨度的任务先挂在最高层,下放时重新定位
+ *
+ * @author li-yuanwen
+ */
+final class TimingWheelScheduledTaskQueue implements ScheduledTaskQueue {
+
+    static final int LEVEL_BITS = 6;
+    static final int SLOTS = 1 << LEVEL_BITS;
+    static final int SLOT_MASK = SLOTS - 1;
+    static final int LEVELS = 5;
+
+    /**
+     * 已到期任务链表下标
+     **/
+    static final int READY = LEVELS * SLOTS;
+    /**
+     * 不在时间轮中
+     **/
+    static final int NOT_IN_WHEEL = -1;
+
+    /**
+     * 时间轮最大跨度(tick数)
+     **/
+    private static final long MAX_TICKS = 1L << (LEVEL_BITS * LEVELS);
+
+    private final long tickNanos;
+    private final long startNanos;
+
+    /**
+     * 各槽任务双向链表头,最后一个为已到期任务链表
+     **/
+    private final ScheduledFutureTask<?>[] heads = new ScheduledFutureTask<?>[READY + 1];
+    /**
+     * 各槽任务双向链表尾
+     **/
+    private final ScheduledFutureTask<?>[] tails = new ScheduledFutureTask<?>[READY + 1];
+    /**
+     * 各层槽是否有任务的位图
+     **/
+    private final long[] occupied = new long[LEVELS];
+
+    /**
+     * 已推进到的tick
+     **/
+    private long currentTick;
+    /**
+     * 时间轮中(不含已到期链表)的任务数
+     **/
+    private int wheelSize;
+    private int readySize;
+
+    TimingWheelScheduledTaskQueue(long tickNanos, long nanoTime) {
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("tickNanos: " + tickNanos + " (expected: > 0)");
+        }
+        this.tickNanos = tickNanos;
+        this.startNanos = nanoTime;
+    }
+
+    @Override
+    public void add(ScheduledFutureTask<?> task) {
+        if (wheelSize == 0) {
+            // 时间轮为空时直接快进,避免长时间空闲后逐tick推进
+            long nowTick = (AbstractRunnableLoopGroup.nanoTime() - startNanos) / tickNanos;
+            if (nowTick > currentTick) {
+                currentTick = nowTick;
+            }
+        }
+        place(task);
+    }
+
+    private void place(ScheduledFutureTask<?> task) {
+        long deadlineTick = deadlineTick(task.deadlineNanos());
+        long delta = deadlineTick - currentTick;
+        if (delta <= 0) {
+            link(task, READY);
+            readySize++;
+            return;
+        }
+
+        if (delta >= MAX_TICKS) {
+            // 超出跨度,挂在最高层,下放时重新定位
+            deadlineTick = currentTick + MAX_TICKS - 1;
+            delta = MAX_TICKS - 1;
+        }
+
+        int level = 0;
+        while (delta >= (1L << (LEVEL_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = (int) (deadlineTick >>> (LEVEL_BITS * level)) & SLOT_MASK;
+        link(task, level * SLOTS + slot);
+        occupied[level] |= 1L << slot;
+        wheelSize++;
+    }
+
+    /**
+     * 到期时间向上取整到tick
+     **/
+    private long deadlineTick(long deadlineNanos) {
+        long elapsed = deadlineNanos - startNanos;
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return (elapsed - 1) / tickNanos + 1;
+    }
+
+    @Override
+    public void remove(ScheduledFutureTask<?> task) {
+        int index = task.wheelIndex;
+        if (index == NOT_IN_WHEEL) {
+            return;
+        }
+        unlink(task, index);
+        if (index == READY) {
+            readySize--;
+        } else {
+            wheelSize--;
+        }
+    }
+
+    @Override
+    public ScheduledFutureTask<?> poll(long nanoTime) {
+        if (readySize == 0) {
+            advance(nanoTime);
+        }
+        ScheduledFutureTask<?> task = heads[READY];
+        if (task == null) {
+            return null;
+        }
+        unlink(task, READY);
+        readySize--;
+        return task;
+    }
+
+    /**
+     * 推进时间轮至当前时间,到期任务移入已到期链表
+     **/
+    private void advance(long nanoTime) {
+        long targetTick = (nanoTime - startNanos) / tickNanos;
+        while (currentTick < targetTick) {
+            if (wheelSize == 0) {
+                currentTick = targetTick;
+                return;
+            }
+            long tick = ++currentTick;
+            int slot = (int) tick & SLOT_MASK;
+            if (slot == 0) {
+                // 低层转完一圈,自高向低下放
+                int level = 1;
+                while (level < LEVELS - 1 && ((tick >>> (LEVEL_BITS * level)) & SLOT_MASK) == 0) {
+                    level++;
+                }
+                for (int l = level; l >= 1; l--) {
+                    cascade(l, (int) (tick >>> (LEVEL_BITS * l)) & SLOT_MASK);
+                }
+            }
+            expire(slot);
+            if (readySize > 0) {
+                return;
+            }
+        }
+    }
+
+    private void cascade(int level, int slot) {
+        int index = level * SLOTS + slot;
+        ScheduledFutureTask<?> task = heads[index];
+        if (task == null) {
+            return;
+        }
+        heads[index] = null;
+        tails[index] = null;
+        occupied[level] &= ~(1L << slot);
+        while (task != null) {
+            ScheduledFutureTask<?> next = task.wheelNext;
+            task.wheelPrev = null;
+            task.wheelNext = null;
+            task.wheelIndex = NOT_IN_WHEEL;
+            wheelSize--;
+            place(task);
+            task = next;
+        }
+    }
+
+    private void expire(int slot) {
+        ScheduledFutureTask<?> task = heads[slot];
+        if (task == null) {
+            return;
+        }
+        heads[slot] = null;
+        tails[slot] = null;
+        occupied[0] &= ~(1L << slot);
+        while (task != null) {
+            ScheduledFutureTask<?> next = task.wheelNext;
+            task.wheelPrev = null;
+            task.wheelNext = null;
+            task.wheelIndex = NOT_IN_WHEEL;
+            wheelSize--;
+            link(task, READY);
+            readySize++;
+            task = next;
+        }
+    }
+
+    @Override
+    public long nextDeadlineNanos() {
+        if (readySize > 0) {
+            return startNanos + currentTick * tickNanos;
+        }
+        if (wheelSize == 0) {
+            return -1;
+        }
+        // 第0层当前圈内下一个有任务的槽,没有则在转完一圈(下放)时检查
+        int current = (int) currentTick & SLOT_MASK;
+        long base = currentTick - current;
+        long ahead = current == SLOT_MASK ? 0 : occupied[0] & (-1L << (current + 1));
+        long nextTick = ahead != 0 ? base + Long.numberOfTrailingZeros(ahead) : base + SLOTS;
+        return startNanos + nextTick * tickNanos;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return wheelSize == 0 && readySize == 0;
+    }
+
+    @Override
+    public void cancelAll() {
+        for (int i = 0; i < heads.length; i++) {
+            ScheduledFutureTask<?> task = heads[i];
+            while (task != null) {
+                ScheduledFutureTask<?> next = task.wheelNext;
+                task.wheelPrev = null;
+                task.wheelNext = null;
+                task.wheelIndex = NOT_IN_WHEEL;
+                task.cancelWithoutRemove(false);
+                task = next;
+            }
+            heads[i] = null;
+            tails[i] = null;
+        }
+        for (int i = 0; i < LEVELS; i++) {
+            occupied[i] = 0;
+        }
+        wheelSize = 0;
+        readySize = 0;
+    }
+
+    // ---------------------------------------- 链表操作 ----------------------------------------
+
+    private void link(ScheduledFutureTask<?> task, int index) {
+        task.wheelIndex = index;
+        task.wheelNext = null;
+        ScheduledFutureTask<?> tail = tails[index];
+        task.wheelPrev = tail;
+        if (tail == null) {
+            heads[index] = task;
+        } else {
+            tail.wheelNext = task;
+        }
+        tails[index] = task;
+    }
+
+    private void unlink(ScheduledFutureTask<?> task, int index) {
+        ScheduledFutureTask<?> prev = task.wheelPrev;
+        ScheduledFutureTask<?> next = task.wheelNext;
+        if (prev == null) {
+            heads[index] = next;
+        } else {
+            prev.wheelNext = next;
+        }
+        if (next == null) {
+            tails[index] = prev;
+        } else {
+            next.wheelPrev = prev;
+        }
+        task.wheelPrev = null;
+        task.wheelNext = null;
+        task.wheelIndex = NOT_IN_WHEEL;
+
+        if (index != READY && heads[index] == null) {
+            occupied[index >>> LEVEL_BITS] &= ~(1L << (index & SLOT_MASK));
+        }
+    }
+}
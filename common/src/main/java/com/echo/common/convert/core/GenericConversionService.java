@@ -167,7 +167,14 @@ public class GenericConversionService implements ConfigurableConversionService {
         return (sourceType.isAssignableTo(targetType) ? NO_OP_CONVERTER : null);
     }
 
-    protected GenericConverter getConverter(TypeDescriptor sourceType, TypeDescriptor targetType) {
+    /**
+     * 获取源类型到目标类型的转换器,结果会被缓存,新增或移除转换器后缓存失效
+     * 需要对同一类型对反复转换时(如静态资源逐行绑定),可预先获取转换器以避免每次转换的缓存查找
+     * @param sourceType 源类型
+     * @param targetType 目标类型
+     * @return 转换器 or null(不存在)
+     */
+    public GenericConverter getConverter(TypeDescriptor sourceType, TypeDescriptor targetType) {
         ConverterCacheKey key = new ConverterCacheKey(sourceType, targetType);
         GenericConverter converter = this.converterCache.get(key);
         if (converter != null) {
@@ -16,9 +16,22 @@ public class Jexl3 {
     private final static JexlEngine ENGINE = new JexlBuilder().create();
 
     public static <T> T eval(String expression, Object context, Class<T> type) {
-        JexlExpression jexlExpression = ENGINE.createExpression(expression);
+        return eval(compile(expression), context, type);
+    }
+
+    /**
+     * 预编译表达式,编译结果线程安全,可缓存后重复求值
+     *
+     * @param expression 表达式
+     * @return 编译后的表达式
+     */
+    public static JexlExpression compile(String expression) {
+        return ENGINE.createExpression(expression);
+    }
+
+    public static <T> T eval(JexlExpression expression, Object context, Class<T> type) {
         ObjectContext<Object> c = new ObjectContext<>(ENGINE, context);
-        Object result = jexlExpression.evaluate(c);
+        Object result = expression.evaluate(c);
         if (type.isInstance(result)) {
             return (T) result;
         }
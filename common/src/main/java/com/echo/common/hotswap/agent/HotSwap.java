@@ -74,6 +74,28 @@ public class HotSwap {
     }
 
 
+    /**
+     * 获取Instrumentation,未加载agent时attach当前进程加载
+     *
+     * @return Instrumentation
+     */
+    public static Instrumentation getInstrumentation() {
+        try {
+            init();
+            if (VM != null) {
+                VM.detach();
+                VM = null;
+            }
+        } catch (IOException | AttachNotSupportedException | AgentLoadException | AgentInitializationException e) {
+            throw new IllegalStateException("java hotswap agent load failed", e);
+        }
+        Instrumentation instrumentation = HotSwapAgent.getInstrumentation();
+        if (instrumentation == null) {
+            throw new IllegalStateException("java hotswap instrumentation is null");
+        }
+        return instrumentation;
+    }
+
     private static void destroy() throws IOException {
         if (VM != null) {
             VM.detach();
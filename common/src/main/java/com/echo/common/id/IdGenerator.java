@@ -5,4 +5,21 @@ public interface IdGenerator {
 
     long nextId();
 
+    /**
+     * 批量获取id,实现类可通过一次原子操作预留整段id
+     *
+     * @param n 数量(大于0)
+     * @return 递增的id
+     */
+    default long[] nextIds(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Id count must be greater than 0");
+        }
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = nextId();
+        }
+        return ids;
+    }
+
 }
@@ -105,6 +105,22 @@ public class MultiServerIdGenerator implements DistributedIdGenerator {
         return idSequence.incrementAndGet();
     }
 
+    /**
+     * 一次原子操作预留连续的n个id
+     **/
+    @Override
+    public long[] nextIds(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Id count must be greater than 0");
+        }
+        long start = idSequence.getAndAdd(n) + 1;
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = start + i;
+        }
+        return ids;
+    }
+
     /**
      * 获得以毫秒为单位的当前时间
      **/
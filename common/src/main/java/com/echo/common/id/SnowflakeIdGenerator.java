@@ -1,13 +1,27 @@
 package com.echo.common.id;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * 分布式id之雪花算法
  * 64位具体分布
  * 1位用作最高位保留
  * 41位作为毫秒数 41位的长度可以使用69年
- * 2位作为时间回拨位 同一毫秒支持4次回拨
+ * 2位作为毫秒内序号高位 即第20~21位
  * 10位作为机器位 10位的长度最多支持部署1024个节点
- * 10位作为毫秒内序号位  10位的计数顺序号支持每个节点每毫秒产生1024个ID序号
+ * 10位作为毫秒内序号低位  12位的计数顺序号支持每个节点每毫秒产生4096个ID序号
+ *
+ * 第20~21位原为时间回拨位(同一毫秒支持4次回拨),现为序号高位,不再表示时钟回拨次数,解析id时不能从中读取回拨信息
+ *
+ * 无锁实现:毫秒数与毫秒内序号合并为一个逻辑时钟(毫秒数 << 12 | 序号),以CAS推进
+ * 序号用尽或系统时钟回拨时,逻辑时钟继续递增,即借用未来的毫秒数,待系统时钟追上后恢复
+ * 借用超过{@link #maxBorrowMillis}时:序号用尽则等待系统时钟追上(不持有锁),时钟回拨超过该值则抛出异常
+ *
+ * 重启约束:逻辑时钟最多领先系统时钟maxBorrowMillis毫秒,且不持久化,进程退出时已分配的id可能属于未来的毫秒数
+ * 同一机器id的生成器在上次退出后maxBorrowMillis毫秒内重新创建,可能生成重复id,因此默认借用上限取较小值
+ * 自定义较大的借用上限时,需保证同一机器id两次启动的间隔大于该值
  *
  * @author li-yuanwen
  **/
@@ -20,67 +34,78 @@ public class SnowflakeIdGenerator implements DistributedIdGenerator {
      * 系统开始时间截 (UTC 2020-01-01 00:00:00)
      **/
     private final static long START_TIME = 1577808000000L;
-    /**
-     * 时间回拨位
-     **/
-    private final static int TIME_BACK_BITS = 2;
     /**
      * 机器id所占的位数
      **/
     private final static int WORKER_ID_BITS = 10;
     /**
-     * 支持的最大机器id(十进制)，结果是31 (这个移位算法可以很快的计算出几位二进制数所能表示的最大十进制数)
-     * -1L 左移 5位 (worker id 所占位数) 即 5位二进制所能获得的最大十进制数 - 31
+     * 支持的最大机器id(十进制)，结果是1023 (这个移位算法可以很快的计算出几位二进制数所能表示的最大十进制数)
      **/
     private final static int MAX_WORKER_ID = ~(-1 << WORKER_ID_BITS);
     /**
-     * 序列在id中占的位数
+     * 序列低位在id中占的位数
      **/
-    private final static int SEQUENCE_BITS = 10;
+    private final static int SEQUENCE_LOW_BITS = 10;
+    /**
+     * 序列高位在id中占的位数
+     **/
+    private final static int SEQUENCE_HIGH_BITS = 2;
+    /**
+     * 序列总位数 - 12
+     **/
+    private final static int SEQUENCE_BITS = SEQUENCE_LOW_BITS + SEQUENCE_HIGH_BITS;
     /**
      * 机器ID 左移位数 - 10 (即末 sequence 所占用的位数)
      **/
-    private final static int WORKER_ID_MOVE_BITS = SEQUENCE_BITS;
+    private final static int WORKER_ID_MOVE_BITS = SEQUENCE_LOW_BITS;
     /**
-     * 时间截向 左移位数 - 22(10+10+2)
+     * 序列高位 左移位数 - 20 (10+10)
      **/
-    private final static int TIMESTAMP_MOVE_BITS = SEQUENCE_BITS + WORKER_ID_BITS + TIME_BACK_BITS;
+    private final static int SEQUENCE_HIGH_MOVE_BITS = SEQUENCE_LOW_BITS + WORKER_ID_BITS;
     /**
-     * 时间回拨ID 左移位数 - 20 (10+10)
+     * 时间截向 左移位数 - 22(10+10+2)
      **/
-    private final static int TIME_BACK_ID_MOVE_BITS = SEQUENCE_BITS + WORKER_ID_BITS;
+    private final static int TIMESTAMP_MOVE_BITS = SEQUENCE_HIGH_MOVE_BITS + SEQUENCE_HIGH_BITS;
     /**
-     * 生成序列的掩码(10位所对应的最大整数值)，这里为1023
+     * 序列低位的掩码(10位所对应的最大整数值)，这里为1023
      **/
-    private final static int SEQUENCE_MARK = ~(-1 << SEQUENCE_BITS);
+    private final static long SEQUENCE_LOW_MARK = ~(-1L << SEQUENCE_LOW_BITS);
     /**
-     * 时间回调的掩码(2位所对应的最大整数值)，这里为3
+     * 序列的掩码(12位所对应的最大整数值)，这里为4095
      **/
-    private final static int TIME_BACK_MARK = ~(-1 << TIME_BACK_BITS);
+    private final static long SEQUENCE_MARK = ~(-1L << SEQUENCE_BITS);
     /**
      * 机器ID掩码
      **/
     private final static int WORKER_ID_MARK = ~(-1 << WORKER_ID_BITS) << WORKER_ID_MOVE_BITS;
+    /**
+     * 默认最多借用的毫秒数,小于进程重启耗时,重启后不会与上次生成的id重复
+     **/
+    public final static long DEFAULT_MAX_BORROW_MILLIS = 100L;
+    /**
+     * 借用达到上限时的等待时长
+     **/
+    private final static long WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
 
 
     //=================================================Works's Parameter================================================
 
     /**
-     * 上次生成ID的时间截
+     * 逻辑时钟 (毫秒数 << 12 | 毫秒内序列),记录最后一个已分配的id
      **/
-    private long lastTimestamp = -1L;
+    private final AtomicLong clock = new AtomicLong();
     /**
-     * 时间回拨
+     * 已观察到的最大系统时间,用于识别时钟回拨
      **/
-    private long timeBackId = 0L;
+    private final AtomicLong lastTime = new AtomicLong();
     /**
-     * 工作机器ID(0~31)
+     * 工作机器ID(0~1023)
      **/
     private final long workerId;
     /**
-     * 毫秒内序列(0~4095)
+     * 逻辑时钟最多领先系统时钟的毫秒数
      **/
-    private long sequence = 0L;
+    private final long maxBorrowMillis;
 
     /**
      * 根据id查询机器id
@@ -101,10 +126,24 @@ public class SnowflakeIdGenerator implements DistributedIdGenerator {
      * @param workerId 机器ID (0~1023)
      */
     public SnowflakeIdGenerator(short workerId) {
+        this(workerId, DEFAULT_MAX_BORROW_MILLIS);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param workerId        机器ID (0~1023)
+     * @param maxBorrowMillis 序号用尽或时钟回拨时最多借用的未来毫秒数,同一机器id两次启动的间隔需大于该值
+     */
+    public SnowflakeIdGenerator(short workerId, long maxBorrowMillis) {
         if (workerId > MAX_WORKER_ID || workerId < 0) {
             throw new IllegalArgumentException(String.format("Worker Id can't be greater than %d or less than 0", MAX_WORKER_ID));
         }
+        if (maxBorrowMillis < 0) {
+            throw new IllegalArgumentException("Max borrow millis can't be less than 0");
+        }
         this.workerId = workerId;
+        this.maxBorrowMillis = maxBorrowMillis;
     }
 
     // ==================================================Methods========================================================
@@ -119,43 +158,70 @@ public class SnowflakeIdGenerator implements DistributedIdGenerator {
      * 线程安全的获得下一个 ID 的方法
      **/
     @Override
-    public synchronized long nextId() {
-        long timestamp = currentTime();
-        //如果当前时间小于上一次ID生成的时间戳: 说明系统时钟回退过 - 这个时候时间回拨位加1
-        if (timestamp < lastTimestamp) {
-            timeBackId = (timeBackId + 1) & TIME_BACK_MARK;
+    public long nextId() {
+        return toId(reserve(1));
+    }
+
+    /**
+     * 一次CAS预留n个连续的逻辑时钟值,序号用尽时顺延到后续毫秒
+     **/
+    @Override
+    public long[] nextIds(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Id count must be greater than 0");
         }
-        //如果是同一时间生成的，则进行毫秒内序列
-        if (lastTimestamp == timestamp) {
-            sequence = (sequence + 1) & SEQUENCE_MARK;
-            //毫秒内序列溢出 即 序列 > 4095
-            if (sequence == 0) {
-                //阻塞到下一个毫秒,获得新的时间戳
-                timestamp = blockTillNextMillis(lastTimestamp);
-            }
+        if (n > (maxBorrowMillis + 1) << SEQUENCE_BITS) {
+            throw new IllegalArgumentException(String.format("Id count can't be greater than %d", (maxBorrowMillis + 1) << SEQUENCE_BITS));
         }
-        //时间戳改变，毫秒内序列重置
-        else {
-            sequence = 0L;
+        long start = reserve(n);
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = toId(start + i);
         }
-        //上次生成ID的时间截
-        lastTimestamp = timestamp;
-        //移位并通过或运算拼到一起组成64位的ID
-        return ((timestamp - START_TIME) << TIMESTAMP_MOVE_BITS)
-                | (timeBackId << TIME_BACK_ID_MOVE_BITS)
-                | (workerId << WORKER_ID_MOVE_BITS)
-                | sequence;
+        return ids;
     }
 
     /**
-     * 阻塞到下一个毫秒 即 直到获得新的时间戳
-     **/
-    protected long blockTillNextMillis(long lastTimestamp) {
-        long timestamp = currentTime();
-        while (timestamp <= lastTimestamp) {
-            timestamp = currentTime();
+     * 预留n个连续的逻辑时钟值
+     *
+     * @return 第一个逻辑时钟值
+     **/
+    private long reserve(int n) {
+        for (; ; ) {
+            long last = clock.get();
+            long time = currentTime();
+            long now = (time - START_TIME) << SEQUENCE_BITS;
+            // 系统时钟前进时从新毫秒的0号开始,否则(同一毫秒、序号用尽或时钟回拨)借用后续序号
+            long start = Math.max(now, last + 1);
+            long end = start + n - 1;
+            if ((end >>> SEQUENCE_BITS) - (now >>> SEQUENCE_BITS) > maxBorrowMillis) {
+                long backwards = lastTime.get() - time;
+                if (backwards > maxBorrowMillis) {
+                    throw new IllegalStateException(String.format("Clock moved backwards %d ms, greater than max borrow %d ms"
+                            , backwards, maxBorrowMillis));
+                }
+                // 序号用尽,等待系统时钟追上
+                LockSupport.parkNanos(WAIT_NANOS);
+                continue;
+            }
+            if (clock.compareAndSet(last, end)) {
+                // 并发线程读取的系统时间先后不定,取最大值保证不回退
+                lastTime.accumulateAndGet(time, Math::max);
+                return start;
+            }
         }
-        return timestamp;
+    }
+
+    /**
+     * 逻辑时钟值转换为id
+     **/
+    private long toId(long value) {
+        long sequence = value & SEQUENCE_MARK;
+        //移位并通过或运算拼到一起组成64位的ID
+        return ((value >>> SEQUENCE_BITS) << TIMESTAMP_MOVE_BITS)
+                | ((sequence >>> SEQUENCE_LOW_BITS) << SEQUENCE_HIGH_MOVE_BITS)
+                | (workerId << WORKER_ID_MOVE_BITS)
+                | (sequence & SEQUENCE_LOW_MARK);
     }
 
     /**
@@ -165,4 +231,4 @@ public class SnowflakeIdGenerator implements DistributedIdGenerator {
         return System.currentTimeMillis();
     }
 
-}  
\ No newline at end of file
+}
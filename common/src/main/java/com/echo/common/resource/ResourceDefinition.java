@@ -1,9 +1,13 @@
 package com.echo.common.resource;
 
+import cn.hutool.core.annotation.AnnotationUtil;
 import com.echo.common.resource.anno.ResourceForeignKey;
+import com.echo.common.resource.anno.ResourceObj;
 import com.echo.common.util.ReflectionUtils;
+import com.echo.common.util.StringUtils;
 import lombok.Getter;
 
+import java.io.File;
 import java.lang.reflect.Field;
 import java.util.Arrays;
 import java.util.LinkedList;
@@ -34,4 +38,20 @@ public class ResourceDefinition {
     public boolean haveForeignKey() {
         return !foreignKeyFields.isEmpty();
     }
+
+    /**
+     * 资源文件全路径 根路径/模块名/类名.后缀
+     * @param fileSuffix 文件后缀
+     * @return 资源文件全路径
+     */
+    public String getLocation(String fileSuffix) {
+        ResourceObj obj = AnnotationUtil.getAnnotation(clz, ResourceObj.class);
+        assert obj != null;
+        StringBuilder stringBuilder = new StringBuilder(File.separator);
+        if (StringUtils.hasLength(obj.value())) {
+            stringBuilder.append(obj.value()).append(File.separator);
+        }
+        stringBuilder.append(clz.getSimpleName()).append('.').append(fileSuffix);
+        return rootPath + stringBuilder;
+    }
 }
@@ -25,4 +25,10 @@ public @interface ResourceIndex {
      */
     boolean uniqueIndex() default false;
 
+    /**
+     * 是否是有序索引,有序索引额外支持floor/ceiling/范围查询,索引值需实现{@link Comparable}
+     * @return true 有序索引
+     */
+    boolean sorted() default false;
+
 }
@@ -0,0 +1,96 @@
+package com.echo.common.resource.reader;
+
+import com.echo.common.convert.core.ConversionService;
+import com.echo.common.resource.reader.ResourceReader.AbstractFieldResolver;
+import com.echo.common.util.ReflectionUtils;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 资源类绑定计划,每个资源类只构建一次,热更时复用
+ * 包含无参构造器及所有非静态属性的解析器(预先生成的setter与转换器),读取器按属性名取用后逐行注入
+ * @author li-yuanwen
+ */
+final class ResourceBinder<E> {
+
+    /** 资源类 **/
+    private final Class<E> clz;
+    /** 无参构造器 ()Object **/
+    private final MethodHandle constructor;
+    /** 属性解析器,按声明顺序 **/
+    private final List<AbstractFieldResolver> fieldResolvers;
+    /** 属性解析器 key:属性名 **/
+    private final Map<String, AbstractFieldResolver> fieldResolverMap;
+
+    ResourceBinder(Class<E> clz, ConversionService conversionService) {
+        this.clz = clz;
+        this.constructor = createConstructor(clz);
+        Field[] fields = ReflectionUtils.getFields(clz, field -> !Modifier.isStatic(field.getModifiers()));
+        List<AbstractFieldResolver> resolvers = new ArrayList<>(fields.length);
+        Map<String, AbstractFieldResolver> resolverMap = new HashMap<>(fields.length * 2);
+        for (Field field : fields) {
+            FieldBinder binder = new FieldBinder(field, conversionService);
+            resolvers.add(binder);
+            // 子类属性优先
+            resolverMap.putIfAbsent(field.getName(), binder);
+        }
+        this.fieldResolvers = Collections.unmodifiableList(resolvers);
+        this.fieldResolverMap = resolverMap;
+    }
+
+    /** 创建资源实例 **/
+    @SuppressWarnings("unchecked")
+    E newInstance() {
+        try {
+            Object instance = constructor.invokeExact();
+            return (E) instance;
+        } catch (Throwable e) {
+            String message = MessageFormatter.format("资源类[{}]实例化失败", clz).getMessage();
+            throw new IllegalStateException(message, e);
+        }
+    }
+
+    Class<E> getClz() {
+        return clz;
+    }
+
+    /** @return 属性解析器 or null **/
+    AbstractFieldResolver getFieldResolver(String fieldName) {
+        return fieldResolverMap.get(fieldName);
+    }
+
+    List<AbstractFieldResolver> getFieldResolvers() {
+        return fieldResolvers;
+    }
+
+    private static MethodHandle createConstructor(Class<?> clz) {
+        try {
+            Constructor<?> constructor = clz.getDeclaredConstructor();
+            ReflectionUtils.setAccessible(constructor);
+            return MethodHandles.lookup().unreflectConstructor(constructor)
+                    .asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            String message = MessageFormatter.format("类[{}]没有无参构造函数", clz).getMessage();
+            throw new RuntimeException(message, e);
+        }
+    }
+
+    /** 属性解析器 **/
+    private static final class FieldBinder extends AbstractFieldResolver {
+
+        FieldBinder(Field field, ConversionService conversionService) {
+            super(field, conversionService);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.echo.common.resource.reader;
+
+import com.echo.common.convert.support.DefaultConversionService;
+import com.echo.common.convert.support.JsonToObjConverter;
+import com.echo.common.convert.support.ObjToJsonConverter;
+
+import java.util.ServiceLoader;
+
+/**
+ * 资源读取使用的转换服务,在默认转换器的基础上添加json转换器及{@link ResourceConverterRegistrar}注册的转换器
+ * 运行时与{@link ResourceSnapshotCompiler}编译快照时均使用该转换服务,保证快照与解析资源文件的结果一致
+ *
+ * @author li-yuanwen
+ */
+public class ResourceConversionService extends DefaultConversionService {
+
+    public ResourceConversionService() {
+        addConverterFactory(new JsonToObjConverter());
+        addConverter(new ObjToJsonConverter());
+        for (ResourceConverterRegistrar registrar : ServiceLoader.load(ResourceConverterRegistrar.class)) {
+            registrar.registerConverters(this);
+        }
+    }
+}
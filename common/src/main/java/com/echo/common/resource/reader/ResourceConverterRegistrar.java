@@ -0,0 +1,19 @@
+package com.echo.common.resource.reader;
+
+import com.echo.common.convert.core.ConverterRegistry;
+
+/**
+ * 资源转换器注册,应用自定义的资源属性转换器通过该接口注册
+ * 实现类在META-INF/services/com.echo.common.resource.reader.ResourceConverterRegistrar中声明,
+ * 由{@link ResourceConversionService}加载,运行时与{@link ResourceSnapshotCompiler}编译快照时使用相同的转换器
+ *
+ * @author li-yuanwen
+ */
+public interface ResourceConverterRegistrar {
+
+    /**
+     * 注册转换器
+     * @param registry 转换器注册中心
+     */
+    void registerConverters(ConverterRegistry registry);
+}
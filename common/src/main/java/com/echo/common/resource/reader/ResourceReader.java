@@ -1,7 +1,12 @@
 package com.echo.common.resource.reader;
 
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import com.echo.common.convert.converter.GenericConverter;
 import com.echo.common.convert.core.ConversionService;
+import com.echo.common.convert.core.GenericConversionService;
 import com.echo.common.convert.core.TypeDescriptor;
+import com.echo.common.convert.exception.ConversionFailedException;
 import com.echo.common.convert.exception.ConverterNotFoundException;
 import com.echo.common.util.ReflectionUtils;
 import com.echo.common.util.TypeDescriptorUtils;
@@ -9,6 +14,9 @@ import org.slf4j.helpers.FormattingTuple;
 import org.slf4j.helpers.MessageFormatter;
 
 import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.util.List;
 
@@ -34,22 +42,62 @@ public interface ResourceReader {
      */
     <E> List<E> read(InputStream in, Class<E> clz);
 
+    /**
+     * 资源读取
+     * @param location 资源文件全路径
+     * @param clz 目标类型
+     * @param <E> 实际类型
+     * @return 资源集
+     * @throws cn.hutool.core.io.IORuntimeException 资源文件不存在时抛出
+     */
+    default <E> List<E> read(String location, Class<E> clz) {
+        InputStream in = FileUtil.getInputStream(location);
+        try {
+            return read(in, clz);
+        } finally {
+            IoUtil.close(in);
+        }
+    }
 
-    /** 抽象属性解析器 **/
+
+    /**
+     * 抽象属性解析器
+     * 构建时预先生成属性setter(MethodHandle)并解析String到属性类型的转换器,逐个单元格注入时不再查找转换器
+     */
     abstract class AbstractFieldResolver {
 
+        /** (Object,Object)void 的Field.set **/
+        private static final MethodHandle FIELD_SET;
+
+        static {
+            try {
+                FIELD_SET = MethodHandles.lookup().findVirtual(Field.class, "set"
+                        , MethodType.methodType(void.class, Object.class, Object.class));
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
         /** 属性 **/
         private final Field field;
         /** TypeDescriptor **/
         private final TypeDescriptor descriptor;
         /** 转换器 **/
         private final ConversionService conversionService;
+        /** 预先解析的转换器,为null时每次通过conversionService转换 **/
+        private final GenericConverter converter;
+        /** 属性setter (Object,Object)void **/
+        private final MethodHandle setter;
 
         public AbstractFieldResolver(Field field, ConversionService conversionService) {
             this.field = field;
             this.descriptor = TypeDescriptorUtils.newInstance(field);
             ReflectionUtils.makeAccessible(field);
             this.conversionService = conversionService;
+            this.converter = conversionService instanceof GenericConversionService
+                    ? ((GenericConversionService) conversionService).getConverter(TypeDescriptorUtils.STRING_DESCRIPTOR, descriptor)
+                    : null;
+            this.setter = createSetter(field);
         }
 
         /** 获取属性名称 **/
@@ -59,18 +107,50 @@ public interface ResourceReader {
 
         /** 属性实例注入 **/
         public void inject(Object instance, String content) {
+            Object value;
             try {
-                Object value = conversionService.convert(content, TypeDescriptorUtils.STRING_DESCRIPTOR, descriptor);
-                field.set(instance, value);
+                value = convert(content);
             } catch (ConverterNotFoundException e) {
                 FormattingTuple message = MessageFormatter.format("静态资源[{}]属性[{}]的转换器不存在",
                         instance.getClass().getSimpleName(), field.getName());
                 throw new IllegalStateException(message.getMessage(), e);
-            } catch (IllegalAccessException e) {
+            }
+            try {
+                setter.invokeExact(instance, value);
+            } catch (Throwable e) {
                 FormattingTuple message = MessageFormatter.format("静态资源[{}]属性[{}]注入失败", instance.getClass(), field);
                 throw new IllegalStateException(message.getMessage(), e);
             }
+        }
+
+        /** 与ConversionService#convert(Object, TypeDescriptor, TypeDescriptor)语义一致 **/
+        private Object convert(String content) {
+            if (converter == null) {
+                return conversionService.convert(content, TypeDescriptorUtils.STRING_DESCRIPTOR, descriptor);
+            }
+            Object value;
+            try {
+                value = converter.convert(content, TypeDescriptorUtils.STRING_DESCRIPTOR, descriptor);
+            } catch (ConversionFailedException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new ConversionFailedException(TypeDescriptorUtils.STRING_DESCRIPTOR, descriptor, content, e);
+            }
+            if (value == null && descriptor.isPrimitive()) {
+                throw new ConversionFailedException(TypeDescriptorUtils.STRING_DESCRIPTOR, descriptor, content
+                        , new IllegalArgumentException("A null value cannot be assigned to a primitive type"));
+            }
+            return value;
+        }
 
+        private static MethodHandle createSetter(Field field) {
+            try {
+                return MethodHandles.lookup().unreflectSetter(field)
+                        .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            } catch (IllegalAccessException e) {
+                // final属性等无法生成setter时退化为Field.set
+                return FIELD_SET.bindTo(field);
+            }
         }
 
     }
@@ -0,0 +1,239 @@
+package com.echo.common.resource.reader;
+
+import com.echo.common.util.ReflectionUtils;
+import io.protostuff.ByteBufferInput;
+import io.protostuff.LinkedBuffer;
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.Schema;
+import io.protostuff.runtime.RuntimeSchema;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 资源二进制快照
+ * 快照文件与资源文件同目录,文件名为资源文件名加{@link #SUFFIX}
+ * 格式: 魔数(int) 版本(int) 摘要(16字节) 行数(int) [行长度(int) 行数据(protostuff)]...
+ * 摘要由资源文件内容与资源类结构(含嵌套类型的结构)计算,任一变化快照即过期
+ *
+ * @author li-yuanwen
+ */
+final class ResourceSnapshot {
+
+    /** 快照文件后缀 **/
+    static final String SUFFIX = ".snapshot";
+
+    /** 魔数 ECRS **/
+    private static final int MAGIC = 0x45435253;
+    /** 格式版本,格式变化时递增 **/
+    private static final int VERSION = 1;
+    /** 摘要长度 **/
+    private static final int DIGEST_LENGTH = 16;
+    /** 文件头长度 **/
+    private static final int HEADER_LENGTH = 4 + 4 + DIGEST_LENGTH + 4;
+
+    private ResourceSnapshot() {
+    }
+
+    /**
+     * 快照文件全路径
+     * @param location 资源文件全路径
+     * @return 快照文件全路径
+     */
+    static String getLocation(String location) {
+        return location + SUFFIX;
+    }
+
+    /**
+     * 计算摘要
+     * @param source 资源文件内容
+     * @param clz 资源类
+     * @return 摘要
+     */
+    static byte[] digest(byte[] source, Class<?> clz) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(source);
+        digest.update(layout(clz).getBytes(StandardCharsets.UTF_8));
+        return digest.digest();
+    }
+
+    /**
+     * 资源类结构,protostuff按属性声明顺序编号,且按枚举序号读写枚举
+     * 递归展开属性类型及其泛型参数中的非JDK类型(嵌套对象的属性、枚举常量),已展开的类型只记录类名
+     * @param clz 资源类
+     * @return 结构描述
+     */
+    static String layout(Class<?> clz) {
+        StringBuilder builder = new StringBuilder();
+        appendType(builder, clz, new HashSet<>());
+        return builder.toString();
+    }
+
+    private static void appendType(StringBuilder builder, Type type, Set<Class<?>> visited) {
+        if (type instanceof Class) {
+            Class<?> clz = (Class<?>) type;
+            if (clz.isArray()) {
+                appendType(builder, clz.getComponentType(), visited);
+                builder.append("[]");
+                return;
+            }
+            builder.append(clz.getName());
+            if (clz.isPrimitive() || clz.getName().startsWith("java.") || !visited.add(clz)) {
+                return;
+            }
+            builder.append('{');
+            if (clz.isEnum()) {
+                for (Object constant : clz.getEnumConstants()) {
+                    builder.append(((Enum<?>) constant).name()).append(';');
+                }
+            } else {
+                for (Field field : ReflectionUtils.getFields(clz)) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                        continue;
+                    }
+                    builder.append(field.getDeclaringClass().getName()).append('.').append(field.getName()).append(':');
+                    appendType(builder, field.getGenericType(), visited);
+                    builder.append(';');
+                }
+            }
+            builder.append('}');
+        } else if (type instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) type;
+            appendType(builder, parameterizedType.getRawType(), visited);
+            builder.append('<');
+            for (Type argument : parameterizedType.getActualTypeArguments()) {
+                appendType(builder, argument, visited);
+                builder.append(',');
+            }
+            builder.append('>');
+        } else if (type instanceof GenericArrayType) {
+            appendType(builder, ((GenericArrayType) type).getGenericComponentType(), visited);
+            builder.append("[]");
+        } else if (type instanceof WildcardType) {
+            WildcardType wildcardType = (WildcardType) type;
+            builder.append('?');
+            for (Type bound : wildcardType.getUpperBounds()) {
+                builder.append('+');
+                appendType(builder, bound, visited);
+            }
+            for (Type bound : wildcardType.getLowerBounds()) {
+                builder.append('-');
+                appendType(builder, bound, visited);
+            }
+        } else if (type instanceof TypeVariable) {
+            // 类型变量的边界可能引用自身(T extends Comparable<T>),只展开边界的原始类型
+            builder.append(((TypeVariable<?>) type).getName());
+            for (Type bound : ((TypeVariable<?>) type).getBounds()) {
+                builder.append('+');
+                appendType(builder, bound instanceof ParameterizedType ? ((ParameterizedType) bound).getRawType() : bound
+                        , visited);
+            }
+        } else {
+            builder.append(type.getTypeName());
+        }
+    }
+
+    /**
+     * 写入快照,先写临时文件再替换,读取方不会读到写了一半的快照
+     * @param location 资源文件全路径
+     * @param digest 摘要
+     * @param rows 资源集
+     * @param clz 资源类
+     * @param <E> 资源类型
+     * @return 快照文件全路径
+     * @throws IOException 写入失败
+     */
+    static <E> String write(String location, byte[] digest, List<E> rows, Class<E> clz) throws IOException {
+        Path target = Paths.get(getLocation(location));
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Schema<E> schema = RuntimeSchema.getSchema(clz);
+        LinkedBuffer buffer = LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.write(digest);
+            out.writeInt(rows.size());
+            for (E row : rows) {
+                byte[] bytes;
+                try {
+                    bytes = ProtostuffIOUtil.toByteArray(row, schema, buffer);
+                } finally {
+                    buffer.clear();
+                }
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return target.toString();
+    }
+
+    /**
+     * 读取快照,快照以只读方式映射至内存,逐行直接从映射区反序列化
+     * @param location 资源文件全路径
+     * @param digest 资源文件当前摘要
+     * @param clz 资源类
+     * @param <E> 资源类型
+     * @return 资源集 快照格式版本或摘要不一致时返回null
+     * @throws IOException 读取失败
+     */
+    static <E> List<E> read(String location, byte[] digest, Class<E> clz) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(getLocation(location)), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        byte[] snapshotDigest = new byte[DIGEST_LENGTH];
+        buffer.get(snapshotDigest);
+        if (!Arrays.equals(snapshotDigest, digest)) {
+            return null;
+        }
+        int count = buffer.getInt();
+        Schema<E> schema = RuntimeSchema.getSchema(clz);
+        List<E> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt();
+            ByteBuffer row = buffer.slice();
+            row.limit(length);
+            ByteBufferInput input = new ByteBufferInput(row, true);
+            E instance = schema.newMessage();
+            schema.mergeFrom(input, instance);
+            input.checkLastTagWas(0);
+            rows.add(instance);
+            buffer.position(buffer.position() + length);
+        }
+        return rows;
+    }
+}
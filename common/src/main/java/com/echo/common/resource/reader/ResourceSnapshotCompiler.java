@@ -0,0 +1,93 @@
+package com.echo.common.resource.reader;
+
+import cn.hutool.core.annotation.AnnotationUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.lang.ClassScanner;
+import com.echo.common.convert.core.ConfigurableConversionService;
+import com.echo.common.resource.ResourceDefinition;
+import com.echo.common.resource.anno.ResourceObj;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 资源快照编译器,将资源文件编译为{@link SnapshotReader}读取的二进制快照,供打包/CI阶段使用
+ * 用法: java ResourceSnapshotCompiler 资源根路径 [资源类包名前缀,默认com.echo]
+ *
+ * @author li-yuanwen
+ */
+@Slf4j
+public class ResourceSnapshotCompiler {
+
+    /** 资源读取器 key:读取器类型 **/
+    private final Map<Class<?>, ResourceReader> readers = new HashMap<>();
+
+    public ResourceSnapshotCompiler(ResourceReader... readers) {
+        for (ResourceReader reader : readers) {
+            this.readers.put(reader.getClass(), reader);
+        }
+    }
+
+    /**
+     * 编译资源快照
+     * @param definition 资源定义信息
+     * @return 快照文件全路径
+     * @throws IOException 写入快照失败
+     */
+    public String compile(ResourceDefinition definition) throws IOException {
+        return compile0(definition.getClz(), definition);
+    }
+
+    private <E> String compile0(Class<E> clz, ResourceDefinition definition) throws IOException {
+        ResourceObj obj = AnnotationUtil.getAnnotation(clz, ResourceObj.class);
+        if (obj == null) {
+            throw new IllegalArgumentException("资源类[" + clz.getName() + "]缺少@ResourceObj注解");
+        }
+        ResourceReader reader = readers.get(obj.reader());
+        if (reader == null) {
+            throw new IllegalArgumentException("资源类[" + clz.getName() + "]的资源读取器[" + obj.reader().getName() + "]不存在");
+        }
+        String location = definition.getLocation(reader.getFileSuffix());
+        byte[] source = FileUtil.readBytes(location);
+        List<E> rows = reader.read(new ByteArrayInputStream(source), clz);
+        return ResourceSnapshot.write(location, ResourceSnapshot.digest(source, clz), rows, clz);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("用法: ResourceSnapshotCompiler 资源根路径 [资源类包名前缀]");
+            System.exit(1);
+        }
+        String rootPath = args[0];
+        String basePackage = args.length > 1 ? args[1] : "com.echo";
+
+        // 与运行时相同的转换服务,自定义转换器通过ResourceConverterRegistrar注册
+        ConfigurableConversionService conversionService = new ResourceConversionService();
+        ResourceSnapshotCompiler compiler = new ResourceSnapshotCompiler(new XlsxReader(conversionService)
+                , new XmlReader(conversionService));
+
+        int count = 0;
+        int failure = 0;
+        for (Class<?> clz : new ClassScanner(basePackage).scan()) {
+            if (AnnotationUtil.getAnnotation(clz, ResourceObj.class) == null) {
+                continue;
+            }
+            try {
+                String location = compiler.compile(new ResourceDefinition(clz, rootPath));
+                log.info("编译资源类[{}]快照[{}]", clz.getSimpleName(), location);
+                count++;
+            } catch (Exception e) {
+                log.error("编译资源类[{}]快照出现异常", clz.getName(), e);
+                failure++;
+            }
+        }
+        log.info("资源快照编译完成,成功[{}]失败[{}]", count, failure);
+        if (failure > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.echo.common.resource.reader;
+
+import cn.hutool.core.io.FileUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * 资源快照读取器,优先读取{@link ResourceSnapshotCompiler}编译的二进制快照
+ * 快照不存在、过期(资源文件或资源类结构发生变化)或损坏时,退回实际的资源读取器解析资源文件
+ *
+ * @author li-yuanwen
+ */
+@Slf4j
+public class SnapshotReader implements ResourceReader {
+
+    /** 实际的资源读取器 **/
+    private final ResourceReader reader;
+
+    public SnapshotReader(ResourceReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public String getFileSuffix() {
+        return reader.getFileSuffix();
+    }
+
+    @Override
+    public <E> List<E> read(InputStream in, Class<E> clz) {
+        return reader.read(in, clz);
+    }
+
+    @Override
+    public <E> List<E> read(String location, Class<E> clz) {
+        byte[] source = FileUtil.readBytes(location);
+        if (FileUtil.exist(ResourceSnapshot.getLocation(location))) {
+            try {
+                List<E> list = ResourceSnapshot.read(location, ResourceSnapshot.digest(source, clz), clz);
+                if (list != null) {
+                    return list;
+                }
+                log.warn("资源文件[{}]的快照已过期,解析资源文件", location);
+            } catch (Exception e) {
+                log.warn("读取资源文件[{}]的快照出现异常,解析资源文件", location, e);
+            }
+        }
+        return reader.read(new ByteArrayInputStream(source), clz);
+    }
+}
@@ -3,16 +3,16 @@ package com.echo.common.resource.reader;
 import com.echo.common.convert.core.ConversionService;
 import com.echo.common.resource.resolver.Resolver;
 import com.echo.common.resource.resolver.ResolverFactory;
-import com.echo.common.util.ObjectUtils;
 import com.echo.common.util.StringUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.ss.usermodel.BuiltinFormats;
 import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.openxml4j.opc.PackagePart;
 import org.apache.poi.xssf.eventusermodel.XSSFReader;
-import org.apache.poi.xssf.model.SharedStringsTable;
 import org.apache.poi.xssf.model.StylesTable;
 import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
 import org.apache.poi.xssf.usermodel.XSSFRichTextString;
 import org.slf4j.helpers.MessageFormatter;
 import org.xml.sax.Attributes;
@@ -26,10 +26,10 @@ import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.Field;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * excel xlsx文件读取器
@@ -62,6 +62,18 @@ public class XlsxReader extends DefaultHandler implements ResourceReader {
     private static final String CELL_DATA_STYLE = "s";
     /** 值标签 **/
     private static final String VALUE = "v";
+    /** 共享字符串标签 **/
+    private static final String SHARED_STRING = "si";
+    /** 共享字符串文本标签 **/
+    private static final String SHARED_STRING_TEXT = "t";
+    /** 共享字符串注音标签,不计入内容 **/
+    private static final String SHARED_STRING_PHONETIC = "rPh";
+    /** 分页数据范围标签 **/
+    private static final String DIMENSION = "dimension";
+    /** 分页数据范围,类似 A1:F200 **/
+    private static final String DIMENSION_REF = "ref";
+    /** 按数据范围预分配的最大行数 **/
+    private static final int MAX_INITIAL_CAPACITY = 1 << 20;
 
     // ------------------- 日期格式 ---------------------
 
@@ -72,6 +84,8 @@ public class XlsxReader extends DefaultHandler implements ResourceReader {
 
 
     private final ConversionService conversionService;
+    /** 资源类绑定计划 **/
+    private final ConcurrentHashMap<Class<?>, ResourceBinder<?>> binders = new ConcurrentHashMap<>();
 
     public XlsxReader(ConversionService conversionService) {
         this.conversionService = conversionService;
@@ -82,22 +96,52 @@ public class XlsxReader extends DefaultHandler implements ResourceReader {
         return "xlsx";
     }
 
+    /**
+     * 资源读取
+     * 多个分页时各分页并行解析(当前处于ForkJoinPool中时使用该线程池,否则使用公共线程池),结果按分页顺序合并
+     */
     @Override
     public <E> List<E> read(InputStream in, Class<E> clz) {
         try {
+            ResourceBinder<E> binder = getBinder(clz);
             OPCPackage xlsxPackage = OPCPackage.open(in);
             XSSFReader xssfReader = new XSSFReader(xlsxPackage);
             StylesTable styles = xssfReader.getStylesTable();
-            SharedStringsTable sharedStringsTable = xssfReader.getSharedStringsTable();
+            String[] sharedStrings = readSharedStrings(xlsxPackage);
             XSSFReader.SheetIterator iter = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
-            // 创建返回数据集
-            List<E> result = new LinkedList<E>();
+            // 分页内容已在内存中,各分页可独立解析
+            List<ForkJoinTask<List<E>>> tasks = new ArrayList<>();
             while (iter.hasNext()) {
                 InputStream inputStream = iter.next();
                 String sheetName = iter.getSheetName();
-                List<E> list = readSheet(clz, styles, sharedStringsTable, inputStream, sheetName);
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    try (InputStream sheetInputStream = inputStream) {
+                        return readSheet(binder, styles, sharedStrings, sheetInputStream, sheetName);
+                    }
+                }));
+            }
+            if (tasks.isEmpty()) {
+                return new ArrayList<>(0);
+            }
+            for (int i = 1; i < tasks.size(); i++) {
+                tasks.get(i).fork();
+            }
+            List<E> first = tasks.get(0).invoke();
+            if (tasks.size() == 1) {
+                return first;
+            }
+            // 创建返回数据集
+            List<List<E>> sheets = new ArrayList<>(tasks.size());
+            sheets.add(first);
+            int size = first.size();
+            for (int i = 1; i < tasks.size(); i++) {
+                List<E> list = tasks.get(i).join();
+                sheets.add(list);
+                size += list.size();
+            }
+            List<E> result = new ArrayList<>(size);
+            for (List<E> list : sheets) {
                 result.addAll(list);
-                inputStream.close();
             }
             return result;
         } catch (Exception e) {
@@ -107,10 +151,34 @@ public class XlsxReader extends DefaultHandler implements ResourceReader {
 
     // ------------------ 私有方法 ----------------------------------
 
-    private <E> List<E> readSheet(Class<E> clz,  StylesTable styles, SharedStringsTable sst, InputStream sheetInputStream,
+    @SuppressWarnings("unchecked")
+    private <E> ResourceBinder<E> getBinder(Class<E> clz) {
+        return (ResourceBinder<E>) binders.computeIfAbsent(clz, k -> new ResourceBinder<>(k, conversionService));
+    }
+
+    /**
+     * 读取共享字符串表
+     * XSSFReader#getSharedStringsTable()基于XMLBeans构建可写结构,ReadOnlySharedStringsTable#getItemAt(int)每次构建XSSFRichTextString,
+     * 大表时二者耗时均数倍于分页解析,此处直接解析为字符串数组
+     * @param xlsxPackage xlsx
+     * @return 共享字符串 下标:索引值
+     */
+    private String[] readSharedStrings(OPCPackage xlsxPackage) throws IOException, SAXException, ParserConfigurationException {
+        List<PackagePart> parts = xlsxPackage.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType());
+        if (parts.isEmpty()) {
+            return new String[0];
+        }
+        SharedStringsHandler handler = new SharedStringsHandler();
+        try (InputStream in = parts.get(0).getInputStream()) {
+            fetchSheetParser(handler).parse(new InputSource(in));
+        }
+        return handler.strings.toArray(new String[0]);
+    }
+
+    private <E> List<E> readSheet(ResourceBinder<E> binder, StylesTable styles, String[] sst, InputStream sheetInputStream,
                                   String sheetName) throws IOException, SAXException, ParserConfigurationException {
         InputSource inputSource = new InputSource(sheetInputStream);
-        SheetHandler<E> sheetHandler = new SheetHandler<>(clz, sheetName, styles, sst);
+        SheetHandler<E> sheetHandler = new SheetHandler<>(binder, sheetName, styles, sst);
         XMLReader sheetParser = fetchSheetParser(sheetHandler);
         sheetParser.parse(inputSource);
         return sheetHandler.results;
@@ -140,16 +208,18 @@ public class XlsxReader extends DefaultHandler implements ResourceReader {
 
         /** 解析类型 **/
         private final Class<E> clz;
+        /** 绑定计划 **/
+        private final ResourceBinder<E> binder;
         /** 分页名称 **/
         private final String sheetName;
         /** 样式 **/
         private final StylesTable styles;
         /** sst **/
-        private final SharedStringsTable sst;
-        /** 解析结果 **/
-        private final List<E> results = new LinkedList<>();
-        /** 属性信息 **/
-        private final List<XlsxFieldResolver> fieldHolders = new LinkedList<>();
+        private final String[] sst;
+        /** 解析结果,读到分页数据范围时按行数重新分配 **/
+        private ArrayList<E> results = new ArrayList<>();
+        /** 属性信息 下标:列数 **/
+        private AbstractFieldResolver[] fieldHolders;
         /** 同一行列信息 **/
         private final List<String> colValues = new ArrayList<>();
         /** 单个单元格内容 **/
@@ -175,8 +245,9 @@ public class XlsxReader extends DefaultHandler implements ResourceReader {
         /** 主键解析器 **/
         private final Resolver identifier;
 
-        public SheetHandler(Class<E> clz, String sheetName, StylesTable styles, SharedStringsTable sst) {
-            this.clz = clz;
+        public SheetHandler(ResourceBinder<E> binder, String sheetName, StylesTable styles, String[] sst) {
+            this.clz = binder.getClz();
+            this.binder = binder;
             this.sheetName = sheetName;
             this.styles = styles;
             this.sst = sst;
@@ -196,6 +267,8 @@ public class XlsxReader extends DefaultHandler implements ResourceReader {
                 curColumn = calculateColumnIndex(attributes.getValue(R));
                 // 设置单元格数据类型
                 setNextDataType(attributes);
+            } else if (DIMENSION.equals(qName)) {
+                ensureCapacity(attributes.getValue(DIMENSION_REF));
             }
         }
 
@@ -250,6 +323,29 @@ public class XlsxReader extends DefaultHandler implements ResourceReader {
             return columnIndex;
         }
 
+        /**
+         * 按分页数据范围预分配结果集
+         * @param ref 类似 A1:F200
+         */
+        private void ensureCapacity(String ref) {
+            if (ref == null) {
+                return;
+            }
+            int rows = 0;
+            for (int i = ref.indexOf(':') + 1; i < ref.length(); i++) {
+                char c = ref.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    rows = rows * 10 + c - '0';
+                    if (rows >= MAX_INITIAL_CAPACITY) {
+                        break;
+                    }
+                }
+            }
+            if (rows > 0 && results.isEmpty()) {
+                results = new ArrayList<>(Math.min(rows, MAX_INITIAL_CAPACITY));
+            }
+        }
+
         private void addCellValue(String value) {
             // 处理单元格间的空单元格
             for (int i = lastColumn + 1; i < curColumn; i++) {
@@ -343,7 +439,7 @@ public class XlsxReader extends DefaultHandler implements ResourceReader {
                 case  SharedStringsTable: {
                     // 字符串
                     int index = Integer.parseInt(content);
-                    value = sst.getItemAt(index).toString();
+                    value = sst[index];
                     break;
                 }
                 case Number: {
@@ -393,7 +489,7 @@ public class XlsxReader extends DefaultHandler implements ResourceReader {
             }
 
             // 判断属性列表是否已初始化
-            if (fieldHolders.isEmpty()) {
+            if (fieldHolders == null) {
                 return;
             }
             // 开始解析
@@ -407,38 +503,35 @@ public class XlsxReader extends DefaultHandler implements ResourceReader {
         }
 
         private void buildFieldHolders() {
-            List<XlsxFieldResolver> list = new ArrayList<>();
+            AbstractFieldResolver[] columns = new AbstractFieldResolver[colValues.size()];
+            boolean found = false;
             for (int i = 1; i < colValues.size(); i++) {
                 String fieldName = colValues.get(i);
                 if (!StringUtils.hasLength(fieldName)) {
                     continue;
                 }
-                try {
-                    Field field = clz.getDeclaredField(fieldName);
-                    list.add(new XlsxFieldResolver(field, i));
-                } catch (NoSuchFieldException e) {
+                AbstractFieldResolver resolver = binder.getFieldResolver(fieldName);
+                if (resolver == null) {
                     log.warn("资源类[{}]分页[{}]的声明属性[{}]不存在", clz, sheetName, fieldName);
-                } catch (Exception e) {
-                    String message = MessageFormatter.arrayFormat("资源类[{}]分页[{}]的声明属性[{}]无法获取",
-                            new Object[] { clz, sheetName, fieldName }).getMessage();
-                    throw new IllegalStateException(message, e);
+                    continue;
                 }
+                columns[i] = resolver;
+                found = true;
             }
-            if (!list.isEmpty()) {
-                fieldHolders.clear();
-                fieldHolders.addAll(list);
+            if (found) {
+                fieldHolders = columns;
             }
         }
 
         private void parseRow0() {
-            E instance = ObjectUtils.newInstance(clz);
-            int indexSize = colValues.size() - 1;
-            for (XlsxFieldResolver fieldHolder : fieldHolders) {
-                int index = fieldHolder.index;
-                if (index > indexSize) {
+            E instance = binder.newInstance();
+            int size = Math.min(colValues.size(), fieldHolders.length);
+            for (int i = 1; i < size; i++) {
+                AbstractFieldResolver fieldHolder = fieldHolders[i];
+                if (fieldHolder == null) {
                     continue;
                 }
-                String content = colValues.get(index);
+                String content = colValues.get(i);
                 if (!StringUtils.hasLength(content)) {
                     continue;
                 }
@@ -455,6 +548,48 @@ public class XlsxReader extends DefaultHandler implements ResourceReader {
         }
     }
 
+    /** 共享字符串表解析,与ReadOnlySharedStringsTable(不含注音)一致 **/
+    private static final class SharedStringsHandler extends DefaultHandler {
+
+        /** 共享字符串 **/
+        private final List<String> strings = new ArrayList<>();
+        /** 当前字符串内容 **/
+        private final StringBuilder characters = new StringBuilder();
+        /** 读取到t标签时,开始读取内容 **/
+        private boolean tIsOpen;
+        /** 注音内容不计入 **/
+        private boolean inPhonetic;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if (SHARED_STRING.equals(qName)) {
+                characters.setLength(0);
+            } else if (SHARED_STRING_TEXT.equals(qName)) {
+                tIsOpen = true;
+            } else if (SHARED_STRING_PHONETIC.equals(qName)) {
+                inPhonetic = true;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (SHARED_STRING.equals(qName)) {
+                strings.add(characters.toString());
+            } else if (SHARED_STRING_TEXT.equals(qName)) {
+                tIsOpen = false;
+            } else if (SHARED_STRING_PHONETIC.equals(qName)) {
+                inPhonetic = false;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (tIsOpen && !inPhonetic) {
+                characters.append(ch, start, length);
+            }
+        }
+    }
+
     /** 数据类型 **/
     private enum XSSFDataType {
 
@@ -493,18 +628,4 @@ public class XlsxReader extends DefaultHandler implements ResourceReader {
         }
     }
 
-    /** 属性持有对象 **/
-    private final class XlsxFieldResolver extends AbstractFieldResolver {
-
-        /** 列数 **/
-        private final int index;
-
-        public XlsxFieldResolver(Field field, int index)  {
-            super(field, conversionService);
-            this.index = index;
-        }
-
-
-    }
-
 }
@@ -1,8 +1,6 @@
 package com.echo.common.resource.reader;
 
 import com.echo.common.convert.core.ConversionService;
-import com.echo.common.util.ObjectUtils;
-import com.echo.common.util.ReflectionUtils;
 import org.dom4j.Attribute;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
@@ -10,10 +8,9 @@ import org.dom4j.Element;
 import org.dom4j.io.SAXReader;
 
 import java.io.InputStream;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * xml文件读取器
@@ -22,12 +19,12 @@ import java.util.List;
  */
 public class XmlReader implements ResourceReader {
 
-    private final SAXReader reader = new SAXReader();
-
     /** 数据标签 **/
     private static final String ELEMENT_NAME = "item";
 
     private final ConversionService conversionService;
+    /** 资源类绑定计划 **/
+    private final ConcurrentHashMap<Class<?>, ResourceBinder<?>> binders = new ConcurrentHashMap<>();
 
     public XmlReader(ConversionService conversionService) {
         this.conversionService = conversionService;
@@ -40,12 +37,13 @@ public class XmlReader implements ResourceReader {
 
     @Override
     public <E> List<E> read(InputStream in, Class<E> clz) {
-        FieldParser fieldParser = new FieldParser(clz);
+        ResourceBinder<E> binder = getBinder(clz);
 
-        List<E> results = new LinkedList<>();
-        for (Element element : getElements(in)) {
-            E instance = ObjectUtils.newInstance(clz);
-            for (XmlFieldResolver fieldHolder : fieldParser.fieldHolders) {
+        List<Element> elements = getElements(in);
+        List<E> results = new ArrayList<>(elements.size());
+        for (Element element : elements) {
+            E instance = binder.newInstance();
+            for (AbstractFieldResolver fieldHolder : binder.getFieldResolvers()) {
                 String fieldName = fieldHolder.getFieldName();
                 Attribute attribute = element.attribute(fieldName);
                 if (attribute == null) {
@@ -58,33 +56,19 @@ public class XmlReader implements ResourceReader {
         return results;
     }
 
+    @SuppressWarnings("unchecked")
+    private <E> ResourceBinder<E> getBinder(Class<E> clz) {
+        return (ResourceBinder<E>) binders.computeIfAbsent(clz, k -> new ResourceBinder<>(k, conversionService));
+    }
+
     @SuppressWarnings("unchecked")
     private List<Element> getElements(InputStream in) {
         try {
-            Document document = reader.read(in);
+            // SAXReader非线程安全,资源并行加载时每次读取单独创建
+            Document document = new SAXReader().read(in);
             return (List<Element>) document.getRootElement().elements(ELEMENT_NAME);
         } catch (DocumentException e) {
             throw new RuntimeException("读取xml资源异常", e);
         }
     }
-
-    private final class FieldParser {
-
-        private final List<XmlFieldResolver> fieldHolders;
-
-        FieldParser(Class<?> clz) {
-            final List<XmlFieldResolver> fieldHolders = new LinkedList<>();
-            for (Field field : ReflectionUtils.getFields(clz, field -> !Modifier.isStatic(field.getModifiers()))) {
-                fieldHolders.add(new XmlFieldResolver(field));
-            }
-            this.fieldHolders = fieldHolders;
-        }
-
-    }
-
-    private final class XmlFieldResolver extends AbstractFieldResolver {
-        XmlFieldResolver(Field field) {
-            super(field, conversionService);
-        }
-    }
 }
@@ -15,12 +15,15 @@ public class FieldIndexResolver extends FieldResolver implements IndexResolver {
     private final String indexName;
     /** 是否是唯一索引 **/
     private final boolean uniqueIndex;
+    /** 是否是有序索引 **/
+    private final boolean sorted;
 
     FieldIndexResolver(Field field) {
         super(field);
         ResourceIndex annotation = field.getAnnotation(ResourceIndex.class);
         this.indexName = annotation.indexName();
         this.uniqueIndex = annotation.uniqueIndex();
+        this.sorted = annotation.sorted();
     }
 
     @Override
@@ -32,4 +35,9 @@ public class FieldIndexResolver extends FieldResolver implements IndexResolver {
     public boolean isUnique() {
         return uniqueIndex;
     }
+
+    @Override
+    public boolean isSorted() {
+        return sorted;
+    }
 }
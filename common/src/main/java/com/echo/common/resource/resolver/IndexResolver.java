@@ -19,4 +19,10 @@ public interface IndexResolver extends Resolver {
      */
     boolean isUnique();
 
+    /**
+     * 索引是否有序
+     * @return true 有序
+     */
+    boolean isSorted();
+
 }
@@ -15,12 +15,15 @@ public class MethodIndexResolver extends MethodResolver implements IndexResolver
     private final String indexName;
     /** 是否是唯一索引 **/
     private final boolean unique;
+    /** 是否是有序索引 **/
+    private final boolean sorted;
 
     MethodIndexResolver(Method method) {
         super(method);
         ResourceIndex annotation = method.getAnnotation(ResourceIndex.class);
         this.indexName = annotation.indexName();
         this.unique = annotation.uniqueIndex();
+        this.sorted = annotation.sorted();
     }
 
     @Override
@@ -32,4 +35,9 @@ public class MethodIndexResolver extends MethodResolver implements IndexResolver
     public boolean isUnique() {
         return unique;
     }
+
+    @Override
+    public boolean isSorted() {
+        return sorted;
+    }
 }
@@ -0,0 +1,220 @@
+package com.echo.common.resource.storage;
+
+import com.echo.common.resource.resolver.IndexResolver;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * 单个资源索引某一版本的数据,构建完成后只读
+ * 索引值对应的资源集以数组存放
+ *
+ * @author li-yuanwen
+ */
+abstract class IndexData<V> {
+
+    /** 索引名称 **/
+    final String name;
+    /** 是否是唯一索引 **/
+    final boolean unique;
+
+    IndexData(String name, boolean unique) {
+        this.name = name;
+        this.unique = unique;
+    }
+
+    /**
+     * 构建索引
+     * @param resolver 索引解析器
+     * @param buckets 索引值及对应的资源集
+     * @return 索引
+     */
+    static <V> IndexData<V> of(IndexResolver resolver, Map<Object, List<V>> buckets) {
+        if (resolver.isSorted()) {
+            return new SortedIndexData<>(resolver.getIndexName(), resolver.isUnique(), buckets);
+        }
+        return new HashIndexData<>(resolver.getIndexName(), resolver.isUnique(), buckets);
+    }
+
+    /**
+     * 获取索引值对应的资源集
+     * @param key 索引值
+     * @return 资源集,不存在时为空集
+     */
+    abstract List<V> get(Object key);
+
+    /**
+     * 获取唯一索引值对应的资源
+     * @param key 索引值
+     * @return 资源 or null(不存在或不是唯一索引)
+     */
+    V getUnique(Object key) {
+        if (!unique) {
+            return null;
+        }
+        List<V> list = get(key);
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    /**
+     * 获取不大于索引值的最大索引值对应的资源集
+     * @param key 索引值
+     * @return 资源集,不存在时为空集
+     */
+    List<V> floor(Object key) {
+        throw unsupported();
+    }
+
+    /**
+     * 获取不小于索引值的最小索引值对应的资源集
+     * @param key 索引值
+     * @return 资源集,不存在时为空集
+     */
+    List<V> ceiling(Object key) {
+        throw unsupported();
+    }
+
+    /**
+     * 获取索引值在[from, to]区间内的资源,按索引值升序
+     * @param from 起始索引值(包含)
+     * @param to 结束索引值(包含)
+     * @return 资源集
+     */
+    List<V> range(Object from, Object to) {
+        throw unsupported();
+    }
+
+    private UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException("索引[" + name + "]不是有序索引");
+    }
+
+    /** 数组存放的只读资源集 **/
+    private static <V> List<V> toBucket(List<V> list) {
+        return new Bucket<>(list.toArray());
+    }
+
+    /** 散列索引 **/
+    private static final class HashIndexData<V> extends IndexData<V> {
+
+        private final Map<Object, List<V>> values;
+
+        HashIndexData(String name, boolean unique, Map<Object, List<V>> buckets) {
+            super(name, unique);
+            this.values = new HashMap<>(Math.max(4, buckets.size() * 4 / 3 + 1));
+            buckets.forEach((key, list) -> values.put(key, toBucket(list)));
+        }
+
+        @Override
+        List<V> get(Object key) {
+            return values.getOrDefault(key, Collections.emptyList());
+        }
+    }
+
+    /** 有序索引,索引值升序存放,二分查找 **/
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final class SortedIndexData<V> extends IndexData<V> {
+
+        /** 升序的索引值 **/
+        private final Comparable[] keys;
+        /** 索引值对应的资源集 **/
+        private final List<V>[] buckets;
+
+        SortedIndexData(String name, boolean unique, Map<Object, List<V>> buckets) {
+            super(name, unique);
+            List<Map.Entry<Object, List<V>>> entries = new ArrayList<>(buckets.entrySet());
+            for (Map.Entry<Object, List<V>> entry : entries) {
+                if (!(entry.getKey() instanceof Comparable)) {
+                    throw new IllegalArgumentException("有序索引[" + name + "]的索引值[" + entry.getKey() + "]未实现Comparable");
+                }
+            }
+            entries.sort((a, b) -> ((Comparable) a.getKey()).compareTo(b.getKey()));
+            this.keys = new Comparable[entries.size()];
+            this.buckets = new List[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                keys[i] = (Comparable) entries.get(i).getKey();
+                this.buckets[i] = toBucket(entries.get(i).getValue());
+            }
+        }
+
+        @Override
+        List<V> get(Object key) {
+            int index = search(key);
+            return index < 0 ? Collections.emptyList() : buckets[index];
+        }
+
+        @Override
+        List<V> floor(Object key) {
+            if (key == null) {
+                return Collections.emptyList();
+            }
+            int index = search(key);
+            if (index < 0) {
+                // 插入点的前一个
+                index = -index - 2;
+            }
+            return index < 0 ? Collections.emptyList() : buckets[index];
+        }
+
+        @Override
+        List<V> ceiling(Object key) {
+            if (key == null) {
+                return Collections.emptyList();
+            }
+            int index = search(key);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return index >= keys.length ? Collections.emptyList() : buckets[index];
+        }
+
+        @Override
+        List<V> range(Object from, Object to) {
+            if (from == null || to == null) {
+                return Collections.emptyList();
+            }
+            int start = search(from);
+            start = start < 0 ? -start - 1 : start;
+            int end = search(to);
+            end = end < 0 ? -end - 2 : end;
+            if (start > end) {
+                return Collections.emptyList();
+            }
+            List<V> list = new ArrayList<>();
+            for (int i = start; i <= end; i++) {
+                list.addAll(buckets[i]);
+            }
+            return Collections.unmodifiableList(list);
+        }
+
+        private int search(Object key) {
+            return key == null ? -1 : Arrays.binarySearch(keys, key);
+        }
+    }
+
+    /** 只读资源集 **/
+    private static final class Bucket<V> extends AbstractList<V> implements RandomAccess {
+
+        private final Object[] array;
+
+        Bucket(Object[] array) {
+            this.array = array;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(int index) {
+            return (V) array[index];
+        }
+
+        @Override
+        public int size() {
+            return array.length;
+        }
+    }
+}
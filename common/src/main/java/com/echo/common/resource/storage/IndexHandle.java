@@ -0,0 +1,104 @@
+package com.echo.common.resource.storage;
+
+import java.util.List;
+
+/**
+ * 资源索引句柄,通过{@link ResourceStorage#getIndex(String)}获取
+ * 句柄已解析索引序号,查询时直接定位当前资源代中的索引数据,不再按索引名查找
+ *
+ * @author li-yuanwen
+ */
+public final class IndexHandle<V> {
+
+    /** 资源管理器 **/
+    private final StorageManager storageManager;
+    /** 资源类 **/
+    private final Class<V> clz;
+    /** 索引序号 **/
+    private final int index;
+    /** 索引名称 **/
+    private final String name;
+    /** 是否是唯一索引 **/
+    private final boolean unique;
+    /** 是否是有序索引 **/
+    private final boolean sorted;
+
+    IndexHandle(StorageManager storageManager, Class<V> clz, int index, String name, boolean unique, boolean sorted) {
+        this.storageManager = storageManager;
+        this.clz = clz;
+        this.index = index;
+        this.name = name;
+        this.unique = unique;
+        this.sorted = sorted;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isUnique() {
+        return unique;
+    }
+
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * 获取索引值对应的资源集
+     * @param key 索引值
+     * @return 资源集,不存在时为空集
+     */
+    public List<V> get(Object key) {
+        return data(storageManager.getGeneration()).get(key);
+    }
+
+    /**
+     * 获取唯一索引值对应的资源
+     * @param key 索引值
+     * @return 资源 or null(不存在或不是唯一索引)
+     */
+    public V getUnique(Object key) {
+        return data(storageManager.getGeneration()).getUnique(key);
+    }
+
+    /**
+     * 获取不大于索引值的最大索引值对应的资源集,如 经验X对应的等级奖励
+     * @param key 索引值
+     * @return 资源集,不存在时为空集
+     * @throws UnsupportedOperationException 不是有序索引时抛出
+     */
+    public List<V> floor(Object key) {
+        return data(storageManager.getGeneration()).floor(key);
+    }
+
+    /**
+     * 获取不小于索引值的最小索引值对应的资源集
+     * @param key 索引值
+     * @return 资源集,不存在时为空集
+     * @throws UnsupportedOperationException 不是有序索引时抛出
+     */
+    public List<V> ceiling(Object key) {
+        return data(storageManager.getGeneration()).ceiling(key);
+    }
+
+    /**
+     * 获取索引值在[from, to]区间内的资源,按索引值升序
+     * @param from 起始索引值(包含)
+     * @param to 结束索引值(包含)
+     * @return 资源集
+     * @throws UnsupportedOperationException 不是有序索引时抛出
+     */
+    public List<V> range(Object from, Object to) {
+        return data(storageManager.getGeneration()).range(from, to);
+    }
+
+    /** 在指定资源代中查询 **/
+    List<V> get(ResourceGeneration generation, Object key) {
+        return data(generation).get(key);
+    }
+
+    private IndexData<V> data(ResourceGeneration generation) {
+        return generation.<Object, V>getData(clz).getIndex(index);
+    }
+}
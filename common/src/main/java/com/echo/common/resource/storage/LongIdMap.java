@@ -0,0 +1,77 @@
+package com.echo.common.resource.storage;
+
+/**
+ * 整数主键资源表的只读主键映射,主键以基本类型存放,不产生装箱key与链表节点
+ * 主键连续(跨度不超过资源数的两倍)时直接以主键偏移为下标,否则使用开放寻址(线性探测)表
+ *
+ * @author li-yuanwen
+ */
+final class LongIdMap<V> {
+
+    /** 连续主键的最大跨度倍数 **/
+    private static final int DENSE_FACTOR = 2;
+
+    /** 连续模式下的最小主键 **/
+    private final long base;
+    /** 散列模式的key,连续模式下为null **/
+    private final long[] keys;
+    /** 值 **/
+    private final Object[] values;
+    /** 散列模式的下标掩码 **/
+    private final int mask;
+
+    LongIdMap(long[] ids, Object[] items, int size) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, ids[i]);
+            max = Math.max(max, ids[i]);
+        }
+        if (size > 0 && max - min < (long) size * DENSE_FACTOR) {
+            this.base = min;
+            this.keys = null;
+            this.values = new Object[(int) (max - min + 1)];
+            this.mask = 0;
+            for (int i = 0; i < size; i++) {
+                values[(int) (ids[i] - min)] = items[i];
+            }
+            return;
+        }
+        // 负载因子不超过0.5
+        int capacity = Integer.highestOneBit(Math.max(2, size) * 2 - 1) << 1;
+        this.base = 0;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < size; i++) {
+            int index = hash(ids[i]) & mask;
+            while (values[index] != null) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = ids[i];
+            values[index] = items[i];
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long id) {
+        if (keys == null) {
+            long index = id - base;
+            return index < 0 || index >= values.length ? null : (V) values[(int) index];
+        }
+        int index = hash(id) & mask;
+        Object value;
+        while ((value = values[index]) != null) {
+            if (keys[index] == id) {
+                return (V) value;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
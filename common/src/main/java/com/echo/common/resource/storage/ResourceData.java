@@ -0,0 +1,143 @@
+package com.echo.common.resource.storage;
+
+import com.echo.common.resource.resolver.IndexResolver;
+import com.echo.common.resource.resolver.Resolver;
+import com.echo.common.resource.resolver.ResolverFactory;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 单个资源某一版本的数据,构建完成{@link #freeze(List)}后只读,可被多个资源代{@link ResourceGeneration}共享
+ * 主键为整数时以{@link LongIdMap}存放,索引按序号存放{@link IndexData}
+ * @author li-yuanwen
+ */
+final class ResourceData<K, V> {
+
+    /** 主数据存储空间,主键为整数时构建完成后为null **/
+    private Map<K, V> values;
+    /** 整数主键数据存储空间 **/
+    private LongIdMap<V> longValues;
+    /** 所有资源,按资源文件中的顺序 **/
+    private List<V> all;
+    /** 索引 下标:索引序号 **/
+    private IndexData<V>[] indexes;
+    /** 构建中的索引 下标:索引序号 **/
+    private List<Map<Object, List<V>>> building;
+    /** 属性值集(外键校验),按需计算 **/
+    private final Map<Field, Set<Object>> fieldValues = new ConcurrentHashMap<>(2);
+
+    ResourceData(int size, int indexSize) {
+        this.values = new HashMap<>(size);
+        this.all = new ArrayList<>(size);
+        this.building = new ArrayList<>(indexSize);
+        for (int i = 0; i < indexSize; i++) {
+            building.add(new HashMap<>(64));
+        }
+    }
+
+    V get(Object id) {
+        if (longValues == null) {
+            return values.get(id);
+        }
+        if (id instanceof Integer || id instanceof Long || id instanceof Short || id instanceof Byte) {
+            return longValues.get(((Number) id).longValue());
+        }
+        return null;
+    }
+
+    V get(long id) {
+        if (longValues == null) {
+            throw new IllegalStateException("资源主键不是整数");
+        }
+        return longValues.get(id);
+    }
+
+    IndexData<V> getIndex(int index) {
+        return indexes[index];
+    }
+
+    /** @return 索引 or null **/
+    IndexData<V> getIndex(String name) {
+        for (IndexData<V> index : indexes) {
+            if (index.name.equals(name)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    Collection<V> getAll() {
+        return all;
+    }
+
+    Set<Object> getFieldValues(Field field) {
+        return fieldValues.computeIfAbsent(field, k -> {
+            Resolver resolver = ResolverFactory.createFieldResolver(k);
+            Set<Object> set = new HashSet<>(all.size());
+            for (V obj : all) {
+                set.add(resolver.resolve(obj));
+            }
+            return Collections.unmodifiableSet(set);
+        });
+    }
+
+    // ----------------- 构建 ----------------------------
+
+    /** @return 主键重复时返回已存在的资源 **/
+    V put(K id, V item) {
+        V old = values.put(id, item);
+        if (old == null) {
+            all.add(item);
+        }
+        return old;
+    }
+
+    /** @return 唯一索引值重复时返回false **/
+    boolean putIndex(int index, Object indexKey, V item, boolean unique) {
+        // indexKey 不可为数组,集合
+        List<V> list = building.get(index).computeIfAbsent(indexKey, k -> new ArrayList<>(2));
+        if (unique && !list.isEmpty()) {
+            return false;
+        }
+        list.add(item);
+        return true;
+    }
+
+    /**
+     * 构建完成,转换为只读结构
+     * @param indexResolvers 索引解析器,与索引序号对应
+     */
+    @SuppressWarnings("unchecked")
+    void freeze(List<IndexResolver> indexResolvers) {
+        this.indexes = new IndexData[indexResolvers.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = IndexData.of(indexResolvers.get(i), building.get(i));
+        }
+        this.building = null;
+        this.all = Collections.unmodifiableList(all);
+
+        int size = values.size();
+        long[] ids = new long[size];
+        Object[] items = new Object[size];
+        int i = 0;
+        for (Map.Entry<K, V> entry : values.entrySet()) {
+            K id = entry.getKey();
+            if (!(id instanceof Integer || id instanceof Long || id instanceof Short || id instanceof Byte)) {
+                return;
+            }
+            ids[i] = ((Number) id).longValue();
+            items[i++] = entry.getValue();
+        }
+        this.longValues = new LongIdMap<>(ids, items, size);
+        this.values = null;
+    }
+}
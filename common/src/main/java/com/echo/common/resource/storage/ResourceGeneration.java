@@ -0,0 +1,94 @@
+package com.echo.common.resource.storage;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 资源代,所有资源某一时刻的不可变快照
+ * 资源变更时{@link StorageManager}以变更的资源构建新的资源代,校验通过后整体发布,
+ * 同一资源代内的多表数据总是一致的;需要跨表一致读取时,先获取资源代再通过同一资源代读取
+ * 旧资源代不再被引用后由GC回收
+ *
+ * @author li-yuanwen
+ */
+public final class ResourceGeneration {
+
+    /** 空资源代 **/
+    static final ResourceGeneration EMPTY = new ResourceGeneration(0, Collections.emptyMap());
+
+    /** 版本号 **/
+    private final long version;
+    /** 资源数据 key:资源类 **/
+    private final Map<Class<?>, ResourceData<?, ?>> data;
+
+    private ResourceGeneration(long version, Map<Class<?>, ResourceData<?, ?>> data) {
+        this.version = version;
+        this.data = data;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public <V> V getResource(Class<V> clz, Object id) {
+        return this.<Object, V>getData(clz).get(id);
+    }
+
+    public <V> V getResource(Class<V> clz, long id) {
+        return this.<Object, V>getData(clz).get(id);
+    }
+
+    public <V> V getUniqueResource(Class<V> clz, String uniqueName, Object uniqueKey) {
+        IndexData<V> index = this.<Object, V>getData(clz).getIndex(uniqueName);
+        return index == null ? null : index.getUnique(uniqueKey);
+    }
+
+    public <V> List<V> getIndexResources(Class<V> clz, String indexName, Object indexKey) {
+        IndexData<V> index = this.<Object, V>getData(clz).getIndex(indexName);
+        return index == null ? Collections.emptyList() : index.get(indexKey);
+    }
+
+    /**
+     * 在该资源代中查询索引
+     * @param handle 索引句柄
+     * @param key 索引值
+     * @param <V> 资源类型
+     * @return 资源集
+     */
+    public <V> List<V> getIndexResources(IndexHandle<V> handle, Object key) {
+        return handle.get(this, key);
+    }
+
+    public <V> Collection<V> getAll(Class<V> clz) {
+        return this.<Object, V>getData(clz).getAll();
+    }
+
+    /** 资源数据 **/
+    @SuppressWarnings("unchecked")
+    <K, V> ResourceData<K, V> getData(Class<?> clz) {
+        ResourceData<?, ?> resourceData = data.get(clz);
+        if (resourceData == null) {
+            throw new IllegalStateException("资源[" + clz.getName() + "]在资源代[" + version + "]中不存在");
+        }
+        return (ResourceData<K, V>) resourceData;
+    }
+
+    /** 资源是否存在 **/
+    boolean contains(Class<?> clz) {
+        return data.containsKey(clz);
+    }
+
+    /**
+     * 以变更的资源数据构建下一资源代
+     * @param changed 变更的资源数据
+     * @return 下一资源代
+     */
+    ResourceGeneration next(Map<Class<?>, ResourceData<?, ?>> changed) {
+        Map<Class<?>, ResourceData<?, ?>> map = new HashMap<>(data);
+        map.putAll(changed);
+        return new ResourceGeneration(version + 1, Collections.unmodifiableMap(map));
+    }
+}
@@ -1,8 +1,14 @@
 package com.echo.common.resource.storage;
 
+import com.echo.common.resource.resolver.Resolver;
+import com.echo.common.resource.resolver.ResolverFactory;
+
 import java.io.File;
+import java.lang.reflect.Field;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * 配表资源接口
@@ -21,6 +27,14 @@ public interface ResourceStorage<K, V> {
      */
     V getResource(K id);
 
+    /**
+     * 获取配表资源,整数主键的资源表不需要装箱主键
+     * @param id 一行表的唯一标识
+     * @return 配表对象
+     * @throws IllegalStateException 主键不是整数时抛出
+     */
+    V getResource(long id);
+
     /**
      * 获取指定的唯一索引值
      * @param uniqueName 唯一索引名
@@ -38,31 +52,39 @@ public interface ResourceStorage<K, V> {
     List<V> getIndexResources(String indexName, Object indexKey);
 
     /**
-     * 获取所有正式资源
-     * @return 所有资源
-     */
-    Collection<V> getAll();
-
-    /**
-     * 加载资源(此时并不会覆盖原数据,需要调用#validate()来检验，通过后覆盖原数据)
+     * 获取索引句柄,查询时不再按索引名查找索引,可在注入时获取后持有
+     * @param indexName 索引名
+     * @return 索引句柄
+     * @throws IllegalArgumentException 索引不存在时抛出
      */
-    void load();
+    IndexHandle<V> getIndex(String indexName);
 
     /**
-     * 验证资源合法性
-     * @throws RuntimeException 验证失败时抛出
+     * 获取所有正式资源
+     * @return 所有资源
      */
-    void validate(StorageManager storageManager) throws RuntimeException;
+    Collection<V> getAll();
 
     /**
-     * 验证成功
+     * 获取所有资源指定属性的值集,用于外键校验
+     * @param field 属性
+     * @return 属性值集
      */
-    void validateSuccessfully();
+    default Set<Object> getFieldValues(Field field) {
+        Resolver resolver = ResolverFactory.createFieldResolver(field);
+        Collection<V> list = getAll();
+        Set<Object> values = new HashSet<>(list.size());
+        for (V obj : list) {
+            values.add(resolver.resolve(obj));
+        }
+        return values;
+    }
 
     /**
-     * 验证失败
+     * 重新加载资源,校验通过后与当前其他资源组成新的资源代{@link ResourceGeneration}发布
+     * @throws RuntimeException 加载或校验失败时抛出,当前数据不受影响
      */
-    void validateFailure();
+    void load();
 
     /**
      * 添加变更监听器
@@ -1,16 +1,32 @@
 package com.echo.common.resource.storage;
 
-import cn.hutool.core.annotation.AnnotationUtil;
 import com.echo.common.resource.ResourceDefinition;
-import com.echo.common.resource.anno.ResourceObj;
+import com.echo.common.resource.anno.ResourceForeignKey;
 import com.echo.common.resource.reader.ResourceReader;
+import com.echo.common.resource.resolver.Resolver;
+import com.echo.common.resource.resolver.ResolverFactory;
 import lombok.extern.slf4j.Slf4j;
+import org.slf4j.helpers.MessageFormatter;
 
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 资源容器
+ * 所有资源的数据组成不可变的资源代{@link ResourceGeneration},加载/热更的资源校验通过后与其余资源组成新的资源代整体发布,
+ * 读取方只做一次volatile读,不会读到一半新一半旧的多表数据
  * @author li-yuanwen
  * @date 2022/3/16
  */
@@ -18,33 +34,84 @@ import java.util.concurrent.ConcurrentHashMap;
 public class StorageManager {
 
 
+    /** 加载耗时统计中展示的最慢资源数 **/
+    private static final int SLOWEST_REPORT_SIZE = 10;
+
     /** 资源对象信息容器 **/
     private final ConcurrentHashMap<Class<?>, ResourceDefinition> resourceDefinitions = new ConcurrentHashMap<>();
     /** 资源工厂容器 **/
-    private final ConcurrentHashMap<Class<?>, ResourceStorage<?, ?>> storages = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, DefaultResourceStorage<?, ?>> storages = new ConcurrentHashMap<>();
+    /** 当前资源代 **/
+    private volatile ResourceGeneration generation = ResourceGeneration.EMPTY;
+    /** 资源加载并行度,小于1时使用CPU核数 **/
+    private volatile int parallelism;
+    /** 资源代发布锁,同一时刻只构建一个资源代 **/
+    private final Object publishLock = new Object();
 
 
     public void initialize(ResourceDefinition definition, ResourceReader reader) {
-        Class<?> clz = definition.getClz();
-        if (resourceDefinitions.putIfAbsent(clz, definition) != null) {
-            throw new RuntimeException("资源类[" + clz.getName() + "]ResourceDefinition重复");
+        initialize(Collections.singletonMap(definition, reader), parallelism);
+    }
+
+    /**
+     * 批量初始化资源
+     * 资源在有界的ForkJoinPool中并行加载,资源及其外键资源加载完成后即开始校验该资源的外键,
+     * 全部校验通过后资源生效,任一资源加载或校验失败时抛出异常
+     * @param definitions 资源定义信息及对应的资源读取器
+     * @param parallelism 并行度,小于1时使用CPU核数
+     */
+    public void initialize(Map<ResourceDefinition, ResourceReader> definitions, int parallelism) {
+        this.parallelism = parallelism;
+        List<Class<?>> classes = new ArrayList<>(definitions.size());
+        for (Map.Entry<ResourceDefinition, ResourceReader> entry : definitions.entrySet()) {
+            ResourceDefinition definition = entry.getKey();
+            Class<?> clz = definition.getClz();
+            if (resourceDefinitions.putIfAbsent(clz, definition) != null) {
+                throw new RuntimeException("资源类[" + clz.getName() + "]ResourceDefinition重复");
+            }
+            DefaultResourceStorage<?, ?> storage = new DefaultResourceStorage<>();
+            storage.initialize(this, definition, entry.getValue());
+            storages.put(clz, storage);
+            classes.add(clz);
+        }
+        publish(classes);
+    }
+
+    /**
+     * 重新加载资源
+     * 只校验与变更资源相关的外键(变更资源的外键及引用变更资源的外键),全部通过后与其余资源组成新的资源代发布
+     * @param classes 变更的资源类
+     * @throws RuntimeException 加载或校验失败时抛出,当前资源代不受影响
+     */
+    public void reload(Collection<Class<?>> classes) {
+        for (Class<?> clz : classes) {
+            getResourceStorage(clz);
         }
-        initializeStorage(clz, reader);
+        publish(classes);
     }
 
-    public void validate(ResourceDefinition definition) {
-        getResourceStorage(definition.getClz()).validate(this);
+    /**
+     * 当前资源代,需要跨表一致读取时使用
+     * @return 当前资源代
+     */
+    public ResourceGeneration getGeneration() {
+        return generation;
     }
 
-    public ResourceStorage<?, ?> getResourceStorage(String clzName) {
-        for (Map.Entry<Class<?>, ResourceStorage<?, ?>> entry : storages.entrySet()) {
-            if (entry.getKey().getSimpleName().equals(clzName)) {
-                return entry.getValue();
+    public Class<?> getResourceClass(String clzName) {
+        for (Class<?> clz : storages.keySet()) {
+            if (clz.getSimpleName().equals(clzName)) {
+                return clz;
             }
         }
         return null;
     }
 
+    public ResourceStorage<?, ?> getResourceStorage(String clzName) {
+        Class<?> clz = getResourceClass(clzName);
+        return clz == null ? null : storages.get(clz);
+    }
+
     public ResourceStorage<?, ?> getResourceStorage(Class<?> clz) {
         ResourceStorage<?, ?> storage = storages.get(clz);
         if (storage != null) {
@@ -54,17 +121,165 @@ public class StorageManager {
         throw new RuntimeException("资源[" + clz.getName() + "]ResourceStorage不存在");
     }
 
-    private void initializeStorage(Class<?> clz, ResourceReader resourceReader) {
-        ResourceDefinition definition = this.resourceDefinitions.get(clz);
-        if (definition == null) {
-            throw new RuntimeException("资源类[" + clz.getName() + "]的ResourceDefinition不存在");
+    // -------------- 私有方法 --------------------------------
+
+    /**
+     * 加载、校验资源并发布新的资源代
+     * @param classes 需加载的资源类
+     */
+    private void publish(Collection<Class<?>> classes) {
+        synchronized (publishLock) {
+            long start = System.nanoTime();
+            ResourceGeneration current = this.generation;
+            Map<Class<?>, ResourceData<?, ?>> changed = new ConcurrentHashMap<>(classes.size());
+            Map<Class<?>, Long> loadTimes = new ConcurrentHashMap<>(classes.size());
+            int validations = 0;
+
+            ForkJoinPool pool = new ForkJoinPool(parallelism < 1 ? Runtime.getRuntime().availableProcessors() : parallelism);
+            try {
+                // 加载
+                Map<Class<?>, CompletableFuture<Void>> loads = new HashMap<>(classes.size());
+                for (Class<?> clz : classes) {
+                    DefaultResourceStorage<?, ?> storage = storages.get(clz);
+                    loads.put(clz, CompletableFuture.runAsync(() -> {
+                        long time = System.nanoTime();
+                        changed.put(clz, storage.read());
+                        loadTimes.put(clz, System.nanoTime() - time);
+                    }, pool));
+                }
+                // 外键校验,只校验与变更资源相关的外键,依赖相关资源加载完成
+                List<CompletableFuture<Void>> futures = new ArrayList<>(loads.values());
+                for (ResourceDefinition definition : resourceDefinitions.values()) {
+                    Class<?> clz = definition.getClz();
+                    for (Field field : definition.getForeignKeyFields()) {
+                        Class<?> foreignKeyClz = field.getAnnotation(ResourceForeignKey.class).foreignKeyClz();
+                        CompletableFuture<Void> load = loads.get(clz);
+                        CompletableFuture<Void> foreignKeyLoad = loads.get(foreignKeyClz);
+                        if (load == null && foreignKeyLoad == null) {
+                            continue;
+                        }
+                        List<CompletableFuture<Void>> dependencies = new ArrayList<>(2);
+                        if (load != null) {
+                            dependencies.add(load);
+                        }
+                        if (foreignKeyLoad != null && foreignKeyLoad != load) {
+                            dependencies.add(foreignKeyLoad);
+                        }
+                        futures.add(CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+                                .thenRunAsync(() -> validateForeignKey(clz, field, changed, current), pool));
+                        validations++;
+                    }
+                }
+                awaitAll(futures);
+            } finally {
+                pool.shutdown();
+            }
+
+            ResourceGeneration next = current.next(changed);
+            this.generation = next;
+            for (Class<?> clz : classes) {
+                notifyChange(storages.get(clz));
+            }
+            report(next, classes.size(), validations, pool.getParallelism(), System.nanoTime() - start, loadTimes);
+        }
+    }
+
+    /** 资源数据,优先使用本次加载的数据 **/
+    private ResourceData<?, ?> getData(Class<?> clz, Map<Class<?>, ResourceData<?, ?>> changed, ResourceGeneration current) {
+        ResourceData<?, ?> data = changed.get(clz);
+        if (data != null) {
+            return data;
+        }
+        return current.getData(clz);
+    }
+
+    /** 外键验证,外键类须为已注册的资源类 **/
+    private void validateForeignKey(Class<?> clz, Field field, Map<Class<?>, ResourceData<?, ?>> changed
+            , ResourceGeneration current) {
+        ResourceForeignKey annotation = field.getAnnotation(ResourceForeignKey.class);
+        if (!storages.containsKey(annotation.foreignKeyClz())) {
+            String message = MessageFormatter.arrayFormat("资源类Class:{} 属性名:{} 所对应的外键类Class:{} 不是已注册的资源类"
+                            , new Object[]{clz.getName(), field.getName(), annotation.foreignKeyClz().getName()})
+                    .getMessage();
+            throw new RuntimeException(message);
+        }
+        ResourceData<?, ?> data = getData(clz, changed, current);
+        ResourceData<?, ?> foreignKeyData = getData(annotation.foreignKeyClz(), changed, current);
+        Resolver resolver = ResolverFactory.createFieldResolver(field);
+
+        Field foreignKeyField = null;
+        try {
+            foreignKeyField = annotation.foreignKeyClz().getDeclaredField(annotation.foreignKeyFieldName());
+        } catch (NoSuchFieldException e) {
+            String message = MessageFormatter.arrayFormat("资源类Class:{} 属性名:{} 所对应的外键类Class:{} 属性名:{} 不存在"
+                            , new Object[]{clz.getName(), field.getName(), annotation.foreignKeyClz().getName(), annotation.foreignKeyFieldName()})
+                    .getMessage();
+            throw new RuntimeException(message);
+        }
+        Set<Object> foreignKeyValueSet = foreignKeyData.getFieldValues(foreignKeyField);
+        for (Object obj : data.getAll()) {
+            Object value = resolver.resolve(obj);
+            if (!foreignKeyValueSet.contains(value)) {
+                String message = MessageFormatter.arrayFormat("资源类Class:{} 属性名:{} 值:{} 所对应的外键类Class:{} 属性名:{} 中不存在"
+                                , new Object[]{clz.getName(), field.getName(), value, annotation.foreignKeyClz().getName(), annotation.foreignKeyFieldName()})
+                        .getMessage();
+                throw new RuntimeException(message);
+            }
+        }
+    }
+
+    /** 触发监听器,监听器异常不影响其他监听器 **/
+    private void notifyChange(DefaultResourceStorage<?, ?> storage) {
+        try {
+            storage.notifyChange();
+        } catch (Exception e) {
+            log.error("资源[{}]变更通知出现异常", storage.getLocation(), e);
+        }
+    }
+
+    /** 等待全部任务完成,汇总所有异常 **/
+    private void awaitAll(List<CompletableFuture<Void>> futures) {
+        RuntimeException exception = null;
+        Set<Throwable> causes = new LinkedHashSet<>();
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() == null ? e : e.getCause();
+                // 依赖的加载失败时校验任务会携带相同的异常
+                if (!causes.add(cause)) {
+                    continue;
+                }
+                log.error(cause.getMessage(), cause);
+                if (exception == null) {
+                    exception = cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+                } else {
+                    exception.addSuppressed(cause);
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /** 输出加载耗时 **/
+    private void report(ResourceGeneration generation, int size, int validations, int parallelism, long total
+            , Map<Class<?>, Long> loadTimes) {
+        if (log.isDebugEnabled()) {
+            loadTimes.forEach((clz, time) -> log.debug("加载资源[{}]耗时[{}]ms", clz.getSimpleName()
+                    , TimeUnit.NANOSECONDS.toMillis(time)));
         }
-        ResourceObj obj = AnnotationUtil.getAnnotation(clz, ResourceObj.class);
-        assert obj != null;
-        DefaultResourceStorage<?, ?> storage = new DefaultResourceStorage<>();
-        ResourceStorage<?, ?> prev = storages.putIfAbsent(clz, storage);
-        if (prev == null) {
-            storage.initialize(definition, resourceReader);
+        List<Map.Entry<Class<?>, Long>> slowest = new ArrayList<>(loadTimes.entrySet());
+        slowest.sort(Map.Entry.<Class<?>, Long>comparingByValue().reversed());
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < Math.min(SLOWEST_REPORT_SIZE, slowest.size()); i++) {
+            Map.Entry<Class<?>, Long> entry = slowest.get(i);
+            builder.append(entry.getKey().getSimpleName()).append('=')
+                    .append(TimeUnit.NANOSECONDS.toMillis(entry.getValue())).append("ms ");
         }
+        log.info("发布资源代[{}],加载资源[{}]个,校验外键[{}]个,并行度[{}],总耗时[{}]ms,最慢的资源[{}]"
+                , generation.getVersion(), size, validations, parallelism
+                , TimeUnit.NANOSECONDS.toMillis(total), builder.toString().trim());
     }
 }
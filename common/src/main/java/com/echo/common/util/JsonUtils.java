@@ -9,6 +9,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * Json 工具类
@@ -102,4 +103,28 @@ public class JsonUtils {
     public static <T> T toObj(byte[] data, Class<T> tClass) throws IOException {
         return OBJECT_MAPPER.readValue(data, tClass);
     }
+
+    /**
+     * 将byte数组的指定区间转化成Object
+     *
+     * @param data   byte数组
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 对象
+     * @throws IOException
+     */
+    public static <T> T toObj(byte[] data, int offset, int length, Class<T> tClass) throws IOException {
+        return OBJECT_MAPPER.readValue(data, offset, length, tClass);
+    }
+
+    /**
+     * 将输入流转化成Object
+     *
+     * @param in 输入流
+     * @return 对象
+     * @throws IOException
+     */
+    public static <T> T toObj(InputStream in, Class<T> tClass) throws IOException {
+        return OBJECT_MAPPER.readValue(in, tClass);
+    }
 }
@@ -8,6 +8,8 @@ import io.protostuff.runtime.RuntimeSchema;
 import lombok.Data;
 import net.webby.protostuff.runtime.Generators;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Objects;
@@ -89,6 +91,60 @@ public class ProtoStuffUtils {
         return obj;
     }
 
+    /**
+     * 反序列化方法，将字节数组的指定区间反序列化成指定Class类型
+     *
+     * @param data   字节数组
+     * @param offset 起始位置
+     * @param length 长度
+     * @param clazz  类型
+     * @param <T>
+     * @return
+     */
+    public static <T> T deserialize(byte[] data, int offset, int length, Class<T> clazz) {
+        if (isWrapClass(clazz)) {
+            Schema<ProtoStuffWrapper> schema = getSchema(ProtoStuffWrapper.class);
+            ProtoStuffWrapper<T> wrapper = schema.newMessage();
+            ProtostuffIOUtil.mergeFrom(data, offset, length, wrapper, schema);
+            return wrapper.data;
+        }
+        Schema<T> schema = getSchema(clazz);
+        T obj = schema.newMessage();
+        ProtostuffIOUtil.mergeFrom(data, offset, length, obj, schema);
+        return obj;
+    }
+
+    /**
+     * 反序列化方法，从输入流中反序列化成指定Class类型,复用线程本地Buffer作为读缓冲
+     *
+     * @param in    输入流
+     * @param clazz 类型
+     * @param <T>
+     * @return
+     * @throws IOException
+     */
+    public static <T> T deserialize(InputStream in, Class<T> clazz) throws IOException {
+        LinkedBuffer buffer = BUFFER.get();
+        if (buffer == null) {
+            buffer = LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
+            BUFFER.set(buffer);
+        }
+        try {
+            if (isWrapClass(clazz)) {
+                Schema<ProtoStuffWrapper> schema = getSchema(ProtoStuffWrapper.class);
+                ProtoStuffWrapper<T> wrapper = schema.newMessage();
+                ProtostuffIOUtil.mergeFrom(in, wrapper, schema, buffer);
+                return wrapper.data;
+            }
+            Schema<T> schema = getSchema(clazz);
+            T obj = schema.newMessage();
+            ProtostuffIOUtil.mergeFrom(in, obj, schema, buffer);
+            return obj;
+        } finally {
+            buffer.clear();
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private static <T> Schema<T> getSchema(Class<T> clazz) {
         Schema<T> schema = (Schema<T>) schemaCache.get(clazz);
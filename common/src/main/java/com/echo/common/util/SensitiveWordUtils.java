@@ -3,15 +3,15 @@ package com.echo.common.util;
 import cn.hutool.core.thread.ThreadUtil;
 import cn.hutool.dfa.FoundWord;
 import cn.hutool.dfa.SensitiveProcessor;
-import cn.hutool.dfa.WordTree;
-import com.echo.common.util.sensitive.SensitiveDefaultProcessor;
 import com.echo.common.util.sensitive.SensitiveHighlightProcessor;
 import com.echo.common.util.sensitive.SensitiveWord;
+import com.echo.common.util.sensitive.SensitiveWordAutomaton;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 敏感词工具
@@ -21,8 +21,17 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 public class SensitiveWordUtils {
 
+    /** 掩码字符 **/
+    private static final char MASK_CHAR = '*';
 
-    private static WordTree sensitiveTree = new WordTree();
+    /** 敏感词匹配自动机,敏感词变更时重新构建后整体替换,匹配线程无锁读取 **/
+    private static volatile SensitiveWordAutomaton automaton = SensitiveWordAutomaton.EMPTY;
+
+    /** 全部敏感词,仅在锁内修改 **/
+    private static final Set<String> SENSITIVE_WORDS = new HashSet<>();
+
+    /** 敏感词修改及自动机构建锁 **/
+    private static final Object LOCK = new Object();
 
     private static ConcurrentHashMap<String, SensitiveWord> SENSITIVE_WORDS_MAP = new ConcurrentHashMap<>();
 
@@ -49,19 +58,50 @@ public class SensitiveWordUtils {
      * @param sensitiveWords 敏感词列表
      */
     static void init(Collection<String> sensitiveWords) {
-        sensitiveTree.clear();
-        sensitiveTree.addWords(sensitiveWords);
+        synchronized (LOCK) {
+            SENSITIVE_WORDS.clear();
+            SENSITIVE_WORDS.addAll(sensitiveWords);
+            SENSITIVE_WORDS.addAll(SENSITIVE_WORDS_MAP.keySet());
+            rebuild();
+        }
     }
 
     public static void addSensitiveWord(SensitiveWord sw) {
-        SENSITIVE_WORDS_MAP.put(sw.getWord(), sw);
-        sensitiveTree.addWord(sw.getWord());
+        addSensitiveWords(Collections.singletonList(sw));
+    }
+
+    /**
+     * 批量添加敏感词,只重新构建一次
+     *
+     * @param sws 敏感词
+     */
+    public static void addSensitiveWords(Collection<SensitiveWord> sws) {
+        synchronized (LOCK) {
+            for (SensitiveWord sw : sws) {
+                SENSITIVE_WORDS_MAP.put(sw.getWord(), sw);
+                SENSITIVE_WORDS.add(sw.getWord());
+            }
+            rebuild();
+        }
     }
 
     public static void removeSensitiveWord(String word) {
-        SENSITIVE_WORDS_MAP.remove(word);
-        sensitiveTree.clear();
-        sensitiveTree.addWords(SENSITIVE_WORDS_MAP.keySet());
+        synchronized (LOCK) {
+            SENSITIVE_WORDS_MAP.remove(word);
+            if (SENSITIVE_WORDS.remove(word)) {
+                rebuild();
+            }
+        }
+    }
+
+    /**
+     * 文本中是否包含敏感词
+     *
+     * @param text 文本
+     * @return true 包含
+     */
+    public static boolean containsSensitive(CharSequence text) {
+        return text != null && automaton.contains(text);
     }
 
     /**
@@ -71,7 +111,8 @@ public class SensitiveWordUtils {
      * @return 敏感词
      */
     public static FoundWord getFoundFirstSensitive(String text) {
-        return sensitiveTree.matchWord(text);
+        List<FoundWord> foundWords = getFoundAllSensitive(text);
+        return foundWords.isEmpty() ? null : foundWords.get(0);
     }
 
     /**
@@ -81,7 +122,7 @@ public class SensitiveWordUtils {
      * @return 敏感词
      */
     public static List<FoundWord> getFoundAllSensitive(String text) {
-        return sensitiveTree.matchAllWords(text);
+        return getFoundAllSensitive(text, false, false);
     }
 
     /**
@@ -95,7 +136,40 @@ public class SensitiveWordUtils {
      * @return 敏感词
      */
     public static List<FoundWord> getFoundAllSensitive(String text, boolean isDensityMatch, boolean isGreedMatch) {
-        return sensitiveTree.matchAllWords(text, -1, isDensityMatch, isGreedMatch);
+        if (!StringUtils.hasLength(text)) {
+            return new ArrayList<>(0);
+        }
+        SensitiveWordAutomaton current = automaton;
+        // [起始位置, 结束位置, 敏感词下标]
+        List<int[]> matches = new ArrayList<>();
+        current.match(text, (index, start, end) -> matches.add(new int[]{start, end, index}));
+        if (matches.isEmpty()) {
+            return new ArrayList<>(0);
+        }
+        matches.sort(Comparator.<int[]>comparingInt(match -> match[0]).thenComparingInt(match -> match[1]));
+
+        List<FoundWord> foundWords = new ArrayList<>(matches.size());
+        // 非密集匹配时,下一个敏感词的最小起始位置
+        int from = 0;
+        for (int i = 0, size = matches.size(); i < size; ) {
+            int start = matches.get(i)[0];
+            // 同一起始位置的敏感词[i, j),按长度升序
+            int j = i + 1;
+            while (j < size && matches.get(j)[0] == start) {
+                j++;
+            }
+            if (isDensityMatch && isGreedMatch) {
+                for (int k = i; k < j; k++) {
+                    foundWords.add(toFoundWord(current, text, matches.get(k)));
+                }
+            } else if (isDensityMatch || start >= from) {
+                int[] match = isGreedMatch ? matches.get(j - 1) : matches.get(i);
+                foundWords.add(toFoundWord(current, text, match));
+                from = match[1] + 1;
+            }
+            i = j;
+        }
+        return foundWords;
     }
 
     /**
@@ -111,7 +185,6 @@ public class SensitiveWordUtils {
         if (!StringUtils.hasLength(text)) {
             return text;
         }
-//        TimeInterval timer = DateUtil.timer();
         //敏感词过滤场景下，不需要密集匹配
         List<FoundWord> foundWordList = getFoundAllSensitive(text, false, isGreedMatch);
         if (CollectionUtils.isEmpty(foundWordList)) {
@@ -121,32 +194,50 @@ public class SensitiveWordUtils {
         sensitiveProcessor = sensitiveProcessor == null ? new SensitiveProcessor() {
         } : sensitiveProcessor;
 
-        Map<Integer, FoundWord> foundWordMap = new HashMap<>(foundWordList.size());
-        foundWordList.forEach(foundWord -> foundWordMap.put(foundWord.getStartIndex(), foundWord));
-        int length = text.length();
-        StringBuilder textStringBuilder = new StringBuilder();
-        for (int i = 0; i < length; i++) {
-            FoundWord fw = foundWordMap.get(i);
-            if (fw != null) {
-                //只过滤[脱敏]类型的词汇, 非脱敏类型的敏感词直接跳过
-                SensitiveWord dto = SENSITIVE_WORDS_MAP.get(fw.getWord());
-                if (dto != null) {
-                    if (sensitiveProcessor instanceof SensitiveHighlightProcessor) {
-                        textStringBuilder.append(((SensitiveHighlightProcessor) sensitiveProcessor).process(fw, dto.getMode()));
-                    }
-                    if (sensitiveProcessor instanceof SensitiveDefaultProcessor) {
-                        textStringBuilder.append(((SensitiveDefaultProcessor) sensitiveProcessor).process(fw));
-                    }
-                    i = fw.getEndIndex();
-                }
+        StringBuilder textStringBuilder = new StringBuilder(text.length() + 16);
+        int from = 0;
+        for (FoundWord fw : foundWordList) {
+            textStringBuilder.append(text, from, fw.getStartIndex());
+            //只过滤[脱敏]类型的词汇, 非脱敏类型的敏感词保留原文
+            SensitiveWord dto = SENSITIVE_WORDS_MAP.get(fw.getWord());
+            if (dto == null) {
+                textStringBuilder.append(fw.getFoundWord());
+            } else if (sensitiveProcessor instanceof SensitiveHighlightProcessor) {
+                textStringBuilder.append(((SensitiveHighlightProcessor) sensitiveProcessor).process(fw, dto.getMode()));
             } else {
-                textStringBuilder.append(text.charAt(i));
+                textStringBuilder.append(sensitiveProcessor.process(fw));
             }
+            from = fw.getEndIndex() + 1;
         }
-//        log.info("过滤敏感词, 耗时: " + timer.intervalMs() + "ms");
+        textStringBuilder.append(text, from, text.length());
         return textStringBuilder.toString();
     }
 
+    /**
+     * 过滤敏感词，替换成*，不创建对象，结果写入调用方提供的数组（可按线程复用）<br>
+     * 与{@link #sensitiveFilter(String, boolean, SensitiveProcessor)}不同，所有敏感词均被替换，重叠的敏感词取并集
+     *
+     * @param text 文本
+     * @param out  输出，长度不小于文本长度，只写入[0, text.length())
+     * @return 命中次数，0表示无敏感词（out为原文）
+     */
+    public static int sensitiveFilter(CharSequence text, char[] out) {
+        return automaton.mask(text, out, MASK_CHAR);
+    }
+
+    /** 重新构建自动机并发布,需持有锁 **/
+    private static void rebuild() {
+        long start = System.nanoTime();
+        SensitiveWordAutomaton next = SensitiveWordAutomaton.build(new ArrayList<>(SENSITIVE_WORDS));
+        automaton = next;
+        log.debug("构建敏感词自动机,敏感词[{}]个,耗时[{}]ms", next.size()
+                , TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static FoundWord toFoundWord(SensitiveWordAutomaton current, String text, int[] match) {
+        return new FoundWord(current.getWord(match[2]), text.substring(match[0], match[1] + 1), match[0], match[1]);
+    }
+
 
     public static void main(String[] args) throws JsonProcessingException {
         List<String> list = new ArrayList<>(2);
@@ -0,0 +1,444 @@
+package com.echo.common.util.sensitive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 敏感词匹配自动机(Aho–Corasick,状态转移以双数组存储),构建后只读,可被多个线程同时使用
+ * 字符先经过归一化表:全角转半角、大写转小写,空白、标点、符号及emoji视为间隔字符跳过(如"习￥近@平"可匹配"习近平")
+ * 扫描文本时不创建对象,过滤结果写入调用方提供的数组
+ *
+ * @author li-yuanwen
+ */
+public final class SensitiveWordAutomaton {
+
+    /** 空自动机 **/
+    public static final SensitiveWordAutomaton EMPTY = build(Collections.emptyList());
+
+    /** 字符编码:间隔字符,匹配时跳过 **/
+    private static final char CODE_SKIP = 0;
+    /** 字符编码:不在任何敏感词中的字符 **/
+    private static final char CODE_OTHER = 1;
+    /** 敏感词字符的起始编码 **/
+    private static final int CODE_START = 2;
+    /** 根状态 **/
+    private static final int ROOT = 0;
+    /** 空闲位置 **/
+    private static final int FREE = -1;
+
+    /** 字符编码表 下标:原始字符 **/
+    private final char[] codes;
+    /** 双数组 base,状态s经编码c转移至base[s]+c **/
+    private final int[] base;
+    /** 双数组 check,值为父状态 **/
+    private final int[] check;
+    /** 失配状态 **/
+    private final int[] fail;
+    /** 状态深度(归一化后的字符数) **/
+    private final int[] depth;
+    /** 以该状态结尾的最长敏感词长度(归一化后的字符数),0表示无 **/
+    private final int[] matchLength;
+    /** 该状态自身对应的敏感词下标,-1表示无 **/
+    private final int[] wordIndex;
+    /** 后缀中最近的敏感词状态,用于枚举全部匹配,-1表示无 **/
+    private final int[] outputLink;
+    /** 敏感词 下标:敏感词下标 **/
+    private final String[] words;
+
+    private SensitiveWordAutomaton(char[] codes, int[] base, int[] check, int[] fail, int[] depth
+            , int[] matchLength, int[] wordIndex, int[] outputLink, String[] words) {
+        this.codes = codes;
+        this.base = base;
+        this.check = check;
+        this.fail = fail;
+        this.depth = depth;
+        this.matchLength = matchLength;
+        this.wordIndex = wordIndex;
+        this.outputLink = outputLink;
+        this.words = words;
+    }
+
+    /**
+     * 构建自动机
+     * 归一化后为空的敏感词被忽略,归一化后相同的敏感词只保留第一个
+     * @param words 敏感词
+     * @return 自动机
+     */
+    public static SensitiveWordAutomaton build(Collection<String> words) {
+        return new Builder().build(words);
+    }
+
+    /** @return 敏感词数量 **/
+    public int size() {
+        return words.length;
+    }
+
+    /**
+     * 获取敏感词
+     * @param index 敏感词下标
+     * @return 敏感词(构建时的原文)
+     */
+    public String getWord(int index) {
+        return words[index];
+    }
+
+    /**
+     * 文本中是否包含敏感词
+     * @param text 文本
+     * @return true 包含
+     */
+    public boolean contains(CharSequence text) {
+        int state = ROOT;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char code = codes[text.charAt(i)];
+            if (code == CODE_SKIP) {
+                continue;
+            }
+            state = code == CODE_OTHER ? ROOT : next(state, code);
+            if (matchLength[state] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 过滤敏感词,将文本复制到out并把敏感词(含其中的间隔字符)替换为掩码字符,重叠的敏感词取并集
+     * @param text 文本
+     * @param out 输出,长度不小于文本长度,只写入[0, text.length())
+     * @param maskChar 掩码字符
+     * @return 命中次数(敏感词结束位置数),0表示无敏感词,out为原文
+     */
+    public int mask(CharSequence text, char[] out, char maskChar) {
+        int length = text.length();
+        if (out.length < length) {
+            throw new IllegalArgumentException("输出数组长度[" + out.length + "]小于文本长度[" + length + "]");
+        }
+        int state = ROOT;
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            out[i] = c;
+            char code = codes[c];
+            if (code == CODE_SKIP) {
+                continue;
+            }
+            state = code == CODE_OTHER ? ROOT : next(state, code);
+            int matched = matchLength[state];
+            if (matched > 0) {
+                count++;
+                // 向前回溯matched个有效字符
+                for (int j = i; matched > 0; j--) {
+                    if (codes[text.charAt(j)] != CODE_SKIP) {
+                        matched--;
+                    }
+                    out[j] = maskChar;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 枚举文本中的全部敏感词(含重叠),按结束位置升序,同一结束位置按长度降序
+     * @param text 文本
+     * @param handler 匹配处理
+     */
+    public void match(CharSequence text, MatchHandler handler) {
+        int state = ROOT;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char code = codes[text.charAt(i)];
+            if (code == CODE_SKIP) {
+                continue;
+            }
+            state = code == CODE_OTHER ? ROOT : next(state, code);
+            if (matchLength[state] == 0) {
+                continue;
+            }
+            int output = wordIndex[state] >= 0 ? state : outputLink[state];
+            while (output >= 0) {
+                if (!handler.onMatch(wordIndex[output], start(text, i, depth[output]), i)) {
+                    return;
+                }
+                output = outputLink[output];
+            }
+        }
+    }
+
+    /** 状态转移,失配时沿失配状态回退 **/
+    private int next(int state, char code) {
+        for (;;) {
+            int target = base[state] + code;
+            if (target < check.length && check[target] == state) {
+                return target;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail[state];
+        }
+    }
+
+    /** 从结束位置向前回溯length个有效字符,返回起始位置 **/
+    private int start(CharSequence text, int end, int length) {
+        int index = end;
+        for (;;) {
+            if (codes[text.charAt(index)] != CODE_SKIP && --length == 0) {
+                return index;
+            }
+            index--;
+        }
+    }
+
+    /**
+     * 归一化
+     * @param c 原始字符
+     * @return 归一化后的字符,0表示间隔字符
+     */
+    static char normalize(char c) {
+        // 全角转半角,全角空格为SPACE_SEPARATOR
+        if (c >= '！' && c <= '～') {
+            c = (char) (c - 0xFEE0);
+        }
+        switch (Character.getType(c)) {
+            case Character.SPACE_SEPARATOR:
+            case Character.LINE_SEPARATOR:
+            case Character.PARAGRAPH_SEPARATOR:
+            case Character.CONTROL:
+            case Character.FORMAT:
+            case Character.SURROGATE:
+            case Character.CONNECTOR_PUNCTUATION:
+            case Character.DASH_PUNCTUATION:
+            case Character.START_PUNCTUATION:
+            case Character.END_PUNCTUATION:
+            case Character.INITIAL_QUOTE_PUNCTUATION:
+            case Character.FINAL_QUOTE_PUNCTUATION:
+            case Character.OTHER_PUNCTUATION:
+            case Character.MATH_SYMBOL:
+            case Character.CURRENCY_SYMBOL:
+            case Character.MODIFIER_SYMBOL:
+            case Character.OTHER_SYMBOL:
+                return 0;
+            default:
+                return Character.toLowerCase(c);
+        }
+    }
+
+    /** 匹配处理 **/
+    @FunctionalInterface
+    public interface MatchHandler {
+
+        /**
+         * 匹配到敏感词
+         * @param wordIndex 敏感词下标
+         * @param start 起始位置(包含)
+         * @param end 结束位置(包含)
+         * @return false 停止匹配
+         */
+        boolean onMatch(int wordIndex, int start, int end);
+    }
+
+    /** 构建器,先构建临时字典树,再按层放入双数组并计算失配状态 **/
+    private static final class Builder {
+
+        /** 推进起始搜索位置的最小搜索跨度 **/
+        private static final int DENSE_SPAN = 64;
+        /** 单次放置最多尝试的空闲位置数 **/
+        private static final int MAX_PROBES = 64;
+
+        private int[] base = new int[1024];
+        private int[] check = new int[1024];
+        /** 已占用的位置 **/
+        private final BitSet used = new BitSet();
+        /** 下次放置的起始搜索位置 **/
+        private int nextCheckPos = CODE_START;
+        /** 已使用的最大位置 **/
+        private int maxUsed;
+
+        Builder() {
+            Arrays.fill(check, FREE);
+        }
+
+        SensitiveWordAutomaton build(Collection<String> source) {
+            char[] normalized = new char[Character.MAX_VALUE + 1];
+            for (int c = 0; c <= Character.MAX_VALUE; c++) {
+                normalized[c] = normalize((char) c);
+            }
+
+            // 临时字典树
+            char[] codeOf = new char[Character.MAX_VALUE + 1];
+            int nextCode = CODE_START;
+            Node root = new Node();
+            List<String> words = new ArrayList<>(source.size());
+            Map<String, Integer> keys = new HashMap<>(source.size() * 2);
+            StringBuilder key = new StringBuilder();
+            for (String word : source) {
+                if (word == null) {
+                    continue;
+                }
+                key.setLength(0);
+                for (int i = 0; i < word.length(); i++) {
+                    char c = normalized[word.charAt(i)];
+                    if (c != 0) {
+                        key.append(c);
+                    }
+                }
+                if (key.length() == 0 || keys.putIfAbsent(key.toString(), words.size()) != null) {
+                    continue;
+                }
+                Node node = root;
+                for (int i = 0; i < key.length(); i++) {
+                    char c = key.charAt(i);
+                    if (codeOf[c] == 0) {
+                        if (nextCode > Character.MAX_VALUE) {
+                            throw new IllegalArgumentException("敏感词字符种类过多");
+                        }
+                        codeOf[c] = (char) nextCode++;
+                    }
+                    node = node.children.computeIfAbsent(codeOf[c], k -> new Node());
+                }
+                node.wordIndex = words.size();
+                words.add(word);
+            }
+
+            char[] codes = new char[Character.MAX_VALUE + 1];
+            for (int c = 0; c <= Character.MAX_VALUE; c++) {
+                char n = normalized[c];
+                codes[c] = n == 0 ? CODE_SKIP : codeOf[n] == 0 ? CODE_OTHER : codeOf[n];
+            }
+
+            // 按层放入双数组,nodes为层序
+            List<Node> nodes = new ArrayList<>();
+            nodes.add(root);
+            root.state = ROOT;
+            // 根状态不可作为转移目标
+            check[ROOT] = FREE - 1;
+            used.set(ROOT);
+            for (int head = 0; head < nodes.size(); head++) {
+                Node node = nodes.get(head);
+                if (node.children.isEmpty()) {
+                    continue;
+                }
+                int b = place(node.children);
+                base[node.state] = b;
+                for (Map.Entry<Character, Node> entry : node.children.entrySet()) {
+                    int target = b + entry.getKey();
+                    check[target] = node.state;
+                    entry.getValue().state = target;
+                    nodes.add(entry.getValue());
+                }
+            }
+
+            int length = maxUsed + 1;
+            int[] base = Arrays.copyOf(this.base, length);
+            int[] check = Arrays.copyOf(this.check, length);
+            int[] fail = new int[length];
+            int[] depth = new int[length];
+            int[] matchLength = new int[length];
+            int[] wordIndex = new int[length];
+            int[] outputLink = new int[length];
+            Arrays.fill(wordIndex, -1);
+            outputLink[ROOT] = -1;
+
+            // 失配状态,父状态先于子状态处理
+            for (int i = 1; i < nodes.size(); i++) {
+                Node node = nodes.get(i);
+                int state = node.state;
+                int parent = check[state];
+                char code = (char) (state - base[parent]);
+                depth[state] = depth[parent] + 1;
+                wordIndex[state] = node.wordIndex;
+                int f = ROOT;
+                if (parent != ROOT) {
+                    int p = fail[parent];
+                    for (;;) {
+                        int target = base[p] + code;
+                        if (target < length && check[target] == p) {
+                            f = target;
+                            break;
+                        }
+                        if (p == ROOT) {
+                            break;
+                        }
+                        p = fail[p];
+                    }
+                }
+                fail[state] = f;
+                matchLength[state] = node.wordIndex >= 0 ? depth[state] : matchLength[f];
+                outputLink[state] = wordIndex[f] >= 0 ? f : outputLink[f];
+            }
+            return new SensitiveWordAutomaton(codes, base, check, fail, depth, matchLength, wordIndex, outputLink
+                    , words.toArray(new String[0]));
+        }
+
+        /** 为一组子节点编码寻找可用的base(首次适配),并占用对应位置 **/
+        private int place(TreeMap<Character, Node> children) {
+            int[] childCodes = new int[children.size()];
+            int i = 0;
+            for (char code : children.keySet()) {
+                childCodes[i++] = code;
+            }
+            int first = childCodes[0];
+            int last = childCodes[childCodes.length - 1];
+            int start = Math.max(nextCheckPos, first + 1);
+            int holes = 0;
+            int pos;
+            int b;
+            outer:
+            for (pos = used.nextClearBit(start); ; pos = used.nextClearBit(pos + 1)) {
+                if (++holes > MAX_PROBES) {
+                    // 子节点编码分散时难以嵌入已有空隙,直接放在已使用区域之后
+                    pos = Math.max(pos, maxUsed + 1);
+                    b = pos - first;
+                    break;
+                }
+                b = pos - first;
+                for (int j = 1; j < childCodes.length; j++) {
+                    if (used.get(b + childCodes[j])) {
+                        continue outer;
+                    }
+                }
+                break;
+            }
+            // 已搜索区间的空闲位置不足5%,下次从此处开始搜索
+            if (pos - start >= DENSE_SPAN && holes * 20 < pos - start) {
+                nextCheckPos = pos;
+            }
+            ensureCapacity(b + last + 1);
+            for (int code : childCodes) {
+                used.set(b + code);
+            }
+            maxUsed = Math.max(maxUsed, b + last);
+            return b;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= check.length) {
+                return;
+            }
+            int newCapacity = Math.max(capacity, check.length * 2);
+            int oldCapacity = check.length;
+            base = Arrays.copyOf(base, newCapacity);
+            check = Arrays.copyOf(check, newCapacity);
+            Arrays.fill(check, oldCapacity, newCapacity, FREE);
+        }
+    }
+
+    /** 临时字典树节点 **/
+    private static final class Node {
+
+        /** 子节点 key:字符编码,升序 **/
+        private final TreeMap<Character, Node> children = new TreeMap<>();
+        /** 敏感词下标,-1表示无 **/
+        private int wordIndex = -1;
+        /** 双数组中的状态 **/
+        private int state;
+    }
+}
@@ -0,0 +1,83 @@
+package com.echo.common.concurrency;
+
+import com.echo.common.concurrency.AbstractScheduledRunnableLoop.ScheduledFutureTask;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author: li-yuanwen
+ */
+public class TimingWheelScheduledTaskQueueTest {
+
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_DELAY = TimeUnit.SECONDS.toNanos(60);
+    private static final int PENDING = 1_000_000;
+
+    private static final Runnable NOOP = () -> {
+    };
+
+    @Test
+    public void millionPendingTimers() {
+        long base = AbstractRunnableLoopGroup.nanoTime();
+        TimingWheelScheduledTaskQueue queue = new TimingWheelScheduledTaskQueue(TICK, base);
+        Random random = new Random(1);
+        ScheduledFutureTask<?>[] tasks = new ScheduledFutureTask<?>[PENDING];
+        for (int i = 0; i < PENDING; i++) {
+            tasks[i] = new ScheduledFutureTask<Void>(null, NOOP, base + TICK + (long) (random.nextDouble() * MAX_DELAY))
+                    .setId(i + 1);
+            queue.add(tasks[i]);
+        }
+        for (int i = 0; i < PENDING; i += 2) {
+            tasks[i].cancelWithoutRemove(false);
+            queue.remove(tasks[i]);
+        }
+
+        // 模拟时钟自当前时间开始,添加期间已到期的任务在第一次poll时执行
+        long start = Math.max(base, AbstractRunnableLoopGroup.nanoTime());
+        int fired = 0;
+        for (long now = start; now <= base + MAX_DELAY + 2 * TICK; now += TICK) {
+            ScheduledFutureTask<?> task;
+            while ((task = queue.poll(now)) != null) {
+                fired++;
+                Assert.assertTrue("early", task.deadlineNanos() <= now);
+                Assert.assertTrue("late", now == start || now - task.deadlineNanos() < 2 * TICK);
+                Assert.assertFalse("cancelled task fired", task.isCancelled());
+            }
+        }
+        Assert.assertEquals(PENDING / 2, fired);
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(-1, queue.nextDeadlineNanos());
+    }
+
+    @Test
+    public void nextDeadlineNeverLate() {
+        long base = AbstractRunnableLoopGroup.nanoTime();
+        TimingWheelScheduledTaskQueue queue = new TimingWheelScheduledTaskQueue(TICK, base);
+        Random random = new Random(2);
+        for (int i = 0; i < 10_000; i++) {
+            queue.add(new ScheduledFutureTask<Void>(null, NOOP, base + TICK + (long) (random.nextDouble() * MAX_DELAY))
+                    .setId(i + 1));
+        }
+        // 按nextDeadlineNanos跳跃推进,与线程按该时间点休眠一致,添加期间已到期的任务在第一次poll时执行
+        long start = Math.max(base, AbstractRunnableLoopGroup.nanoTime());
+        long now = start;
+        int fired = 0;
+        while (!queue.isEmpty()) {
+            ScheduledFutureTask<?> task;
+            while ((task = queue.poll(now)) != null) {
+                fired++;
+                Assert.assertTrue("early", task.deadlineNanos() <= now);
+                Assert.assertTrue("late", now == start || now - task.deadlineNanos() < TICK);
+            }
+            long next = queue.nextDeadlineNanos();
+            if (next != -1) {
+                Assert.assertTrue(next >= now);
+                now = Math.max(now, next);
+            }
+        }
+        Assert.assertEquals(10_000, fired);
+    }
+}
@@ -0,0 +1,116 @@
+package com.echo.common.id;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * @author: li-yuanwen
+ */
+public class SnowflakeIdGeneratorTest {
+
+    private static final short WORKER_ID = 3;
+
+    @Test
+    public void idsIncreaseMonotonically() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(WORKER_ID);
+        long last = generator.nextId();
+        for (int i = 0; i < 200_000; i++) {
+            long id = i % 10 == 0 ? generator.nextIds(5)[0] : generator.nextId();
+            Assert.assertTrue(id > last);
+            Assert.assertEquals(WORKER_ID, SnowflakeIdGenerator.toWorkerId(id));
+            last = id;
+        }
+    }
+
+    @Test
+    public void idsAreUniqueAcrossThreads() throws InterruptedException {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(WORKER_ID);
+        int threads = 4;
+        int perThread = 50_000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i += 10) {
+                    for (long id : generator.nextIds(5)) {
+                        ids.add(id);
+                    }
+                    for (int j = 0; j < 5; j++) {
+                        ids.add(generator.nextId());
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        Assert.assertEquals(threads * perThread, ids.size());
+    }
+
+    @Test
+    public void clockStepBackWithinBorrowKeepsIncreasing() {
+        ManualClockIdGenerator generator = new ManualClockIdGenerator(100);
+        generator.time = 1_700_000_000_000L;
+        long last = generator.nextId();
+        for (int i = 0; i < 1000; i++) {
+            last = assertIncreasing(last, generator.nextId());
+        }
+
+        // 时钟回拨50ms,借用后续序号
+        generator.time -= 50;
+        for (int i = 0; i < 1000; i++) {
+            last = assertIncreasing(last, generator.nextId());
+        }
+
+        // 时钟恢复后继续递增
+        generator.time += 200;
+        last = assertIncreasing(last, generator.nextId());
+        Assert.assertEquals(WORKER_ID, SnowflakeIdGenerator.toWorkerId(last));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void clockStepBackBeyondBorrowFails() {
+        ManualClockIdGenerator generator = new ManualClockIdGenerator(10);
+        generator.time = 1_700_000_000_000L;
+        generator.nextId();
+        generator.time -= 1000;
+        generator.nextId();
+    }
+
+    private static long assertIncreasing(long last, long id) {
+        Assert.assertTrue(id > last);
+        return id;
+    }
+
+    /**
+     * 手动控制系统时间
+     **/
+    private static final class ManualClockIdGenerator extends SnowflakeIdGenerator {
+
+        private volatile long time;
+
+        ManualClockIdGenerator(long maxBorrowMillis) {
+            super(WORKER_ID, maxBorrowMillis);
+        }
+
+        @Override
+        protected long currentTime() {
+            return time;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.echo.common.resource.reader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author: li-yuanwen
+ */
+public class ResourceSnapshotTest {
+
+    private static final byte[] SOURCE = "id,reward".getBytes(StandardCharsets.UTF_8);
+
+    /** 资源类结构不变,仅嵌套类型的属性变化 **/
+    private static final String ITEM = "package snapshot; public class Item { int id; Reward reward; }";
+    private static final String REWARD_V1 = "package snapshot; public class Reward { int count; }";
+    private static final String REWARD_V2 = "package snapshot; public class Reward { long count; int weight; }";
+
+    /** 资源类结构不变,仅泛型参数类型的属性变化 **/
+    private static final String BAG = "package snapshot; public class Bag { int id; java.util.List<Reward> rewards; }";
+
+    /** 资源类结构不变,仅枚举常量顺序变化 **/
+    private static final String SHOP = "package snapshot; public class Shop { int id; Color color; }";
+    private static final String COLOR_V1 = "package snapshot; public enum Color { RED, BLUE }";
+    private static final String COLOR_V2 = "package snapshot; public enum Color { BLUE, RED }";
+
+    @Test
+    public void nestedTypeChangeMakesSnapshotStale() throws Exception {
+        Class<?> v1 = compile("snapshot.Item", ITEM, REWARD_V1);
+        Class<?> v2 = compile("snapshot.Item", ITEM, REWARD_V2);
+        Assert.assertNotEquals(v1, v2);
+        Assert.assertFalse(Arrays.equals(ResourceSnapshot.digest(SOURCE, v1), ResourceSnapshot.digest(SOURCE, v2)));
+        // 结构相同则摘要相同
+        Class<?> v1Again = compile("snapshot.Item", ITEM, REWARD_V1);
+        Assert.assertArrayEquals(ResourceSnapshot.digest(SOURCE, v1), ResourceSnapshot.digest(SOURCE, v1Again));
+    }
+
+    @Test
+    public void genericArgumentChangeMakesSnapshotStale() throws Exception {
+        Class<?> v1 = compile("snapshot.Bag", BAG, REWARD_V1);
+        Class<?> v2 = compile("snapshot.Bag", BAG, REWARD_V2);
+        Assert.assertFalse(Arrays.equals(ResourceSnapshot.digest(SOURCE, v1), ResourceSnapshot.digest(SOURCE, v2)));
+    }
+
+    @Test
+    public void enumOrderChangeMakesSnapshotStale() throws Exception {
+        Class<?> v1 = compile("snapshot.Shop", SHOP, COLOR_V1);
+        Class<?> v2 = compile("snapshot.Shop", SHOP, COLOR_V2);
+        Assert.assertFalse(Arrays.equals(ResourceSnapshot.digest(SOURCE, v1), ResourceSnapshot.digest(SOURCE, v2)));
+    }
+
+    @Test
+    public void recursiveTypes() {
+        String layout = ResourceSnapshot.layout(Node.class);
+        Assert.assertTrue(layout, layout.contains(Child.class.getName() + ".weight:int"));
+        Assert.assertTrue(layout, layout.contains(Node.class.getName() + ".value:T+java.lang.Comparable"));
+        // 已展开的类型只记录类名
+        Assert.assertEquals(layout, 1, count(layout, Node.class.getName() + "{"));
+        Assert.assertEquals(layout, 1, count(layout, Child.class.getName() + "{"));
+    }
+
+    @Test
+    public void staleSnapshotIsIgnored() throws Exception {
+        Path dir = Files.createTempDirectory("snapshot");
+        String location = dir.resolve("Child.xlsx").toString();
+        Child child = new Child();
+        child.weight = 3;
+        ResourceSnapshot.write(location, ResourceSnapshot.digest(SOURCE, Child.class), Collections.singletonList(child)
+                , Child.class);
+
+        List<Child> rows = ResourceSnapshot.read(location, ResourceSnapshot.digest(SOURCE, Child.class), Child.class);
+        Assert.assertNotNull(rows);
+        Assert.assertEquals(1, rows.size());
+        Assert.assertEquals(3, rows.get(0).weight);
+
+        byte[] changed = "id,reward,weight".getBytes(StandardCharsets.UTF_8);
+        Assert.assertNull(ResourceSnapshot.read(location, ResourceSnapshot.digest(changed, Child.class), Child.class));
+    }
+
+    private static Class<?> compile(String className, String... sources) throws Exception {
+        Path dir = Files.createTempDirectory("snapshot");
+        Path packageDir = Files.createDirectories(dir.resolve("snapshot"));
+        String[] files = new String[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            String source = sources[i];
+            String name = source.substring(source.indexOf(source.contains(" enum ") ? " enum " : " class ") + 6)
+                    .trim().split("[ {]")[0];
+            Path file = packageDir.resolve(name + ".java");
+            Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+            files[i] = file.toString();
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        String[] arguments = new String[files.length + 2];
+        arguments[0] = "-d";
+        arguments[1] = dir.toString();
+        System.arraycopy(files, 0, arguments, 2, files.length);
+        Assert.assertEquals(0, compiler.run(null, null, null, arguments));
+        URLClassLoader loader = new URLClassLoader(new URL[]{dir.toUri().toURL()}, null);
+        return loader.loadClass(className);
+    }
+
+    private static int count(String text, String part) {
+        int count = 0;
+        for (int index = text.indexOf(part); index >= 0; index = text.indexOf(part, index + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    static class Node<T extends Comparable<T>> {
+        T value;
+        Node<T> next;
+        Child child;
+        Map<String, List<Node<T>>> children;
+    }
+
+    static class Child {
+        int weight;
+        Node<String> parent;
+    }
+}
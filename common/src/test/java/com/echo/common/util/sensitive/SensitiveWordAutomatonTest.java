@@ -0,0 +1,179 @@
+package com.echo.common.util.sensitive;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 与暴力匹配对照验证自动机
+ *
+ * @author: li-yuanwen
+ */
+public class SensitiveWordAutomatonTest {
+
+    /** 敏感词字符,含大写、全角 **/
+    private static final char[] WORD_CHARS = {'a', 'b', 'c', 'A', 'Ｂ', '习', '近', '平'};
+    /** 文本额外字符:间隔字符及不在敏感词中的字符 **/
+    private static final char[] TEXT_CHARS = {' ', '@', '￥', '，', '\u200b', 'x', '好'};
+
+    private static final char MASK = '*';
+
+    @Test
+    public void examples() {
+        SensitiveWordAutomaton automaton = SensitiveWordAutomaton.build(Arrays.asList("习近平", "ab", "b"));
+        Assert.assertTrue(automaton.contains("习￥近@平"));
+        Assert.assertTrue(automaton.contains("xＡ Ｂx"));
+        Assert.assertFalse(automaton.contains("习x近平"));
+        Assert.assertEquals("x**** y", mask(automaton, "xa, b y"));
+        Assert.assertFalse(SensitiveWordAutomaton.EMPTY.contains("习近平"));
+    }
+
+    @Test
+    public void sameResultAsBruteForce() {
+        Random random = new Random(20240101);
+        for (int round = 0; round < 3000; round++) {
+            List<String> words = new ArrayList<>();
+            int wordCount = 1 + random.nextInt(12);
+            for (int i = 0; i < wordCount; i++) {
+                words.add(randomText(random, 1 + random.nextInt(4), 0.1));
+            }
+            SensitiveWordAutomaton automaton = SensitiveWordAutomaton.build(words);
+            BruteForce bruteForce = new BruteForce(words);
+            Assert.assertEquals(words.toString(), bruteForce.words.size(), automaton.size());
+
+            for (int t = 0; t < 20; t++) {
+                String text = randomText(random, random.nextInt(40), 0.4);
+                String message = words + " / [" + text + "]";
+                List<String> expected = bruteForce.match(text);
+
+                List<String> actual = new ArrayList<>();
+                automaton.match(text, (wordIndex, start, end) -> {
+                    actual.add(normalize(automaton.getWord(wordIndex)) + "@" + start + "-" + end);
+                    return true;
+                });
+                Assert.assertEquals(message, expected, actual);
+                Assert.assertEquals(message, !expected.isEmpty(), automaton.contains(text));
+
+                char[] out = new char[text.length()];
+                Assert.assertEquals(message, bruteForce.endCount(text), automaton.mask(text, out, MASK));
+                Assert.assertEquals(message, bruteForce.mask(text), new String(out));
+            }
+        }
+    }
+
+    @Test
+    public void matchStopsWhenHandlerReturnsFalse() {
+        SensitiveWordAutomaton automaton = SensitiveWordAutomaton.build(Arrays.asList("a", "aa"));
+        List<Integer> ends = new ArrayList<>();
+        automaton.match("aaaa", (wordIndex, start, end) -> {
+            ends.add(end);
+            return ends.size() < 2;
+        });
+        Assert.assertEquals(Arrays.asList(0, 1), ends);
+    }
+
+    private static String randomText(Random random, int length, double otherRate) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(random.nextDouble() < otherRate
+                    ? TEXT_CHARS[random.nextInt(TEXT_CHARS.length)]
+                    : WORD_CHARS[random.nextInt(WORD_CHARS.length)]);
+        }
+        return builder.toString();
+    }
+
+    private static String mask(SensitiveWordAutomaton automaton, String text) {
+        char[] out = new char[text.length()];
+        automaton.mask(text, out, MASK);
+        return new String(out);
+    }
+
+    /** 归一化并去除间隔字符 **/
+    private static String normalize(String text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = SensitiveWordAutomaton.normalize(text.charAt(i));
+            if (c != 0) {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /** 暴力匹配:对归一化后的文本逐位置比较每个敏感词 **/
+    private static final class BruteForce {
+
+        /** 归一化后的敏感词,去除空词及重复词 **/
+        private final List<String> words;
+
+        BruteForce(List<String> words) {
+            Set<String> set = new LinkedHashSet<>();
+            for (String word : words) {
+                String normalized = normalize(word);
+                if (!normalized.isEmpty()) {
+                    set.add(normalized);
+                }
+            }
+            this.words = new ArrayList<>(set);
+        }
+
+        /** 全部匹配,按结束位置升序,同一结束位置按长度降序,格式:敏感词@起始-结束 **/
+        List<String> match(String text) {
+            List<Integer> positions = new ArrayList<>();
+            String normalized = normalizeWithPositions(text, positions);
+            List<int[]> matches = new ArrayList<>();
+            for (int w = 0; w < words.size(); w++) {
+                String word = words.get(w);
+                for (int i = normalized.indexOf(word); i >= 0; i = normalized.indexOf(word, i + 1)) {
+                    matches.add(new int[]{w, i, i + word.length() - 1});
+                }
+            }
+            matches.sort((a, b) -> a[2] != b[2] ? Integer.compare(a[2], b[2]) : Integer.compare(b[2] - b[1], a[2] - a[1]));
+            List<String> result = new ArrayList<>(matches.size());
+            for (int[] match : matches) {
+                result.add(words.get(match[0]) + "@" + positions.get(match[1]) + "-" + positions.get(match[2]));
+            }
+            return result;
+        }
+
+        /** 存在敏感词结束的位置数 **/
+        int endCount(String text) {
+            Set<Integer> ends = new TreeSet<>();
+            for (String match : match(text)) {
+                ends.add(Integer.parseInt(match.substring(match.lastIndexOf('-') + 1)));
+            }
+            return ends.size();
+        }
+
+        /** 掩码所有敏感词覆盖的原文区间(含其中的间隔字符) **/
+        String mask(String text) {
+            char[] chars = text.toCharArray();
+            for (String match : match(text)) {
+                String range = match.substring(match.lastIndexOf('@') + 1);
+                int start = Integer.parseInt(range.substring(0, range.indexOf('-')));
+                int end = Integer.parseInt(range.substring(range.indexOf('-') + 1));
+                Arrays.fill(chars, start, end + 1, MASK);
+            }
+            return new String(chars);
+        }
+
+        private static String normalizeWithPositions(String text, List<Integer> positions) {
+            StringBuilder builder = new StringBuilder(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                char c = SensitiveWordAutomaton.normalize(text.charAt(i));
+                if (c != 0) {
+                    builder.append(c);
+                    positions.add(i);
+                }
+            }
+            return builder.toString();
+        }
+    }
+}
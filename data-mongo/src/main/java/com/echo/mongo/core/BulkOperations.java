@@ -1,8 +1,14 @@
 package com.echo.mongo.core;
 
 
+import com.echo.mongo.query.Query;
+import com.echo.mongo.query.UpdateDefinition;
+import com.mongodb.bulk.BulkWriteResult;
+
+import java.util.List;
+
 /**
- * mongodb 批量操作
+ * mongodb 批量操作,收集的写操作在{@link #execute()}时通过一次bulkWrite提交
  */
 public interface BulkOperations {
 
@@ -18,4 +24,85 @@ public interface BulkOperations {
         UNORDERED
     };
 
+    /**
+     * 添加插入操作
+     *
+     * @param document 待插入的对象
+     * @return this
+     */
+    BulkOperations insert(Object document);
+
+    /**
+     * 添加多个插入操作
+     *
+     * @param documents 待插入的对象集
+     * @return this
+     */
+    BulkOperations insert(List<?> documents);
+
+    /**
+     * 添加保存操作(根据id整体替换,不存在则插入)
+     *
+     * @param document 待保存的对象
+     * @return this
+     */
+    BulkOperations save(Object document);
+
+    /**
+     * 添加多个保存操作
+     *
+     * @param documents 待保存的对象集
+     * @return this
+     */
+    BulkOperations save(List<?> documents);
+
+    /**
+     * 添加更新单个文档操作
+     *
+     * @param query  查询条件
+     * @param update 更新内容
+     * @return this
+     */
+    BulkOperations updateOne(Query query, UpdateDefinition update);
+
+    /**
+     * 添加更新操作,不存在则插入
+     *
+     * @param query  查询条件
+     * @param update 更新内容
+     * @return this
+     */
+    BulkOperations upsert(Query query, UpdateDefinition update);
+
+    /**
+     * 添加根据id删除对象操作
+     *
+     * @param document 待删除的对象
+     * @return this
+     */
+    BulkOperations remove(Object document);
+
+    /**
+     * 添加根据查询条件删除操作
+     *
+     * @param query 查询条件
+     * @return this
+     */
+    BulkOperations remove(Query query);
+
+    /**
+     * 当前已收集的操作数
+     *
+     * @return 操作数
+     */
+    int size();
+
+    /**
+     * 执行收集的全部操作,执行后清空已收集操作
+     *
+     * @return 执行结果,无操作时返回{@link BulkWriteResult#unacknowledged()}
+     * @throws com.mongodb.MongoBulkWriteException 部分操作失败
+     */
+    BulkWriteResult execute();
+
 }
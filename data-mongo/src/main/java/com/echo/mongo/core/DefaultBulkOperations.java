@@ -0,0 +1,195 @@
+package com.echo.mongo.core;
+
+import com.echo.common.util.ClassUtils;
+import com.echo.mongo.convert.GenericMongoConverter;
+import com.echo.mongo.excetion.MappingException;
+import com.echo.mongo.mapping.MongoPersistentEntity;
+import com.echo.mongo.query.Query;
+import com.echo.mongo.query.UpdateDefinition;
+import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.*;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link BulkOperations} 默认实现,对象映射规则与{@link MongoTemplate}的单条操作一致
+ *
+ * @author: li-yuanwen
+ */
+@Slf4j
+class DefaultBulkOperations implements BulkOperations {
+
+    private final MongoOperations mongoOperations;
+    private final String collectionName;
+    private final Class<?> entityClass;
+    private final BulkMode bulkMode;
+
+    private final EntityOperations entityOperations;
+    private final QueryOperations queryOperations;
+    private final GenericMongoConverter mongoConverter;
+    private final WriteConcern writeConcern;
+
+    /** 已收集的写操作 **/
+    private List<WriteModel<Document>> models = new ArrayList<>();
+
+    DefaultBulkOperations(MongoOperations mongoOperations, String collectionName, Class<?> entityClass
+            , BulkMode bulkMode, EntityOperations entityOperations, QueryOperations queryOperations
+            , GenericMongoConverter mongoConverter, WriteConcern writeConcern) {
+        this.mongoOperations = mongoOperations;
+        this.collectionName = collectionName;
+        this.entityClass = entityClass;
+        this.bulkMode = bulkMode;
+        this.entityOperations = entityOperations;
+        this.queryOperations = queryOperations;
+        this.mongoConverter = mongoConverter;
+        this.writeConcern = writeConcern;
+    }
+
+    @Override
+    public BulkOperations insert(Object document) {
+        if (document == null) {
+            throw new IllegalArgumentException("Document must not be null");
+        }
+        models.add(new InsertOneModel<>(toDocument(document)));
+        return this;
+    }
+
+    @Override
+    public BulkOperations insert(List<?> documents) {
+        if (documents == null) {
+            throw new IllegalArgumentException("Documents must not be null");
+        }
+        for (Object document : documents) {
+            insert(document);
+        }
+        return this;
+    }
+
+    @Override
+    public BulkOperations save(Object document) {
+        if (document == null) {
+            throw new IllegalArgumentException("Document must not be null");
+        }
+        MongoPersistentEntity entity = getPersistentEntity(ClassUtils.getUserClass(document));
+        MappedDocument mapped = MappedDocument.of(toDocument(document));
+        if (!mapped.hasId()) {
+            mapped = queryOperations.createInsertContext(mapped).prepareId(entity);
+            models.add(new InsertOneModel<>(mapped.getDocument()));
+            return this;
+        }
+
+        QueryOperations.UpdateContext updateContext = queryOperations.replaceSingleContext(mapped, true);
+        Document replacement = updateContext.getMappedUpdate(entity);
+        Document filter = updateContext.getMappedQuery(entity);
+        models.add(new ReplaceOneModel<>(filter, replacement, new ReplaceOptions().upsert(true)));
+        return this;
+    }
+
+    @Override
+    public BulkOperations save(List<?> documents) {
+        if (documents == null) {
+            throw new IllegalArgumentException("Documents must not be null");
+        }
+        for (Object document : documents) {
+            save(document);
+        }
+        return this;
+    }
+
+    @Override
+    public BulkOperations updateOne(Query query, UpdateDefinition update) {
+        return addUpdate(query, update, false);
+    }
+
+    @Override
+    public BulkOperations upsert(Query query, UpdateDefinition update) {
+        return addUpdate(query, update, true);
+    }
+
+    private BulkOperations addUpdate(Query query, UpdateDefinition update, boolean upsert) {
+        if (query == null) {
+            throw new IllegalArgumentException("Query must not be null");
+        }
+        if (update == null) {
+            throw new IllegalArgumentException("Update must not be null");
+        }
+        MongoPersistentEntity entity = entityClass == null ? null : entityOperations.getPersistentEntity(entityClass);
+        QueryOperations.UpdateContext updateContext = queryOperations.updateSingleContext(update, query, upsert);
+        Document filter = updateContext.getMappedQuery(entity);
+        Document updateObj = updateContext.getMappedUpdate(entity);
+        if (!QueryOperations.isUpdateObject(updateObj)) {
+            models.add(new ReplaceOneModel<>(filter, updateObj, updateContext.getReplaceOptions(entityClass)));
+        } else {
+            models.add(new UpdateOneModel<>(filter, updateObj, updateContext.getUpdateOptions(entityClass)));
+        }
+        return this;
+    }
+
+    @Override
+    public BulkOperations remove(Object document) {
+        if (document == null) {
+            throw new IllegalArgumentException("Document must not be null");
+        }
+        MongoPersistentEntity entity = getPersistentEntity(ClassUtils.getUserClass(document));
+        QueryOperations.DeleteContext deleteContext = queryOperations.deleteQueryContext(entity.getRemoveByQuery(document));
+        models.add(new DeleteOneModel<>(deleteContext.getMappedQuery(entity)
+                , deleteContext.getDeleteOptions(entity.getType())));
+        return this;
+    }
+
+    @Override
+    public BulkOperations remove(Query query) {
+        if (query == null) {
+            throw new IllegalArgumentException("Query must not be null");
+        }
+        MongoPersistentEntity entity = entityClass == null ? null : entityOperations.getPersistentEntity(entityClass);
+        QueryOperations.DeleteContext deleteContext = queryOperations.deleteQueryContext(query);
+        models.add(new DeleteManyModel<>(deleteContext.getMappedQuery(entity)
+                , deleteContext.getDeleteOptions(entityClass)));
+        return this;
+    }
+
+    @Override
+    public int size() {
+        return models.size();
+    }
+
+    @Override
+    public BulkWriteResult execute() {
+        if (models.isEmpty()) {
+            return BulkWriteResult.unacknowledged();
+        }
+
+        List<WriteModel<Document>> toWrite = this.models;
+        this.models = new ArrayList<>();
+
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Executing bulk of %s operations in collection: %s", toWrite.size(), collectionName));
+        }
+
+        BulkWriteOptions options = new BulkWriteOptions().ordered(bulkMode == BulkMode.ORDERED);
+        return mongoOperations.execute(collectionName, collection -> {
+            MongoCollection<Document> collectionToUse = writeConcern != null
+                    ? collection.withWriteConcern(writeConcern)
+                    : collection;
+            return collectionToUse.bulkWrite(toWrite, options);
+        });
+    }
+
+    private Document toDocument(Object document) {
+        return getPersistentEntity(ClassUtils.getUserClass(document)).toMappingDocument(document, mongoConverter);
+    }
+
+    private MongoPersistentEntity getPersistentEntity(Class<?> type) {
+        MongoPersistentEntity entity = entityOperations.getPersistentEntity(type);
+        if (entity == null) {
+            throw new MappingException("No mapping metadata found for entity of type " + type.getName());
+        }
+        return entity;
+    }
+}
@@ -91,5 +91,23 @@ public interface MongoOperations extends FindOperation, InsertOperation, RemoveO
      */
     <T> T save(T objectToSave, String collectionName);
 
+    /**
+     * 返回实体类型对应集合的批量操作
+     *
+     * @param bulkMode    批量操作模式
+     * @param entityClass 实体类型
+     * @return {@link BulkOperations}
+     */
+    BulkOperations bulkOps(BulkOperations.BulkMode bulkMode, Class<?> entityClass);
+
+    /**
+     * 返回指定集合的批量操作
+     *
+     * @param bulkMode       批量操作模式
+     * @param entityClass    实体类型,可以为null
+     * @param collectionName 集合名称
+     * @return {@link BulkOperations}
+     */
+    BulkOperations bulkOps(BulkOperations.BulkMode bulkMode, Class<?> entityClass, String collectionName);
 
 }
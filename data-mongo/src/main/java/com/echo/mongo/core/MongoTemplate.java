@@ -170,6 +170,27 @@ public class MongoTemplate implements MongoOperations, IndexOperationsProvider {
     }
 
 
+    @Override
+    public BulkOperations bulkOps(BulkOperations.BulkMode bulkMode, Class<?> entityClass) {
+        if (entityClass == null) {
+            throw new IllegalArgumentException("EntityClass must not be null");
+        }
+        return bulkOps(bulkMode, entityClass, getCollectionName(entityClass));
+    }
+
+    @Override
+    public BulkOperations bulkOps(BulkOperations.BulkMode bulkMode, Class<?> entityClass, String collectionName) {
+        if (bulkMode == null) {
+            throw new IllegalArgumentException("BulkMode must not be null");
+        }
+        if (!StringUtils.hasLength(collectionName)) {
+            throw new IllegalArgumentException("Collection name must not be null or empty");
+        }
+        return new DefaultBulkOperations(this, collectionName, entityClass, bulkMode
+                , entityOperations, queryOperations, mongoConverter, writeConcern);
+    }
+
+
     // ---------------------- FindOperation ---------------------------
 
     @Override
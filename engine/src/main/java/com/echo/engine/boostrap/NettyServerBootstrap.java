@@ -1,6 +1,7 @@
 package com.echo.engine.boostrap;
 
 import com.echo.common.concurrency.IdentityRunnableLoopGroup;
+import com.echo.common.concurrency.MailboxRejectedHandler;
 import com.echo.common.util.IpUtils;
 import com.echo.engine.client.Address;
 import com.echo.engine.config.NettyServerSettings;
@@ -76,7 +77,7 @@ public class NettyServerBootstrap {
     /**
      * rpc调用消息容器
      **/
-    private final InvocationContext invocationContext = new InvocationContext();
+    private final InvocationContext invocationContext;
     /**
      * session容器
      */
@@ -116,6 +117,7 @@ public class NettyServerBootstrap {
     public NettyServerBootstrap(NettyServerSettings settings) throws SSLException {
         this.settings = settings;
         this.messageFactory = new MessageFactory(settings);
+        this.invocationContext = new InvocationContext(settings.getFinalRpcTimeoutMillis());
         this.pushOperation = new PushOperation(sessionContext, messageFactory);
         this.remoteServerSeekOperation = new GenericRemoteLocalServerSeekOperation(this);
         SerializeType serializeType = SerializeType.valueOf(settings.getSerializeType());
@@ -136,6 +138,8 @@ public class NettyServerBootstrap {
         }
 
         initEventLoop();
+        // 业务协议已注册完毕,冻结协议路由表
+        protocolContext.freeze();
 
         ServerBootstrap serverBootstrap = new ServerBootstrap();
         serverBootstrap.group(this.boss, this.workers)
@@ -174,6 +178,7 @@ public class NettyServerBootstrap {
         this.boss.shutdownGracefully();
         this.workers.shutdownGracefully();
         this.clientEventLoopGroup.shutdownGracefully();
+        this.invocationContext.shutdown();
         Future<?> future = this.businessLoopGroup.shutdownGracefully();
         try {
             future.get();
@@ -195,11 +200,16 @@ public class NettyServerBootstrap {
         // 使用Reactor主从多线程模型,一个Acceptor连接线程,I/O读写线程池,Handler线程池(NettyServerChannelInitializer)
         this.boss = createLoopGroup(1, "Netty-Acceptor-Thread");
         this.workers = createLoopGroup(settings.getIOThreadNum(), "Netty-IO-Thread");
-        this.businessLoopGroup = new IdentityRunnableLoopGroup(settings.getFinalBusinessThreadNum());
+        this.businessLoopGroup = new IdentityRunnableLoopGroup(settings.getFinalBusinessThreadNum()
+                , settings.getFinalBusinessMailboxCapacity(), MailboxRejectedHandler.ABORT);
+        this.invocationContext.setExecutor(this.businessLoopGroup);
         this.clientEventLoopGroup = createLoopGroup(Runtime.getRuntime().availableProcessors(), "Netty-Client-Thread");
     }
 
-    private boolean useEpoll() {
+    /**
+     * 是否使用epoll传输,客户端连接与服务端保持一致
+     **/
+    public static boolean useEpoll() {
         return IpUtils.isLinuxPlatform() && Epoll.isAvailable();
     }
 
@@ -264,7 +274,8 @@ public class NettyServerBootstrap {
     }
 
     public static MessageDecoder messageDecoder(int maxMessageLength) {
-        return new MessageDecoder(maxMessageLength, 2, 4);
+        // 消息体零拷贝,由AbstractDispatcher/ClientBusinessHandler处理完毕后释放
+        return new MessageDecoder(maxMessageLength, 2, 4, true);
     }
 
 }
@@ -1,5 +1,6 @@
 package com.echo.engine.business;
 
+import com.echo.common.concurrency.MailboxRejectedHandler;
 import com.echo.engine.boostrap.NettyServerBootstrap;
 import com.echo.network.exception.SocketException;
 import com.echo.network.message.IMessage;
@@ -11,10 +12,14 @@ import com.echo.network.protocol.*;
 import com.echo.network.serialize.SerializeType;
 import com.echo.network.session.ISession;
 import com.echo.network.utils.SerializeUtils;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 协议分发器基类
@@ -24,6 +29,14 @@ import java.util.concurrent.Future;
 @Slf4j
 public abstract class AbstractDispatcher<M extends IMessage, S extends ISession> implements Dispatcher<M, S> {
 
+    /**
+     * 丢弃被拒绝任务的邮箱拒绝策略,丢弃前释放任务持有的消息体(分发任务实现了引用计数)
+     * 与{@link MailboxRejectedHandler#ABORT}不同,被丢弃的请求不会响应服务器繁忙
+     **/
+    public static final MailboxRejectedHandler DISCARD = (identity, task, depth) -> {
+        log.warn("标识[{}]邮箱任务数[{}]达到上限,丢弃任务", identity, depth);
+        ReferenceCountUtil.release(task);
+    };
 
     protected final ProtocolContext protocolContext;
 
@@ -31,17 +44,57 @@ public abstract class AbstractDispatcher<M extends IMessage, S extends ISession>
         this.protocolContext = protocolContext;
     }
 
+    /**
+     * 消息分发,分发器负责在消息处理完毕(或被忽略/拒绝)后释放消息体
+     *
+     * @param session session
+     * @param message 消息
+     */
     @Override
     public void dispatch(S session, M message) {
         if (!message.isRequest()) {
             if (log.isDebugEnabled()) {
                 log.debug("服务器收到非请求消息,忽略, ip:{}", session.getIp());
             }
+            message.release();
             return;
         }
 
-        Executor executor = findExecutor(session, message);
-        executor.execute(() -> handleMessage(session, message));
+        try {
+            Executor executor = findExecutor(session, message);
+            executor.execute(new DispatchTask(session, message));
+        } catch (RejectedExecutionException e) {
+            // 业务线程拒绝(标识任务堆积过多或线程池关闭),消息不会再被处理
+            // 拒绝策略抛出异常时不会释放任务,消息在此释放(重复释放无副作用)
+            try {
+                onRejected(session, message);
+            } finally {
+                message.release();
+            }
+        } catch (RuntimeException e) {
+            // 提交失败,消息不会再被处理
+            message.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 消息被业务线程拒绝执行时的处理,默认响应服务器繁忙
+     *
+     * @param session session
+     * @param message message
+     */
+    protected void onRejected(S session, M message) {
+        SocketProtocol protocol = message.getProtocol();
+        if (log.isDebugEnabled()) {
+            log.debug("业务线程拒绝处理协议号[{},{}], ip:{}"
+                    , protocol.getModule()
+                    , protocol.getMethodId()
+                    , session.getIp());
+        }
+        response(session, message, errorSocketProtocol()
+                , SerializeUtils.serialize(NettyServerBootstrap.SERIALIZE_TYPE
+                        , createExceptionBody(message.getSn(), protocol, ServerErrorCode.SERVER_BUSY)));
     }
 
 
@@ -72,7 +125,7 @@ public abstract class AbstractDispatcher<M extends IMessage, S extends ISession>
                     , message.getProtocolHeaderIdentity()
                     , protocol.getModule()
                     , protocol.getMethodId()
-                    , message.getBody() == null ? 0 : message.getBody().length
+                    , message.getBodyLength()
                     , session.getIp());
         }
         ProtocolMethodInvocation invocation = protocolContext.getRequestInvocation(protocol);
@@ -107,7 +160,7 @@ public abstract class AbstractDispatcher<M extends IMessage, S extends ISession>
 
         byte[] responseBody = null;
         try {
-            Object result = invokeMethod(session, message, serializeType, invocation);
+            Object result = invokeMethod(session, message, identity, serializeType, invocation);
             if (result != null) {
                 if (result instanceof Future) {
                     Future<?> future = (Future<?>) result;
@@ -175,37 +228,15 @@ public abstract class AbstractDispatcher<M extends IMessage, S extends ISession>
      *
      * @param session    session
      * @param message    message
+     * @param identity   身份标识
      * @param invocation 调用方法上下文
      * @return method.invoke()
      */
-    private Object invokeMethod(S session, M message, SerializeType serializeType, ProtocolMethodInvocation invocation) {
-        ProtocolMethod protocolMethod = invocation.getProtocolMethod();
-        MethodParameter[] params = protocolMethod.getParams();
-        Object[] args = new Object[params.length];
-        for (int i = 0; i < params.length; i++) {
-            MethodParameter parameters = params[i];
-            if (parameters instanceof SessionMethodParameter) {
-                args[i] = session;
-                continue;
-            }
-
-            if (parameters instanceof IdentityMethodParameter) {
-                args[i] = findIdentity(session, message);
-                continue;
-            }
-
-            if (parameters instanceof InBodyMethodParameter) {
-                args[i] = SerializeUtils.deserialize(serializeType
-                        , message.getBody(), parameters.getParameterClass());
-                continue;
-            }
-
-            // 理论上不会运行到这行代码
-            log.warn("业务消息参数解析出现未允许出现的参数类型,参数类型[{}-{}]"
-                    , parameters.getClass().getSimpleName(), parameters.getParameterClass());
-
-        }
-        return invocation.invokeMethod(args);
+    private Object invokeMethod(S session, M message, long identity, SerializeType serializeType
+            , ProtocolMethodInvocation invocation) {
+        Object body = invocation.getBodyClass() == null ? null
+                : SerializeUtils.deserialize(serializeType, message, invocation.getBodyClass());
+        return invocation.invokeMethod(session, identity, body, null);
     }
 
     /**
@@ -243,4 +274,37 @@ public abstract class AbstractDispatcher<M extends IMessage, S extends ISession>
     private Object createExceptionBody(long reqSn, SocketProtocol protocol, int code) {
         return new ErrorCode(reqSn, protocol, code);
     }
+
+    /**
+     * 消息分发任务,持有消息的引用,执行完毕或被邮箱拒绝策略丢弃(ReferenceCountUtil.release)时释放消息体
+     **/
+    private final class DispatchTask extends AbstractReferenceCounted implements Runnable {
+
+        private final S session;
+        private final M message;
+
+        DispatchTask(S session, M message) {
+            this.session = session;
+            this.message = message;
+        }
+
+        @Override
+        public void run() {
+            try {
+                handleMessage(session, message);
+            } finally {
+                release();
+            }
+        }
+
+        @Override
+        protected void deallocate() {
+            message.release();
+        }
+
+        @Override
+        public ReferenceCounted touch(Object hint) {
+            return this;
+        }
+    }
 }
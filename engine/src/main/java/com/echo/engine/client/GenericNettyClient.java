@@ -1,39 +1,56 @@
 package com.echo.engine.client;
 
 import cn.hutool.core.annotation.AnnotationUtil;
+import com.echo.engine.boostrap.NettyServerBootstrap;
 import com.echo.engine.handler.NettyClientChannelInitializer;
 import com.echo.engine.protocol.MessageFactory;
 import com.echo.engine.rpc.core.Invocation;
 import com.echo.engine.rpc.core.InvocationContext;
 import com.echo.network.anno.SocketController;
 import com.echo.network.message.IMessage;
+import com.echo.network.modules.ServerErrorCode;
 import com.echo.network.protocol.ProtocolContext;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.*;
+import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.Proxy;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Netty Client 通用实现
+ * 与目标地址维持多条连接,按身份标识亲和选择连接(保证同一身份的消息有序),连接断开后后台按退避时间重连
+ * 亲和连接不可用时改用后续可用的连接,此期间同一身份的消息不保证有序
  *
  * @author: li-yuanwen
  */
 @Slf4j
 public class GenericNettyClient implements NettyClient {
 
-
     /**
-     * 连接目标IP地址
+     * 重连最小间隔(毫秒)
      **/
-    private final Address address;
+    private static final long RECONNECT_MIN_DELAY_MILLIS = 100;
+    /**
+     * 重连最大间隔(毫秒)
+     **/
+    private static final long RECONNECT_MAX_DELAY_MILLIS = 10 * 1000;
     /**
      * 连接超时(毫秒)
      **/
-    private int connectTimeoutMillis = 3000;
+    private static final int CONNECT_TIMEOUT_MILLIS = 3000;
+
+    /**
+     * 连接目标IP地址
+     **/
+    private final Address address;
     /**
      * 共享线程组
      **/
@@ -54,11 +71,22 @@ public class GenericNettyClient implements NettyClient {
      **/
     private final ProtocolContext protocolContext;
 
-
     /**
-     * Channel
+     * Bootstrap
+     **/
+    private final Bootstrap bootstrap;
+    /**
+     * 连接槽
+     **/
+    private final ChannelSlot[] slots;
+    /**
+     * 无身份标识消息的轮询序号
      **/
-    private Channel channel;
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    /**
+     * 是否已关闭
+     **/
+    private volatile boolean closed;
     /**
      * 代理对象
      **/
@@ -70,43 +98,184 @@ public class GenericNettyClient implements NettyClient {
             , InvocationContext invocationContext
             , ProtocolContext protocolContext
             , MessageFactory messageFactory) {
+        this(address, eventLoopGroup, channelInitializer, invocationContext, protocolContext, messageFactory, 1);
+    }
+
+    public GenericNettyClient(Address address
+            , EventLoopGroup eventLoopGroup
+            , NettyClientChannelInitializer channelInitializer
+            , InvocationContext invocationContext
+            , ProtocolContext protocolContext
+            , MessageFactory messageFactory
+            , int connectionNum) {
         this.address = address;
         this.eventLoopGroup = eventLoopGroup;
         this.channelInitializer = channelInitializer;
         this.invocationContext = invocationContext;
         this.messageFactory = messageFactory;
         this.protocolContext = protocolContext;
-    }
-
-    private void connect() throws InterruptedException {
-        Bootstrap bootstrap = new Bootstrap();
-        bootstrap.group(this.eventLoopGroup)
-                .channel(NioSocketChannel.class)
+        this.bootstrap = new Bootstrap();
+        this.bootstrap.group(this.eventLoopGroup)
+                .channel(NettyServerBootstrap.useEpoll() ? EpollSocketChannel.class : NioSocketChannel.class)
                 .option(ChannelOption.WRITE_BUFFER_WATER_MARK, WriteBufferWaterMark.DEFAULT)
                 .option(ChannelOption.TCP_NODELAY, true)
-                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, this.connectTimeoutMillis)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, CONNECT_TIMEOUT_MILLIS)
+                .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
                 .handler(this.channelInitializer);
 
+        this.slots = new ChannelSlot[Math.max(1, connectionNum)];
+        for (int i = 0; i < this.slots.length; i++) {
+            this.slots[i] = new ChannelSlot(i);
+            connect(this.slots[i]);
+        }
+    }
+
+    /**
+     * 异步建立连接,不阻塞调用线程
+     **/
+    private void connect(ChannelSlot slot) {
+        if (isClosed()) {
+            return;
+        }
+
         ChannelFuture channelFuture = bootstrap.connect(this.address.getIp(), this.address.getPort());
-        this.channel = channelFuture.channel();
-        channelFuture.sync();
+        slot.future = channelFuture;
+        if (closed) {
+            // close()可能在isClosed()检查后执行,未关闭新建的连接
+            channelFuture.channel().close();
+            return;
+        }
+        channelFuture.addListener((ChannelFutureListener) future -> {
+            if (!future.isSuccess()) {
+                log.error("客户端连接[{}:{}]失败,连接槽[{}]", address.getIp(), address.getPort(), slot.index, future.cause());
+                scheduleReconnect(slot);
+                return;
+            }
+
+            slot.retries = 0;
+            log.warn("客户端连接[{}:{}]成功,连接槽[{}]", address.getIp(), address.getPort(), slot.index);
+
+            Channel channel = future.channel();
+            channel.closeFuture().addListener(closeFuture -> {
+                // 连接断开时,结束该连接上全部未完成的调用
+                invocationContext.failInvocations(address, channel, ServerErrorCode.CANT_CONNECT_REMOTE);
+                scheduleReconnect(slot);
+            });
+        });
+    }
 
-        log.warn("客户端连接[{}:{}]成功", this.address.getIp(), this.address.getPort());
+    /**
+     * 按指数退避安排重连
+     **/
+    private void scheduleReconnect(ChannelSlot slot) {
+        if (isClosed()) {
+            return;
+        }
 
+        int retries = slot.retries++;
+        long delay = Math.min(RECONNECT_MAX_DELAY_MILLIS, RECONNECT_MIN_DELAY_MILLIS << Math.min(retries, 16));
+        try {
+            eventLoopGroup.schedule(() -> connect(slot), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.warn("客户端线程组已关闭,取消重连[{}:{}]", address.getIp(), address.getPort());
+        }
     }
 
-    private boolean isConnected() {
-        return this.channel != null && this.channel.isActive();
+    private boolean isClosed() {
+        return closed || eventLoopGroup.isShuttingDown();
+    }
+
+    /**
+     * 选择连接槽,有身份标识时固定映射,否则轮询
+     * 选中的连接已断开(后台重连中)时依次选择后续可用的连接,全部不可用时返回选中的连接
+     **/
+    private ChannelSlot select(long identity) {
+        if (slots.length == 1) {
+            return slots[0];
+        }
+        int index = identity > 0
+                ? (int) (identity % slots.length)
+                : (roundRobin.getAndIncrement() & Integer.MAX_VALUE) % slots.length;
+        ChannelSlot slot = slots[index];
+        if (!isBroken(slot)) {
+            return slot;
+        }
+        for (int i = 1; i < slots.length; i++) {
+            ChannelSlot next = slots[(index + i) % slots.length];
+            if (!isBroken(next)) {
+                return next;
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * 连接已建立完成但不可用,连接建立中的槽不视为断开
+     **/
+    private static boolean isBroken(ChannelSlot slot) {
+        ChannelFuture future = slot.future;
+        return future == null || future.isDone() && (!future.isSuccess() || !future.channel().isActive());
     }
 
     @Override
-    public void send(IMessage message, Invocation invocation) throws InterruptedException {
-        if (!isConnected()) {
-            connect();
+    public void send(IMessage message, Invocation invocation) {
+        ChannelSlot slot = select(invocation.getIdentity());
+        ChannelFuture connectFuture = slot.future;
+        Channel channel = connectFuture.channel();
+
+        // 先注册再发送,避免响应先于注册到达
+        final long sn = invocation.getSn();
+        invocationContext.addInvocation(address, channel, invocation);
+
+        if (!connectFuture.isDone()) {
+            // 连接建立中,连接成功后按提交顺序写入
+            connectFuture.addListener(future -> {
+                if (future.isSuccess()) {
+                    write(channel, message, sn);
+                } else {
+                    message.release();
+                    invocationContext.failInvocation(sn, ServerErrorCode.CANT_CONNECT_REMOTE);
+                }
+            });
+            return;
         }
 
-        channel.writeAndFlush(message);
-        invocationContext.addInvocation(invocation);
+        if (!connectFuture.isSuccess() || !channel.isActive()) {
+            // 连接不可用(后台重连中),直接失败,不阻塞业务线程
+            if (log.isDebugEnabled()) {
+                log.debug("连接[{}:{}]槽[{}]不可用,消息[{}]发送失败", address.getIp(), address.getPort(), slot.index, sn);
+            }
+            message.release();
+            invocationContext.failInvocation(sn, ServerErrorCode.CANT_CONNECT_REMOTE);
+            return;
+        }
+
+        write(channel, message, sn);
+    }
+
+    private void write(Channel channel, IMessage message, long sn) {
+        // flush由FlushConsolidationHandler合并
+        channel.writeAndFlush(message).addListener(future -> {
+            if (!future.isSuccess()) {
+                // 未到达编码器(如Channel已关闭)时释放消息体,重复释放无副作用
+                message.release();
+                log.error("向[{}:{}]发送消息[{}]失败", address.getIp(), address.getPort(), sn, future.cause());
+                invocationContext.failInvocation(sn, ServerErrorCode.CANT_CONNECT_REMOTE);
+            }
+        });
+    }
+
+    /**
+     * 关闭全部连接,不再重连
+     */
+    public void close() {
+        this.closed = true;
+        for (ChannelSlot slot : slots) {
+            ChannelFuture future = slot.future;
+            if (future != null) {
+                future.channel().close();
+            }
+        }
     }
 
     @Override
@@ -142,4 +311,27 @@ public class GenericNettyClient implements NettyClient {
     public Address getAddress() {
         return address;
     }
+
+    /**
+     * 连接槽
+     **/
+    private static final class ChannelSlot {
+
+        /**
+         * 槽序号
+         **/
+        private final int index;
+        /**
+         * 当前连接Future
+         **/
+        private volatile ChannelFuture future;
+        /**
+         * 连续重连次数
+         **/
+        private volatile int retries;
+
+        ChannelSlot(int index) {
+            this.index = index;
+        }
+    }
 }
@@ -20,11 +20,11 @@ public interface NettyClient {
     Address getAddress();
 
     /**
-     * 发送消息
+     * 发送消息,不阻塞调用线程,连接不可用或发送失败时以错误码结束invocation
      *
      * @param message    消息
      * @param invocation invocation
-     * @throws InterruptedException 连接不上对方时抛出
+     * @throws InterruptedException 发送被中断时抛出
      */
     void send(IMessage message, Invocation invocation) throws InterruptedException;
 
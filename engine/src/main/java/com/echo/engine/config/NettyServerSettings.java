@@ -1,5 +1,7 @@
 package com.echo.engine.config;
 
+import com.echo.common.concurrency.IdentityRunnableLoopGroup;
+import com.echo.engine.rpc.core.InvocationContext;
 import com.echo.network.serialize.SerializeType;
 import lombok.Builder;
 import lombok.Getter;
@@ -65,6 +67,21 @@ public class NettyServerSettings {
      **/
     private byte serializeType = SerializeType.PROTOBUF.getType();
 
+    /**
+     * 远程调用超时时间(毫秒)
+     **/
+    private long rpcTimeoutMillis;
+
+    /**
+     * 与每个远程服务建立的连接数
+     **/
+    private int clientConnectionNum;
+
+    /**
+     * 业务线程单个身份标识邮箱最大堆积任务数
+     **/
+    private int businessMailboxCapacity;
+
 
     public int getIOThreadNum() {
         if (threadNum == 0) {
@@ -80,6 +97,27 @@ public class NettyServerSettings {
         return businessThreadNum;
     }
 
+    public long getFinalRpcTimeoutMillis() {
+        if (rpcTimeoutMillis <= 0) {
+            return InvocationContext.DEFAULT_TIMEOUT_MILLIS;
+        }
+        return rpcTimeoutMillis;
+    }
+
+    public int getFinalClientConnectionNum() {
+        if (clientConnectionNum <= 0) {
+            return 4;
+        }
+        return clientConnectionNum;
+    }
+
+    public int getFinalBusinessMailboxCapacity() {
+        if (businessMailboxCapacity <= 0) {
+            return IdentityRunnableLoopGroup.DEFAULT_MAILBOX_CAPACITY;
+        }
+        return businessMailboxCapacity;
+    }
+
     // ------------ ssl ---------------
 
     @Getter
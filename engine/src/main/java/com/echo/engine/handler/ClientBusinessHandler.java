@@ -3,7 +3,6 @@ package com.echo.engine.handler;
 import cn.hutool.core.convert.ConvertException;
 import com.echo.common.concurrency.IdentityRunnableLoopGroup;
 import com.echo.common.exception.SerializeFailException;
-import com.echo.common.util.ReflectionUtils;
 import com.echo.engine.boostrap.NettyServerBootstrap;
 import com.echo.engine.business.LocalMessageContext;
 import com.echo.engine.rpc.core.Invocation;
@@ -11,6 +10,7 @@ import com.echo.engine.rpc.core.InvocationContext;
 import com.echo.engine.rpc.push.PushOperation;
 import com.echo.network.message.InnerMessage;
 import com.echo.network.message.PushResponse;
+import com.echo.network.modules.ServerErrorCode;
 import com.echo.network.protocol.*;
 import com.echo.network.utils.SerializeUtils;
 import io.netty.channel.ChannelHandler;
@@ -21,7 +21,7 @@ import io.netty.handler.timeout.IdleStateEvent;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
-import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * @author li-yuanwen
@@ -57,6 +57,7 @@ public class ClientBusinessHandler extends SimpleChannelInboundHandler<InnerMess
                 log.debug("客户端收到请求信息,忽略");
             }
 
+            msg.release();
             return;
         }
 
@@ -69,31 +70,57 @@ public class ClientBusinessHandler extends SimpleChannelInboundHandler<InnerMess
         Invocation invocation = invocationContext.removeSocketFuture(msg.getSn());
         if (invocation == null) {
             log.warn("客户端收到过期信息,序号[{}],忽略", msg.getSn());
+            msg.release();
             return;
         }
 
         Long parentSn = invocation.getParentSn();
         long identity = invocation.getIdentity();
         if (invocation.isSync()) {
-            invocation.complete(msg);
-        } else {
-            Executor executor = null;
-            if (identity > 0) {
-                executor = this.executor.getExecutor(identity);
-            } else {
-                executor = this.executor.next();
+            try {
+                invocation.complete(msg);
+            } finally {
+                msg.release();
             }
-
-            executor.execute(() -> {
+        } else {
+            Runnable task = () -> {
                 LocalMessageContext.setIdentity(identity);
                 LocalMessageContext.setMessageSn(parentSn);
                 try {
                     invocation.complete(msg);
                 } finally {
+                    msg.release();
                     LocalMessageContext.removeIdentity();
                     LocalMessageContext.removeMessageSn();
                 }
-            });
+            };
+
+            try {
+                // 响应属于已接收请求的后续处理,不受身份标识邮箱上限约束
+                if (identity > 0) {
+                    this.executor.forceExecute(identity, task);
+                } else {
+                    this.executor.next().execute(task);
+                }
+            } catch (RejectedExecutionException e) {
+                // 业务线程拒绝(线程池关闭),调用已从上下文移除,在当前线程以失败结束,避免调用方永远等待
+                log.warn("业务线程拒绝处理远程调用[{}]的响应", msg.getSn());
+                msg.release();
+                failInvocation(invocation, ServerErrorCode.SERVER_BUSY);
+            } catch (RuntimeException e) {
+                // 提交失败,消息不会再被处理
+                msg.release();
+                failInvocation(invocation, ServerErrorCode.UNKNOWN);
+                throw e;
+            }
+        }
+    }
+
+    private void failInvocation(Invocation invocation, int errorCode) {
+        try {
+            invocation.fail(errorCode);
+        } catch (Exception e) {
+            log.error("远程调用[{}]失败回调发生未知异常", invocation.getSn(), e);
         }
     }
 
@@ -125,39 +152,44 @@ public class ClientBusinessHandler extends SimpleChannelInboundHandler<InnerMess
         ProtocolMethodInvocation requestInvocation = protocolContext.getRequestInvocation(message.getProtocol());
         if (requestInvocation == null) {
             // 无处理,即仅是中介,直接推送至外网
-            PushResponse pushResponse = SerializeUtils.deserialize(NettyServerBootstrap.SERIALIZE_TYPE
-                    , message.getBody(), PushResponse.class);
-            pushOperation.pushOuterMessage(pushResponse, message.getProtocol());
+            try {
+                PushResponse pushResponse = SerializeUtils.deserialize(NettyServerBootstrap.SERIALIZE_TYPE
+                        , message, PushResponse.class);
+                pushOperation.pushOuterMessage(pushResponse, message.getProtocol());
+            } finally {
+                message.release();
+            }
             return;
         }
-        executor.next().execute(() -> {
+        Runnable task = () -> {
             try {
                 // 推送中介逻辑处理
                 PushResponse pushResponse = SerializeUtils.deserialize(NettyServerBootstrap.SERIALIZE_TYPE
-                        , message.getBody(), PushResponse.class);
-                ProtocolMethod protocolMethod = requestInvocation.getProtocolMethod();
-                MethodParameter[] params = protocolMethod.getParams();
-                Object[] args = new Object[params.length];
-                for (int i = 0; i < params.length; i++) {
-                    if (params[i] instanceof PushIdsMethodParameter) {
-                        args[i] = pushResponse.getTargets();
-                        continue;
-                    }
-
-                    if (params[i] instanceof InBodyMethodParameter) {
-                        args[i] = SerializeUtils.deserialize(NettyServerBootstrap.SERIALIZE_TYPE
-                                , pushResponse.getContent(), params[i].getParameterClass());
-                    }
-                }
-
-                ReflectionUtils.invokeMethod(protocolMethod.getMethod(), requestInvocation.getTarget(), args);
+                        , message, PushResponse.class);
+                Object body = requestInvocation.getBodyClass() == null ? null
+                        : SerializeUtils.deserialize(NettyServerBootstrap.SERIALIZE_TYPE
+                        , pushResponse.getContent(), requestInvocation.getBodyClass());
+                requestInvocation.invokeMethod(null, 0, body, pushResponse.getTargets());
             } catch (SerializeFailException e) {
                 log.error("发生序列化/反序列化异常", e);
             } catch (ConvertException e) {
                 log.error("发生类型转换异常", e);
             } catch (Exception e) {
                 log.error("发生未知异常", e);
+            } finally {
+                message.release();
             }
-        });
+        };
+        try {
+            executor.next().execute(task);
+        } catch (RejectedExecutionException e) {
+            // 业务线程拒绝(线程池关闭),推送消息不会再被处理
+            log.warn("业务线程拒绝处理推送协议号[{},{}]", message.getProtocol().getModule()
+                    , message.getProtocol().getMethodId());
+            message.release();
+        } catch (RuntimeException e) {
+            message.release();
+            throw e;
+        }
     }
 }
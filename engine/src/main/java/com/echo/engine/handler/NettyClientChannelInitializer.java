@@ -8,6 +8,7 @@ import com.echo.network.handler.MessageEncoder;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.SslHandler;
@@ -64,6 +65,10 @@ public class NettyClientChannelInitializer extends ChannelInitializer<SocketChan
                     , new SslHandler(sslEngine));
         }
 
+        // 合并业务线程频繁的flush,减少系统调用
+        pipeline.addFirst(FlushConsolidationHandler.class.getSimpleName()
+                , new FlushConsolidationHandler(FlushConsolidationHandler.DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES, true));
+
         // 编解码器
         pipeline.addLast(MessageEncoder.class.getSimpleName(), this.messageEncoder);
         pipeline.addLast(MessageDecoder.class.getSimpleName(), NettyServerBootstrap.messageDecoder());
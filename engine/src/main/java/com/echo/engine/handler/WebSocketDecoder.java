@@ -26,10 +26,10 @@ public class WebSocketDecoder extends MessageToMessageDecoder<WebSocketFrame> {
         ByteBuf buf = msg.content();
         short protocolHeaderIdentity = ProtocolConstant.getProtocolHeaderIdentity(buf);
         if (protocolHeaderIdentity == ProtocolConstant.PROTOCOL_INNER_HEADER_IDENTITY) {
-            InnerMessage innerMessage = InnerMessage.readIn(buf);
+            InnerMessage innerMessage = InnerMessage.readIn(buf, true);
             ctx.fireChannelRead(innerMessage);
         } else if (protocolHeaderIdentity == ProtocolConstant.PROTOCOL_OUTER_HEADER_IDENTITY) {
-            OuterMessage outerMessage = OuterMessage.readIn(buf);
+            OuterMessage outerMessage = OuterMessage.readIn(buf, true);
             ctx.fireChannelRead(outerMessage);
         } else {
             log.warn("收到协议头[{}],暂不支持该协议", protocolHeaderIdentity);
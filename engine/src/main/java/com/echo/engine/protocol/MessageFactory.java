@@ -6,6 +6,7 @@ import com.echo.common.util.StringUtils;
 import com.echo.engine.config.NettyServerSettings;
 import com.echo.network.message.*;
 import com.echo.network.session.PlayerSession;
+import io.netty.buffer.ByteBuf;
 
 /**
  * 消息工厂
@@ -69,22 +70,53 @@ public class MessageFactory {
         return OuterMessage.of(header, body);
     }
 
+    /**
+     * 外部请求转换为内部消息(网关转发)
+     * 外部消息以零拷贝解码时,内部消息直接引用外部消息体的ByteBuf(retainedDuplicate),不拷贝为数组;
+     * 内部消息编码写出后释放该引用,写出前外部消息所在的解码累积缓冲区无法回收
+     *
+     * @param playerSession 玩家连接
+     * @param sn            内部消息序号
+     * @param outerMessage  外部消息
+     * @return 内部消息
+     */
     public InnerMessage convertToRequestInnerMessage(PlayerSession playerSession, long sn, OuterMessage outerMessage) {
-        return toInnerMessage(sn
-                , outerMessage.getMessageType()
-                , outerMessage.getProtocol()
-                , outerMessage.getBody()
-                , playerSession.getIdentity()
-                , playerSession.getIp());
+        ByteBuf bodyBuf = outerMessage.getBodyBuf();
+        if (bodyBuf == null || bodyBuf.readableBytes() > settings.getBodyZipLength()) {
+            // 需要压缩的消息体仍按数组处理
+            return toInnerMessage(sn
+                    , outerMessage.getMessageType()
+                    , outerMessage.getProtocol()
+                    , outerMessage.getBody()
+                    , playerSession.getIdentity()
+                    , playerSession.getIp());
+        }
+        String ip = playerSession.getIp();
+        byte[] ipBytes = StringUtils.hasLength(ip) ? ip.getBytes() : null;
+        InnerMessageHeader header = InnerMessageHeader.of(outerMessage.getMessageType(), outerMessage.getProtocol()
+                , false, sn, playerSession.getIdentity(), ipBytes);
+        return InnerMessage.ofBodyBuf(header, bodyBuf.retainedDuplicate());
     }
 
 
+    /**
+     * 内部响应转换为外部消息(网关转发响应),零拷贝规则同{@link #convertToRequestInnerMessage}
+     *
+     * @param sn           外部消息序号
+     * @param innerMessage 内部消息
+     * @return 外部消息
+     */
     public OuterMessage convertToResponseOuterMessage(long sn, InnerMessage innerMessage) {
-        return toOuterMessage(sn
-                , innerMessage.getMessageType()
-                , innerMessage.getProtocol()
-                , innerMessage.getBody());
-
+        ByteBuf bodyBuf = innerMessage.getBodyBuf();
+        if (bodyBuf == null || bodyBuf.readableBytes() > settings.getBodyZipLength()) {
+            return toOuterMessage(sn
+                    , innerMessage.getMessageType()
+                    , innerMessage.getProtocol()
+                    , innerMessage.getBody());
+        }
+        OuterMessageHeader header = OuterMessageHeader.of(sn, innerMessage.getMessageType(), innerMessage.getProtocol()
+                , false);
+        return OuterMessage.ofBodyBuf(header, bodyBuf.retainedDuplicate());
     }
 
 }
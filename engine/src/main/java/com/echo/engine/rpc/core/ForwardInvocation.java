@@ -1,9 +1,15 @@
 package com.echo.engine.rpc.core;
 
+import com.echo.engine.boostrap.NettyServerBootstrap;
 import com.echo.engine.protocol.MessageFactory;
 import com.echo.network.message.InnerMessage;
 import com.echo.network.message.OuterMessage;
+import com.echo.network.message.ProtocolConstant;
+import com.echo.network.message.SocketProtocol;
+import com.echo.network.modules.ErrorCode;
+import com.echo.network.modules.ErrorCodeModule;
 import com.echo.network.session.ISession;
+import com.echo.network.utils.SerializeUtils;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -23,11 +29,17 @@ public class ForwardInvocation extends Invocation {
      * 消息工厂
      **/
     private final MessageFactory messageFactory;
+    /**
+     * 转发的请求协议
+     **/
+    private final SocketProtocol protocol;
 
-    public ForwardInvocation(long sn, Long parentSn, long identity, ISession session, MessageFactory messageFactory) {
+    public ForwardInvocation(long sn, Long parentSn, long identity, ISession session, MessageFactory messageFactory
+            , SocketProtocol protocol) {
         super(sn, parentSn, identity, false);
         this.session = session;
         this.messageFactory = messageFactory;
+        this.protocol = protocol;
     }
 
     @Override
@@ -40,4 +52,20 @@ public class ForwardInvocation extends Invocation {
 
         session.writeAndFlush(outerMessage);
     }
+
+    @Override
+    public void fail(int errorCode) {
+        if (log.isDebugEnabled()) {
+            log.debug("转发消息[{}]失败,错误码[{}],通知[{}]", getSn(), errorCode, session.getIp());
+        }
+
+        byte[] body = SerializeUtils.serialize(NettyServerBootstrap.SERIALIZE_TYPE
+                , new ErrorCode(getParentSn(), protocol, errorCode));
+        OuterMessage outerMessage = messageFactory.toOuterMessage(getParentSn()
+                , ProtocolConstant.transformResponse(ProtocolConstant.BUSINESS_REQ)
+                , ErrorCodeModule.ERROR_CODE_RESPONSE
+                , body);
+
+        session.writeAndFlush(outerMessage);
+    }
 }
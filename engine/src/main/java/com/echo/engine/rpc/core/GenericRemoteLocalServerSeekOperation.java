@@ -90,7 +90,8 @@ public class GenericRemoteLocalServerSeekOperation implements RemoteServerSeekOp
 
     private GenericNettyClient newGenericNettyClient(Address address) {
         return new GenericNettyClient(address, bootstrap.getClientEventLoopGroup(), initializer
-                , bootstrap.getInvocationContext(), bootstrap.getProtocolContext(), bootstrap.getMessageFactory());
+                , bootstrap.getInvocationContext(), bootstrap.getProtocolContext(), bootstrap.getMessageFactory()
+                , bootstrap.getSettings().getFinalClientConnectionNum());
     }
 
     // -----------------------------------------------------------------------------------------------------------------
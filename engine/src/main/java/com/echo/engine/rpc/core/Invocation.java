@@ -1,7 +1,10 @@
 package com.echo.engine.rpc.core;
 
 
+import com.echo.engine.client.Address;
 import com.echo.network.message.InnerMessage;
+import io.netty.channel.Channel;
+import io.netty.util.Timeout;
 
 /**
  * 远程调用Invocation
@@ -27,6 +30,18 @@ public abstract class Invocation {
      * 是否是同步调用
      **/
     private final boolean sync;
+    /**
+     * 调用所在的远程连接地址
+     **/
+    private volatile Address address;
+    /**
+     * 调用所在的连接Channel
+     **/
+    private volatile Channel channel;
+    /**
+     * 超时任务
+     **/
+    private volatile Timeout timeout;
 
     public Invocation(long sn, Long outerSn, long identity, boolean sync) {
         this.sn = sn;
@@ -51,10 +66,47 @@ public abstract class Invocation {
         return sync;
     }
 
+    public Address getAddress() {
+        return address;
+    }
+
+    void setAddress(Address address) {
+        this.address = address;
+    }
+
+    public Channel getChannel() {
+        return channel;
+    }
+
+    void setChannel(Channel channel) {
+        this.channel = channel;
+    }
+
+    void setTimeout(Timeout timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * 取消超时任务
+     */
+    void cancelTimeout() {
+        Timeout timeout = this.timeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
     /**
      * 同步消息结果
      *
      * @param message 消息
      */
     public abstract void complete(InnerMessage message);
+
+    /**
+     * 调用失败(超时,连接断开等)
+     *
+     * @param errorCode 错误码
+     */
+    public abstract void fail(int errorCode);
 }
@@ -1,17 +1,39 @@
 package com.echo.engine.rpc.core;
 
 
+import com.echo.common.concurrency.IdentityRunnableLoopGroup;
+import com.echo.engine.business.LocalMessageContext;
+import com.echo.engine.client.Address;
+import com.echo.network.modules.ServerErrorCode;
+import io.netty.channel.Channel;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 远程调用消息容器
+ * 每个Invocation注册时在时间轮上挂载超时任务,超时/连接断开时以对应错误码结束调用,保证容器不会无限增长
  *
  * @author li-yuanwen
  * @date 2021/12/10
  */
+@Slf4j
 public class InvocationContext {
 
+    /**
+     * 默认超时时间(毫秒)
+     **/
+    public static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
     /**
      * 消息序号生成器
      **/
@@ -21,6 +43,43 @@ public class InvocationContext {
      * 消息序号回复Session
      **/
     private final ConcurrentHashMap<Long, Invocation> invocationHolder = new ConcurrentHashMap<>();
+    /**
+     * 各连接地址未完成的调用序号
+     **/
+    private final ConcurrentHashMap<Address, Set<Long>> pendingInvocations = new ConcurrentHashMap<>();
+
+    /**
+     * 超时时间轮
+     **/
+    private final Timer timer;
+    /**
+     * 调用超时时间(毫秒)
+     **/
+    private final long timeoutMillis;
+
+    /**
+     * 异步调用失败回调执行线程池
+     **/
+    private volatile IdentityRunnableLoopGroup executor;
+
+    public InvocationContext() {
+        this(DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    public InvocationContext(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.timer = new HashedWheelTimer(new DefaultThreadFactory("Rpc-Timeout-Timer", true)
+                , 10, TimeUnit.MILLISECONDS, 512);
+    }
+
+    /**
+     * 设置异步调用失败回调执行线程池,未设置时在超时线程内直接回调
+     *
+     * @param executor 业务线程池
+     */
+    public void setExecutor(IdentityRunnableLoopGroup executor) {
+        this.executor = executor;
+    }
 
     /**
      * 获取下一个消息序号
@@ -32,10 +91,39 @@ public class InvocationContext {
     /**
      * 添加远程调用消息Invocation
      *
+     * @param address    远程连接地址
+     * @param invocation 远程调用消息Invocation
+     */
+    public void addInvocation(Address address, Invocation invocation) {
+        addInvocation(address, null, invocation, timeoutMillis);
+    }
+
+    /**
+     * 添加远程调用消息Invocation
+     *
+     * @param address    远程连接地址
+     * @param channel    发送调用的连接Channel
      * @param invocation 远程调用消息Invocation
      */
-    public void addInvocation(Invocation invocation) {
-        this.invocationHolder.put(invocation.getSn(), invocation);
+    public void addInvocation(Address address, Channel channel, Invocation invocation) {
+        addInvocation(address, channel, invocation, timeoutMillis);
+    }
+
+    /**
+     * 添加远程调用消息Invocation
+     *
+     * @param address       远程连接地址
+     * @param channel       发送调用的连接Channel(可为null)
+     * @param invocation    远程调用消息Invocation
+     * @param timeoutMillis 超时时间(毫秒)
+     */
+    public void addInvocation(Address address, Channel channel, Invocation invocation, long timeoutMillis) {
+        final long sn = invocation.getSn();
+        invocation.setAddress(address);
+        invocation.setChannel(channel);
+        this.pendingInvocations.computeIfAbsent(address, k -> ConcurrentHashMap.newKeySet()).add(sn);
+        this.invocationHolder.put(sn, invocation);
+        invocation.setTimeout(timer.newTimeout(t -> expire(sn), timeoutMillis, TimeUnit.MILLISECONDS));
     }
 
     /**
@@ -45,7 +133,156 @@ public class InvocationContext {
      * @return 远程调用消息Future or null
      */
     public Invocation removeSocketFuture(long sn) {
-        return this.invocationHolder.remove(sn);
+        Invocation invocation = this.invocationHolder.remove(sn);
+        if (invocation == null) {
+            return null;
+        }
+        invocation.cancelTimeout();
+        Address address = invocation.getAddress();
+        if (address != null) {
+            Set<Long> pending = this.pendingInvocations.get(address);
+            if (pending != null) {
+                pending.remove(sn);
+            }
+        }
+        return invocation;
+    }
+
+    /**
+     * 以错误码结束指定调用
+     *
+     * @param sn        调用序号
+     * @param errorCode 错误码
+     * @return true 调用仍未完成并已结束
+     */
+    public boolean failInvocation(long sn, int errorCode) {
+        Invocation invocation = removeSocketFuture(sn);
+        if (invocation == null) {
+            return false;
+        }
+        fail(invocation, errorCode);
+        return true;
+    }
+
+    /**
+     * 以错误码结束某个连接地址的全部未完成调用(连接断开时)
+     *
+     * @param address   远程连接地址
+     * @param errorCode 错误码
+     * @return 结束的调用数量
+     */
+    public int failInvocations(Address address, int errorCode) {
+        return failInvocations(address, null, errorCode);
+    }
+
+    /**
+     * 以错误码结束某个连接地址下指定Channel的全部未完成调用(连接断开时)
+     *
+     * @param address   远程连接地址
+     * @param channel   断开的Channel,为null时结束该地址的全部调用
+     * @param errorCode 错误码
+     * @return 结束的调用数量
+     */
+    public int failInvocations(Address address, Channel channel, int errorCode) {
+        Set<Long> pending = this.pendingInvocations.get(address);
+        if (pending == null || pending.isEmpty()) {
+            return 0;
+        }
+        List<Long> sns = new ArrayList<>(pending);
+        int count = 0;
+        for (long sn : sns) {
+            if (channel != null) {
+                Invocation invocation = this.invocationHolder.get(sn);
+                if (invocation == null || invocation.getChannel() != channel) {
+                    continue;
+                }
+            }
+            if (failInvocation(sn, errorCode)) {
+                count++;
+            }
+        }
+        if (count > 0) {
+            log.warn("远程连接[{}:{}]断开,结束[{}]个未完成调用", address.getIp(), address.getPort(), count);
+        }
+        return count;
+    }
+
+    /**
+     * 查询连接地址未完成的调用数量
+     *
+     * @param address 远程连接地址
+     * @return 未完成调用数量
+     */
+    public int getPendingCount(Address address) {
+        Set<Long> pending = this.pendingInvocations.get(address);
+        return pending == null ? 0 : pending.size();
+    }
+
+    /**
+     * 查询全部未完成的调用数量
+     *
+     * @return 未完成调用数量
+     */
+    public int getPendingCount() {
+        return this.invocationHolder.size();
+    }
+
+    /**
+     * 关闭超时时间轮,并以超时结束全部未完成调用
+     */
+    public void shutdown() {
+        timer.stop();
+        for (Long sn : Collections.list(this.invocationHolder.keys())) {
+            failInvocation(sn, ServerErrorCode.TIME_OUT);
+        }
+    }
+
+    private void expire(long sn) {
+        Invocation invocation = removeSocketFuture(sn);
+        if (invocation == null) {
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("远程调用[{}]超时,连接[{}]", sn, invocation.getAddress());
+        }
+        fail(invocation, ServerErrorCode.TIME_OUT);
+    }
+
+    private void fail(Invocation invocation, int errorCode) {
+        IdentityRunnableLoopGroup executor = this.executor;
+        if (invocation.isSync() || executor == null) {
+            failSafely(invocation, errorCode);
+            return;
+        }
+
+        // 异步调用与正常响应一致,在业务线程中回调
+        final long identity = invocation.getIdentity();
+        final Long parentSn = invocation.getParentSn();
+        Runnable task = () -> {
+            LocalMessageContext.setIdentity(identity);
+            if (parentSn != null) {
+                LocalMessageContext.setMessageSn(parentSn);
+            }
+            try {
+                failSafely(invocation, errorCode);
+            } finally {
+                LocalMessageContext.removeIdentity();
+                LocalMessageContext.removeMessageSn();
+            }
+        };
+        if (identity > 0) {
+            executor.forceExecute(identity, task);
+        } else {
+            executor.next().execute(task);
+        }
+    }
+
+    private void failSafely(Invocation invocation, int errorCode) {
+        try {
+            invocation.fail(errorCode);
+        } catch (Exception e) {
+            log.error("远程调用[{}]失败回调发生未知异常", invocation.getSn(), e);
+        }
     }
 
 }
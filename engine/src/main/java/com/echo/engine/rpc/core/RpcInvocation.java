@@ -1,6 +1,5 @@
 package com.echo.engine.rpc.core;
 
-import cn.hutool.core.util.ArrayUtil;
 import com.echo.engine.boostrap.NettyServerBootstrap;
 import com.echo.network.exception.SocketException;
 import com.echo.network.message.InnerMessage;
@@ -43,18 +42,23 @@ public class RpcInvocation extends Invocation {
         // 如果是返回错误码
         if (protocol.getModule() == ErrorCodeModule.MODULE) {
             // 解析错误码消息
-            ErrorCode errorCode = SerializeUtils.deserialize(NettyServerBootstrap.SERIALIZE_TYPE, message.getBody(), ErrorCode.class);
+            ErrorCode errorCode = SerializeUtils.deserialize(NettyServerBootstrap.SERIALIZE_TYPE, message, ErrorCode.class);
             future.completeExceptionally(new SocketException(errorCode.getCode(), "请求远程服务异常"));
             return;
         }
         ProtocolMethod protocolMethod = protocolContext.getProtocol(protocol);
         Object result = null;
-        if (ArrayUtil.isNotEmpty(message.getBody())) {
-            result = SerializeUtils.deserialize(NettyServerBootstrap.SERIALIZE_TYPE, message.getBody(), protocolMethod.getReturnClz());
+        if (message.getBodyLength() > 0) {
+            result = SerializeUtils.deserialize(NettyServerBootstrap.SERIALIZE_TYPE, message, protocolMethod.getReturnClz());
         }
         future.complete(result);
     }
 
+    @Override
+    public void fail(int errorCode) {
+        future.completeExceptionally(new SocketException(errorCode, "请求远程服务失败"));
+    }
+
     public CompletableFuture<Object> getFuture() {
         return future;
     }
@@ -1,13 +1,23 @@
 package com.echo.engine.rpc.push;
 
 import com.echo.engine.boostrap.NettyServerBootstrap;
+import com.echo.engine.handler.WebSocketEncoder;
 import com.echo.engine.protocol.MessageFactory;
+import com.echo.network.handler.MessageEncoder;
 import com.echo.network.message.*;
 import com.echo.network.session.ISession;
 import com.echo.network.session.SessionContext;
 import com.echo.network.utils.SerializeUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * 推送服务
  *
@@ -34,25 +44,102 @@ public class PushOperation {
     }
 
     public void pushOuterMessage(PushResponse pushResponse, SocketProtocol protocol) {
-        byte[] content = pushResponse.getContent();
+        Collection<Long> targets = pushResponse.getTargets();
+        if (targets == null || targets.isEmpty()) {
+            return;
+        }
 
-        for (long identity : pushResponse.getTargets()) {
+        // 按Channel所属EventLoop分组,同一EventLoop的Channel在一个任务内写入并flush
+        Map<EventLoop, List<Channel>> loop2Channels = new HashMap<>();
+        ISession single = null;
+        int count = 0;
+        for (long identity : targets) {
             ISession session = sessionContext.getIdentitySession(identity);
             if (session == null) {
                 continue;
             }
+            Channel channel = session.getChannel();
+            if (channel == null || !channel.isActive()) {
+                continue;
+            }
+            single = session;
+            count++;
+            loop2Channels.computeIfAbsent(channel.eventLoop(), k -> new ArrayList<>()).add(channel);
+        }
 
-            OuterMessage outerMessage = messageFactory.toOuterMessage(0L
-                    , ProtocolConstant.BUSINESS_REQ
-                    , protocol
-                    , content);
+        if (count == 0) {
+            return;
+        }
 
-            if (log.isDebugEnabled()) {
-                log.debug("推送消息至外网[{},{}]", outerMessage.getSn(), outerMessage.getProtocol());
+        // 消息只构建一次,超出压缩长度时只压缩一次
+        OuterMessage outerMessage = messageFactory.toOuterMessage(0L
+                , ProtocolConstant.BUSINESS_REQ
+                , protocol
+                , pushResponse.getContent());
+
+        if (log.isDebugEnabled()) {
+            log.debug("推送消息至外网[{},{}],目标数量[{}]", outerMessage.getSn(), outerMessage.getProtocol(), count);
+        }
+
+        if (count == 1) {
+            single.writeAndFlush(outerMessage);
+            return;
+        }
+
+        broadcast(outerMessage, loop2Channels);
+    }
+
+    /**
+     * 广播消息,消息只编码一次至共享ByteBuf,各Channel写入其retainedDuplicate()
+     * 共享ByteBuf的内容在编码后不再修改,duplicate仅拥有独立的读写索引
+     *
+     * @param message       消息
+     * @param loop2Channels EventLoop分组的目标Channel
+     */
+    private void broadcast(IMessage message, Map<EventLoop, List<Channel>> loop2Channels) {
+        ByteBuf frame = PooledByteBufAllocator.DEFAULT.ioBuffer();
+        try {
+            if (!MessageEncoder.encodeFrame(message, frame)) {
+                return;
+            }
+            for (Map.Entry<EventLoop, List<Channel>> entry : loop2Channels.entrySet()) {
+                EventLoop eventLoop = entry.getKey();
+                List<Channel> channels = entry.getValue();
+                // 任务持有一份引用,执行完毕后释放
+                ByteBuf shared = frame.retainedDuplicate();
+                Runnable task = () -> {
+                    try {
+                        for (Channel channel : channels) {
+                            channel.writeAndFlush(wrapFrame(channel, shared.retainedDuplicate()), channel.voidPromise());
+                        }
+                    } finally {
+                        shared.release();
+                    }
+                };
+                if (eventLoop.inEventLoop()) {
+                    task.run();
+                } else {
+                    try {
+                        eventLoop.execute(task);
+                    } catch (RejectedExecutionException e) {
+                        shared.release();
+                        log.warn("推送消息至EventLoop被拒绝,忽略[{}]个目标", channels.size());
+                    }
+                }
             }
+        } finally {
+            frame.release();
+        }
+    }
 
-            session.writeAndFlush(outerMessage);
+    /**
+     * WebSocket连接需封装成二进制帧,自定义协议连接直接写入ByteBuf(MessageEncoder不处理ByteBuf,直接透传)
+     **/
+    private Object wrapFrame(Channel channel, ByteBuf frame) {
+        if (channel.pipeline().get(WebSocketEncoder.class) != null) {
+            return new BinaryWebSocketFrame(frame);
         }
+        return frame;
     }
 
     public void pushInnerMessage(ISession session, PushResponse pushResponse, SocketProtocol protocol) {
@@ -36,6 +36,8 @@ public class HeartBeatHandler extends ChannelInboundHandlerAdapter {
             ctx.channel().attr(ChannelAttributeKeys.LAST_PROTOCOL_HEADER_IDENTITY).set(message.getProtocolHeaderIdentity());
 
             if (message.isHeartBeatRequest()) {
+                // 心跳包在此消费,释放消息体
+                message.release();
                 if (message.isInnerMessage()) {
                     // 发生心跳响应包
                     ctx.channel().writeAndFlush(InnerMessage.HEART_BEAT_RES);
@@ -55,6 +57,7 @@ public class HeartBeatHandler extends ChannelInboundHandlerAdapter {
                 return;
             }
             if (message.isHeartBeatResponse()) {
+                message.release();
                 if (log.isDebugEnabled()) {
                     log.debug("收到心跳响应包,忽略");
                 }
@@ -16,11 +16,24 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class MessageDecoder extends LengthFieldBasedFrameDecoder {
 
+    /**
+     * 消息体是否以ByteBuf切片形式保留(零拷贝),开启后消息处理方需负责调用IMessage#release()
+     **/
+    private final boolean retainBody;
+
     /**
      * 最大包长度,长度字段位移字节数,长度字段所占字节数
      **/
     public MessageDecoder(int maxFrameLength, int lengthFieldOffset, int lengthFieldLength) {
+        this(maxFrameLength, lengthFieldOffset, lengthFieldLength, false);
+    }
+
+    /**
+     * 最大包长度,长度字段位移字节数,长度字段所占字节数,消息体是否零拷贝
+     **/
+    public MessageDecoder(int maxFrameLength, int lengthFieldOffset, int lengthFieldLength, boolean retainBody) {
         super(maxFrameLength, lengthFieldOffset, lengthFieldLength);
+        this.retainBody = retainBody;
     }
 
     @Override
@@ -35,11 +48,11 @@ public class MessageDecoder extends LengthFieldBasedFrameDecoder {
 
         short protocolHeaderIdentity = ProtocolConstant.getProtocolHeaderIdentity(buf);
         if (protocolHeaderIdentity == ProtocolConstant.PROTOCOL_INNER_HEADER_IDENTITY) {
-            return InnerMessage.readIn(buf);
+            return InnerMessage.readIn(buf, retainBody);
         }
 
         if (protocolHeaderIdentity == ProtocolConstant.PROTOCOL_OUTER_HEADER_IDENTITY) {
-            return OuterMessage.readIn(buf);
+            return OuterMessage.readIn(buf, retainBody);
         }
 
         log.warn("收到协议头[{}],暂不支持该协议", protocolHeaderIdentity);
@@ -51,7 +64,7 @@ public class MessageDecoder extends LengthFieldBasedFrameDecoder {
 
     @Override
     protected ByteBuf extractFrame(ChannelHandlerContext ctx, ByteBuf buffer, int index, int length) {
-        // 重写,不增加ByteBuf引用
+        // 重写,不增加ByteBuf引用,零拷贝模式下消息体通过readRetainedSlice单独持有引用
         return buffer.slice(index, length);
     }
 }
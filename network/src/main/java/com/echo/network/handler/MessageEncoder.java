@@ -16,48 +16,55 @@ import lombok.extern.slf4j.Slf4j;
 @ChannelHandler.Sharable
 public class MessageEncoder extends MessageToByteEncoder<IMessage> {
 
-    @Override
-    public void encode(ChannelHandlerContext ctx, IMessage msg, ByteBuf out) throws Exception {
+    /**
+     * 将消息编码成完整的帧写入ByteBuf,用于脱离Channel预先编码(如广播只编码一次)
+     *
+     * @param msg 消息
+     * @param out 写入的ByteBuf(需为空)
+     * @return true 编码成功 false 非传输消息类型
+     */
+    public static boolean encodeFrame(IMessage msg, ByteBuf out) {
         short protocolHeaderIdentity = msg.getProtocolHeaderIdentity();
         if (protocolHeaderIdentity == ProtocolConstant.PROTOCOL_OUTER_HEADER_IDENTITY) {
             ((OuterMessage) msg).writeTo(out);
-            // ByteBuf 长度字段是排在协议头字段之后,即index为2,长度字节为int 即除去长度字段+协议头字段 剩余的就是长度
-            int length = out.readableBytes() - 6;
-            out.setInt(2, length);
-
-            if (log.isDebugEnabled()) {
-                SocketProtocol protocol = msg.getProtocol();
-                log.debug("向连接[{}]发送外部消息,消息类型[{}],消息长度[{}],消息命令[{}-{}]"
-                        , ctx.channel().remoteAddress()
-                        , msg.getMessageType()
-                        , length
-                        , protocol == null ? 0 : protocol.getModule()
-                        , protocol == null ? 0 : protocol.getMethodId());
-            }
-
-            return;
+        } else if (protocolHeaderIdentity == ProtocolConstant.PROTOCOL_INNER_HEADER_IDENTITY) {
+            ((InnerMessage) msg).writeTo(out);
+        } else {
+            return false;
         }
+        // ByteBuf 长度字段是排在协议头字段之后,即index为2,长度字节为int 即除去长度字段+协议头字段 剩余的就是长度
+        out.setInt(2, out.readableBytes() - 6);
+        return true;
+    }
 
-        if (protocolHeaderIdentity == ProtocolConstant.PROTOCOL_INNER_HEADER_IDENTITY) {
-            ((InnerMessage) msg).writeTo(out);
-            // ByteBuf 长度字段是排在协议头字段之后,即index为2,长度字节为int 即除去长度字段+协议头字段 剩余的就是长度
-            int length = out.readableBytes() - 6;
-            out.setInt(2, length);
+    @Override
+    public void encode(ChannelHandlerContext ctx, IMessage msg, ByteBuf out) throws Exception {
+        try {
+            encode0(ctx, msg, out);
+        } finally {
+            // 写出的消息由编码器释放其持有的消息体ByteBuf(零拷贝转发的消息)
+            msg.release();
+        }
+    }
 
+    private void encode0(ChannelHandlerContext ctx, IMessage msg, ByteBuf out) {
+        if (!encodeFrame(msg, out)) {
             if (log.isDebugEnabled()) {
-                SocketProtocol protocol = msg.getProtocol();
-                log.debug("向连接[{}]发送内部消息,消息类型[{}],消息长度[{}],消息命令[{}-{}]"
-                        , ctx.channel().remoteAddress()
-                        , msg.getMessageType()
-                        , length
-                        , protocol == null ? 0 : protocol.getModule()
-                        , protocol == null ? 0 : protocol.getMethodId());
+                log.debug("编码非传输消息类型[{}],协议头[{}],忽略", msg.getClass().getSimpleName()
+                        , msg.getProtocolHeaderIdentity());
             }
             return;
         }
 
         if (log.isDebugEnabled()) {
-            log.debug("编码非传输消息类型[{}],协议头[{}],忽略", msg.getClass().getSimpleName(), protocolHeaderIdentity);
+            SocketProtocol protocol = msg.getProtocol();
+            log.debug("向连接[{}]发送{}消息,消息类型[{}],消息长度[{}],消息命令[{}-{}]"
+                    , ctx.channel().remoteAddress()
+                    , msg.isOuterMessage() ? "外部" : "内部"
+                    , msg.getMessageType()
+                    , out.readableBytes() - 6
+                    , protocol == null ? 0 : protocol.getModule()
+                    , protocol == null ? 0 : protocol.getMethodId());
         }
     }
 }
@@ -1,5 +1,7 @@
 package com.echo.network.message;
 
+import io.netty.buffer.ByteBuf;
+
 /**
  * @author li-yuanwen
  * 自定义协议消息接口
@@ -29,11 +31,34 @@ public interface IMessage {
 
     /**
      * 获取消息体
+     * 零拷贝消息首次调用时会从ByteBuf中拷贝出数组,热路径应优先使用{@link #getBodyBuf()}
      *
      * @return 消息体二进制数组
      */
     byte[] getBody();
 
+    /**
+     * 获取零拷贝模式下解码时保留的消息体ByteBuf切片
+     * 切片与解码时的累积缓冲区共享内存,切片释放前整块累积缓冲区(可能包含同批读取的其他消息)都无法回收,
+     * 因此消息体不应被长期持有(如放入缓存),需要长期持有时应使用{@link #getBody()}拷贝
+     *
+     * @return 消息体ByteBuf or null(非零拷贝消息)
+     */
+    ByteBuf getBodyBuf();
+
+    /**
+     * 获取消息体字节长度
+     *
+     * @return 消息体字节长度
+     */
+    int getBodyLength();
+
+    /**
+     * 释放零拷贝消息体持有的ByteBuf,消息处理完毕后必须调用,重复调用无副作用
+     * 非零拷贝消息调用无效果;写出至Channel的消息由编码器在编码后释放
+     */
+    void release();
+
     /**
      * 获取消息序号
      *
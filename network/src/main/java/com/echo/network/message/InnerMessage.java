@@ -3,6 +3,9 @@ package com.echo.network.message;
 import cn.hutool.core.util.ArrayUtil;
 import cn.hutool.core.util.ZipUtil;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.ReferenceCountUtil;
 
 /**
  * @author li-yuanwen
@@ -29,6 +32,10 @@ public class InnerMessage implements IMessage {
      * 消息体
      **/
     private byte[] body;
+    /**
+     * 零拷贝模式下的消息体(解码时保留的ByteBuf切片)
+     **/
+    private ByteBuf bodyBuf;
 
     @Override
     public short getProtocolHeaderIdentity() {
@@ -47,9 +54,35 @@ public class InnerMessage implements IMessage {
 
     @Override
     public byte[] getBody() {
+        if (body == null && bodyBuf != null) {
+            body = ByteBufUtil.getBytes(bodyBuf);
+        }
         return body;
     }
 
+    @Override
+    public ByteBuf getBodyBuf() {
+        return bodyBuf;
+    }
+
+    @Override
+    public int getBodyLength() {
+        if (bodyBuf != null) {
+            return bodyBuf.readableBytes();
+        }
+        return body == null ? 0 : body.length;
+    }
+
+    @Override
+    public void release() {
+        ByteBuf buf = this.bodyBuf;
+        if (buf == null) {
+            return;
+        }
+        this.bodyBuf = null;
+        ReferenceCountUtil.release(buf);
+    }
+
     @Override
     public long getSn() {
         return header.getSn();
@@ -65,6 +98,12 @@ public class InnerMessage implements IMessage {
     public void writeTo(ByteBuf out) {
         header.writeTo(out);
 
+        if (bodyBuf != null) {
+            out.writeShort(bodyBuf.readableBytes());
+            out.writeBytes(bodyBuf, bodyBuf.readerIndex(), bodyBuf.readableBytes());
+            return;
+        }
+
         // 消息体有数据才写入
         if (ArrayUtil.isEmpty(body)) {
             return;
@@ -75,22 +114,51 @@ public class InnerMessage implements IMessage {
     }
 
     /**
-     * 从ByteBuf中读取
+     * 从ByteBuf中读取,消息体拷贝至数组
      **/
     public static InnerMessage readIn(ByteBuf in) {
+        return readIn(in, false);
+    }
+
+    /**
+     * 从ByteBuf中读取
+     *
+     * @param in         ByteBuf
+     * @param retainBody true 未压缩的消息体以保留引用的ByteBuf切片形式持有(零拷贝),调用方需负责{@link #release()}
+     * @return 消息
+     **/
+    public static InnerMessage readIn(ByteBuf in, boolean retainBody) {
         InnerMessage message = new InnerMessage();
         message.header = InnerMessageHeader.readIn(in);
         if (in.readableBytes() > 0) {
-            message.body = new byte[in.readShort()];
-            in.readBytes(message.body);
-            // 消息体解压缩
+            int length = in.readShort();
             if (message.isZip()) {
-                message.body = ZipUtil.unGzip(message.body);
+                // 消息体解压缩,直接从ByteBuf读取压缩数据
+                message.body = ZipUtil.unGzip(new ByteBufInputStream(in.readSlice(length)));
+            } else if (retainBody) {
+                message.bodyBuf = in.readRetainedSlice(length);
+            } else {
+                message.body = new byte[length];
+                in.readBytes(message.body);
             }
         }
         return message;
     }
 
+    /**
+     * 以ByteBuf作为消息体构建消息(零拷贝转发),消息取得bodyBuf的一个引用,编码写出后由编码器释放
+     *
+     * @param header  消息头
+     * @param bodyBuf 未压缩的消息体,调用方需已为消息retain(如retainedDuplicate())
+     * @return 消息
+     **/
+    public static InnerMessage ofBodyBuf(InnerMessageHeader header, ByteBuf bodyBuf) {
+        InnerMessage message = new InnerMessage();
+        message.header = header;
+        message.bodyBuf = bodyBuf;
+        return message;
+    }
+
     public static InnerMessage of(InnerMessageHeader header, byte[] body) {
         InnerMessage message = new InnerMessage();
         message.header = header;
@@ -4,7 +4,7 @@ import io.netty.buffer.ByteBuf;
 import lombok.Getter;
 import lombok.ToString;
 
-import java.util.Objects;
+import java.util.Arrays;
 
 /**
  * 协议封装
@@ -16,6 +16,11 @@ import java.util.Objects;
 @ToString
 public class SocketProtocol {
 
+    /**
+     * 已驻留的协议,下标为无符号模块号,二级下标为无符号方法标识(写时复制)
+     **/
+    private static volatile SocketProtocol[][] interned = new SocketProtocol[0][];
+
     /**
      * 模块号
      **/
@@ -30,6 +35,83 @@ public class SocketProtocol {
         this.methodId = methodId;
     }
 
+    /**
+     * 24位协议键(模块号 << 8 | 方法标识),用于路由表索引
+     *
+     * @return 协议键
+     */
+    public int key() {
+        return toKey(module, methodId);
+    }
+
+    /**
+     * 计算24位协议键
+     *
+     * @param module   模块号
+     * @param methodId 方法标识
+     * @return 协议键
+     */
+    public static int toKey(short module, byte methodId) {
+        return ((module & 0xFFFF) << 8) | (methodId & 0xFF);
+    }
+
+    /**
+     * 获取协议,已驻留的协议直接返回驻留实例,否则创建新实例
+     *
+     * @param key 24位协议键
+     * @return 协议
+     */
+    public static SocketProtocol valueOf(int key) {
+        SocketProtocol[][] table = interned;
+        int module = key >>> 8;
+        if (module < table.length) {
+            SocketProtocol[] methods = table[module];
+            if (methods != null) {
+                SocketProtocol protocol = methods[key & 0xFF];
+                if (protocol != null) {
+                    return protocol;
+                }
+            }
+        }
+        return new SocketProtocol((short) module, (byte) key);
+    }
+
+    /**
+     * 获取协议,已驻留的协议直接返回驻留实例,否则创建新实例
+     *
+     * @param module   模块号
+     * @param methodId 方法标识
+     * @return 协议
+     */
+    public static SocketProtocol valueOf(short module, byte methodId) {
+        return valueOf(toKey(module, methodId));
+    }
+
+    /**
+     * 驻留协议,用于业务注册的协议号,驻留后解码该协议号不再创建对象
+     *
+     * @param module   模块号
+     * @param methodId 方法标识
+     * @return 驻留的协议实例
+     */
+    public static synchronized SocketProtocol intern(short module, byte methodId) {
+        int moduleIndex = module & 0xFFFF;
+        int methodIndex = methodId & 0xFF;
+        SocketProtocol[][] table = interned;
+        if (moduleIndex < table.length && table[moduleIndex] != null && table[moduleIndex][methodIndex] != null) {
+            return table[moduleIndex][methodIndex];
+        }
+
+        SocketProtocol[][] newTable = Arrays.copyOf(table, Math.max(table.length, moduleIndex + 1));
+        SocketProtocol[] methods = newTable[moduleIndex] == null
+                ? new SocketProtocol[256] : newTable[moduleIndex].clone();
+        SocketProtocol protocol = new SocketProtocol(module, methodId);
+        methods[methodIndex] = protocol;
+        newTable[moduleIndex] = methods;
+        interned = newTable;
+        return protocol;
+    }
+
     /**
      * 从ByteBuf读取协议
      *
@@ -37,7 +119,7 @@ public class SocketProtocol {
      * @return 协议
      */
     public static SocketProtocol read(ByteBuf in) {
-        return new SocketProtocol(in.readShort(), in.readByte());
+        return valueOf(in.readUnsignedMedium());
     }
 
     /**
@@ -73,6 +155,6 @@ public class SocketProtocol {
 
     @Override
     public int hashCode() {
-        return Objects.hash(module, methodId);
+        return key();
     }
 }
@@ -11,7 +11,7 @@ import com.echo.network.message.SocketProtocol;
  */
 public interface ErrorCodeModule {
 
-    SocketProtocol ERROR_CODE_RESPONSE = new SocketProtocol(ErrorCodeModule.MODULE, ErrorCodeModule.ERROR_CODE);
+    SocketProtocol ERROR_CODE_RESPONSE = SocketProtocol.intern(ErrorCodeModule.MODULE, ErrorCodeModule.ERROR_CODE);
 
     /**
      * 模块号
@@ -49,5 +49,10 @@ public interface ServerErrorCode {
      **/
     int CANT_CONNECT_REMOTE = 8;
 
+    /**
+     * 服务器繁忙(请求堆积过多被拒绝)
+     **/
+    int SERVER_BUSY = 9;
+
 
 }
@@ -0,0 +1,25 @@
+package com.echo.network.protocol;
+
+/**
+ * 协议方法调用器,由{@link MethodInvokerFactory}在启动注册协议时为每个协议方法生成,
+ * 生成类直接调用目标方法,避免每次请求走反射调用
+ * 参数在生成时已按{@link ProtocolMethodInvocation#getParameterKinds()}绑定至对应的位置,
+ * 调用时无需构建参数数组,身份标识以long传入不装箱
+ *
+ * @author li-yuanwen
+ */
+public interface MethodInvoker {
+
+    /**
+     * 调用目标方法,目标方法抛出的受检异常包装为{@link java.lang.reflect.UndeclaredThrowableException}
+     *
+     * @param target   目标对象
+     * @param session  连接,绑定至{@link ProtocolMethodInvocation#PARAM_SESSION}参数
+     * @param identity 身份标识,绑定至{@link ProtocolMethodInvocation#PARAM_IDENTITY}参数
+     * @param body     消息体,绑定至{@link ProtocolMethodInvocation#PARAM_IN_BODY}参数
+     * @param pushIds  推送目标,绑定至{@link ProtocolMethodInvocation#PARAM_PUSH_IDS}参数
+     * @return 方法返回值, void方法返回null
+     */
+    Object invoke(Object target, Object session, long identity, Object body, Object pushIds);
+
+}
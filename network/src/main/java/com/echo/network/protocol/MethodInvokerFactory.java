@@ -0,0 +1,202 @@
+package com.echo.network.protocol;
+
+import com.echo.common.util.ReflectionUtils;
+import javassist.*;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 协议方法调用器工厂,使用Javassist为协议方法生成直接调用的{@link MethodInvoker}实现,
+ * 无法生成时(非public方法/类加载器不可见等)退化为反射调用
+ *
+ * @author li-yuanwen
+ */
+@Slf4j
+public class MethodInvokerFactory {
+
+    /**
+     * 生成类名后缀
+     **/
+    private static final String INVOKER_SUFFIX = "$$ProtocolInvoker$";
+
+    /**
+     * 生成类序号
+     **/
+    private static final AtomicInteger INVOKER_ID = new AtomicInteger();
+
+    private MethodInvokerFactory() {
+    }
+
+    /**
+     * 创建方法调用器
+     *
+     * @param method 协议方法
+     * @param kinds  参数绑定类型 {@link ProtocolMethodInvocation#getParameterKinds()}
+     * @return 方法调用器
+     */
+    public static MethodInvoker create(Method method, byte[] kinds) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        if (!Modifier.isPublic(method.getModifiers())
+                || !Modifier.isPublic(declaringClass.getModifiers())
+                || Modifier.isStatic(method.getModifiers())) {
+            return new ReflectiveMethodInvoker(method, kinds);
+        }
+
+        try {
+            return buildInvoker(method, kinds);
+        } catch (Throwable e) {
+            log.warn("协议方法[{}#{}]生成调用器失败,使用反射调用", declaringClass.getName(), method.getName(), e);
+            return new ReflectiveMethodInvoker(method, kinds);
+        }
+    }
+
+    private static MethodInvoker buildInvoker(Method method, byte[] kinds) throws Exception {
+        Class<?> declaringClass = method.getDeclaringClass();
+        ClassPool classPool = new ClassPool(true);
+        classPool.appendClassPath(new LoaderClassPath(declaringClass.getClassLoader()));
+        classPool.appendClassPath(new LoaderClassPath(MethodInvoker.class.getClassLoader()));
+
+        CtClass ctClass = classPool.makeClass(declaringClass.getName() + INVOKER_SUFFIX + INVOKER_ID.incrementAndGet());
+        ctClass.addInterface(classPool.get(MethodInvoker.class.getName()));
+        ctClass.setModifiers(Modifier.PUBLIC | Modifier.FINAL);
+        ctClass.addConstructor(CtNewConstructor.defaultConstructor(ctClass));
+        ctClass.addMethod(CtNewMethod.make(buildInvokeMethodSource(method, kinds), ctClass));
+
+        Class<?> invokerClass = ctClass.toClass(declaringClass);
+        ctClass.detach();
+        return (MethodInvoker) invokerClass.getConstructor().newInstance();
+    }
+
+    /**
+     * 构建invoke方法源码,形如:
+     * public Object invoke(Object target, Object session, long identity, Object body, Object pushIds) {
+     * return ($w) ((Facade) target).method((Session) session, identity, (Req) body);
+     * }
+     * 目标方法声明了受检异常时,与{@link ReflectionUtils#invokeMethod(Method, Object, Object...)}一致,
+     * 运行时异常及Error直接抛出,受检异常包装为UndeclaredThrowableException
+     **/
+    private static String buildInvokeMethodSource(Method method, byte[] kinds) {
+        StringBuilder invoke = new StringBuilder();
+        invoke.append("((").append(method.getDeclaringClass().getName()).append(") $1).")
+                .append(method.getName()).append('(');
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                invoke.append(", ");
+            }
+            invoke.append(bindArgument(parameterTypes[i], kinds[i]));
+        }
+        invoke.append(')');
+
+        StringBuilder source = new StringBuilder("public Object invoke(Object target, Object session, long identity"
+                + ", Object body, Object pushIds) {");
+        boolean checked = hasCheckedException(method);
+        if (checked) {
+            source.append("try {");
+        }
+        if (method.getReturnType() == Void.TYPE) {
+            source.append(invoke).append("; return null;");
+        } else {
+            source.append("return ($w) ").append(invoke).append(';');
+        }
+        if (checked) {
+            source.append("} catch (java.lang.Throwable e) {")
+                    .append(ReflectionUtils.class.getName()).append(".rethrowRuntimeException(e);")
+                    .append("return null;}");
+        }
+        return source.append('}').toString();
+    }
+
+    private static boolean hasCheckedException(Method method) {
+        for (Class<?> exceptionType : method.getExceptionTypes()) {
+            if (!RuntimeException.class.isAssignableFrom(exceptionType) && !Error.class.isAssignableFrom(exceptionType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按参数绑定类型取得invoke方法的参数,并转换为目标方法的参数类型
+     **/
+    private static String bindArgument(Class<?> type, byte kind) {
+        switch (kind) {
+            case ProtocolMethodInvocation.PARAM_SESSION: {
+                return "(" + type.getTypeName() + ") $2";
+            }
+            case ProtocolMethodInvocation.PARAM_IDENTITY: {
+                if (type.isPrimitive()) {
+                    return type == Long.TYPE ? "$3" : "(" + type.getTypeName() + ") $3";
+                }
+                return "(" + type.getTypeName() + ") java.lang.Long.valueOf($3)";
+            }
+            case ProtocolMethodInvocation.PARAM_IN_BODY: {
+                return "(" + type.getTypeName() + ") $4";
+            }
+            case ProtocolMethodInvocation.PARAM_PUSH_IDS: {
+                return "(" + type.getTypeName() + ") $5";
+            }
+            default: {
+                return defaultValue(type);
+            }
+        }
+    }
+
+    private static String defaultValue(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return "(" + type.getTypeName() + ") null";
+        }
+        if (type == Boolean.TYPE) {
+            return "false";
+        }
+        return "(" + type.getTypeName() + ") 0";
+    }
+
+
+    /**
+     * 反射调用器
+     **/
+    private static final class ReflectiveMethodInvoker implements MethodInvoker {
+
+        private final Method method;
+        private final byte[] kinds;
+
+        private ReflectiveMethodInvoker(Method method, byte[] kinds) {
+            ReflectionUtils.makeAccessible(method);
+            this.method = method;
+            this.kinds = kinds;
+        }
+
+        @Override
+        public Object invoke(Object target, Object session, long identity, Object body, Object pushIds) {
+            Object[] args = new Object[kinds.length];
+            for (int i = 0; i < kinds.length; i++) {
+                switch (kinds[i]) {
+                    case ProtocolMethodInvocation.PARAM_SESSION: {
+                        args[i] = session;
+                        break;
+                    }
+                    case ProtocolMethodInvocation.PARAM_IDENTITY: {
+                        args[i] = identity;
+                        break;
+                    }
+                    case ProtocolMethodInvocation.PARAM_IN_BODY: {
+                        args[i] = body;
+                        break;
+                    }
+                    case ProtocolMethodInvocation.PARAM_PUSH_IDS: {
+                        args[i] = pushIds;
+                        break;
+                    }
+                    default: {
+                        // 未知参数传入null
+                    }
+                }
+            }
+            return ReflectionUtils.invokeMethod(method, target, args);
+        }
+    }
+}
@@ -8,6 +8,8 @@ import java.util.Map;
 
 /**
  * 协议容器
+ * 注册阶段使用Map收集协议,{@link #freeze()}后构建以24位协议键(模块号 << 8 | 方法标识)索引的扁平路由表,
+ * 请求分发时通过数组下标直接定位协议处理
  *
  * @author: li-yuanwen
  */
@@ -28,21 +30,80 @@ public class ProtocolContext {
      * 推送协议
      **/
     private final Map<Method, ProtocolMethod> pushProtocols = new HashMap<>();
+    /**
+     * 请求协议路由表,下标为无符号模块号,二级下标为无符号方法标识,null表示尚未冻结
+     **/
+    private volatile ProtocolMethodInvocation[][] routes;
 
     public void registerProtocol(ProtocolMethod protocolMethod) {
         protocols.put(protocolMethod.getProtocol(), protocolMethod);
     }
 
-    public boolean registerRequestProtocol(ProtocolMethodInvocation invocation) {
-        return requestProtocols.putIfAbsent(invocation.getProtocolMethod().getProtocol(), invocation) == null;
+    public synchronized boolean registerRequestProtocol(ProtocolMethodInvocation invocation) {
+        if (requestProtocols.putIfAbsent(invocation.getProtocolMethod().getProtocol(), invocation) != null) {
+            return false;
+        }
+        // 冻结后再注册的协议需重建路由表
+        if (routes != null) {
+            routes = buildRoutes();
+        }
+        return true;
     }
 
     public void registerPushProtocol(ProtocolMethod protocolMethod) {
         pushProtocols.put(protocolMethod.getMethod(), protocolMethod);
     }
 
+    /**
+     * 冻结请求协议,构建路由表
+     */
+    public synchronized void freeze() {
+        routes = buildRoutes();
+    }
+
+    private ProtocolMethodInvocation[][] buildRoutes() {
+        int maxModule = -1;
+        for (SocketProtocol protocol : requestProtocols.keySet()) {
+            maxModule = Math.max(maxModule, protocol.getModule() & 0xFFFF);
+        }
+
+        ProtocolMethodInvocation[][] table = new ProtocolMethodInvocation[maxModule + 1][];
+        for (Map.Entry<SocketProtocol, ProtocolMethodInvocation> entry : requestProtocols.entrySet()) {
+            int key = entry.getKey().key();
+            int module = key >>> 8;
+            if (table[module] == null) {
+                table[module] = new ProtocolMethodInvocation[256];
+            }
+            table[module][key & 0xFF] = entry.getValue();
+        }
+        return table;
+    }
+
+    /**
+     * 根据24位协议键获取请求协议处理
+     *
+     * @param key 协议键 {@link SocketProtocol#key()}
+     * @return null 不存在该协议
+     */
+    public ProtocolMethodInvocation getRequestInvocation(int key) {
+        ProtocolMethodInvocation[][] table = routes;
+        if (table == null) {
+            return getRequestInvocationBeforeFreeze(key);
+        }
+        int module = key >>> 8;
+        if (module >= table.length) {
+            return null;
+        }
+        ProtocolMethodInvocation[] methods = table[module];
+        return methods == null ? null : methods[key & 0xFF];
+    }
+
+    private synchronized ProtocolMethodInvocation getRequestInvocationBeforeFreeze(int key) {
+        return requestProtocols.get(SocketProtocol.valueOf(key));
+    }
+
     public ProtocolMethodInvocation getRequestInvocation(SocketProtocol protocol) {
-        return requestProtocols.get(protocol);
+        return getRequestInvocation(protocol.key());
     }
 
     public ProtocolMethod getPushProtocolByMethod(Method method) {
@@ -12,6 +12,15 @@ import lombok.Getter;
 @Getter
 public class ProtocolMethodInvocation {
 
+    /**
+     * 参数绑定类型
+     **/
+    public static final byte PARAM_UNKNOWN = 0;
+    public static final byte PARAM_SESSION = 1;
+    public static final byte PARAM_IDENTITY = 2;
+    public static final byte PARAM_IN_BODY = 3;
+    public static final byte PARAM_PUSH_IDS = 4;
+
     /**
      * 目标对象
      **/
@@ -24,12 +33,44 @@ public class ProtocolMethodInvocation {
      * 是否需要身份标识
      **/
     private final boolean identity;
+    /**
+     * 预解析的参数绑定类型,下标与方法参数一一对应
+     **/
+    private final byte[] parameterKinds;
+    /**
+     * 被@InBody修饰的参数类型,无则为null
+     **/
+    private final Class<?> bodyClass;
+    /**
+     * 方法调用器
+     **/
+    private final MethodInvoker invoker;
 
     public ProtocolMethodInvocation(Object target, ProtocolMethod protocolMethod) {
         this.target = target;
         this.identity = protocolMethod.identity();
         this.protocolMethod = protocolMethod;
 
+        MethodParameter[] params = protocolMethod.getParams();
+        Class<?> bodyClass = null;
+        this.parameterKinds = new byte[params.length];
+        for (int i = 0; i < params.length; i++) {
+            MethodParameter parameter = params[i];
+            if (parameter instanceof SessionMethodParameter) {
+                parameterKinds[i] = PARAM_SESSION;
+            } else if (parameter instanceof IdentityMethodParameter) {
+                parameterKinds[i] = PARAM_IDENTITY;
+            } else if (parameter instanceof InBodyMethodParameter) {
+                parameterKinds[i] = PARAM_IN_BODY;
+                bodyClass = parameter.getParameterClass();
+            } else if (parameter instanceof PushIdsMethodParameter) {
+                parameterKinds[i] = PARAM_PUSH_IDS;
+            } else {
+                parameterKinds[i] = PARAM_UNKNOWN;
+            }
+        }
+        this.bodyClass = bodyClass;
+        this.invoker = MethodInvokerFactory.create(protocolMethod.getMethod(), parameterKinds);
     }
 
     /**
@@ -52,6 +93,19 @@ public class ProtocolMethodInvocation {
     }
 
 
+    /**
+     * 调用协议方法,参数按{@link #getParameterKinds()}绑定,方法不需要的参数传入null即可
+     *
+     * @param session  连接
+     * @param identity 身份标识
+     * @param body     消息体
+     * @param pushIds  推送目标
+     * @return 方法返回值
+     */
+    public Object invokeMethod(Object session, long identity, Object body, Object pushIds) {
+        return invoker.invoke(target, session, identity, body, pushIds);
+    }
+
     public Object invokeMethod(Object[] args) {
         return ReflectionUtils.invokeMethod(protocolMethod.getMethod(), target, args);
     }
@@ -3,6 +3,8 @@ package com.echo.network.serialize;
 import com.echo.common.exception.SerializeFailException;
 import com.echo.common.util.JsonUtils;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
@@ -40,4 +42,19 @@ public class JsonSerializer implements Serializer {
             throw new SerializeFailException("反序列化对象[" + clazz.getSimpleName() + "]出现未知异常", e);
         }
     }
+
+    @Override
+    public <T> T deserialize(ByteBuf data, Class<T> clazz) throws SerializeFailException {
+        try {
+            if (data.hasArray()) {
+                return JsonUtils.toObj(data.array(), data.arrayOffset() + data.readerIndex()
+                        , data.readableBytes(), clazz);
+            }
+            // 堆外内存,以流的方式读取,不修改原ByteBuf的readerIndex
+            return JsonUtils.toObj(new ByteBufInputStream(data.duplicate()), clazz);
+        } catch (IOException e) {
+            log.error("反序列化对象[{}]出现未知异常", clazz.getSimpleName(), e);
+            throw new SerializeFailException("反序列化对象[" + clazz.getSimpleName() + "]出现未知异常", e);
+        }
+    }
 }
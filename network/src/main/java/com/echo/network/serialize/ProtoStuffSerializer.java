@@ -2,6 +2,8 @@ package com.echo.network.serialize;
 
 import com.echo.common.exception.SerializeFailException;
 import com.echo.common.util.ProtoStuffUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -37,4 +39,19 @@ public class ProtoStuffSerializer implements Serializer {
         }
 
     }
+
+    @Override
+    public <T> T deserialize(ByteBuf data, Class<T> clazz) {
+        try {
+            if (data.hasArray()) {
+                return ProtoStuffUtils.deserialize(data.array(), data.arrayOffset() + data.readerIndex()
+                        , data.readableBytes(), clazz);
+            }
+            // 堆外内存,以流的方式读取,不修改原ByteBuf的readerIndex
+            return ProtoStuffUtils.deserialize(new ByteBufInputStream(data.duplicate()), clazz);
+        } catch (Exception e) {
+            log.error("反序列化对象[{}]出现未知异常", clazz.getSimpleName(), e);
+            throw new SerializeFailException("反序列化对象[" + clazz.getSimpleName() + "]出现未知异常", e);
+        }
+    }
 }
@@ -2,6 +2,7 @@ package com.echo.network.serialize;
 
 
 import com.echo.common.exception.SerializeFailException;
+import io.netty.buffer.ByteBuf;
 
 /**
  * @author li-yuanwen
@@ -38,4 +39,15 @@ public interface Serializer {
      */
     <T> T deserialize(byte[] data, Class<T> clazz) throws SerializeFailException;
 
+
+    /**
+     * 反序列化,直接从ByteBuf的可读区间读取,不产生中间数组且不修改readerIndex
+     *
+     * @param data  ByteBuf
+     * @param clazz 反序列化类型
+     * @param <T>   对象类型
+     * @return 反序列化后的对象
+     */
+    <T> T deserialize(ByteBuf data, Class<T> clazz) throws SerializeFailException;
+
 }
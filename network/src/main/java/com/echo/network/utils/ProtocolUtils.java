@@ -135,7 +135,7 @@ public class ProtocolUtils {
                 }
             }
 
-            ctx.add(new ProtocolMethod(serverType, new SocketProtocol(module, id), method, params, socketMethod.isSyncMethod(), returnClz));
+            ctx.add(new ProtocolMethod(serverType, SocketProtocol.intern(module, id), method, params, socketMethod.isSyncMethod(), returnClz));
         }
 
         return ctx;
@@ -212,7 +212,7 @@ public class ProtocolUtils {
                 throw new IllegalArgumentException("模块号[" + module + "]方法标识[" + id + "]的方法@InBody修饰的参数不可大于1");
             }
 
-            ctx.add(new ProtocolMethod(type, new SocketProtocol(module, id), method, params, true));
+            ctx.add(new ProtocolMethod(type, SocketProtocol.intern(module, id), method, params, true));
 
         }
 
@@ -1,9 +1,11 @@
 package com.echo.network.utils;
 
+import com.echo.network.message.IMessage;
 import com.echo.network.serialize.JsonSerializer;
 import com.echo.network.serialize.ProtoStuffSerializer;
 import com.echo.network.serialize.SerializeType;
 import com.echo.network.serialize.Serializer;
+import io.netty.buffer.ByteBuf;
 
 /**
  * 序列化工具
@@ -69,6 +71,22 @@ public class SerializeUtils {
         return serializer.deserialize(data, tClass);
     }
 
+    public static <T> T deserialize(SerializeType serializeType, ByteBuf data, Class<T> tClass) {
+        Serializer serializer = getSerializerByType(serializeType);
+        return serializer.deserialize(data, tClass);
+    }
+
+    /**
+     * 反序列化消息体,零拷贝消息直接从ByteBuf读取
+     **/
+    public static <T> T deserialize(SerializeType serializeType, IMessage message, Class<T> tClass) {
+        ByteBuf bodyBuf = message.getBodyBuf();
+        if (bodyBuf != null) {
+            return deserialize(serializeType, bodyBuf, tClass);
+        }
+        return deserialize(serializeType, message.getBody(), tClass);
+    }
+
 
     public static boolean isProtoBuf(byte type) {
         SerializeType serializeType = SerializeType.valueOf(type);
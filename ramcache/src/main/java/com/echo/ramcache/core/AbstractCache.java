@@ -8,7 +8,7 @@ import lombok.extern.slf4j.Slf4j;
  * @author li-yuanwen
  */
 @Slf4j
-public abstract class AbstractCache implements RamCache {
+public abstract class AbstractCache<K> implements RamCache<K> {
 
     /**
      * 缓存名称
@@ -35,7 +35,7 @@ public abstract class AbstractCache implements RamCache {
     }
 
     @Override
-    public <T> T get(String key, Class<T> tClass) {
+    public <T> T get(K key, Class<T> tClass) {
         incrementQuery();
         T value = get0(key, tClass);
         if (value != null) {
@@ -50,13 +50,13 @@ public abstract class AbstractCache implements RamCache {
      * @param key 缓存key
      * @return value
      */
-    protected abstract <T> T get0(String key, Class<T> tClass);
+    protected abstract <T> T get0(K key, Class<T> tClass);
 
-    private void incrementQuery() {
+    protected void incrementQuery() {
         this.cacheStat.incrementQuery();
     }
 
-    private void incrementHit() {
+    protected void incrementHit() {
         this.cacheStat.incrementHit();
     }
 
@@ -3,7 +3,7 @@ package com.echo.ramcache.core;
 /**
  * 缓存构建器
  */
-public interface CacheBuilder<T extends RamCache> {
+public interface CacheBuilder<T extends RamCache<?>> {
 
 
     /**
@@ -9,11 +9,11 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class CacheFactory {
 
-    private final static ConcurrentHashMap<String, RamCache> cache = new ConcurrentHashMap<>();
+    private final static ConcurrentHashMap<String, RamCache<?>> cache = new ConcurrentHashMap<>();
 
     @SuppressWarnings("unchecked")
-    public static <T extends RamCache> T computeIfAbsent(String cacheName, CacheBuilder<T> builder) {
-        RamCache ramCache = getCache(cacheName);
+    public static <T extends RamCache<?>> T computeIfAbsent(String cacheName, CacheBuilder<T> builder) {
+        RamCache<?> ramCache = getCache(cacheName);
         if (ramCache == null) {
             return (T) cache.computeIfAbsent(cacheName, builder::createCache);
         }
@@ -22,7 +22,7 @@ public class CacheFactory {
 
 
     @SuppressWarnings("unchecked")
-    public static <T extends RamCache> T getCache(String cacheName) {
+    public static <T extends RamCache<?>> T getCache(String cacheName) {
         return (T) cache.get(cacheName);
     }
 
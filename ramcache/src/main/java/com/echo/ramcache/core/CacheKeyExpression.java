@@ -0,0 +1,202 @@
+package com.echo.ramcache.core;
+
+import cn.hutool.core.convert.Convert;
+import com.echo.common.expression.Jexl3;
+import org.apache.commons.jexl3.JexlExpression;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 预编译的缓存名称/缓存key表达式
+ * 常量直接返回;"#参数名"及"#参数名.无参方法()..."按参数声明类型解析为参数下标与方法句柄链;
+ * 其余表达式编译为{@link JexlExpression}后缓存
+ *
+ * @author: li-yuanwen
+ */
+abstract class CacheKeyExpression {
+
+    /**
+     * 参数名 + 无参方法调用链, 例如 #tClass.getName()
+     **/
+    private static final Pattern ACCESSOR = Pattern.compile("([A-Za-z_$][\\w$]*)((?:\\.[A-Za-z_$][\\w$]*\\(\\))*)");
+    private static final Pattern INVOCATION = Pattern.compile("\\.([A-Za-z_$][\\w$]*)\\(\\)");
+
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /**
+     * 根据方法参数求值
+     *
+     * @param args 方法参数
+     * @return 表达式结果
+     */
+    abstract String getValue(Object[] args);
+
+    /**
+     * 编译表达式
+     *
+     * @param expression     注解中配置的表达式
+     * @param parameterTypes 方法参数类型
+     * @param parameterNames 方法参数名称,无法获取时为null
+     * @return 预编译的表达式
+     */
+    static CacheKeyExpression compile(String expression, Class<?>[] parameterTypes, String[] parameterNames) {
+        if (!expression.startsWith(RamCacheAspect.PREFIX)) {
+            return new Literal(expression);
+        }
+        String content = expression.substring(RamCacheAspect.PREFIX.length()).trim();
+        CacheKeyExpression accessor = compileAccessor(content, parameterTypes, parameterNames);
+        if (accessor != null) {
+            return accessor;
+        }
+        return new Jexl(Jexl3.compile(content), parameterNames);
+    }
+
+    private static CacheKeyExpression compileAccessor(String content, Class<?>[] parameterTypes, String[] parameterNames) {
+        if (parameterNames == null) {
+            return null;
+        }
+        Matcher matcher = ACCESSOR.matcher(content);
+        if (!matcher.matches()) {
+            return null;
+        }
+        int index = indexOf(parameterNames, matcher.group(1));
+        if (index < 0) {
+            return null;
+        }
+
+        List<MethodHandle> handles = new ArrayList<>();
+        Class<?> type = parameterTypes[index];
+        Matcher invocation = INVOCATION.matcher(matcher.group(2));
+        while (invocation.find()) {
+            Method method;
+            try {
+                method = type.getMethod(invocation.group(1));
+            } catch (NoSuchMethodException e) {
+                // 方法只存在于运行时类型上,交给Jexl按运行时类型解析
+                return null;
+            }
+            if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                return null;
+            }
+            try {
+                handles.add(MethodHandles.publicLookup().unreflect(method).asType(ACCESSOR_TYPE));
+            } catch (IllegalAccessException e) {
+                return null;
+            }
+            type = method.getReturnType();
+        }
+        return new Argument(index, handles.toArray(new MethodHandle[0]));
+    }
+
+    private static int indexOf(String[] parameterNames, String name) {
+        for (int i = 0; i < parameterNames.length; i++) {
+            if (parameterNames[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String asString(Object value) {
+        if (value == null || value instanceof String) {
+            return (String) value;
+        }
+        return Convert.convert(String.class, value);
+    }
+
+    /**
+     * 常量
+     **/
+    private static final class Literal extends CacheKeyExpression {
+
+        private final String value;
+
+        Literal(String value) {
+            this.value = value;
+        }
+
+        @Override
+        String getValue(Object[] args) {
+            return value;
+        }
+    }
+
+    /**
+     * 方法参数及其无参方法调用链
+     **/
+    private static final class Argument extends CacheKeyExpression {
+
+        /**
+         * 参数下标
+         **/
+        private final int index;
+        /**
+         * 方法调用链
+         **/
+        private final MethodHandle[] handles;
+
+        Argument(int index, MethodHandle[] handles) {
+            this.index = index;
+            this.handles = handles;
+        }
+
+        @Override
+        String getValue(Object[] args) {
+            Object value = args[index];
+            for (MethodHandle handle : handles) {
+                if (value == null) {
+                    return null;
+                }
+                try {
+                    value = (Object) handle.invokeExact(value);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return asString(value);
+        }
+    }
+
+    /**
+     * 复杂表达式,编译后的Jexl表达式
+     **/
+    private static final class Jexl extends CacheKeyExpression {
+
+        private final JexlExpression expression;
+        private final String[] parameterNames;
+
+        Jexl(JexlExpression expression, String[] parameterNames) {
+            this.expression = expression;
+            this.parameterNames = parameterNames;
+        }
+
+        @Override
+        String getValue(Object[] args) {
+            return Jexl3.eval(expression, buildContext(args), String.class);
+        }
+
+        private Map<String, Object> buildContext(Object[] args) {
+            if (parameterNames == null || args == null || args.length == 0) {
+                return Collections.emptyMap();
+            }
+            Map<String, Object> map = new HashMap<>(args.length);
+            for (int i = 0; i < parameterNames.length; i++) {
+                map.put(parameterNames[i], args[i]);
+            }
+            return map;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.echo.ramcache.core;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+
+/**
+ * 缓存注解方法元数据,方法首次执行时解析,之后直接复用
+ *
+ * @author: li-yuanwen
+ */
+final class CacheMethodMetadata<A extends Annotation> {
+
+    /**
+     * 目标方法
+     **/
+    private final Method method;
+    /**
+     * 方法上的缓存注解
+     **/
+    private final A annotation;
+    /**
+     * 缓存名称表达式
+     **/
+    private final CacheKeyExpression name;
+    /**
+     * 缓存key表达式
+     **/
+    private final CacheKeyExpression key;
+
+    CacheMethodMetadata(Method method, A annotation, String name, String key, String[] parameterNames) {
+        this.method = method;
+        this.annotation = annotation;
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        this.name = CacheKeyExpression.compile(name, parameterTypes, parameterNames);
+        this.key = CacheKeyExpression.compile(key, parameterTypes, parameterNames);
+    }
+
+    Method getMethod() {
+        return method;
+    }
+
+    A getAnnotation() {
+        return annotation;
+    }
+
+    String getCacheName(Object[] args) {
+        return name.getValue(args);
+    }
+
+    String getKey(Object[] args) {
+        return key.getValue(args);
+    }
+}
@@ -12,12 +12,12 @@ import java.util.concurrent.TimeUnit;
  * @author li-yuanwen
  */
 @Slf4j
-public class CaffeineCache extends AbstractCache {
+public class CaffeineCache<K> extends AbstractCache<K> {
 
     /**
      * 缓存
      **/
-    private final Cache<String, Object> cache;
+    private final Cache<K, Object> cache;
 
 
     public CaffeineCache(String cacheName, long maximum, long expire) {
@@ -29,7 +29,7 @@ public class CaffeineCache extends AbstractCache {
     }
 
     @Override
-    public void remove(String key) {
+    public void remove(K key) {
         if (log.isDebugEnabled()) {
             log.debug("remove from Caffeine [{}],key[{}]", getCacheName(), key);
         }
@@ -37,7 +37,7 @@ public class CaffeineCache extends AbstractCache {
     }
 
     @Override
-    public void put(String key, Object content) {
+    public void put(K key, Object content) {
         if (log.isDebugEnabled()) {
             log.debug("add Caffeine [{}], key[{}]", getCacheName(), key);
         }
@@ -45,7 +45,7 @@ public class CaffeineCache extends AbstractCache {
     }
 
     @Override
-    protected <T> T get0(String key, Class<T> tClass) {
+    protected <T> T get0(K key, Class<T> tClass) {
         if (log.isDebugEnabled()) {
             log.debug("get Caffeine[{}], key[{}]", getCacheName(), key);
         }
@@ -57,4 +57,9 @@ public class CaffeineCache extends AbstractCache {
         this.cache.invalidateAll();
     }
 
+    @Override
+    public void cleanUp() {
+        this.cache.cleanUp();
+    }
+
 }
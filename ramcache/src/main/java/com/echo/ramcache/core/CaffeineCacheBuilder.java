@@ -5,7 +5,7 @@ package com.echo.ramcache.core;
  *
  * @author: li-yuanwen
  */
-public class CaffeineCacheBuilder implements CacheBuilder<CaffeineCache> {
+public class CaffeineCacheBuilder<K> implements CacheBuilder<CaffeineCache<K>> {
 
     /**
      * 缓存最大容量
@@ -22,7 +22,7 @@ public class CaffeineCacheBuilder implements CacheBuilder<CaffeineCache> {
     }
 
     @Override
-    public CaffeineCache createCache(String cacheName) {
-        return new CaffeineCache(cacheName, maximum, expire);
+    public CaffeineCache<K> createCache(String cacheName) {
+        return new CaffeineCache<>(cacheName, maximum, expire);
     }
 }
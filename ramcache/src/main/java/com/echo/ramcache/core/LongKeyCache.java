@@ -0,0 +1,416 @@
+package com.echo.ramcache.core;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * long类型key的缓存,key以基本类型存放在分段的开放寻址(线性探测)表中,不产生装箱key与链表节点
+ * 读取使用{@link StampedLock}乐观读;超过容量时在随机采样的若干条目中淘汰最久未访问的条目(近似LRU);
+ * 访问过期的条目在读取或淘汰时移除,未被读取的过期条目由{@link #cleanUp()}逐段清理
+ * 缓存内容不能为null,put null等同于remove
+ *
+ * @author li-yuanwen
+ */
+public class LongKeyCache extends AbstractCache<Long> implements LongRamCache {
+
+    /**
+     * 最大分段数 2^6
+     **/
+    private static final int MAX_SEGMENT_BITS = 6;
+    /**
+     * 计算分段数时每段的最少容量
+     **/
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+    /**
+     * 表初始长度
+     **/
+    private static final int INITIAL_TABLE_LENGTH = 16;
+    /**
+     * 淘汰时采样的条目数
+     **/
+    private static final int EVICTION_SAMPLES = 8;
+
+    /**
+     * 分段
+     **/
+    private final Segment[] segments;
+    /**
+     * 分段数位数
+     **/
+    private final int segmentBits;
+    /**
+     * 过期时间(秒),<=0 表示不过期
+     **/
+    private final int expire;
+    /**
+     * 访问时间基准(纳秒)
+     **/
+    private final long origin;
+
+    public LongKeyCache(String cacheName, long maximum, long expire) {
+        super(cacheName);
+        if (maximum <= 0) {
+            throw new IllegalArgumentException("maximum: " + maximum);
+        }
+        int bits = 0;
+        while (bits < MAX_SEGMENT_BITS && (maximum >> (bits + 1)) >= MIN_SEGMENT_CAPACITY) {
+            bits++;
+        }
+        int count = 1 << bits;
+        int capacity = (int) Math.min(1 << 29, (maximum + count - 1) / count);
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment(capacity);
+        }
+        this.segmentBits = bits;
+        this.expire = (int) Math.min(Integer.MAX_VALUE, expire);
+        this.origin = System.nanoTime();
+    }
+
+    @Override
+    public <T> T get(long key, Class<T> tClass) {
+        incrementQuery();
+        T value = lookup(key);
+        if (value != null) {
+            incrementHit();
+        }
+        return value;
+    }
+
+    @Override
+    protected <T> T get0(Long key, Class<T> tClass) {
+        return lookup(key.longValue());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T lookup(long key) {
+        long hash = hash(key);
+        return (T) segmentFor(hash).get(key, hash);
+    }
+
+    @Override
+    public void put(long key, Object content) {
+        long hash = hash(key);
+        if (content == null) {
+            segmentFor(hash).remove(key, hash);
+            return;
+        }
+        segmentFor(hash).put(key, hash, content);
+    }
+
+    @Override
+    public void put(Long key, Object content) {
+        put(key.longValue(), content);
+    }
+
+    @Override
+    public void remove(long key) {
+        long hash = hash(key);
+        segmentFor(hash).remove(key, hash);
+    }
+
+    @Override
+    public void remove(Long key) {
+        remove(key.longValue());
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * 逐段清理访问过期的条目,每次仅持有一个分段的写锁
+     */
+    @Override
+    public void cleanUp() {
+        if (expire <= 0) {
+            return;
+        }
+        for (Segment segment : segments) {
+            segment.removeExpired(now());
+        }
+    }
+
+    /**
+     * 当前缓存数量(近似值)
+     *
+     * @return 缓存数量
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segmentBits == 0 ? segments[0] : segments[(int) (hash >>> (64 - segmentBits))];
+    }
+
+    /**
+     * 当前时间(秒),相对于缓存创建时间
+     **/
+    protected int now() {
+        return (int) ((System.nanoTime() - origin) / 1_000_000_000L);
+    }
+
+    private boolean isExpired(int accessTime, int now) {
+        return expire > 0 && now - accessTime >= expire;
+    }
+
+    private static long hash(long key) {
+        // MurmurHash3 fmix64
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * 开放寻址表,values[i] == null 表示空槽
+     **/
+    private static final class Table {
+
+        private final long[] keys;
+        private final Object[] values;
+        /**
+         * 最近访问时间(秒)
+         **/
+        private final int[] accessTimes;
+        private final int mask;
+
+        Table(int length) {
+            this.keys = new long[length];
+            this.values = new Object[length];
+            this.accessTimes = new int[length];
+            this.mask = length - 1;
+        }
+
+        int find(long key, long hash) {
+            int i = (int) hash & mask;
+            for (int n = 0; n <= mask; n++) {
+                if (values[i] == null) {
+                    return -1;
+                }
+                if (keys[i] == key) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        void insert(long key, long hash, Object value, int accessTime) {
+            int i = (int) hash & mask;
+            while (values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            accessTimes[i] = accessTime;
+        }
+
+        /**
+         * 删除槽位,将后续探测链上的条目前移以保持探测链连续
+         */
+        void delete(int i) {
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (values[j] == null) {
+                    break;
+                }
+                int home = (int) hash(keys[j]) & mask;
+                // home位于(i, j]之间时,条目j不能前移到i
+                if (i <= j ? (i < home && home <= j) : (i < home || home <= j)) {
+                    continue;
+                }
+                keys[i] = keys[j];
+                values[i] = values[j];
+                accessTimes[i] = accessTimes[j];
+                i = j;
+            }
+            values[i] = null;
+            keys[i] = 0;
+        }
+
+        int threshold() {
+            return (mask + 1) - ((mask + 1) >>> 2);
+        }
+    }
+
+    private final class Segment extends StampedLock {
+
+        /**
+         * 分段容量
+         **/
+        private final int capacity;
+        private volatile Table table;
+        private volatile int size;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.table = new Table(INITIAL_TABLE_LENGTH);
+        }
+
+        Object get(long key, long hash) {
+            long stamp = tryOptimisticRead();
+            Table t = table;
+            int slot = t.find(key, hash);
+            Object value = slot < 0 ? null : t.values[slot];
+            int accessTime = slot < 0 ? 0 : t.accessTimes[slot];
+            if (!validate(stamp)) {
+                stamp = readLock();
+                try {
+                    t = table;
+                    slot = t.find(key, hash);
+                    value = slot < 0 ? null : t.values[slot];
+                    accessTime = slot < 0 ? 0 : t.accessTimes[slot];
+                } finally {
+                    unlockRead(stamp);
+                }
+            }
+            if (value == null) {
+                return null;
+            }
+
+            int now = now();
+            if (isExpired(accessTime, now)) {
+                removeExpired(key, hash, now);
+                return null;
+            }
+            if (accessTime != now) {
+                // 访问时间仅用于淘汰与过期判断,并发下写入其他条目的槽位可以接受
+                t.accessTimes[slot] = now;
+            }
+            return value;
+        }
+
+        void put(long key, long hash, Object value) {
+            long stamp = writeLock();
+            try {
+                int now = now();
+                Table t = table;
+                int slot = t.find(key, hash);
+                if (slot >= 0) {
+                    t.values[slot] = value;
+                    t.accessTimes[slot] = now;
+                    return;
+                }
+                if (size >= capacity) {
+                    evict();
+                }
+                if (size + 1 > t.threshold()) {
+                    t = resize(t);
+                }
+                t.insert(key, hash, value, now);
+                size++;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        void remove(long key, long hash) {
+            long stamp = writeLock();
+            try {
+                Table t = table;
+                int slot = t.find(key, hash);
+                if (slot >= 0) {
+                    t.delete(slot);
+                    size--;
+                }
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        private void removeExpired(long key, long hash, int now) {
+            long stamp = writeLock();
+            try {
+                Table t = table;
+                int slot = t.find(key, hash);
+                if (slot >= 0 && isExpired(t.accessTimes[slot], now)) {
+                    t.delete(slot);
+                    size--;
+                }
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * 移除分段内所有过期条目
+         */
+        void removeExpired(int now) {
+            long stamp = writeLock();
+            try {
+                Table t = table;
+                for (int i = 0; i <= t.mask; ) {
+                    // 删除后探测链上的后续条目可能前移至当前槽位,需重新检查
+                    if (t.values[i] != null && isExpired(t.accessTimes[i], now)) {
+                        t.delete(i);
+                        size--;
+                    } else {
+                        i++;
+                    }
+                }
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * 从随机位置开始采样,淘汰最久未访问的条目,调用方需持有写锁
+         */
+        private void evict() {
+            Table t = table;
+            int i = ThreadLocalRandom.current().nextInt() & t.mask;
+            int victim = -1;
+            int oldest = 0;
+            int sampled = 0;
+            for (int n = 0; n <= t.mask && sampled < EVICTION_SAMPLES; n++, i = (i + 1) & t.mask) {
+                if (t.values[i] == null) {
+                    continue;
+                }
+                sampled++;
+                if (victim < 0 || t.accessTimes[i] - oldest < 0) {
+                    victim = i;
+                    oldest = t.accessTimes[i];
+                }
+            }
+            if (victim >= 0) {
+                t.delete(victim);
+                size--;
+            }
+        }
+
+        private Table resize(Table t) {
+            Table newTable = new Table((t.mask + 1) << 1);
+            for (int i = 0; i <= t.mask; i++) {
+                Object value = t.values[i];
+                if (value != null) {
+                    long key = t.keys[i];
+                    newTable.insert(key, hash(key), value, t.accessTimes[i]);
+                }
+            }
+            table = newTable;
+            return newTable;
+        }
+
+        void clear() {
+            long stamp = writeLock();
+            try {
+                table = new Table(INITIAL_TABLE_LENGTH);
+                size = 0;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+    }
+}
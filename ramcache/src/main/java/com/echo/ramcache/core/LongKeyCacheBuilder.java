@@ -0,0 +1,28 @@
+package com.echo.ramcache.core;
+
+/**
+ * LongKeyCache 构建
+ *
+ * @author: li-yuanwen
+ */
+public class LongKeyCacheBuilder implements CacheBuilder<LongKeyCache> {
+
+    /**
+     * 缓存最大容量
+     **/
+    private final long maximum;
+    /**
+     * 过期时间(秒)
+     **/
+    private final long expire;
+
+    public LongKeyCacheBuilder(long maximum, long expire) {
+        this.maximum = maximum;
+        this.expire = expire;
+    }
+
+    @Override
+    public LongKeyCache createCache(String cacheName) {
+        return new LongKeyCache(cacheName, maximum, expire);
+    }
+}
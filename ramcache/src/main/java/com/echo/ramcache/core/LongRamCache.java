@@ -0,0 +1,35 @@
+package com.echo.ramcache.core;
+
+/**
+ * long类型key的内存缓存,提供基本类型参数的方法,避免key装箱
+ *
+ * @author li-yuanwen
+ */
+public interface LongRamCache extends RamCache<Long> {
+
+    /**
+     * 移除缓存
+     *
+     * @param key 缓存key
+     */
+    void remove(long key);
+
+
+    /**
+     * 更新缓存
+     *
+     * @param key     缓存key
+     * @param content 缓存内容
+     */
+    void put(long key, Object content);
+
+    /**
+     * 查询缓存
+     *
+     * @param key    缓存key
+     * @param tClass /
+     * @return 缓存内容 or null
+     */
+    <T> T get(long key, Class<T> tClass);
+
+}
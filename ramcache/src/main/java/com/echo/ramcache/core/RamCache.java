@@ -2,8 +2,10 @@ package com.echo.ramcache.core;
 
 /**
  * 内存缓存
+ *
+ * @param <K> 缓存key类型
  */
-public interface RamCache {
+public interface RamCache<K> {
 
     /**
      * 查询缓存名称
@@ -18,7 +20,7 @@ public interface RamCache {
      *
      * @param key 缓存key
      */
-    void remove(String key);
+    void remove(K key);
 
 
     /**
@@ -27,7 +29,7 @@ public interface RamCache {
      * @param key     缓存key
      * @param content 缓存内容
      */
-    void put(String key, Object content);
+    void put(K key, Object content);
 
     /**
      * 查询缓存
@@ -36,13 +38,19 @@ public interface RamCache {
      * @param tClass /
      * @return 缓存内容 or null
      */
-    <T> T get(String key, Class<T> tClass);
+    <T> T get(K key, Class<T> tClass);
 
     /**
      * 清空缓存
      */
     void clear();
 
+    /**
+     * 移除已过期的缓存,由缓存持有方周期调用,未读取的过期缓存也能及时释放
+     */
+    default void cleanUp() {
+    }
+
 
     /**
      * 获取缓存统计数据
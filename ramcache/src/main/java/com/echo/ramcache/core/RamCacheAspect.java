@@ -1,13 +1,10 @@
 package com.echo.ramcache.core;
 
 import cn.hutool.core.annotation.AnnotationUtil;
-import cn.hutool.core.util.ArrayUtil;
 import com.echo.common.convert.core.StandardReflectionParameterNameDiscoverer;
-import com.echo.common.expression.Jexl3;
 import com.echo.ramcache.anno.Cacheable;
 import com.echo.ramcache.anno.CachedEvict;
 import com.echo.ramcache.anno.CachedPut;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.AfterReturning;
@@ -18,14 +15,17 @@ import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
  * {@link Cacheable},{@link com.echo.ramcache.anno.CachedEvict}
  * 和{@link com.echo.ramcache.anno.CachedPut}切面
+ * 注解方法的元数据与缓存名称/key表达式在方法首次执行时解析并缓存
  *
  * @author: li-yuanwen
  */
@@ -38,38 +38,43 @@ public class RamCacheAspect {
 
     private final static StandardReflectionParameterNameDiscoverer DISCOVERER = new StandardReflectionParameterNameDiscoverer();
 
+    /**
+     * {@link CachedEvict}方法元数据 key:连接点方法
+     **/
+    private final Map<Method, CacheMethodMetadata<CachedEvict>> evictMetadata = new ConcurrentHashMap<>();
+    /**
+     * {@link CachedPut}方法元数据 key:连接点方法
+     **/
+    private final Map<Method, CacheMethodMetadata<CachedPut>> putMetadata = new ConcurrentHashMap<>();
+    /**
+     * {@link Cacheable}方法元数据 key:连接点方法
+     **/
+    private final Map<Method, CacheMethodMetadata<Cacheable>> cacheableMetadata = new ConcurrentHashMap<>();
+    /**
+     * 正在执行的{@link Cacheable}方法 key:缓存 value:{key:缓存key}
+     **/
+    private final Map<RamCache<String>, Map<String, CompletableFuture<Object>>> loadings = new ConcurrentHashMap<>();
+
 
     /**
      * 缓存移除
      **/
     @Before("@annotation(com.echo.ramcache.anno.CachedEvict) && execution(* *(..))")
-    public void beforeInvoke(JoinPoint jp) throws NoSuchMethodException, JsonProcessingException {
-        Method targetMethod = getTargetMethod(jp);
-        CachedEvict cachedEvict = AnnotationUtil.getAnnotation(targetMethod, CachedEvict.class);
-
-        Map<String, Object> context = null;
-        String cacheName = cachedEvict.name();
-        if (cacheName.startsWith(PREFIX)) {
-            Object[] args = jp.getArgs();
-            context = buildExpressionContext(targetMethod, args);
-            cacheName = getExpressionValue(cacheName.substring(1), context);
-        }
+    public void beforeInvoke(JoinPoint jp) throws NoSuchMethodException {
+        CacheMethodMetadata<CachedEvict> metadata = getMetadata(jp, evictMetadata, CachedEvict.class
+                , CachedEvict::name, CachedEvict::key);
+
+        Object[] args = jp.getArgs();
+        String cacheName = metadata.getCacheName(args);
 
         // 移除缓存
-        CaffeineCache caffeineCache = CacheFactory.getCache(cacheName);
-        if (caffeineCache != null) {
-            String key = cachedEvict.key();
-            if (key.startsWith(PREFIX)) {
-                if (context == null) {
-                    Object[] args = jp.getArgs();
-                    context = buildExpressionContext(targetMethod, args);
-                }
-                key = getExpressionValue(key.substring(1), context);
-            }
-            caffeineCache.remove(key);
+        RamCache<String> ramCache = CacheFactory.getCache(cacheName);
+        if (ramCache != null) {
+            String key = metadata.getKey(args);
+            ramCache.remove(key);
 
             if (log.isInfoEnabled()) {
-                log.info("@CachedEvict method:{}, cacheName:{}, key:{} ", targetMethod.getName(), cacheName, key);
+                log.info("@CachedEvict method:{}, cacheName:{}, key:{} ", metadata.getMethod().getName(), cacheName, key);
             }
         }
     }
@@ -78,34 +83,21 @@ public class RamCacheAspect {
      * 缓存更新
      **/
     @AfterReturning(value = "@annotation(com.echo.ramcache.anno.CachedPut) && execution(* *(..))", returning = "result")
-    public void afterUpdate(JoinPoint jp, Object result) throws NoSuchMethodException, JsonProcessingException {
-        Method targetMethod = getTargetMethod(jp);
-        CachedPut cachedPut = AnnotationUtil.getAnnotation(targetMethod, CachedPut.class);
-
-        Map<String, Object> context = null;
-        String cacheName = cachedPut.name();
-        if (cacheName.startsWith(PREFIX)) {
-            Object[] args = jp.getArgs();
-            context = buildExpressionContext(targetMethod, args);
-            cacheName = getExpressionValue(cacheName.substring(1), context);
-        }
+    public void afterUpdate(JoinPoint jp, Object result) throws NoSuchMethodException {
+        CacheMethodMetadata<CachedPut> metadata = getMetadata(jp, putMetadata, CachedPut.class
+                , CachedPut::name, CachedPut::key);
+        CachedPut cachedPut = metadata.getAnnotation();
 
-        CaffeineCache caffeineCache = CacheFactory.computeIfAbsent(cacheName
-                , new CaffeineCacheBuilder(cachedPut.maximum(), cachedPut.expire()));
+        Object[] args = jp.getArgs();
+        String cacheName = metadata.getCacheName(args);
+        RamCache<String> ramCache = CacheFactory.computeIfAbsent(cacheName
+                , new CaffeineCacheBuilder<String>(cachedPut.maximum(), cachedPut.expire()));
 
-        String key = cachedPut.key();
-        if (key.startsWith(PREFIX)) {
-            if (context == null) {
-                Object[] args = jp.getArgs();
-                context = buildExpressionContext(targetMethod, args);
-            }
-            key = getExpressionValue(key.substring(1), context);
-        }
-
-        caffeineCache.put(key, result);
+        String key = metadata.getKey(args);
+        ramCache.put(key, result);
 
         if (log.isInfoEnabled()) {
-            log.info("@CachedPut method:{}, cacheName:{} key:{}", targetMethod.getName(), cacheName, key);
+            log.info("@CachedPut method:{}, cacheName:{} key:{}", metadata.getMethod().getName(), cacheName, key);
         }
     }
 
@@ -113,55 +105,89 @@ public class RamCacheAspect {
      * 查询缓存
      **/
     @Around("@annotation(com.echo.ramcache.anno.Cacheable) && execution(* *(..))")
-    public Object aroundInvoke(ProceedingJoinPoint joinPoint) throws NoSuchMethodException, JsonProcessingException {
-        Method targetMethod = getTargetMethod(joinPoint);
-        Cacheable cacheable = AnnotationUtil.getAnnotation(targetMethod, Cacheable.class);
-
-        Map<String, Object> context = null;
-        String cacheName = cacheable.name();
-        if (cacheName.startsWith(PREFIX)) {
-            Object[] args = joinPoint.getArgs();
-            context = buildExpressionContext(targetMethod, args);
-            cacheName = getExpressionValue(cacheName.substring(1), context);
-        }
-
-        String key = cacheable.key();
-        if (key.startsWith(PREFIX)) {
-            if (context == null) {
-                Object[] args = joinPoint.getArgs();
-                context = buildExpressionContext(targetMethod, args);
-            }
-            key = getExpressionValue(key.substring(1), context);
-        }
-        CaffeineCache caffeineCache = CacheFactory.computeIfAbsent(cacheName
-                , new CaffeineCacheBuilder(cacheable.maximum(), cacheable.expire()));
+    public Object aroundInvoke(ProceedingJoinPoint joinPoint) throws NoSuchMethodException {
+        CacheMethodMetadata<Cacheable> metadata = getMetadata(joinPoint, cacheableMetadata, Cacheable.class
+                , Cacheable::name, Cacheable::key);
+        Cacheable cacheable = metadata.getAnnotation();
+        Method targetMethod = metadata.getMethod();
+
+        Object[] args = joinPoint.getArgs();
+        String cacheName = metadata.getCacheName(args);
+        String key = metadata.getKey(args);
+        RamCache<String> ramCache = CacheFactory.computeIfAbsent(cacheName
+                , new CaffeineCacheBuilder<String>(cacheable.maximum(), cacheable.expire()));
 
         Object result = null;
         Class<?> returnType = targetMethod.getReturnType();
-        if ((result = caffeineCache.get(key, returnType)) == null) {
+        if ((result = ramCache.get(key, returnType)) == null) {
+            // 同一key同时只执行一次方法,其他线程等待其结果
+            Map<String, CompletableFuture<Object>> cacheLoadings = loadings.get(ramCache);
+            if (cacheLoadings == null) {
+                cacheLoadings = loadings.computeIfAbsent(ramCache, k -> new ConcurrentHashMap<>());
+            }
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            CompletableFuture<Object> loading = cacheLoadings.putIfAbsent(key, future);
+            if (loading != null) {
+                return loading.join();
+            }
             try {
+                // 登记前其他线程可能已执行完成
+                if ((result = ramCache.get(key, returnType)) != null) {
+                    return result;
+                }
 
-                if (log.isInfoEnabled()) {
-                    log.info("@Cacheable method:{}, cacheName:{} key:{} not found", targetMethod.getName(), cacheName, key);
+                if (log.isDebugEnabled()) {
+                    log.debug("@Cacheable method:{}, cacheName:{} key:{} not found", targetMethod.getName(), cacheName, key);
                 }
 
                 result = joinPoint.proceed();
                 if (cacheable.nullCache() || result != null) {
-                    caffeineCache.put(key, result);
+                    ramCache.put(key, result);
                 }
                 return result;
             } catch (Throwable throwable) {
-                log.error("执行方法[{}],方法参数[{}]出现未知异常", targetMethod.getName(), joinPoint.getArgs(), throwable);
+                log.error("执行方法[{}],方法参数[{}]出现未知异常", targetMethod.getName(), args, throwable);
+            } finally {
+                future.complete(result);
+                cacheLoadings.remove(key, future);
             }
         } else {
-            if (log.isInfoEnabled()) {
-                log.info("@Cacheable method:{}, cacheName:{} key:{} found", targetMethod.getName(), cacheName, key);
+            if (log.isDebugEnabled()) {
+                log.debug("@Cacheable method:{}, cacheName:{} key:{} found", targetMethod.getName(), cacheName, key);
             }
         }
         return result;
     }
 
 
+    /**
+     * 获取连接点方法的缓存元数据,首次执行时解析
+     *
+     * @param jp             连接点
+     * @param metadataMap    元数据缓存
+     * @param annotationType 缓存注解类型
+     * @param name           缓存名称表达式
+     * @param key            缓存key表达式
+     * @return 方法元数据
+     * @throws NoSuchMethodException
+     */
+    private <A extends Annotation> CacheMethodMetadata<A> getMetadata(JoinPoint jp
+            , Map<Method, CacheMethodMetadata<A>> metadataMap, Class<A> annotationType
+            , Function<A, String> name, Function<A, String> key) throws NoSuchMethodException {
+        Method method = ((MethodSignature) jp.getSignature()).getMethod();
+        CacheMethodMetadata<A> metadata = metadataMap.get(method);
+        if (metadata != null) {
+            return metadata;
+        }
+
+        Method targetMethod = getTargetMethod(jp);
+        A annotation = AnnotationUtil.getAnnotation(targetMethod, annotationType);
+        metadata = new CacheMethodMetadata<>(targetMethod, annotation, name.apply(annotation), key.apply(annotation)
+                , DISCOVERER.getParameterNames(targetMethod));
+        CacheMethodMetadata<A> prev = metadataMap.putIfAbsent(method, metadata);
+        return prev != null ? prev : metadata;
+    }
+
     /**
      * 获取当前执行的方法
      *
@@ -174,22 +200,4 @@ public class RamCacheAspect {
         Method method = methodSignature.getMethod();
         return pjp.getTarget().getClass().getMethod(method.getName(), method.getParameterTypes());
     }
-
-
-    private Map<String, Object> buildExpressionContext(Method method, Object[] args) {
-        if (ArrayUtil.isEmpty(args)) {
-            return Collections.emptyMap();
-        }
-        Map<String, Object> map = new HashMap<>(args.length);
-        String[] parameterNames = DISCOVERER.getParameterNames(method);
-        for (int len = 0; len < parameterNames.length; len++) {
-            map.put(parameterNames[len], args[len]);
-        }
-        return map;
-    }
-
-
-    private String getExpressionValue(String expression, Map<String, Object> context) {
-        return Jexl3.eval(expression, context, String.class);
-    }
 }
@@ -0,0 +1,277 @@
+package com.echo.ramcache.enhance;
+
+import com.echo.ramcache.entity.PersistentFields;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtMethod;
+import javassist.Modifier;
+import javassist.NotFoundException;
+import javassist.bytecode.BadBytecode;
+import javassist.bytecode.BootstrapMethodsAttribute;
+import javassist.bytecode.CodeAttribute;
+import javassist.bytecode.CodeIterator;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.Descriptor;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.Opcode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 实体@Commit方法修改字段分析
+ * 分析@Commit方法(及其调用的实体方法、lambda、方法引用)的字节码,得到方法可能修改的持久化字段;
+ * 写入字段、读取可变类型的字段视为修改该字段;外部方法的参数可接收实体时整体回写,无法分析时同样整体回写
+ *
+ * @author li-yuanwen
+ */
+final class DirtyFieldAnalyzer {
+
+    private final static Logger log = LoggerFactory.getLogger(DirtyFieldAnalyzer.class);
+
+    /**
+     * 不会修改参数对象字段的JDK类型(集合、字符串等),实体作为参数传入这些类型的方法时不视为修改
+     **/
+    private final static Set<String> NON_MUTATING_OWNERS = new HashSet<>(Arrays.asList(
+            "java.lang.String", "java.lang.StringBuilder", "java.lang.StringBuffer"
+            , "java.util.Objects", "java.util.Collection", "java.util.List", "java.util.Set", "java.util.Map"
+            , "java.util.Queue", "java.util.Deque", "java.util.ArrayList", "java.util.LinkedList"
+            , "java.util.HashSet", "java.util.LinkedHashSet", "java.util.TreeSet", "java.util.HashMap"
+            , "java.util.LinkedHashMap", "java.util.TreeMap", "java.util.ArrayDeque"
+            , "java.util.concurrent.ConcurrentHashMap"));
+
+    private final ClassPool classPool;
+    private final Class<?> entityClass;
+    /**
+     * 实体类型可能存在子类(分析父类中声明的方法),此时可被覆盖的实体方法无法确定实际调用的方法
+     **/
+    private final boolean open;
+    private final PersistentFields fields;
+    /**
+     * 实体类型及其父类型、接口,用于识别实体自身的字段及方法
+     **/
+    private final Set<String> hierarchy = new HashSet<>();
+    /**
+     * 实体可赋值的所有类型(含Object及全部接口),外部方法参数为这些类型(或其数组)时实体可能被传入
+     **/
+    private final Set<String> assignable = new HashSet<>();
+    /**
+     * 已分析的方法
+     **/
+    private final Set<String> visited = new HashSet<>();
+
+    private DirtyFieldAnalyzer(ClassPool classPool, Class<?> entityClass, boolean open) {
+        this.classPool = classPool;
+        this.entityClass = entityClass;
+        this.open = open;
+        this.fields = PersistentFields.of(entityClass);
+        for (Class<?> clz = entityClass; clz != null && clz != Object.class; clz = clz.getSuperclass()) {
+            hierarchy.add(clz.getName());
+            for (Class<?> interfaceClass : clz.getInterfaces()) {
+                hierarchy.add(interfaceClass.getName());
+            }
+        }
+        hierarchy.remove(Serializable.class.getName());
+        hierarchy.remove(Comparable.class.getName());
+
+        Deque<Class<?>> types = new ArrayDeque<>();
+        types.add(entityClass);
+        while (!types.isEmpty()) {
+            Class<?> type = types.poll();
+            if (!assignable.add(type.getName())) {
+                continue;
+            }
+            if (type.getSuperclass() != null) {
+                types.add(type.getSuperclass());
+            }
+            types.addAll(Arrays.asList(type.getInterfaces()));
+        }
+        assignable.add(Object.class.getName());
+    }
+
+    /**
+     * 分析@Commit方法可能修改的持久化字段
+     *
+     * @param classPool   实体类型所在的ClassPool
+     * @param entityClass 实体类型,掩码按该类型的持久化字段计算
+     * @param method      @Commit方法
+     * @param open        实体类型是否可能存在覆盖实体方法的子类
+     * @return 字段掩码 {@link PersistentFields},无法分析时返回{@link PersistentFields#ALL}
+     */
+    static long analyze(ClassPool classPool, Class<?> entityClass, Method method, boolean open) {
+        try {
+            CtClass declaringClass = classPool.get(method.getDeclaringClass().getName());
+            CtClass[] parameterTypes = new CtClass[method.getParameterCount()];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                parameterTypes[i] = classPool.get(method.getParameterTypes()[i].getTypeName());
+            }
+            DirtyFieldAnalyzer analyzer = new DirtyFieldAnalyzer(classPool, entityClass, open);
+            long mask = analyzer.analyze(declaringClass.getDeclaredMethod(method.getName(), parameterTypes));
+            // 未发现修改的字段时同样整体回写,保证正确性
+            return mask == 0 ? PersistentFields.ALL : mask;
+        } catch (NotFoundException | BadBytecode e) {
+            log.warn("分析实体[{}]方法[{}]修改的字段失败,提交时整体回写", entityClass.getSimpleName(), method.getName(), e);
+            return PersistentFields.ALL;
+        }
+    }
+
+    private long analyze(CtMethod method) throws NotFoundException, BadBytecode {
+        if (!visited.add(method.getDeclaringClass().getName() + "." + method.getName() + method.getSignature())) {
+            return 0;
+        }
+        MethodInfo methodInfo = method.getMethodInfo2();
+        CodeAttribute code = methodInfo.getCodeAttribute();
+        if (code == null) {
+            // 抽象方法或本地方法
+            return PersistentFields.ALL;
+        }
+        ConstPool cp = methodInfo.getConstPool();
+        long mask = 0;
+        CodeIterator iterator = code.iterator();
+        while (iterator.hasNext()) {
+            int pos = iterator.next();
+            int opcode = iterator.byteAt(pos);
+            switch (opcode) {
+                case Opcode.GETFIELD:
+                case Opcode.PUTFIELD: {
+                    int index = iterator.u16bitAt(pos + 1);
+                    mask |= analyzeField(cp.getFieldrefClassName(index), cp.getFieldrefName(index)
+                            , opcode == Opcode.PUTFIELD);
+                    break;
+                }
+                case Opcode.INVOKEVIRTUAL:
+                case Opcode.INVOKESPECIAL:
+                case Opcode.INVOKESTATIC:
+                case Opcode.INVOKEINTERFACE: {
+                    mask |= analyzeInvoke(cp, iterator.u16bitAt(pos + 1), opcode != Opcode.INVOKEVIRTUAL
+                            && opcode != Opcode.INVOKEINTERFACE);
+                    break;
+                }
+                case Opcode.INVOKEDYNAMIC: {
+                    mask |= analyzeInvokeDynamic(method.getDeclaringClass(), cp, iterator.u16bitAt(pos + 1));
+                    break;
+                }
+                default: {
+                    // 无关指令
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 写入持久化字段,或读取可变类型的持久化字段(可能修改字段内容)
+     */
+    private long analyzeField(String className, String fieldName, boolean writer) {
+        if (!hierarchy.contains(className)) {
+            return 0;
+        }
+        Field field = findField(className, fieldName);
+        if (field == null) {
+            return 0;
+        }
+        long fieldMask = fields.maskOf(field);
+        if (fieldMask == 0 || !writer && isImmutable(field.getType())) {
+            return 0;
+        }
+        return fieldMask;
+    }
+
+    private Field findField(String className, String fieldName) {
+        Class<?> clz = entityClass;
+        while (clz != null && !clz.getName().equals(className)) {
+            clz = clz.getSuperclass();
+        }
+        for (; clz != null; clz = clz.getSuperclass()) {
+            try {
+                return clz.getDeclaredField(fieldName);
+            } catch (NoSuchFieldException e) {
+                // 父类中查找
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 调用实体方法时递归分析被调用方法;调用外部方法时,参数可能为实体本身则整体回写
+     *
+     * @param exact 是否按引用的类型查找方法(super调用、私有方法、静态方法)
+     */
+    private long analyzeInvoke(ConstPool cp, int ref, boolean exact) throws NotFoundException, BadBytecode {
+        int tag = cp.getTag(ref);
+        String className;
+        int nameAndType;
+        if (tag == ConstPool.CONST_Methodref) {
+            className = cp.getMethodrefClassName(ref);
+            nameAndType = cp.getMethodrefNameAndType(ref);
+        } else if (tag == ConstPool.CONST_InterfaceMethodref) {
+            className = cp.getInterfaceMethodrefClassName(ref);
+            nameAndType = cp.getInterfaceMethodrefNameAndType(ref);
+        } else {
+            return PersistentFields.ALL;
+        }
+        String name = cp.getUtf8Info(cp.getNameAndTypeName(nameAndType));
+        String signature = cp.getUtf8Info(cp.getNameAndTypeDescriptor(nameAndType));
+        if (!hierarchy.contains(className) || MethodInfo.nameInit.equals(name)) {
+            return NON_MUTATING_OWNERS.contains(className) ? 0 : analyzeExternal(signature);
+        }
+        // 虚方法按实际实体类型查找被覆盖的方法
+        CtClass target = classPool.get(exact ? className : entityClass.getName());
+        CtMethod method = target.getMethod(name, signature);
+        if (!exact && open && !Modifier.isFinal(method.getModifiers())
+                && !Modifier.isFinal(method.getDeclaringClass().getModifiers())) {
+            return PersistentFields.ALL;
+        }
+        return analyze(method);
+    }
+
+    /**
+     * 外部方法的参数可接收实体(参数类型为实体可赋值的类型,如Object、Serializable、实体实现的接口或其数组)时,
+     * 实体可能被外部方法修改(如BeanUtil.copyProperties(source, this)、反射赋值),整体回写
+     */
+    private long analyzeExternal(String signature) throws NotFoundException {
+        for (CtClass parameterType : Descriptor.getParameterTypes(signature, classPool)) {
+            CtClass type = parameterType;
+            while (type.isArray()) {
+                type = type.getComponentType();
+            }
+            if (assignable.contains(type.getName())) {
+                return PersistentFields.ALL;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 分析lambda表达式及方法引用指向的方法
+     */
+    private long analyzeInvokeDynamic(CtClass declaringClass, ConstPool cp, int index) throws NotFoundException, BadBytecode {
+        BootstrapMethodsAttribute attribute = (BootstrapMethodsAttribute) declaringClass.getClassFile2()
+                .getAttribute(BootstrapMethodsAttribute.tag);
+        if (attribute == null) {
+            return PersistentFields.ALL;
+        }
+        long mask = 0;
+        for (int argument : attribute.getMethods()[cp.getInvokeDynamicBootstrap(index)].arguments) {
+            if (cp.getTag(argument) == ConstPool.CONST_MethodHandle) {
+                int kind = cp.getMethodHandleKind(argument);
+                mask |= analyzeInvoke(cp, cp.getMethodHandleIndex(argument), kind != ConstPool.REF_invokeVirtual
+                        && kind != ConstPool.REF_invokeInterface);
+            }
+        }
+        return mask;
+    }
+
+    private boolean isImmutable(Class<?> type) {
+        return type.isPrimitive() || type.isEnum() || type == String.class || type == Boolean.class
+                || type == Character.class || (Number.class.isAssignableFrom(type) && type.getName().startsWith("java.lang."));
+    }
+}
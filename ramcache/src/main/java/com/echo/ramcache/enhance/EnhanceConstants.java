@@ -27,4 +27,9 @@ public interface EnhanceConstants {
      **/
     String METHOD_GET_ENTITY = "getEntity";
 
+    /**
+     * 织入增强的@Commit方法执行后调用的回写方法 {@link com.echo.ramcache.entity.AbstractEntity}
+     **/
+    String METHOD_COMMIT_DIRTY = "commitDirty";
+
 }
@@ -4,9 +4,9 @@ import cn.hutool.core.annotation.AnnotationUtil;
 import cn.hutool.core.lang.Filter;
 import com.echo.common.util.ObjectUtils;
 import com.echo.common.util.ReflectionUtils;
+import com.echo.ramcache.entity.AbstractEntity;
 import com.echo.ramcache.entity.Commit;
 import com.echo.ramcache.entity.DataPersistence;
-import com.echo.ramcache.entity.IEntity;
 import com.echo.ramcache.exception.EnhanceException;
 import javassist.*;
 import javassist.bytecode.ConstPool;
@@ -26,6 +26,7 @@ import static com.echo.ramcache.enhance.EnhanceConstants.*;
 
 /**
  * 实体自动回写@Commit注解增强器
+ * 生成实体的子类并持有原实体,@Commit方法委托原实体执行后回写,只回写方法可能修改的字段{@link DirtyFieldAnalyzer}
  *
  * @author li-yuanwen
  * @date 2022/3/14
@@ -99,7 +100,7 @@ public class EntityCommitEnhancer implements Enhancer {
                 if (commit == null) {
                     ctMethod = buildMethod(ctClass, method);
                 } else {
-                    ctMethod = buildEnhanceMethod(ctClass, method, commit);
+                    ctMethod = buildEnhanceMethod(tClass, ctClass, method, commit);
                 }
                 ctClass.addMethod(ctMethod);
             } catch (NotFoundException | CannotCompileException e) {
@@ -174,7 +175,7 @@ public class EntityCommitEnhancer implements Enhancer {
      */
     private void buildEnhanceEntityMethod(Class<?> entityClass, CtClass enhanceClass) throws NotFoundException, CannotCompileException {
         // 增强接口EnhanceEntity:getEntity 返回类型
-        CtClass returnClz = classPool.get(IEntity.class.getName());
+        CtClass returnClz = classPool.get(AbstractEntity.class.getName());
         CtClass[] parameters = new CtClass[0];
         ConstPool cp = enhanceClass.getClassFile2().getConstPool();
         String desc = Descriptor.ofMethod(returnClz, parameters);
@@ -184,6 +185,7 @@ public class EntityCommitEnhancer implements Enhancer {
         CtMethod method = CtMethod.make(methodInfo, enhanceClass);
         String methodBody = "{ return this." + ENTITY_FIELD + ";}";
         method.setBody(methodBody);
+        method.setModifiers(Modifier.PUBLIC);
         enhanceClass.addMethod(method);
     }
 
@@ -210,7 +212,7 @@ public class EntityCommitEnhancer implements Enhancer {
         return ctMethod;
     }
 
-    private CtMethod buildEnhanceMethod(CtClass ctClass, Method method, Commit commit) throws NotFoundException, CannotCompileException {
+    private CtMethod buildEnhanceMethod(Class<?> entityClass, CtClass ctClass, Method method, Commit commit) throws NotFoundException, CannotCompileException {
         Class<?> returnType = method.getReturnType();
         String methodName = method.getName();
         CtMethod ctMethod = new CtMethod(classPool.get(returnType.getName())
@@ -224,13 +226,14 @@ public class EntityCommitEnhancer implements Enhancer {
             ctMethod.setExceptionTypes(toCtClassArray(method.getParameterTypes()));
         }
 
+        long dirtyFields = DirtyFieldAnalyzer.analyze(classPool, entityClass, method, false);
+        String commitBody = PERSISTENCE_FIELD + ".commit(" + ENTITY_FIELD + ", " + dirtyFields + "L);";
         if (returnType == void.class) {
-            ctMethod.setBody("{" + ENTITY_FIELD + "." + methodName + "($$); " +
-                    "" + PERSISTENCE_FIELD + ".commit(" + ENTITY_FIELD + ");}");
+            ctMethod.setBody("{" + ENTITY_FIELD + "." + methodName + "($$); " + commitBody + "}");
         } else {
             String returnClass = returnType.isArray() ? toArrayTypeDeclared(returnType) : returnType.getName();
             ctMethod.setBody("{" + returnClass + " ret = " + ENTITY_FIELD + "." + methodName + "($$); "
-                    + PERSISTENCE_FIELD + ".commit(" + ENTITY_FIELD + ");"
+                    + commitBody
                     + "return ret;}");
         }
 
@@ -0,0 +1,211 @@
+package com.echo.ramcache.enhance;
+
+import com.echo.ramcache.entity.AbstractEntity;
+import com.echo.ramcache.entity.Commit;
+import com.echo.ramcache.entity.DataPersistence;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtMethod;
+import javassist.LoaderClassPath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.echo.ramcache.enhance.EnhanceConstants.METHOD_COMMIT_DIRTY;
+
+/**
+ * 实体自动回写@Commit注解织入增强器
+ * 通过{@link Instrumentation#retransformClasses(Class[])}直接在实体类的@Commit方法末尾织入回写调用,
+ * 不生成子类,每个实体只有一个对象;增强时只需托管实体{@link AbstractEntity#attach(DataPersistence)}
+ * 织入只修改方法体,已加载的类同样可以织入;实体类被热更重定义时会重新织入
+ * 无法织入的实体类型退回{@link EntityCommitEnhancer}生成子类的方式
+ *
+ * @author li-yuanwen
+ */
+public class EntityCommitWeaver implements Enhancer, ClassFileTransformer {
+
+    private final static Logger log = LoggerFactory.getLogger(EntityCommitWeaver.class);
+
+    private final DataPersistence persistence;
+    private final Instrumentation instrumentation;
+    /**
+     * 无法织入时使用的子类增强器
+     **/
+    private final EntityCommitEnhancer fallback;
+    /**
+     * 实体类型是否织入成功
+     **/
+    private final ConcurrentHashMap<Class<?>, Boolean> entityClasses = new ConcurrentHashMap<>();
+    /**
+     * 需要织入的类型(声明@Commit方法的类型)
+     **/
+    private final ConcurrentHashMap<Class<?>, WeaveTarget> targets = new ConcurrentHashMap<>();
+
+    public EntityCommitWeaver(DataPersistence persistence, Instrumentation instrumentation) {
+        if (!instrumentation.isRetransformClassesSupported()) {
+            throw new IllegalArgumentException("Instrumentation不支持retransformClasses");
+        }
+        this.persistence = persistence;
+        this.instrumentation = instrumentation;
+        this.fallback = new EntityCommitEnhancer(persistence);
+        instrumentation.addTransformer(this, true);
+    }
+
+    @Override
+    public <T> T enhance(T obj) {
+        if (!(obj instanceof AbstractEntity)) {
+            return fallback.enhance(obj);
+        }
+        Class<?> entityClass = obj.getClass();
+        Boolean woven = entityClasses.get(entityClass);
+        if (woven == null) {
+            woven = entityClasses.computeIfAbsent(entityClass, this::weave);
+        }
+        if (!woven) {
+            return fallback.enhance(obj);
+        }
+        ((AbstractEntity<?>) obj).attach(persistence);
+        return obj;
+    }
+
+    /**
+     * 织入实体类型及其父类中声明的@Commit方法
+     *
+     * @param entityClass 实体类型
+     * @return 是否织入成功
+     */
+    private boolean weave(Class<?> entityClass) {
+        List<Class<?>> classes = new ArrayList<>();
+        for (Class<?> clz = entityClass; clz != AbstractEntity.class; clz = clz.getSuperclass()) {
+            List<Method> methods = getCommitMethods(clz);
+            if (methods.isEmpty()) {
+                continue;
+            }
+            // 父类中声明的方法可能被不同的实体类型共用,只织入一次
+            boolean inherited = clz != entityClass;
+            WeaveTarget target = targets.computeIfAbsent(clz, k -> new WeaveTarget(k, methods, inherited));
+            if (inherited && !target.inherited) {
+                // 已按具体实体织入的类型出现了子类,重新织入,子类可能覆盖其调用的方法
+                target = new WeaveTarget(clz, methods, true);
+                targets.put(clz, target);
+            }
+            if (!target.woven) {
+                classes.add(clz);
+            }
+        }
+        if (classes.isEmpty()) {
+            return checkWoven(entityClass);
+        }
+
+        try {
+            instrumentation.retransformClasses(classes.toArray(new Class<?>[0]));
+        } catch (Throwable e) {
+            log.error("织入实体[{}]失败,使用子类增强", entityClass.getSimpleName(), e);
+            return false;
+        }
+        return checkWoven(entityClass);
+    }
+
+    private boolean checkWoven(Class<?> entityClass) {
+        for (Class<?> clz = entityClass; clz != AbstractEntity.class; clz = clz.getSuperclass()) {
+            WeaveTarget target = targets.get(clz);
+            if (target != null && !target.woven) {
+                log.error("织入实体[{}]失败,使用子类增强", entityClass.getSimpleName(), target.error);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<Method> getCommitMethods(Class<?> clz) {
+        List<Method> methods = new ArrayList<>();
+        for (Method method : clz.getDeclaredMethods()) {
+            int modifiers = method.getModifiers();
+            // 与子类增强的范围保持一致
+            if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || Modifier.isPrivate(modifiers)
+                    || Modifier.isAbstract(modifiers) || method.isSynthetic()) {
+                continue;
+            }
+            if (method.getAnnotation(Commit.class) != null) {
+                methods.add(method);
+            }
+        }
+        return methods;
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined
+            , ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+        if (classBeingRedefined == null) {
+            return null;
+        }
+        WeaveTarget target = targets.get(classBeingRedefined);
+        if (target == null) {
+            return null;
+        }
+        try {
+            byte[] bytes = target.weave(loader, classfileBuffer);
+            target.woven = true;
+            return bytes;
+        } catch (Throwable e) {
+            // 异常会被JVM忽略,记录后由调用方退回子类增强
+            target.woven = false;
+            target.error = e;
+            return null;
+        }
+    }
+
+    /**
+     * 需要织入的类型
+     **/
+    private static final class WeaveTarget {
+
+        private final Class<?> targetClass;
+        /**
+         * 类型中声明的@Commit方法
+         **/
+        private final List<Method> methods;
+        /**
+         * 类型是否作为父类被实体继承
+         **/
+        private final boolean inherited;
+
+        private volatile boolean woven;
+        private volatile Throwable error;
+
+        WeaveTarget(Class<?> targetClass, List<Method> methods, boolean inherited) {
+            this.targetClass = targetClass;
+            this.methods = methods;
+            this.inherited = inherited;
+        }
+
+        byte[] weave(ClassLoader loader, byte[] classfileBuffer) throws Exception {
+            ClassPool classPool = new ClassPool(true);
+            classPool.appendClassPath(new LoaderClassPath(loader));
+            CtClass ctClass = classPool.makeClass(new ByteArrayInputStream(classfileBuffer));
+            try {
+                for (Method method : methods) {
+                    long dirtyFields = DirtyFieldAnalyzer.analyze(classPool, targetClass, method, inherited);
+                    CtClass[] parameterTypes = new CtClass[method.getParameterCount()];
+                    for (int i = 0; i < parameterTypes.length; i++) {
+                        parameterTypes[i] = classPool.get(method.getParameterTypes()[i].getTypeName());
+                    }
+                    CtMethod ctMethod = ctClass.getDeclaredMethod(method.getName(), parameterTypes);
+                    ctMethod.insertAfter("this." + METHOD_COMMIT_DIRTY + "(" + dirtyFields + "L);");
+                }
+                return ctClass.toBytecode();
+            } finally {
+                ctClass.detach();
+            }
+        }
+    }
+}
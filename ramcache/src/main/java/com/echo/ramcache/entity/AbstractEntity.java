@@ -4,6 +4,7 @@ import com.echo.common.data.Transient;
 
 import java.io.Serializable;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 抽象的数据库实体,所有写入数据库（Redis除外）的对象都必须继承的类
@@ -24,11 +25,24 @@ public abstract class AbstractEntity<PK extends Comparable<PK> & Serializable> i
     @Transient
     protected final AtomicInteger status;
 
+    /**
+     * 发生变化的持久化字段掩码,不入库 {@link PersistentFields}
+     **/
+    @Transient
+    protected final AtomicLong dirtyFields;
+
+    /**
+     * 织入增强后实体自身回写使用的持久化服务,不入库,未托管的实体为null
+     **/
+    @Transient
+    private transient DataPersistence persistence;
+
     /**
      * 从db加载数据时,会自动调用无参构造函数,不允许手动调用
      **/
     public AbstractEntity() {
         this.status = new AtomicInteger(DataStatus.INIT.getCode());
+        this.dirtyFields = new AtomicLong();
     }
 
     /**
@@ -37,6 +51,7 @@ public abstract class AbstractEntity<PK extends Comparable<PK> & Serializable> i
     public AbstractEntity(PK id) {
         this.id = id;
         this.status = new AtomicInteger(DataStatus.NEW.getCode());
+        this.dirtyFields = new AtomicLong();
     }
 
     @Override
@@ -68,4 +83,49 @@ public abstract class AbstractEntity<PK extends Comparable<PK> & Serializable> i
     public void setDeleteStatus() {
         this.status.set(DataStatus.DELETE.getCode());
     }
+
+    /**
+     * 标记发生变化的持久化字段
+     *
+     * @param mask 字段掩码 {@link PersistentFields#maskOf(java.lang.reflect.Field)}
+     */
+    void markDirty(long mask) {
+        long current;
+        do {
+            current = this.dirtyFields.get();
+            if ((current | mask) == current) {
+                return;
+            }
+        } while (!this.dirtyFields.compareAndSet(current, current | mask));
+    }
+
+    /**
+     * 取出并清空发生变化的持久化字段掩码
+     *
+     * @return 字段掩码
+     */
+    long takeDirtyFields() {
+        return this.dirtyFields.getAndSet(0);
+    }
+
+    /**
+     * 托管实体,织入增强的@Commit方法执行后通过该持久化服务回写
+     *
+     * @param persistence 持久化服务
+     */
+    public void attach(DataPersistence persistence) {
+        this.persistence = persistence;
+    }
+
+    /**
+     * 织入增强的@Commit方法执行后调用,未托管的实体不回写
+     *
+     * @param dirtyFields 发生变化的字段掩码
+     */
+    protected final void commitDirty(long dirtyFields) {
+        DataPersistence persistence = this.persistence;
+        if (persistence != null) {
+            persistence.commit(this, dirtyFields);
+        }
+    }
 }
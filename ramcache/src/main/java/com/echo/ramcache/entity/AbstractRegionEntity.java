@@ -1,5 +1,7 @@
 package com.echo.ramcache.entity;
 
+import com.echo.common.data.Transient;
+
 import java.io.Serializable;
 
 /**
@@ -17,6 +19,12 @@ public abstract class AbstractRegionEntity<PK extends Comparable<PK> & Serializa
     @ForeignKey
     private FK owner;
 
+    /**
+     * 维护实体二级索引的区域实体容器,不入库
+     **/
+    @Transient
+    private transient AbstractRegionEntityContext<?, ?, ?> context;
+
     public AbstractRegionEntity() {
         super();
     }
@@ -31,4 +39,24 @@ public abstract class AbstractRegionEntity<PK extends Comparable<PK> & Serializa
         return owner;
     }
 
+    void setContext(AbstractRegionEntityContext<?, ?, ?> context) {
+        this.context = context;
+    }
+
+    AbstractRegionEntityContext<?, ?, ?> getContext() {
+        return context;
+    }
+
+    /**
+     * 实体回写后更新所在容器的二级索引
+     *
+     * @param dirtyFields 发生变化的字段掩码
+     */
+    void afterCommit(long dirtyFields) {
+        AbstractRegionEntityContext<?, ?, ?> context = this.context;
+        if (context != null) {
+            context.reindex(this, dirtyFields);
+        }
+    }
+
 }
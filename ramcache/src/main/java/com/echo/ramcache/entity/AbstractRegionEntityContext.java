@@ -1,31 +1,56 @@
 package com.echo.ramcache.entity;
 
 
+import com.echo.ramcache.enhance.EnhanceEntity;
+import lombok.extern.slf4j.Slf4j;
+
 import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 区域实体缓存容器基类,实际进入缓存的对象
+ * 实体字段标注{@link RegionIndex}时维护二级索引,索引在添加、移除实体及实体回写(索引字段发生变化)时更新
  *
  * @author li-yuanwen
  * @date 2022/3/8
  */
+@Slf4j
 public abstract class AbstractRegionEntityContext<PK extends Comparable<PK> & Serializable
         , FK extends Comparable<FK> & Serializable
         , T extends AbstractRegionEntity<PK, FK>> implements RegionEntityContext<PK, FK, T> {
 
+    /**
+     * 实体类型的索引定义
+     **/
+    private static final ConcurrentHashMap<Class<?>, IndexDefinition[]> DEFINITIONS = new ConcurrentHashMap<>();
 
     private final Map<PK, T> cache;
 
     private final FK owner;
 
+    /**
+     * 二级索引 key:索引名,首个实体加入时根据实体类型初始化
+     **/
+    private volatile Map<String, Index<PK, T>> indexes;
+    /**
+     * 索引字段掩码
+     **/
+    private volatile long indexedFields;
+
     public AbstractRegionEntityContext(FK owner, List<T> list) {
         this.owner = owner;
         this.cache = new ConcurrentHashMap<>(list.size());
         for (T entity : list) {
             cache.put(entity.getId(), entity);
+            addIndex(entity);
         }
     }
 
@@ -40,6 +65,40 @@ public abstract class AbstractRegionEntityContext<PK extends Comparable<PK> & Se
         return cache.get(id);
     }
 
+    @Override
+    public T findByIndex(String index, Object key) {
+        Index<PK, T> idx = getIndex(index);
+        if (idx == null) {
+            return null;
+        }
+        if (!idx.definition.unique) {
+            throw new IllegalArgumentException("索引[" + index + "]不是唯一索引");
+        }
+        return idx.get(key);
+    }
+
+    @Override
+    public Collection<T> findAllByIndex(String index, Object key) {
+        Index<PK, T> idx = getIndex(index);
+        if (idx == null) {
+            return Collections.emptyList();
+        }
+        return idx.getAll(key);
+    }
+
+    private Index<PK, T> getIndex(String index) {
+        Map<String, Index<PK, T>> indexes = this.indexes;
+        if (indexes == null) {
+            // 尚无实体,无法确定实体类型
+            return null;
+        }
+        Index<PK, T> idx = indexes.get(index);
+        if (idx == null) {
+            throw new IllegalArgumentException("区域实体容器[" + getClass().getSimpleName() + "]不存在索引[" + index + "]");
+        }
+        return idx;
+    }
+
     /**
      * 添加单个实体至缓存中
      *
@@ -47,7 +106,15 @@ public abstract class AbstractRegionEntityContext<PK extends Comparable<PK> & Se
      */
     @Override
     public void add(T entity) {
-        this.cache.put(entity.getId(), entity);
+        T previous = this.cache.put(entity.getId(), entity);
+        addIndex(entity);
+        if (previous != null) {
+            // 同一主键的其他实例被替换,索引已在addIndex中指向新实例
+            T origin = unwrap(previous);
+            if (origin != unwrap(entity) && origin.getContext() == this) {
+                origin.setContext(null);
+            }
+        }
         afterAddEntity(entity);
     }
 
@@ -58,7 +125,10 @@ public abstract class AbstractRegionEntityContext<PK extends Comparable<PK> & Se
      */
     @Override
     public void remove(T entity) {
-        this.cache.remove(entity.getId());
+        T removed = this.cache.remove(entity.getId());
+        if (removed != null) {
+            removeIndex(removed);
+        }
         afterRemoveEntity(entity);
     }
 
@@ -78,4 +148,279 @@ public abstract class AbstractRegionEntityContext<PK extends Comparable<PK> & Se
     protected void afterRemoveEntity(T entity) {
     }
 
+    // --------------------- 二级索引 ----------------------------------
+
+    private void addIndex(T entity) {
+        T origin = unwrap(entity);
+        Map<String, Index<PK, T>> indexes = initIndexes(origin.getClass());
+        if (indexes.isEmpty()) {
+            return;
+        }
+        synchronized (indexes) {
+            for (Index<PK, T> index : indexes.values()) {
+                index.update(entity, origin);
+            }
+        }
+        origin.setContext(this);
+    }
+
+    private void removeIndex(T entity) {
+        Map<String, Index<PK, T>> indexes = this.indexes;
+        if (indexes == null || indexes.isEmpty()) {
+            return;
+        }
+        T origin = unwrap(entity);
+        synchronized (indexes) {
+            for (Index<PK, T> index : indexes.values()) {
+                index.remove(entity);
+            }
+        }
+        if (origin.getContext() == this) {
+            origin.setContext(null);
+        }
+    }
+
+    /**
+     * 实体回写后,索引字段发生变化时更新索引
+     *
+     * @param origin      原始实体
+     * @param dirtyFields 发生变化的字段掩码,{@link PersistentFields#ALL}视为全部字段发生变化
+     */
+    void reindex(AbstractRegionEntity<?, ?> origin, long dirtyFields) {
+        if ((dirtyFields & (indexedFields | PersistentFields.ALL)) == 0 || origin.isDeleteStatus()) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        T entity = cache.get((PK) origin.getId());
+        if (entity == null) {
+            return;
+        }
+        T current = unwrap(entity);
+        if (current != origin) {
+            return;
+        }
+        Map<String, Index<PK, T>> indexes = this.indexes;
+        synchronized (indexes) {
+            for (Index<PK, T> index : indexes.values()) {
+                if ((dirtyFields & (index.definition.mask | PersistentFields.ALL)) != 0) {
+                    index.update(entity, current);
+                }
+            }
+        }
+    }
+
+    private Map<String, Index<PK, T>> initIndexes(Class<?> entityClass) {
+        Map<String, Index<PK, T>> indexes = this.indexes;
+        if (indexes != null) {
+            return indexes;
+        }
+        synchronized (this) {
+            if (this.indexes == null) {
+                IndexDefinition[] definitions = DEFINITIONS.computeIfAbsent(entityClass
+                        , AbstractRegionEntityContext::buildDefinitions);
+                Map<String, Index<PK, T>> map = new HashMap<>(definitions.length);
+                long mask = 0;
+                for (IndexDefinition definition : definitions) {
+                    map.put(definition.name, new Index<>(definition));
+                    mask |= definition.mask;
+                }
+                this.indexedFields = mask;
+                this.indexes = definitions.length == 0 ? Collections.emptyMap() : map;
+            }
+            return this.indexes;
+        }
+    }
+
+    private static IndexDefinition[] buildDefinitions(Class<?> entityClass) {
+        PersistentFields fields = PersistentFields.of(entityClass);
+        List<IndexDefinition> definitions = new ArrayList<>();
+        for (Class<?> clz = entityClass; clz != AbstractRegionEntity.class; clz = clz.getSuperclass()) {
+            for (Field field : clz.getDeclaredFields()) {
+                RegionIndex annotation = field.getAnnotation(RegionIndex.class);
+                if (annotation == null) {
+                    continue;
+                }
+                long mask = fields.maskOf(field);
+                if (mask == 0) {
+                    throw new IllegalArgumentException("实体[" + entityClass.getName() + "]索引字段[" + field.getName()
+                            + "]不是持久化字段");
+                }
+                field.setAccessible(true);
+                String name = annotation.name().isEmpty() ? field.getName() : annotation.name();
+                definitions.add(new IndexDefinition(name, field, annotation.unique(), mask));
+            }
+        }
+        return definitions.toArray(new IndexDefinition[0]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T unwrap(T entity) {
+        if (entity instanceof EnhanceEntity) {
+            return (T) ((EnhanceEntity<PK>) entity).getEntity();
+        }
+        return entity;
+    }
+
+    /**
+     * 索引定义
+     **/
+    private static final class IndexDefinition {
+
+        private final String name;
+        private final Field field;
+        private final boolean unique;
+        /**
+         * 索引字段掩码 {@link PersistentFields}
+         **/
+        private final long mask;
+
+        IndexDefinition(String name, Field field, boolean unique, long mask) {
+            this.name = name;
+            this.field = field;
+            this.unique = unique;
+            this.mask = mask;
+        }
+
+        Object getValue(Object origin) {
+            try {
+                return field.get(origin);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * 二级索引,修改时需持有容器全部索引的锁
+     **/
+    private static final class Index<PK extends Comparable<PK> & Serializable, T extends AbstractEntity<PK>> {
+
+        private final IndexDefinition definition;
+        /**
+         * 唯一索引 key:字段值 value:实体;非唯一索引 key:字段值 value:实体集
+         **/
+        private final ConcurrentHashMap<Object, Object> values = new ConcurrentHashMap<>();
+        /**
+         * 实体当前的索引字段值 key:主键
+         **/
+        private final HashMap<PK, Object> keys = new HashMap<>();
+        /**
+         * 唯一索引值重复的实体 key:字段值 value:按加入顺序等待的实体,当前持有者离开该值时依次补位
+         **/
+        private final HashMap<Object, List<T>> duplicates = new HashMap<>();
+
+        Index(IndexDefinition definition) {
+            this.definition = definition;
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(Object key) {
+            return key == null ? null : (T) values.get(key);
+        }
+
+        @SuppressWarnings("unchecked")
+        Collection<T> getAll(Object key) {
+            Object value = key == null ? null : values.get(key);
+            if (value == null) {
+                return Collections.emptyList();
+            }
+            if (definition.unique) {
+                return Collections.singletonList((T) value);
+            }
+            return Collections.unmodifiableSet((Set<T>) value);
+        }
+
+        @SuppressWarnings("unchecked")
+        void update(T entity, T origin) {
+            Object key = definition.getValue(origin);
+            PK id = entity.getId();
+            Object oldKey = keys.get(id);
+            if (oldKey != null) {
+                if (oldKey.equals(key)) {
+                    replace(entity, key);
+                    return;
+                }
+                remove(entity, oldKey);
+            }
+            if (key == null) {
+                keys.remove(id);
+                return;
+            }
+            keys.put(id, key);
+            if (definition.unique) {
+                // 值已被其他实体持有时不覆盖,记录为等待者
+                T holder = (T) values.putIfAbsent(key, entity);
+                if (holder != null && !holder.getId().equals(id)) {
+                    duplicates.computeIfAbsent(key, k -> new ArrayList<>(1)).add(entity);
+                    log.warn("唯一索引[{}]值[{}]重复,实体[{}]的索引在实体[{}]离开该值后生效", definition.name, key, id
+                            , holder.getId());
+                }
+            } else {
+                ((Set<T>) values.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet())).add(entity);
+            }
+        }
+
+        void remove(T entity) {
+            Object oldKey = keys.remove(entity.getId());
+            if (oldKey != null) {
+                remove(entity, oldKey);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void remove(T entity, Object key) {
+            if (definition.unique) {
+                PK id = entity.getId();
+                List<T> waiting = duplicates.get(key);
+                T holder = (T) values.get(key);
+                if (holder != null && holder.getId().equals(id)) {
+                    if (waiting == null) {
+                        values.remove(key, holder);
+                        return;
+                    }
+                    // 持有者离开,最早的等待者补位
+                    values.put(key, waiting.remove(0));
+                } else if (waiting == null || !waiting.removeIf(e -> e.getId().equals(id))) {
+                    return;
+                }
+                if (waiting.isEmpty()) {
+                    duplicates.remove(key);
+                }
+                return;
+            }
+            // 按主键移除,索引中可能是同一主键的旧实例
+            PK id = entity.getId();
+            Set<T> set = (Set<T>) values.get(key);
+            if (set != null && set.removeIf(e -> e.getId().equals(id)) && set.isEmpty()) {
+                values.remove(key, set);
+            }
+        }
+
+        /**
+         * 索引值未变化,同一主键的实体实例变化时替换索引中的实例,唯一索引的持有或等待顺序不变
+         */
+        @SuppressWarnings("unchecked")
+        private void replace(T entity, Object key) {
+            PK id = entity.getId();
+            if (definition.unique) {
+                T holder = (T) values.get(key);
+                if (holder != null && holder.getId().equals(id)) {
+                    if (holder != entity) {
+                        values.put(key, entity);
+                    }
+                    return;
+                }
+                List<T> waiting = duplicates.get(key);
+                if (waiting != null) {
+                    waiting.replaceAll(e -> e.getId().equals(id) ? entity : e);
+                }
+                return;
+            }
+            Set<T> set = (Set<T>) values.get(key);
+            if (set != null && !set.contains(entity)) {
+                set.removeIf(e -> e.getId().equals(id));
+                set.add(entity);
+            }
+        }
+    }
 }
@@ -1,7 +1,10 @@
 package com.echo.ramcache.entity;
 
 import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * 数据库访问接口
@@ -19,6 +22,26 @@ public interface DataAccessor {
      */
     <PK extends Comparable<PK> & Serializable, T extends IEntity<PK>> T load(PK id, Class<T> tClass);
 
+    /**
+     * 批量读取数据库表数据,默认逐条读取,实现类可覆盖为一次查询
+     *
+     * @param ids    主键id集合
+     * @param tClass 实体对象class
+     * @param <PK>   主键
+     * @param <T>    实体类型
+     * @return 存在的实体对象
+     */
+    default <PK extends Comparable<PK> & Serializable, T extends IEntity<PK>> List<T> loadAll(Collection<PK> ids, Class<T> tClass) {
+        List<T> list = new ArrayList<>(ids.size());
+        for (PK id : ids) {
+            T entity = load(id, tClass);
+            if (entity != null) {
+                list.add(entity);
+            }
+        }
+        return list;
+    }
+
     /**
      * 移除数据库表数据
      *
@@ -27,12 +50,23 @@ public interface DataAccessor {
     void remove(AbstractEntity<?> entity);
 
     /**
-     * 更新数据库表数据
+     * 整体更新数据库表数据,数据不存在时写入(save语义)
+     * 预写日志重放的实体及回写失败后重试的新建实体均通过该方法回写,需保证重复调用的幂等性
      *
      * @param entity 需要更新的实体
      */
     void update(AbstractEntity<?> entity);
 
+    /**
+     * 更新数据库表数据的部分字段,默认整体更新
+     *
+     * @param entity 需要更新的实体
+     * @param fields 发生变化的字段
+     */
+    default void update(AbstractEntity<?> entity, List<Field> fields) {
+        update(entity);
+    }
+
     /**
      * 创建数据库表数据
      *
@@ -40,6 +74,34 @@ public interface DataAccessor {
      */
     void create(AbstractEntity<?> entity);
 
+    /**
+     * 批量回写数据库表数据,默认逐条回写,实现类可覆盖为数据库原生的批量写入
+     * 写入失败时整批实体逐条重试,重试时新建的实体按{@link #update(AbstractEntity)}回写,
+     * 因此部分实体已写入的批次重试时不会重复插入;覆盖的实现同样需保证整批重试的幂等性
+     *
+     * @param entityClass 实体类型
+     * @param creates     新创建的实体
+     * @param updates     需要更新的实体及其发生变化的字段
+     * @param removes     需要移除的实体
+     */
+    default void writeBatch(Class<?> entityClass, List<AbstractEntity<?>> creates
+            , List<EntityUpdate> updates, List<AbstractEntity<?>> removes) {
+        for (AbstractEntity<?> entity : creates) {
+            create(entity);
+        }
+        for (EntityUpdate update : updates) {
+            List<Field> fields = update.getFields();
+            if (fields == null) {
+                update(update.getEntity());
+            } else {
+                update(update.getEntity(), fields);
+            }
+        }
+        for (AbstractEntity<?> entity : removes) {
+            remove(entity);
+        }
+    }
+
 
     /**
      * 读取数据库表数据,用于一对多的关系模型
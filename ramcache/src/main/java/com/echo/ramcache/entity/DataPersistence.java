@@ -1,5 +1,7 @@
 package com.echo.ramcache.entity;
 
+import com.echo.common.concurrency.RunnableLoop;
+
 import java.io.Serializable;
 import java.util.Map;
 import java.util.concurrent.Future;
@@ -18,6 +20,17 @@ public interface DataPersistence {
      */
     <PK extends Comparable<PK> & Serializable> void commit(AbstractEntity<PK> entity);
 
+    /**
+     * 回写到数据库,仅更新发生变化的字段,默认整体回写
+     *
+     * @param entity      回写内容
+     * @param dirtyFields 发生变化的字段掩码 {@link PersistentFields}
+     * @param <PK>        /
+     */
+    default <PK extends Comparable<PK> & Serializable> void commit(AbstractEntity<PK> entity, long dirtyFields) {
+        commit(entity);
+    }
+
 
     /**
      * 从待持久化队列中查找指定主键和指定类型的实体数据
@@ -42,9 +55,37 @@ public interface DataPersistence {
     <PK extends Comparable<PK> & Serializable
             , T extends AbstractEntity<PK>> Map<PK, T> findAllByClass(Class<T> tClass);
 
+    /**
+     * 查询某个类型指定持有者的持久化数据集
+     *
+     * @param owner  持有者标识
+     * @param tClass 实体数据
+     * @param <PK>   主键类型
+     * @param <FK>   持有者标识类型
+     * @param <T>    实体数据实际类型
+     * @return 持久化数据集(有可能包含待删除的实体)
+     */
+    <PK extends Comparable<PK> & Serializable, FK extends Comparable<FK> & Serializable
+            , T extends AbstractRegionEntity<PK, FK>> Map<PK, T> findAllByOwner(FK owner, Class<T> tClass);
+
+    /**
+     * 查询各实体类型的持久化统计
+     *
+     * @return key:实体类型 value:持久化统计
+     */
+    Map<Class<?>, PersistenceStat> getPersistenceStats();
+
     /**
      * 停止持久化
      */
     Future<?> shutdownGracefully();
 
+    /**
+     * 持久化线程之一,供实体缓存等组件执行低频的定时维护任务,随持久化一同停止
+     *
+     * @return 线程 or null(不提供)
+     */
+    default RunnableLoop scheduler() {
+        return null;
+    }
 }
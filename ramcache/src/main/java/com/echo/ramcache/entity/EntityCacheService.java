@@ -2,6 +2,8 @@ package com.echo.ramcache.entity;
 
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
 
 /**
  * 实体数据缓存层
@@ -36,6 +38,18 @@ public interface EntityCacheService {
     <PK extends Comparable<PK> & Serializable, T extends AbstractEntity<PK>> T loadOrCreate(PK id, Class<T> tClass
             , EntityBuilder<PK, T> entityBuilder);
 
+    /**
+     * 批量读取实体,缓存中没有的实体通过一次数据库查询读取,用于登录等场景预加载
+     *
+     * @param ids    实体主键集合
+     * @param tClass 实体类型
+     * @param <PK>   主键类型
+     * @param <T>    实体类型
+     * @return key:主键 value:实体,不存在的实体不包含在内
+     */
+    <PK extends Comparable<PK> & Serializable, T extends AbstractEntity<PK>> Map<PK, T> loadEntities(Collection<PK> ids
+            , Class<T> tClass);
+
     /**
      * 创建实体并加入到缓存中
      *
@@ -0,0 +1,141 @@
+package com.echo.ramcache.entity;
+
+import com.echo.common.util.ProtoStuffUtils;
+import com.echo.ramcache.journal.Journal;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 实体提交预写日志
+ * 每次DataPersistence.commit先记录实体的最新状态,待回写数据库后按最小未回写序号截断日志
+ * 记录格式: 状态(1) + 类名长度(2) + 类名 + ProtoStuff序列化的实体
+ *
+ * @author li-yuanwen
+ */
+@Slf4j
+class EntityJournal {
+
+    private final Journal journal;
+    /**
+     * 读锁: 追加日志并登记到脏数据集;写锁: 计算截断序号时确认所有已追加的记录均已登记
+     **/
+    private final ReentrantReadWriteLock lock;
+    /**
+     * 实体类型缓存
+     **/
+    private final Map<String, Class<?>> classes;
+    /**
+     * 是否正在重放,重放期间不截断日志
+     **/
+    private volatile boolean replaying;
+
+    EntityJournal(Journal journal) {
+        this.journal = journal;
+        this.lock = new ReentrantReadWriteLock();
+        this.classes = new ConcurrentHashMap<>();
+    }
+
+    Lock appendLock() {
+        return lock.readLock();
+    }
+
+    /**
+     * 追加实体的当前状态,调用方需持有{@link #appendLock()}
+     *
+     * @param entity 实体
+     * @return 记录序号
+     */
+    long append(AbstractEntity<?> entity) {
+        byte[] data = ProtoStuffUtils.serialize(entity);
+        byte[] className = entity.getClass().getName().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 2 + className.length + data.length);
+        buffer.put((byte) entity.status.get());
+        buffer.putShort((short) className.length);
+        buffer.put(className);
+        buffer.put(data);
+        return journal.append(buffer.array());
+    }
+
+    void awaitDurable(long sequence) {
+        journal.awaitDurable(sequence);
+    }
+
+    /**
+     * 重放日志,同一实体的后续记录覆盖之前的记录
+     *
+     * @param persistence 数据持久化
+     */
+    void replay(GenericDataPersistence persistence) {
+        replaying = true;
+        try {
+            doReplay(persistence);
+        } finally {
+            replaying = false;
+        }
+    }
+
+    private void doReplay(GenericDataPersistence persistence) {
+        journal.replay((sequence, payload) -> {
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            int status = buffer.get();
+            byte[] className = new byte[buffer.getShort()];
+            buffer.get(className);
+            String name = new String(className, StandardCharsets.UTF_8);
+            Class<?> clazz = classes.computeIfAbsent(name, this::forName);
+            if (clazz == null) {
+                return;
+            }
+            AbstractEntity<?> entity = (AbstractEntity<?>) ProtoStuffUtils.deserialize(payload, buffer.position()
+                    , buffer.remaining(), clazz);
+            // 无法确认新建实体是否已入库,统一按更新(save)回写
+            entity.status.set(status == DataStatus.DELETE.getCode()
+                    ? DataStatus.DELETE.getCode() : DataStatus.MODIFY.getCode());
+            // 日志不记录发生变化的字段
+            entity.dirtyFields.set(PersistentFields.ALL);
+            persistence.replay(entity, sequence);
+        });
+    }
+
+    private Class<?> forName(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            log.error("预写日志中的实体类型[{}]不存在,忽略该类型的记录", name);
+            return null;
+        }
+    }
+
+    /**
+     * 截断已回写数据库的记录
+     *
+     * @param consumers 全部持久化消费者
+     */
+    void checkpoint(Collection<PersistenceConsumer> consumers) {
+        if (replaying) {
+            return;
+        }
+        long limit;
+        lock.writeLock().lock();
+        try {
+            // 持有写锁时,所有序号小于limit的记录均已登记到对应的消费者
+            limit = journal.nextSequence();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (PersistenceConsumer consumer : consumers) {
+            limit = Math.min(limit, consumer.getLowestSequence());
+        }
+        journal.truncate(limit);
+    }
+
+    void close() {
+        journal.close();
+    }
+}
@@ -0,0 +1,43 @@
+package com.echo.ramcache.entity;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+/**
+ * 待更新的实体及其发生变化的字段
+ *
+ * @author li-yuanwen
+ */
+public final class EntityUpdate {
+
+    /**
+     * 实体
+     **/
+    private final AbstractEntity<?> entity;
+    /**
+     * 发生变化的字段掩码
+     **/
+    private final long dirtyFields;
+
+    EntityUpdate(AbstractEntity<?> entity, long dirtyFields) {
+        this.entity = entity;
+        this.dirtyFields = dirtyFields;
+    }
+
+    public AbstractEntity<?> getEntity() {
+        return entity;
+    }
+
+    long getDirtyFields() {
+        return dirtyFields;
+    }
+
+    /**
+     * 发生变化的字段
+     *
+     * @return 发生变化的字段,需要整体更新时返回null
+     */
+    public List<Field> getFields() {
+        return PersistentFields.of(entity.getClass()).toFields(dirtyFields);
+    }
+}
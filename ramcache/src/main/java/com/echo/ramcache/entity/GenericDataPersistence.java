@@ -2,10 +2,14 @@ package com.echo.ramcache.entity;
 
 import cn.hutool.core.annotation.AnnotationUtil;
 import com.echo.common.concurrency.MultiThreadRunnableLoopGroup;
+import com.echo.common.concurrency.RunnableLoop;
 import com.echo.common.concurrency.RunnableLoopGroup;
+import com.echo.ramcache.journal.Journal;
 
 import java.io.Serializable;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 
@@ -25,11 +29,40 @@ public class GenericDataPersistence implements DataPersistence {
      * 实体对应的持久消费者
      **/
     private final ConcurrentHashMap<Class<?>, PersistenceConsumer> consumerMap;
+    /**
+     * 预写日志,未开启时为null
+     **/
+    private final EntityJournal journal;
 
     public GenericDataPersistence(DataAccessor accessor) {
+        this(accessor, Runtime.getRuntime().availableProcessors() + 1);
+    }
+
+    /**
+     * @param accessor  数据库访问
+     * @param threadNum 持久化线程数,每个实体类型固定在其中一个线程上回写,不同类型之间并行
+     */
+    public GenericDataPersistence(DataAccessor accessor, int threadNum) {
+        this(accessor, threadNum, null);
+    }
+
+    /**
+     * 开启预写日志时,构造时即重放日志中尚未回写的实体并立即回写,
+     * 因此依赖本对象的EntityCacheService对外提供查询前,重放的实体已可通过findById查询到
+     *
+     * @param accessor  数据库访问
+     * @param threadNum 持久化线程数
+     * @param journal   预写日志,可以为null
+     */
+    public GenericDataPersistence(DataAccessor accessor, int threadNum, Journal journal) {
         this.accessor = accessor;
         this.consumerMap = new ConcurrentHashMap<>();
-        this.group = new MultiThreadRunnableLoopGroup(Runtime.getRuntime().availableProcessors() + 1);
+        this.group = new MultiThreadRunnableLoopGroup(threadNum);
+        this.journal = journal == null ? null : new EntityJournal(journal);
+        if (this.journal != null) {
+            this.journal.replay(this);
+            consumerMap.values().forEach(PersistenceConsumer::immediateWriteAll);
+        }
     }
 
     private PersistenceConsumer getPersistenceConsumer(Class<?> clazz) {
@@ -37,22 +70,58 @@ public class GenericDataPersistence implements DataPersistence {
         if (consumer == null) {
             // 默认间隔5分钟回写
             int second = 300;
+            int size = 500;
+            int retries = 3;
             Persisted persisted = AnnotationUtil.getAnnotation(clazz, Persisted.class);
             if (persisted != null) {
                 second = persisted.intervalSecond();
+                size = persisted.batchSize();
+                retries = persisted.maxRetries();
             }
             final int intervalSecond = second;
-            consumer = consumerMap.computeIfAbsent(clazz, k -> new GenericPersistenceConsumer(accessor, group.next(), intervalSecond));
+            final int batchSize = size;
+            final int maxRetries = retries;
+            consumer = consumerMap.computeIfAbsent(clazz, k -> new GenericPersistenceConsumer(accessor, k
+                    , group.next(), intervalSecond, batchSize, maxRetries
+                    , journal, journal == null ? null : this::checkpoint));
         }
         return consumer;
     }
 
     @Override
     public <PK extends Comparable<PK> & Serializable> void commit(AbstractEntity<PK> entity) {
+        // 无法确定发生变化的字段,整体回写
+        commit(entity, PersistentFields.ALL);
+    }
+
+    @Override
+    public <PK extends Comparable<PK> & Serializable> void commit(AbstractEntity<PK> entity, long dirtyFields) {
+        entity.markDirty(dirtyFields);
+        if (entity instanceof AbstractRegionEntity) {
+            ((AbstractRegionEntity<?, ?>) entity).afterCommit(dirtyFields);
+        }
         PersistenceConsumer consumer = getPersistenceConsumer(entity.getClass());
         consumer.accept(entity);
     }
 
+    /**
+     * 重放预写日志中的实体
+     *
+     * @param entity   实体
+     * @param sequence 日志序号
+     */
+    <PK extends Comparable<PK> & Serializable> void replay(AbstractEntity<PK> entity, long sequence) {
+        PersistenceConsumer consumer = getPersistenceConsumer(entity.getClass());
+        consumer.replay(entity, sequence);
+    }
+
+    /**
+     * 截断已回写数据库的预写日志
+     */
+    private void checkpoint() {
+        journal.checkpoint(consumerMap.values());
+    }
+
     @Override
     public <PK extends Comparable<PK> & Serializable, T extends AbstractEntity<PK>> T findById(PK id, Class<T> tClass) {
         PersistenceConsumer consumer = getPersistenceConsumer(tClass);
@@ -65,10 +134,40 @@ public class GenericDataPersistence implements DataPersistence {
         return consumer.findAll();
     }
 
+    @Override
+    public <PK extends Comparable<PK> & Serializable, FK extends Comparable<FK> & Serializable
+            , T extends AbstractRegionEntity<PK, FK>> Map<PK, T> findAllByOwner(FK owner, Class<T> tClass) {
+        PersistenceConsumer consumer = getPersistenceConsumer(tClass);
+        return consumer.findAllByOwner(owner);
+    }
+
+    @Override
+    public Map<Class<?>, PersistenceStat> getPersistenceStats() {
+        Map<Class<?>, PersistenceStat> stats = new HashMap<>(consumerMap.size());
+        consumerMap.forEach((k, v) -> stats.put(k, v.getStat()));
+        return stats;
+    }
+
+    @Override
+    public RunnableLoop scheduler() {
+        return group.next();
+    }
+
     @Override
     public Future<?> shutdownGracefully() {
         // 持久化所有任务
         consumerMap.values().forEach(PersistenceConsumer::immediateWriteAll);
-        return group.shutdownGracefully();
+        Future<?> future = group.shutdownGracefully();
+        if (journal != null && future instanceof CompletableFuture) {
+            // 回写线程全部结束后截断并关闭预写日志
+            return ((CompletableFuture<?>) future).whenComplete((v, e) -> {
+                try {
+                    checkpoint();
+                } finally {
+                    journal.close();
+                }
+            });
+        }
+        return future;
     }
 }
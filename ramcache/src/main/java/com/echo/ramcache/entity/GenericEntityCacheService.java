@@ -1,8 +1,12 @@
 package com.echo.ramcache.entity;
 
-import com.echo.ramcache.anno.Cacheable;
-import com.echo.ramcache.anno.CachedEvict;
-import com.echo.ramcache.anno.CachedPut;
+import com.echo.common.concurrency.RunnableLoop;
+import com.echo.common.convert.core.GenericTypeResolver;
+import com.echo.ramcache.core.CacheConstants;
+import com.echo.ramcache.core.CaffeineCache;
+import com.echo.ramcache.core.LongKeyCache;
+import com.echo.ramcache.core.LongRamCache;
+import com.echo.ramcache.core.RamCache;
 import com.echo.ramcache.enhance.EnhanceEntity;
 import com.echo.ramcache.enhance.Enhancer;
 import com.echo.ramcache.enhance.EntityCommitEnhancer;
@@ -11,66 +15,255 @@ import lombok.extern.slf4j.Slf4j;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * 实体缓存Service
+ * 实体与区域实体容器按实体类型分别缓存,声明为Long类型的主键/持有者使用{@link LongKeyCache},key不转换为字符串
+ * 过期缓存由持久化线程周期清理,见{@link DataPersistence#scheduler()}
+ * 缓存未命中时同一key的并发加载合并为一次,保证同一实体只有一个增强实例
  *
  * @author: li-yuanwen
  */
 @Slf4j
 public class GenericEntityCacheService implements EntityCacheService, RegionEntityCacheService {
 
+    /**
+     * 过期缓存清理的最大间隔(秒)
+     **/
+    private static final long MAX_CLEAN_UP_INTERVAL_SECOND = 60;
+
     private final DataAccessor accessor;
     private final DataPersistence dataPersistence;
     private final Enhancer enhancer;
 
+    /**
+     * 每个实体类型的缓存最大容量
+     **/
+    private final long maximum;
+    /**
+     * 缓存过期时间(秒)
+     **/
+    private final long expire;
+    /**
+     * 实体缓存 key:实体类型
+     **/
+    private final ConcurrentHashMap<Class<?>, RamCache<?>> entityCaches = new ConcurrentHashMap<>();
+    /**
+     * 区域实体容器缓存 key:区域实体类型
+     **/
+    private final ConcurrentHashMap<Class<?>, RamCache<?>> regionCaches = new ConcurrentHashMap<>();
+    /**
+     * 正在加载的缓存key
+     **/
+    private final ConcurrentHashMap<LoadingKey, CompletableFuture<Object>> loadings = new ConcurrentHashMap<>();
+
     public GenericEntityCacheService(DataAccessor accessor, DataPersistence dataPersistence) {
+        this(accessor, dataPersistence, CacheConstants.DEFAULT_MAXIMUM, CacheConstants.DOUBLE_DEFAULT_EXPIRE_SECOND);
+    }
+
+    public GenericEntityCacheService(DataAccessor accessor, DataPersistence dataPersistence, long maximum, long expire) {
+        this(accessor, dataPersistence, maximum, expire, new EntityCommitEnhancer(dataPersistence));
+    }
+
+    /**
+     * @param enhancer 实体增强器,{@link EntityCommitEnhancer}生成子类包装实体,{@link EntityCommitWeaver}直接织入实体类
+     */
+    public GenericEntityCacheService(DataAccessor accessor, DataPersistence dataPersistence, long maximum, long expire
+            , Enhancer enhancer) {
         this.accessor = accessor;
         this.dataPersistence = dataPersistence;
-        this.enhancer = new EntityCommitEnhancer(dataPersistence);
+        this.enhancer = enhancer;
+        this.maximum = maximum;
+        this.expire = expire;
+
+        RunnableLoop scheduler = dataPersistence.scheduler();
+        if (scheduler != null && expire > 0) {
+            long interval = Math.min(expire, MAX_CLEAN_UP_INTERVAL_SECOND);
+            scheduler.scheduleWithFixedDelay(this::cleanUp, interval, interval, TimeUnit.SECONDS);
+        }
     }
 
     // --------------------- EntityCacheService 实现 ----------------------------------
 
     @Override
-    @Cacheable(name = "#tClass.getName()", key = "#id")
     public <PK extends Comparable<PK> & Serializable, T extends AbstractEntity<PK>> T loadEntity(PK id, Class<T> tClass) {
-        T entity = dataPersistence.findById(id, tClass);
-        if (entity == null) {
-            entity = accessor.load(id, tClass);
-        } else if (entity.isDeleteStatus()) {
-            entity = null;
+        RamCache<PK> cache = getCache(entityCaches, tClass);
+        T entity = get(cache, id, tClass);
+        if (entity != null) {
+            return entity;
         }
-        return entity == null ? null : wrapIfNecessary(entity);
+        return load(cache, id, tClass, () -> loadFromStorage(id, tClass));
     }
 
     @Override
-    @Cacheable(name = "#tClass.getName()", key = "#id")
     public <PK extends Comparable<PK> & Serializable, T extends AbstractEntity<PK>> T loadOrCreate(PK id, Class<T> tClass, EntityBuilder<PK, T> entityBuilder) {
         T entity = loadEntity(id, tClass);
-        if (entity == null) {
-            T newInstance = entityBuilder.build(id);
-            dataPersistence.commit(newInstance);
-            entity = newInstance;
-            return wrapIfNecessary(entity);
+        RamCache<PK> cache = getCache(entityCaches, tClass);
+        // 等待到的可能是其他线程的单纯加载(结果为null),此时重新发起带创建的加载,保证实体只创建一次
+        while (entity == null) {
+            entity = load(cache, id, tClass, () -> {
+                T loaded = loadFromStorage(id, tClass);
+                if (loaded != null) {
+                    return loaded;
+                }
+                T newInstance = entityBuilder.build(id);
+                dataPersistence.commit(newInstance);
+                return wrapIfNecessary(newInstance);
+            });
         }
         return entity;
     }
 
     @Override
-    @CachedPut(name = "#entity.getClass().getName()", key = "#entity.getId()")
+    public <PK extends Comparable<PK> & Serializable, T extends AbstractEntity<PK>> Map<PK, T> loadEntities(Collection<PK> ids, Class<T> tClass) {
+        Map<PK, T> result = new HashMap<>(ids.size());
+        RamCache<PK> cache = null;
+        // 由当前线程加载的实体
+        Map<PK, CompletableFuture<Object>> owned = new HashMap<>();
+        // 其他线程正在加载的实体
+        Map<PK, CompletableFuture<Object>> waiting = new HashMap<>();
+        for (PK id : ids) {
+            if (result.containsKey(id) || owned.containsKey(id) || waiting.containsKey(id)) {
+                continue;
+            }
+            if (cache == null) {
+                cache = getCache(entityCaches, tClass);
+            }
+            T entity = get(cache, id, tClass);
+            if (entity != null) {
+                result.put(id, entity);
+                continue;
+            }
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            CompletableFuture<Object> loading = loadings.putIfAbsent(new LoadingKey(cache, id), future);
+            if (loading != null) {
+                waiting.put(id, loading);
+            } else {
+                owned.put(id, future);
+            }
+        }
+
+        if (!owned.isEmpty()) {
+            loadAll(cache, owned, tClass, result);
+        }
+        for (Map.Entry<PK, CompletableFuture<Object>> entry : waiting.entrySet()) {
+            T entity = tClass.cast(join(entry.getValue()));
+            if (entity != null) {
+                result.put(entry.getKey(), entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量加载当前线程负责的实体,先查询待持久化数据集,其余实体通过一次数据库查询加载
+     *
+     * @param cache  实体缓存
+     * @param owned  当前线程负责加载的实体
+     * @param tClass 实体类型
+     * @param result 加载结果
+     */
+    private <PK extends Comparable<PK> & Serializable, T extends AbstractEntity<PK>> void loadAll(RamCache<PK> cache
+            , Map<PK, CompletableFuture<Object>> owned, Class<T> tClass, Map<PK, T> result) {
+        try {
+            List<PK> missing = new ArrayList<>(owned.size());
+            for (Map.Entry<PK, CompletableFuture<Object>> entry : owned.entrySet()) {
+                PK id = entry.getKey();
+                // 登记加载前其他线程可能已完成加载
+                T entity = get(cache, id, tClass);
+                if (entity == null) {
+                    entity = dataPersistence.findById(id, tClass);
+                    if (entity == null) {
+                        missing.add(id);
+                        continue;
+                    }
+                    entity = entity.isDeleteStatus() ? null : cacheLoaded(cache, id, wrapIfNecessary(entity));
+                }
+                completeLoading(cache, id, entry.getValue(), entity, result);
+            }
+
+            if (!missing.isEmpty()) {
+                Map<PK, T> loaded = new HashMap<>(missing.size());
+                for (T entity : accessor.loadAll(missing, tClass)) {
+                    loaded.put(entity.getId(), entity);
+                }
+                for (PK id : missing) {
+                    T entity = loaded.get(id);
+                    if (entity != null) {
+                        entity = cacheLoaded(cache, id, wrapIfNecessary(entity));
+                    }
+                    completeLoading(cache, id, owned.get(id), entity, result);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            for (Map.Entry<PK, CompletableFuture<Object>> entry : owned.entrySet()) {
+                CompletableFuture<Object> future = entry.getValue();
+                if (!future.isDone()) {
+                    future.completeExceptionally(e);
+                    loadings.remove(new LoadingKey(cache, entry.getKey()), future);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private <K, V> V cacheLoaded(RamCache<K> cache, K key, V value) {
+        put(cache, key, value);
+        return value;
+    }
+
+    private <K, V> void completeLoading(RamCache<K> cache, K key, CompletableFuture<Object> future, V value
+            , Map<K, V> result) {
+        if (value != null) {
+            result.put(key, value);
+        }
+        future.complete(value);
+        loadings.remove(new LoadingKey(cache, key), future);
+    }
+
+    /**
+     * 从待持久化数据集或数据库中读取实体
+     *
+     * @param id     主键
+     * @param tClass 实体类型
+     * @return 增强后的实体 or null
+     */
+    private <PK extends Comparable<PK> & Serializable, T extends AbstractEntity<PK>> T loadFromStorage(PK id, Class<T> tClass) {
+        T entity = dataPersistence.findById(id, tClass);
+        if (entity == null) {
+            entity = accessor.load(id, tClass);
+        } else if (entity.isDeleteStatus()) {
+            entity = null;
+        }
+        return entity == null ? null : wrapIfNecessary(entity);
+    }
+
+    @Override
     public <PK extends Comparable<PK> & Serializable, T extends AbstractEntity<PK>> T createEntity(T entity) {
         T originEntity = unwrapIfNecessary(entity);
         dataPersistence.commit(originEntity);
-        return wrapIfNecessary(entity);
+        T result = wrapIfNecessary(entity);
+        PK id = originEntity.getId();
+        put(getCache(entityCaches, originEntity.getClass()), id, result);
+        return result;
     }
 
     @Override
-    @CachedEvict(name = "#entity.getClass().getName()", key = "#entity.getId()")
     public <PK extends Comparable<PK> & Serializable, T extends AbstractEntity<PK>> void remove(T entity) {
         T originEntity = unwrapIfNecessary(entity);
+        PK id = originEntity.getId();
+        RamCache<PK> cache = findCache(entityCaches, originEntity.getClass());
+        if (cache != null) {
+            remove(cache, id);
+        }
         originEntity.setDeleteStatus();
         dataPersistence.commit(originEntity);
     }
@@ -78,10 +271,24 @@ public class GenericEntityCacheService implements EntityCacheService, RegionEnti
     // --------------------- RegionEntityCacheService 实现 ----------------------------------
 
     @Override
-    @Cacheable(name = "#tClass.getName()", key = "#owner")
     public <PK extends Comparable<PK> & Serializable, FK extends Comparable<FK> & Serializable, T extends AbstractRegionEntity<PK, FK>, R extends RegionEntityContext<PK, FK, T>> R loadRegionContext(FK owner, Class<T> tClass, RegionEntityContextBuilder<FK, T, R> builder) {
-        // 先查询待持久化数据集
-        Map<PK, T> map = dataPersistence.findAllByClass(tClass);
+        RamCache<FK> cache = getCache(regionCaches, tClass);
+        @SuppressWarnings("unchecked")
+        R context = (R) get(cache, owner, RegionEntityContext.class);
+        if (context != null) {
+            return context;
+        }
+        @SuppressWarnings("unchecked")
+        R loaded = (R) load(cache, owner, RegionEntityContext.class, () -> buildRegionContext(owner, tClass, builder));
+        return loaded;
+    }
+
+    /**
+     * 合并待持久化数据集与数据库数据,构建区域实体容器
+     */
+    private <PK extends Comparable<PK> & Serializable, FK extends Comparable<FK> & Serializable, T extends AbstractRegionEntity<PK, FK>, R extends RegionEntityContext<PK, FK, T>> R buildRegionContext(FK owner, Class<T> tClass, RegionEntityContextBuilder<FK, T, R> builder) {
+        // 先查询持有者的待持久化数据集
+        Map<PK, T> map = dataPersistence.findAllByOwner(owner, tClass);
         // 再查询数据库
         Collection<T> queryResult = accessor.list(owner, tClass);
         List<T> list = new ArrayList<>(queryResult.size());
@@ -98,7 +305,7 @@ public class GenericEntityCacheService implements EntityCacheService, RegionEnti
 
         if (!map.isEmpty()) {
             map.values().stream()
-                    .filter(t -> !t.isDeleteStatus() && t.getOwner() == owner)
+                    .filter(t -> !t.isDeleteStatus())
                     .map(this::wrapIfNecessary)
                     .forEach(list::add);
         }
@@ -107,20 +314,157 @@ public class GenericEntityCacheService implements EntityCacheService, RegionEnti
     }
 
     @Override
-    @CachedPut(name = "#entity.getClass().getName()", key = "#entity.getOwner()")
     public <PK extends Comparable<PK> & Serializable, FK extends Comparable<FK> & Serializable, T extends AbstractRegionEntity<PK, FK>> void createRegionEntity(T entity) {
         T originEntity = unwrapIfNecessary(entity);
         dataPersistence.commit(originEntity);
+        // 已缓存的区域容器直接加入新实体
+        RamCache<FK> cache = findCache(regionCaches, originEntity.getClass());
+        if (cache != null) {
+            @SuppressWarnings("unchecked")
+            RegionEntityContext<PK, FK, T> context = get(cache, originEntity.getOwner(), RegionEntityContext.class);
+            if (context != null) {
+                context.add(wrapIfNecessary(originEntity));
+            }
+        }
     }
 
     @Override
-    @CachedEvict(name = "#entity.getClass().getName()", key = "#entity.getOwner()")
     public <PK extends Comparable<PK> & Serializable, FK extends Comparable<FK> & Serializable, T extends AbstractRegionEntity<PK, FK>> void remove(T entity) {
-        AbstractEntity<PK> originEntity = unwrapIfNecessary(entity);
+        T originEntity = unwrapIfNecessary(entity);
+        RamCache<FK> cache = findCache(regionCaches, originEntity.getClass());
+        if (cache != null) {
+            remove(cache, originEntity.getOwner());
+        }
         originEntity.setDeleteStatus();
         dataPersistence.commit(originEntity);
     }
 
+    // --------------------- 缓存 ----------------------------------
+
+    /**
+     * 缓存未命中时加载,同一缓存key同时只有一个线程执行加载,其他线程等待其结果
+     *
+     * @param cache  缓存
+     * @param key    缓存key
+     * @param type   缓存内容类型
+     * @param loader 加载逻辑
+     * @return 缓存内容 or null
+     */
+    private <K, V> V load(RamCache<K> cache, K key, Class<V> type, Supplier<V> loader) {
+        LoadingKey loadingKey = new LoadingKey(cache, key);
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> loading = loadings.putIfAbsent(loadingKey, future);
+        if (loading != null) {
+            return type.cast(join(loading));
+        }
+        try {
+            // 登记加载前其他线程可能已完成加载
+            V value = get(cache, key, type);
+            if (value == null) {
+                value = loader.get();
+                if (value != null) {
+                    put(cache, key, value);
+                }
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadings.remove(loadingKey, future);
+        }
+    }
+
+    private static Object join(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 获取实体类型对应的缓存,首次访问时按实体声明的主键类型(区域实体容器为持有者类型)创建
+     *
+     * @param caches 缓存集合
+     * @param tClass 实体类型
+     * @param <K>    缓存key类型
+     * @return 缓存
+     */
+    @SuppressWarnings("unchecked")
+    private <K> RamCache<K> getCache(ConcurrentHashMap<Class<?>, RamCache<?>> caches, Class<?> tClass) {
+        RamCache<?> cache = caches.get(tClass);
+        if (cache == null) {
+            cache = caches.computeIfAbsent(tClass, k -> keyType(caches, k) == Long.class
+                    ? new LongKeyCache(k.getName(), maximum, expire)
+                    : new CaffeineCache<>(k.getName(), maximum, expire));
+        }
+        return (RamCache<K>) cache;
+    }
+
+    /**
+     * 实体声明的缓存key类型
+     *
+     * @param caches 缓存集合
+     * @param tClass 实体类型
+     * @return 主键类型(区域实体容器为持有者类型), 无法解析时返回null
+     */
+    private Class<?> keyType(ConcurrentHashMap<Class<?>, RamCache<?>> caches, Class<?> tClass) {
+        if (caches == regionCaches) {
+            Class<?>[] arguments = GenericTypeResolver.resolveTypeArguments(tClass, AbstractRegionEntity.class);
+            return arguments == null ? null : arguments[1];
+        }
+        return GenericTypeResolver.resolveTypeArgument(tClass, AbstractEntity.class);
+    }
+
+    /**
+     * 清理所有缓存中的过期内容
+     */
+    private void cleanUp() {
+        try {
+            entityCaches.values().forEach(RamCache::cleanUp);
+            regionCaches.values().forEach(RamCache::cleanUp);
+        } catch (RuntimeException e) {
+            log.error("清理过期实体缓存出现未知异常", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K> RamCache<K> findCache(ConcurrentHashMap<Class<?>, RamCache<?>> caches, Class<?> tClass) {
+        return (RamCache<K>) caches.get(tClass);
+    }
+
+    private <K, V> V get(RamCache<K> cache, K key, Class<V> type) {
+        if (cache instanceof LongRamCache) {
+            return ((LongRamCache) cache).get(((Long) key).longValue(), type);
+        }
+        return cache.get(key, type);
+    }
+
+    private <K> void put(RamCache<K> cache, K key, Object value) {
+        if (cache instanceof LongRamCache) {
+            ((LongRamCache) cache).put(((Long) key).longValue(), value);
+            return;
+        }
+        cache.put(key, value);
+    }
+
+    private <K> void remove(RamCache<K> cache, K key) {
+        if (cache instanceof LongRamCache) {
+            ((LongRamCache) cache).remove(((Long) key).longValue());
+            return;
+        }
+        cache.remove(key);
+    }
+
 
     /**
      * 去包装得到原始实体数据
@@ -152,4 +496,35 @@ public class GenericEntityCacheService implements EntityCacheService, RegionEnti
         }
         return enhancer.enhance(entity);
     }
+
+    /**
+     * 正在加载的缓存key
+     **/
+    private static final class LoadingKey {
+
+        private final RamCache<?> cache;
+        private final Object key;
+
+        LoadingKey(RamCache<?> cache, Object key) {
+            this.cache = cache;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof LoadingKey)) {
+                return false;
+            }
+            LoadingKey that = (LoadingKey) o;
+            return cache == that.cache && key.equals(that.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(cache) + key.hashCode();
+        }
+    }
 }
@@ -4,29 +4,68 @@ import com.echo.common.concurrency.RunnableLoop;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
-import java.util.Queue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
 
 /**
- * 通用的持久化消费者
+ * 通用的持久化消费者(write-behind)
+ * 提交的实体按主键合并进脏数据集,同一实体多次提交只回写一次;
+ * 回写时按批量大小分批调用{@link DataAccessor#writeBatch(Class, List, List, List)},
+ * 更新时只回写发生变化的字段(未知时整体回写),
+ * 失败的实体进入重试队列并逐条重试,重试期间仍可通过{@link #findById(Comparable)}查询到;
+ * 超过最大重试次数后不放弃,按指数退避继续重试,实体始终保留在回写中集合,其日志序号阻止日志被截断;
+ * 开启预写日志时,每次提交先追加日志并等待落盘,回写成功后由{@link #flushListener}截断日志
  *
  * @author: li-yuanwen
  */
 @Slf4j
 public class GenericPersistenceConsumer implements PersistenceConsumer, Runnable {
 
+    private static final int OP_NONE = 0;
+    private static final int OP_CREATE = 1;
+    private static final int OP_UPDATE = 2;
+    private static final int OP_REMOVE = 3;
+    /**
+     * 超过最大重试次数后,两次重试之间最多间隔的回写次数
+     **/
+    private static final int MAX_BACKOFF_ROUNDS = 8;
+
     /**
      * 持久化工具
      **/
     private final DataAccessor dataAccessor;
     /**
-     * 待持久化的队列
+     * 实体类型
+     **/
+    private final Class<?> entityClass;
+    /**
+     * 预写日志,未开启时为null
      **/
-    private final Queue<AbstractEntity<?>> queue;
+    private final EntityJournal journal;
+    /**
+     * 每次回写完成后的回调
+     **/
+    private final Runnable flushListener;
+    /**
+     * 待持久化的脏数据集(主键-实体)
+     **/
+    private final ConcurrentHashMap<Object, DirtyEntity> dirty;
+    /**
+     * 已从脏数据集取出,正在回写或等待重试的实体(主键-实体)
+     **/
+    private final ConcurrentHashMap<Object, DirtyEntity> flushing;
+    /**
+     * 区域实体的持有者索引(持有者-待回写实体主键集),仅索引{@link AbstractRegionEntity}
+     **/
+    private final ConcurrentHashMap<Object, OwnerIds> owners;
+    /**
+     * 重试队列,仅由回写线程访问
+     **/
+    private final Queue<RetryTask> retryQueue;
     /**
      * 线程
      **/
@@ -35,14 +74,45 @@ public class GenericPersistenceConsumer implements PersistenceConsumer, Runnable
      * 间隔(秒)
      **/
     private final int intervalSecond;
+    /**
+     * 单次批量回写的最大实体数
+     **/
+    private final int batchSize;
+    /**
+     * 最大重试次数
+     **/
+    private final int maxRetries;
+    /**
+     * 是否已因脏数据堆积提交了提前回写
+     **/
+    private final AtomicBoolean flushRequested;
+    /**
+     * 统计
+     **/
+    private final PersistenceStat stat;
 
-    public GenericPersistenceConsumer(DataAccessor dataAccessor
-            , RunnableLoop runnableLoop, int intervalSecond) {
+    public GenericPersistenceConsumer(DataAccessor dataAccessor, Class<?> entityClass
+            , RunnableLoop runnableLoop, int intervalSecond, int batchSize, int maxRetries) {
+        this(dataAccessor, entityClass, runnableLoop, intervalSecond, batchSize, maxRetries, null, null);
+    }
+
+    GenericPersistenceConsumer(DataAccessor dataAccessor, Class<?> entityClass
+            , RunnableLoop runnableLoop, int intervalSecond, int batchSize, int maxRetries
+            , EntityJournal journal, Runnable flushListener) {
         this.dataAccessor = dataAccessor;
-        this.queue = new LinkedBlockingQueue<>();
-        ;
+        this.entityClass = entityClass;
+        this.journal = journal;
+        this.flushListener = flushListener;
+        this.dirty = new ConcurrentHashMap<>();
+        this.flushing = new ConcurrentHashMap<>();
+        this.owners = new ConcurrentHashMap<>();
+        this.retryQueue = new ArrayDeque<>();
         this.runnableLoop = runnableLoop;
         this.intervalSecond = intervalSecond;
+        this.batchSize = Math.max(batchSize, 1);
+        this.maxRetries = Math.max(maxRetries, 0);
+        this.flushRequested = new AtomicBoolean(false);
+        this.stat = new PersistenceStat(this::getBacklog);
 
         // 开始回写
         startScheduler();
@@ -60,23 +130,118 @@ public class GenericPersistenceConsumer implements PersistenceConsumer, Runnable
     @Override
     @SuppressWarnings("unchecked")
     public <PK extends Comparable<PK> & Serializable, T extends AbstractEntity<PK>> T findById(PK id) {
-        Optional<AbstractEntity<?>> optional = queue.stream().filter(abstractEntity -> abstractEntity.id == id).findFirst();
-        return (T) optional.orElse(null);
+        return (T) find(id);
+    }
+
+    private AbstractEntity<?> find(Object id) {
+        DirtyEntity dirtyEntity = dirty.get(id);
+        if (dirtyEntity == null) {
+            dirtyEntity = flushing.get(id);
+        }
+        return dirtyEntity == null ? null : dirtyEntity.entity;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <PK extends Comparable<PK> & Serializable, FK extends Comparable<FK> & Serializable
+            , T extends AbstractRegionEntity<PK, FK>> Map<PK, T> findAllByOwner(FK owner) {
+        OwnerIds ids = owners.get(owner);
+        if (ids == null) {
+            return new HashMap<>(0);
+        }
+        Object[] snapshot;
+        synchronized (ids) {
+            snapshot = ids.toArray();
+        }
+        Map<PK, T> map = new HashMap<>(snapshot.length);
+        for (Object id : snapshot) {
+            AbstractEntity<?> entity = find(id);
+            if (entity != null && owner.equals(ownerOf(entity))) {
+                map.put((PK) id, (T) entity);
+            }
+        }
+        return map;
     }
 
     @Override
     public <PK extends Comparable<PK> & Serializable, T extends AbstractEntity<PK>> void accept(T entity) {
-        if (entity.isDeleteStatus() || entity.commit() || entity.isNewStatus()) {
-            this.queue.offer(entity);
+        boolean queue = entity.isDeleteStatus() || entity.commit() || entity.isNewStatus();
+        if (journal == null) {
+            if (queue) {
+                enqueue(entity, 0);
+            }
+            return;
+        }
+
+        // 未入队的实体已在脏数据集中,同样记录其最新状态
+        long sequence;
+        Lock lock = journal.appendLock();
+        lock.lock();
+        try {
+            sequence = journal.append(entity);
+            if (queue) {
+                enqueue(entity, sequence);
+            }
+        } finally {
+            lock.unlock();
+        }
+        journal.awaitDurable(sequence);
+    }
+
+    @Override
+    public <PK extends Comparable<PK> & Serializable, T extends AbstractEntity<PK>> void replay(T entity, long sequence) {
+        enqueue(entity, sequence);
+    }
+
+    private void enqueue(AbstractEntity<?> entity, long sequence) {
+        // 同一主键保留最早的日志序号,保证回写前日志不会被截断
+        DirtyEntity old = dirty.get(entity.getId());
+        if (old != null && old.entity == entity) {
+            return;
+        }
+        Object owner = ownerOf(entity);
+        if (owner == null) {
+            merge(entity, sequence);
+        } else {
+            // 持有者索引与脏数据集在同一把锁内变更,保证索引不会遗漏待回写实体
+            while (true) {
+                OwnerIds ids = owners.computeIfAbsent(owner, k -> new OwnerIds());
+                synchronized (ids) {
+                    if (ids.removed) {
+                        continue;
+                    }
+                    ids.add(entity.getId());
+                    merge(entity, sequence);
+                }
+                break;
+            }
         }
+        if (this.dirty.size() >= batchSize
+                && flushRequested.compareAndSet(false, true)) {
+            // 脏数据堆积到一批,提前回写
+            runnableLoop.execute(this);
+        }
+    }
+
+    private void merge(AbstractEntity<?> entity, long sequence) {
+        dirty.merge(entity.getId(), new DirtyEntity(entity, sequence)
+                , (o, n) -> o.entity == n.entity ? o : new DirtyEntity(n.entity, Math.min(o.sequence, n.sequence)));
+    }
+
+    private static Object ownerOf(AbstractEntity<?> entity) {
+        return entity instanceof AbstractRegionEntity ? ((AbstractRegionEntity<?, ?>) entity).getOwner() : null;
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public <PK extends Comparable<PK> & Serializable, T extends AbstractEntity<PK>> Map<PK, T> findAll() {
-        Map<PK, T> map = new HashMap<>(queue.size());
-        for (AbstractEntity<?> entity : queue) {
-            map.put((PK) entity.id, (T) entity);
+        Map<PK, T> map = new HashMap<>(flushing.size() + dirty.size());
+        for (DirtyEntity dirtyEntity : flushing.values()) {
+            map.put((PK) dirtyEntity.entity.id, (T) dirtyEntity.entity);
+        }
+        // 脏数据集中的实体更新
+        for (DirtyEntity dirtyEntity : dirty.values()) {
+            map.put((PK) dirtyEntity.entity.id, (T) dirtyEntity.entity);
         }
         return map;
     }
@@ -87,33 +252,333 @@ public class GenericPersistenceConsumer implements PersistenceConsumer, Runnable
         runnableLoop.submit(this);
     }
 
+    @Override
+    public int getBacklog() {
+        return dirty.size() + flushing.size();
+    }
+
+    @Override
+    public PersistenceStat getStat() {
+        return stat;
+    }
+
+    @Override
+    public long getLowestSequence() {
+        long lowest = Long.MAX_VALUE;
+        // 先遍历脏数据集再遍历回写中集合,实体移动时先放入回写中集合,保证不会遗漏
+        for (DirtyEntity dirtyEntity : dirty.values()) {
+            lowest = Math.min(lowest, dirtyEntity.sequence);
+        }
+        for (DirtyEntity dirtyEntity : flushing.values()) {
+            lowest = Math.min(lowest, dirtyEntity.sequence);
+        }
+        return lowest;
+    }
+
     @Override
     public void run() {
-        int size = queue.size();
-        Class<?> entityClass = null;
+        flushRequested.set(false);
+        long start = System.nanoTime();
+        int retrySize = retryQueue.size();
+        int num = 0;
+        try {
+            num = flushDirty();
+            retry(retrySize);
+            if (flushListener != null) {
+                flushListener.run();
+            }
+        } catch (Exception e) {
+            log.error("持久化发生严重异常, Class:[{}]", entityClass, e);
+        }
+        long cost = System.nanoTime() - start;
+        stat.recordFlush(cost);
+        if (num == 0 && retrySize == 0) {
+            log.info("write back zero entity[{}]", entityClass.getSimpleName());
+        } else {
+            log.info("write back entity[{}] num: {}, retry: {}, cost: {}ms, backlog: {}", entityClass.getSimpleName()
+                    , num, retrySize, TimeUnit.NANOSECONDS.toMillis(cost), getBacklog());
+        }
+    }
+
+    /**
+     * 分批回写脏数据集
+     *
+     * @return 回写的实体数量
+     */
+    private int flushDirty() {
+        int num = 0;
+        List<AbstractEntity<?>> batch = new ArrayList<>(Math.min(batchSize, dirty.size()));
+        for (Map.Entry<Object, DirtyEntity> entry : dirty.entrySet()) {
+            Object id = entry.getKey();
+            DirtyEntity dirtyEntity = entry.getValue();
+            // 先放入回写中集合再从脏数据集移除,保证查询期间始终可见
+            DirtyEntity previous = flushing.put(id, dirtyEntity);
+            if (!dirty.remove(id, dirtyEntity)) {
+                // 已被同主键的其他实体替换,由下次回写处理
+                if (previous != null) {
+                    flushing.replace(id, dirtyEntity, previous);
+                } else {
+                    flushing.remove(id, dirtyEntity);
+                }
+                continue;
+            }
+            batch.add(dirtyEntity.entity);
+            if (batch.size() >= batchSize) {
+                num += writeBatch(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            num += writeBatch(batch);
+        }
+        return num;
+    }
+
+    private int writeBatch(List<AbstractEntity<?>> batch) {
+        List<AbstractEntity<?>> creates = new ArrayList<>();
+        List<EntityUpdate> updates = new ArrayList<>();
+        List<AbstractEntity<?>> removes = new ArrayList<>();
+        for (AbstractEntity<?> entity : batch) {
+            switch (prepare(entity)) {
+                case OP_CREATE: {
+                    entity.takeDirtyFields();
+                    creates.add(entity);
+                    break;
+                }
+                case OP_UPDATE: {
+                    updates.add(new EntityUpdate(entity, entity.takeDirtyFields()));
+                    break;
+                }
+                case OP_REMOVE: {
+                    entity.takeDirtyFields();
+                    removes.add(entity);
+                    break;
+                }
+                default: {
+                    // 无需回写
+                    removeFlushing(entity);
+                }
+            }
+        }
+
+        int size = creates.size() + updates.size() + removes.size();
+        if (size == 0) {
+            return 0;
+        }
+
+        try {
+            dataAccessor.writeBatch(entityClass, creates, updates, removes);
+        } catch (Exception e) {
+            log.error("批量持久化发生异常,转入重试队列, Class:[{}], size:[{}]", entityClass, size, e);
+            stat.incrementFail(size);
+            addRetry(creates, OP_CREATE);
+            for (EntityUpdate update : updates) {
+                AbstractEntity<?> entity = update.getEntity();
+                entity.markDirty(update.getDirtyFields());
+                restore(entity, OP_UPDATE);
+                retryQueue.offer(new RetryTask(entity));
+            }
+            addRetry(removes, OP_REMOVE);
+            return 0;
+        }
+
+        written(creates);
+        for (EntityUpdate update : updates) {
+            removeFlushing(update.getEntity());
+        }
+        written(removes);
+        stat.incrementWrite(size);
+        return size;
+    }
+
+    private void written(List<AbstractEntity<?>> entities) {
+        for (AbstractEntity<?> entity : entities) {
+            removeFlushing(entity);
+        }
+    }
+
+    private void removeFlushing(AbstractEntity<?> entity) {
+        Object id = entity.getId();
+        flushing.computeIfPresent(id, (k, v) -> v.entity == entity ? null : v);
+        Object owner = ownerOf(entity);
+        if (owner == null) {
+            return;
+        }
+        OwnerIds ids = owners.get(owner);
+        if (ids == null) {
+            return;
+        }
+        synchronized (ids) {
+            if (dirty.containsKey(id) || flushing.containsKey(id)) {
+                return;
+            }
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                ids.removed = true;
+                owners.remove(owner, ids);
+            }
+        }
+    }
+
+    private void addRetry(List<AbstractEntity<?>> entities, int op) {
+        for (AbstractEntity<?> entity : entities) {
+            restore(entity, op);
+            retryQueue.offer(new RetryTask(entity));
+        }
+    }
+
+    /**
+     * 逐条重试上次回写失败的实体,避免单个异常实体拖累整批
+     *
+     * @param size 本次重试的数量
+     */
+    private void retry(int size) {
         for (int i = 0; i < size; i++) {
-            AbstractEntity<?> entity = queue.poll();
-            if (entity == null) {
+            RetryTask task = retryQueue.poll();
+            if (task == null) {
+                return;
+            }
+            AbstractEntity<?> entity = task.entity;
+            Object id = entity.getId();
+            DirtyEntity dirtyEntity = flushing.get(id);
+            if (dirtyEntity == null || dirtyEntity.entity != entity) {
+                // 已被新的回写覆盖
+                continue;
+            }
+            if (task.skip > 0) {
+                // 退避中
+                task.skip--;
+                retryQueue.offer(task);
                 continue;
             }
-            entityClass = entity.getClass();
+            stat.incrementRetry();
+            int op = prepare(entity);
+            long dirtyFields = entity.takeDirtyFields();
             try {
-                if (entity.isDeleteStatus()) {
-                    dataAccessor.remove(entity);
-                } else if (entity.swap(DataStatus.NEW.getCode(), DataStatus.INIT.getCode())) {
-                    dataAccessor.create(entity);
-                } else if (entity.swap(DataStatus.MODIFY.getCode(), DataStatus.INIT.getCode())) {
-                    dataAccessor.update(entity);
+                switch (op) {
+                    case OP_CREATE: {
+                        // 失败的批量写入可能已插入该实体,按update(save)整体回写保证幂等
+                        dataAccessor.update(entity);
+                        break;
+                    }
+                    case OP_UPDATE: {
+                        List<Field> fields = PersistentFields.of(entity.getClass()).toFields(dirtyFields);
+                        if (fields == null) {
+                            dataAccessor.update(entity);
+                        } else {
+                            dataAccessor.update(entity, fields);
+                        }
+                        break;
+                    }
+                    case OP_REMOVE: {
+                        dataAccessor.remove(entity);
+                        break;
+                    }
+                    default: {
+                        // 无需回写
+                    }
+                }
+                removeFlushing(entity);
+                if (op != OP_NONE) {
+                    stat.incrementWrite(1);
                 }
             } catch (Exception e) {
-                log.error("持久化发生严重异常, Class:[{}], Entity:[{}]", entity.getClass(), entity, e);
+                stat.incrementFail(1);
+                entity.markDirty(dirtyFields);
+                restore(entity, op);
+                if (++task.times >= maxRetries) {
+                    // 放弃回写会丢失内存中的修改(预写日志也会随后被截断),因此按指数退避继续重试
+                    if (task.times == maxRetries) {
+                        stat.incrementStalled();
+                    }
+                    task.skip = Math.min(1 << Math.min(task.times - maxRetries, 30), MAX_BACKOFF_ROUNDS);
+                    log.error("持久化重试[{}]次后仍失败,[{}]次回写后再次重试, Class:[{}], Entity:[{}]"
+                            , task.times, task.skip, entityClass, entity, e);
+                } else {
+                    log.error("持久化重试失败, Class:[{}], Entity:[{}]", entityClass, entity, e);
+                }
+                retryQueue.offer(task);
             }
         }
-        if (entityClass == null) {
-            log.info("write back zero entity");
-        } else {
-            log.info("write back entity[{}] num: {}", entityClass.getSimpleName(), size);
+    }
+
+    /**
+     * 根据实体状态确定回写操作,并将状态置回INIT
+     *
+     * @param entity 实体
+     * @return 回写操作
+     */
+    private int prepare(AbstractEntity<?> entity) {
+        if (entity.isDeleteStatus()) {
+            return OP_REMOVE;
+        }
+        if (entity.swap(DataStatus.NEW.getCode(), DataStatus.INIT.getCode())) {
+            return OP_CREATE;
+        }
+        if (entity.swap(DataStatus.MODIFY.getCode(), DataStatus.INIT.getCode())) {
+            return OP_UPDATE;
+        }
+        return OP_NONE;
+    }
+
+    /**
+     * 回写失败后恢复实体状态,保证重试时执行相同的操作
+     *
+     * @param entity 实体
+     * @param op     回写操作
+     */
+    private void restore(AbstractEntity<?> entity, int op) {
+        if (op == OP_CREATE) {
+            if (!entity.swap(DataStatus.INIT.getCode(), DataStatus.NEW.getCode())) {
+                entity.swap(DataStatus.MODIFY.getCode(), DataStatus.NEW.getCode());
+            }
+        } else if (op == OP_UPDATE) {
+            entity.swap(DataStatus.INIT.getCode(), DataStatus.MODIFY.getCode());
         }
+    }
+
+    /**
+     * 待回写实体及其最早未回写的日志序号
+     **/
+    private static final class DirtyEntity {
+
+        private final AbstractEntity<?> entity;
+        private final long sequence;
+
+        DirtyEntity(AbstractEntity<?> entity, long sequence) {
+            this.entity = entity;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * 持有者的待回写实体主键集,访问时需持有自身的锁
+     **/
+    private static final class OwnerIds extends HashSet<Object> {
 
+        /**
+         * 已从索引中移除,不能再使用
+         **/
+        private boolean removed;
+    }
+
+    /**
+     * 重试任务
+     **/
+    private static final class RetryTask {
+
+        private final AbstractEntity<?> entity;
+        /**
+         * 已重试次数
+         **/
+        private int times;
+        /**
+         * 退避中,剩余跳过的回写次数
+         **/
+        private int skip;
+
+        RetryTask(AbstractEntity<?> entity) {
+            this.entity = entity;
+        }
     }
 }
@@ -17,5 +17,18 @@ public @interface Persisted {
      */
     int intervalSecond() default 300;
 
+    /**
+     * 单次批量回写的最大实体数
+     *
+     * @return 批量大小, 默认500
+     */
+    int batchSize() default 500;
+
+    /**
+     * 回写失败后的最大重试次数,超过后不放弃,按指数退避(最多间隔8次回写)继续重试
+     *
+     * @return 最大重试次数, 默认3次
+     */
+    int maxRetries() default 3;
 
 }
@@ -21,6 +21,19 @@ public interface PersistenceConsumer {
     <PK extends Comparable<PK> & Serializable, T extends AbstractEntity<PK>> T findById(PK id);
 
 
+    /**
+     * 从待持久化集合中查找指定持有者的区域实体
+     *
+     * @param owner 持有者标识
+     * @param <PK>  主键类型
+     * @param <FK>  持有者标识类型
+     * @param <T>   实体数据实际类型
+     * @return 持有者的待持久化实体集(有可能包含待删除的实体)
+     */
+    <PK extends Comparable<PK> & Serializable, FK extends Comparable<FK> & Serializable
+            , T extends AbstractRegionEntity<PK, FK>> Map<PK, T> findAllByOwner(FK owner);
+
+
     /**
      * 向消费器提交需持久化的实体
      *
@@ -29,6 +42,15 @@ public interface PersistenceConsumer {
     <PK extends Comparable<PK> & Serializable, T extends AbstractEntity<PK>> void accept(T entity);
 
 
+    /**
+     * 重放预写日志中的实体,直接加入待持久化集合,不再写入日志
+     *
+     * @param entity   实体数据
+     * @param sequence 日志序号
+     */
+    <PK extends Comparable<PK> & Serializable, T extends AbstractEntity<PK>> void replay(T entity, long sequence);
+
+
     /**
      * 查询某个类型的持久化数据集
      *
@@ -44,4 +66,25 @@ public interface PersistenceConsumer {
      */
     void immediateWriteAll();
 
+    /**
+     * 待回写的实体数量(含正在回写和等待重试的实体)
+     *
+     * @return 待回写的实体数量
+     */
+    int getBacklog();
+
+    /**
+     * 持久化统计
+     *
+     * @return 统计数据
+     */
+    PersistenceStat getStat();
+
+    /**
+     * 待回写实体中最早的预写日志序号,序号小于该值的日志均已回写数据库
+     *
+     * @return 日志序号, 无待回写实体时返回Long.MAX_VALUE
+     */
+    long getLowestSequence();
+
 }
@@ -0,0 +1,118 @@
+package com.echo.ramcache.entity;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * @author li-yuanwen
+ * 持久化数据统计
+ */
+public class PersistenceStat {
+
+    /**
+     * 待回写数量
+     **/
+    private final IntSupplier backlogSupplier;
+    /**
+     * 成功回写的实体数量
+     **/
+    private final AtomicLong writeNum = new AtomicLong(0);
+    /**
+     * 回写失败的实体数量(每次失败均计数)
+     **/
+    private final AtomicLong failNum = new AtomicLong(0);
+    /**
+     * 重试次数
+     **/
+    private final AtomicLong retryNum = new AtomicLong(0);
+    /**
+     * 超过最大重试次数仍未回写成功的实体数量(此后按退避间隔继续重试)
+     **/
+    private final AtomicLong stalledNum = new AtomicLong(0);
+    /**
+     * 回写次数
+     **/
+    private final AtomicLong flushNum = new AtomicLong(0);
+    /**
+     * 最近一次回写耗时(纳秒)
+     **/
+    private volatile long lastFlushNanos;
+    /**
+     * 最大回写耗时(纳秒)
+     **/
+    private volatile long maxFlushNanos;
+    /**
+     * 最近一次回写完成时间(毫秒)
+     **/
+    private volatile long lastFlushTime;
+
+    PersistenceStat(IntSupplier backlogSupplier) {
+        this.backlogSupplier = backlogSupplier;
+    }
+
+    void incrementWrite(int num) {
+        this.writeNum.addAndGet(num);
+    }
+
+    void incrementFail(int num) {
+        this.failNum.addAndGet(num);
+    }
+
+    void incrementRetry() {
+        this.retryNum.incrementAndGet();
+    }
+
+    void incrementStalled() {
+        this.stalledNum.incrementAndGet();
+    }
+
+    /**
+     * 仅由回写线程调用
+     *
+     * @param nanos 回写耗时
+     */
+    void recordFlush(long nanos) {
+        this.flushNum.incrementAndGet();
+        this.lastFlushNanos = nanos;
+        if (nanos > this.maxFlushNanos) {
+            this.maxFlushNanos = nanos;
+        }
+        this.lastFlushTime = System.currentTimeMillis();
+    }
+
+    public int getBacklog() {
+        return backlogSupplier.getAsInt();
+    }
+
+    public long getWriteNum() {
+        return writeNum.get();
+    }
+
+    public long getFailNum() {
+        return failNum.get();
+    }
+
+    public long getRetryNum() {
+        return retryNum.get();
+    }
+
+    public long getStalledNum() {
+        return stalledNum.get();
+    }
+
+    public long getFlushNum() {
+        return flushNum.get();
+    }
+
+    public long getLastFlushNanos() {
+        return lastFlushNanos;
+    }
+
+    public long getMaxFlushNanos() {
+        return maxFlushNanos;
+    }
+
+    public long getLastFlushTime() {
+        return lastFlushTime;
+    }
+}
@@ -0,0 +1,109 @@
+package com.echo.ramcache.entity;
+
+import com.echo.common.data.Transient;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 实体持久化字段索引,用于记录实体发生变化的字段
+ * 前63个持久化字段各占掩码的一位,最高位{@link #ALL}表示整体更新(超出的字段同样使用该位)
+ *
+ * @author li-yuanwen
+ */
+public final class PersistentFields {
+
+    /**
+     * 整体更新
+     **/
+    public static final long ALL = 1L << 63;
+
+    private static final ConcurrentHashMap<Class<?>, PersistentFields> FIELDS = new ConcurrentHashMap<>();
+
+    /**
+     * 持久化字段(不含主键)
+     **/
+    private final Field[] fields;
+    /**
+     * 字段索引
+     **/
+    private final Map<Field, Integer> indexes;
+
+    private PersistentFields(Class<?> entityClass) {
+        // 父类字段在前,同一父类的字段在各子类中的位置相同
+        LinkedList<Class<?>> classes = new LinkedList<>();
+        for (Class<?> clz = entityClass; clz != null && clz != Object.class; clz = clz.getSuperclass()) {
+            classes.addFirst(clz);
+        }
+        List<Field> list = new ArrayList<>();
+        if (classes.getFirst() == AbstractEntity.class) {
+            // 跳过主键及状态字段
+            classes.removeFirst();
+        }
+        for (Class<?> clz : classes) {
+            for (Field field : clz.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)
+                        || field.getAnnotation(Transient.class) != null) {
+                    continue;
+                }
+                field.setAccessible(true);
+                list.add(field);
+            }
+        }
+        this.fields = list.toArray(new Field[0]);
+        this.indexes = new HashMap<>(fields.length);
+        for (int i = 0; i < fields.length; i++) {
+            indexes.put(fields[i], i);
+        }
+    }
+
+    public static PersistentFields of(Class<?> entityClass) {
+        PersistentFields fields = FIELDS.get(entityClass);
+        if (fields == null) {
+            fields = FIELDS.computeIfAbsent(entityClass, PersistentFields::new);
+        }
+        return fields;
+    }
+
+    /**
+     * 获取字段对应的掩码
+     *
+     * @param field 字段
+     * @return 掩码,非持久化字段返回0
+     */
+    public long maskOf(Field field) {
+        Integer index = indexes.get(field);
+        if (index == null) {
+            return 0;
+        }
+        return index < 63 ? 1L << index : ALL;
+    }
+
+    /**
+     * 将掩码转换为字段
+     *
+     * @param mask 掩码
+     * @return 发生变化的字段,需要整体更新时返回null
+     */
+    public List<Field> toFields(long mask) {
+        if (mask == 0 || (mask & ALL) != 0) {
+            return null;
+        }
+        if (Long.bitCount(mask) == 1) {
+            return Collections.singletonList(fields[Long.numberOfTrailingZeros(mask)]);
+        }
+        List<Field> list = new ArrayList<>(Long.bitCount(mask));
+        for (long bits = mask; bits != 0; bits &= bits - 1) {
+            list.add(fields[Long.numberOfTrailingZeros(bits)]);
+        }
+        return list;
+    }
+}
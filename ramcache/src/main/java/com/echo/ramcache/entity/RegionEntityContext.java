@@ -2,6 +2,7 @@ package com.echo.ramcache.entity;
 
 
 import java.io.Serializable;
+import java.util.Collection;
 
 /**
  * 抽象区域实体容器
@@ -34,4 +35,22 @@ public interface RegionEntityContext<PK extends Comparable<PK> & Serializable
      */
     void remove(T entity);
 
+    /**
+     * 通过唯一索引获取实体对象 {@link RegionIndex}
+     *
+     * @param index 索引名
+     * @param key   索引字段值
+     * @return 实体对象
+     */
+    T findByIndex(String index, Object key);
+
+    /**
+     * 通过索引获取实体对象集 {@link RegionIndex}
+     *
+     * @param index 索引名
+     * @param key   索引字段值
+     * @return 不可修改的实体对象集
+     */
+    Collection<T> findAllByIndex(String index, Object key);
+
 }
@@ -0,0 +1,29 @@
+package com.echo.ramcache.entity;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 区域实体二级索引,由{@link AbstractRegionEntityContext}在添加、移除实体及实体回写时维护
+ * 索引字段须为持久化字段,字段值为null的实体不进入索引
+ *
+ * @author li-yuanwen
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RegionIndex {
+
+    /**
+     * 索引名,默认为字段名
+     **/
+    String name() default "";
+
+    /**
+     * 是否唯一索引
+     * 多个实体的索引值重复时由先进入索引的实体持有该值,其余实体等待,持有者移除或索引值变化后按顺序补位
+     **/
+    boolean unique() default false;
+
+}
@@ -0,0 +1,17 @@
+package com.echo.ramcache.exception;
+
+/**
+ * 预写日志读写异常
+ *
+ * @author li-yuanwen
+ */
+public class JournalException extends RuntimeException {
+
+    public JournalException(String message) {
+        super(message);
+    }
+
+    public JournalException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,51 @@
+package com.echo.ramcache.journal;
+
+/**
+ * 预写日志(WAL),只追加写入,按序号截断
+ *
+ * @author li-yuanwen
+ */
+public interface Journal {
+
+    /**
+     * 追加一条记录,返回后记录已写入但未必已落盘
+     *
+     * @param payload 记录内容
+     * @return 记录序号
+     */
+    long append(byte[] payload);
+
+    /**
+     * 阻塞直至指定序号及之前的记录全部落盘
+     *
+     * @param sequence 记录序号
+     */
+    void awaitDurable(long sequence);
+
+    /**
+     * 下一条记录将使用的序号
+     *
+     * @return 序号
+     */
+    long nextSequence();
+
+    /**
+     * 丢弃序号小于sequence的记录(以文件段为单位删除)
+     *
+     * @param sequence 最小需保留的序号
+     */
+    void truncate(long sequence);
+
+    /**
+     * 重放日志中的全部有效记录,需在追加记录前调用
+     *
+     * @param replayer 重放回调
+     */
+    void replay(JournalReplayer replayer);
+
+    /**
+     * 落盘并关闭日志
+     */
+    void close();
+
+}
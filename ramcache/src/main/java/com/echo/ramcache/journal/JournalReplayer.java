@@ -0,0 +1,19 @@
+package com.echo.ramcache.journal;
+
+/**
+ * 预写日志重放回调
+ *
+ * @author li-yuanwen
+ */
+@FunctionalInterface
+public interface JournalReplayer {
+
+    /**
+     * 按序号从小到大依次回调每条有效记录
+     *
+     * @param sequence 记录序号
+     * @param payload  记录内容
+     */
+    void replay(long sequence, byte[] payload);
+
+}
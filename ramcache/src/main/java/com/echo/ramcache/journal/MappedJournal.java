@@ -0,0 +1,424 @@
+package com.echo.ramcache.journal;
+
+import com.echo.ramcache.exception.JournalException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * 基于内存映射文件的预写日志
+ * 日志按文件段存储,文件名为段内首条记录的序号;记录格式: 长度(4) + crc32(4) + 序号(8) + 内容
+ * 追加只写入映射内存,由独立的刷盘线程合并一段时间内的追加后统一force(组提交)
+ *
+ * @author li-yuanwen
+ */
+@Slf4j
+public class MappedJournal implements Journal {
+
+    /**
+     * 默认文件段大小 64M
+     **/
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    /**
+     * 默认组提交等待时间 1ms
+     **/
+    public static final long DEFAULT_GROUP_COMMIT_MICROS = 1000;
+
+    private static final String FILE_PREFIX = "journal-";
+    private static final String FILE_SUFFIX = ".log";
+    /**
+     * 记录头长度
+     **/
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * 日志目录
+     **/
+    private final File directory;
+    /**
+     * 文件段大小
+     **/
+    private final int segmentSize;
+    /**
+     * 组提交等待时间(纳秒)
+     **/
+    private final long groupCommitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * 有新的追加记录
+     **/
+    private final Condition appended = lock.newCondition();
+    /**
+     * 有新的记录落盘
+     **/
+    private final Condition flushed = lock.newCondition();
+
+    /**
+     * 全部文件段 key:段内首条记录序号
+     **/
+    private final TreeMap<Long, File> segments = new TreeMap<>();
+    /**
+     * 当前写入的文件段
+     **/
+    private Segment current;
+    /**
+     * 下一条记录序号
+     **/
+    private long nextSequence;
+    /**
+     * 已写入的最大序号
+     **/
+    private volatile long writtenSequence;
+    /**
+     * 已落盘的最大序号
+     **/
+    private volatile long durableSequence;
+
+    private volatile boolean closed;
+
+    private final Thread flusher;
+
+    public MappedJournal(File directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_GROUP_COMMIT_MICROS, TimeUnit.MICROSECONDS);
+    }
+
+    public MappedJournal(File directory, int segmentSize, long groupCommit, TimeUnit unit) {
+        if (segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("segmentSize: " + segmentSize);
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new JournalException("无法创建预写日志目录: " + directory.getAbsolutePath());
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.groupCommitNanos = unit.toNanos(groupCommit);
+
+        recover();
+
+        this.flusher = new Thread(this::flushLoop, "Journal-Flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * 加载已有文件段,根据最后一个文件段计算下一条记录的序号
+     */
+    private void recover() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                try {
+                    long first = Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+                    segments.put(first, file);
+                } catch (NumberFormatException e) {
+                    log.warn("忽略无法识别的预写日志文件[{}]", file.getAbsolutePath());
+                }
+            }
+        }
+
+        long next = 1;
+        if (!segments.isEmpty()) {
+            Map.Entry<Long, File> last = segments.lastEntry();
+            long[] lastSequence = {last.getKey() - 1};
+            read(last.getValue(), (sequence, payload) -> lastSequence[0] = sequence);
+            next = lastSequence[0] + 1;
+        }
+        this.nextSequence = next;
+        this.writtenSequence = next - 1;
+        this.durableSequence = next - 1;
+    }
+
+    @Override
+    public long append(byte[] payload) {
+        if (payload == null || payload.length == 0) {
+            throw new IllegalArgumentException("Payload must not be empty");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        int size = HEADER_SIZE + payload.length;
+
+        lock.lock();
+        try {
+            if (closed) {
+                throw new JournalException("预写日志已关闭");
+            }
+            if (current == null || current.buffer.remaining() < size) {
+                roll(size);
+            }
+            long sequence = nextSequence++;
+            MappedByteBuffer buffer = current.buffer;
+            buffer.putInt(payload.length);
+            buffer.putInt((int) crc.getValue());
+            buffer.putLong(sequence);
+            buffer.put(payload);
+            writtenSequence = sequence;
+            appended.signal();
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 切换到新的文件段,旧文件段同步落盘
+     *
+     * @param size 待写入记录长度
+     */
+    private void roll(int size) {
+        if (current != null) {
+            current.close();
+        }
+        long first = nextSequence;
+        File file = new File(directory, String.format("%s%020d%s", FILE_PREFIX, first, FILE_SUFFIX));
+        if (file.exists() && !file.delete()) {
+            // 同名文件段中没有有效记录
+            throw new JournalException("无法覆盖预写日志文件: " + file.getAbsolutePath());
+        }
+        current = new Segment(file, Math.max(segmentSize, size + HEADER_SIZE));
+        segments.put(first, file);
+    }
+
+    @Override
+    public void awaitDurable(long sequence) {
+        if (durableSequence >= sequence) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (durableSequence < sequence) {
+                if (closed) {
+                    throw new JournalException("预写日志已关闭,序号[" + sequence + "]未落盘");
+                }
+                flushed.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JournalException("等待预写日志落盘被中断", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long nextSequence() {
+        lock.lock();
+        try {
+            return nextSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void truncate(long sequence) {
+        lock.lock();
+        try {
+            Iterator<Map.Entry<Long, File>> iterator = segments.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Long, File> entry = iterator.next();
+                Long higher = segments.higherKey(entry.getKey());
+                // 文件段内最大序号为下一文件段首序号-1,当前写入的文件段不删除
+                if (higher == null || higher > sequence) {
+                    return;
+                }
+                File file = entry.getValue();
+                if (!file.delete()) {
+                    log.warn("删除预写日志文件[{}]失败", file.getAbsolutePath());
+                    return;
+                }
+                iterator.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void replay(JournalReplayer replayer) {
+        TreeMap<Long, File> files;
+        lock.lock();
+        try {
+            files = new TreeMap<>(segments);
+            if (current != null) {
+                files.remove(current.first);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        long start = System.currentTimeMillis();
+        int[] count = {0};
+        for (File file : files.values()) {
+            read(file, (sequence, payload) -> {
+                count[0]++;
+                replayer.replay(sequence, payload);
+            });
+        }
+        log.info("预写日志重放完成, 文件段[{}]个, 记录[{}]条, 耗时[{}]ms", files.size(), count[0]
+                , System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 顺序读取文件段内的有效记录,遇到未写入区域或校验失败(写入中断)时停止
+     */
+    private void read(File file, JournalReplayer replayer) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= HEADER_SIZE) {
+                int length = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining() - HEADER_SIZE + 4) {
+                    return;
+                }
+                int checksum = buffer.getInt();
+                long sequence = buffer.getLong();
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    log.warn("预写日志文件[{}]记录[{}]校验失败,忽略后续记录", file.getName(), sequence);
+                    return;
+                }
+                replayer.replay(sequence, payload);
+            }
+        } catch (IOException e) {
+            throw new JournalException("读取预写日志文件失败: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * 刷盘线程,等待组提交窗口后将当前文件段落盘并唤醒等待者
+     */
+    private void flushLoop() {
+        while (true) {
+            lock.lock();
+            try {
+                while (!closed && writtenSequence <= durableSequence) {
+                    appended.awaitUninterruptibly();
+                }
+                if (closed) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (groupCommitNanos > 0) {
+                LockSupport.parkNanos(groupCommitNanos);
+            }
+
+            long target;
+            Segment segment;
+            lock.lock();
+            try {
+                target = writtenSequence;
+                segment = current;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                // 更早的文件段在切换时已落盘
+                segment.buffer.force();
+            } catch (Exception e) {
+                log.error("预写日志落盘发生异常", e);
+                continue;
+            }
+
+            lock.lock();
+            try {
+                if (target > durableSequence) {
+                    durableSequence = target;
+                }
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        lock.lock();
+        try {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            durableSequence = writtenSequence;
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 正在写入的文件段
+     **/
+    private static final class Segment {
+
+        /**
+         * 段内首条记录序号
+         **/
+        private final long first;
+        private final File file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        Segment(File file, int size) {
+            String name = file.getName();
+            this.first = Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+            this.file = file;
+            try {
+                RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                raf.setLength(size);
+                this.channel = raf.getChannel();
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } catch (IOException e) {
+                throw new JournalException("创建预写日志文件失败: " + file.getAbsolutePath(), e);
+            }
+        }
+
+        void close() {
+            buffer.force();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("关闭预写日志文件[{}]失败", file.getAbsolutePath(), e);
+            }
+        }
+    }
+}
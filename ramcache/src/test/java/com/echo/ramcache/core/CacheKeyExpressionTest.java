@@ -0,0 +1,106 @@
+package com.echo.ramcache.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author: li-yuanwen
+ */
+public class CacheKeyExpressionTest {
+
+    private static final Class<?>[] TYPES = {long.class, Player.class};
+    private static final String[] NAMES = {"id", "player"};
+
+    @Test
+    public void literal() {
+        CacheKeyExpression expression = CacheKeyExpression.compile("player", TYPES, NAMES);
+        Assert.assertEquals("player", expression.getValue(new Object[]{1L, null}));
+        Assert.assertEquals("player", expression.getValue(null));
+    }
+
+    @Test
+    public void argument() {
+        CacheKeyExpression expression = CacheKeyExpression.compile("#id", TYPES, NAMES);
+        Assert.assertEquals("Argument", expression.getClass().getSimpleName());
+        Assert.assertEquals("10", expression.getValue(new Object[]{10L, null}));
+        Assert.assertNull(CacheKeyExpression.compile("#player", TYPES, NAMES).getValue(new Object[]{10L, null}));
+    }
+
+    @Test
+    public void methodChain() {
+        CacheKeyExpression expression = CacheKeyExpression.compile("#player.getGuild().getName()", TYPES, NAMES);
+        Assert.assertEquals("Argument", expression.getClass().getSimpleName());
+        Assert.assertEquals("guild", expression.getValue(new Object[]{1L, new Player(new Guild("guild"))}));
+        // 返回基本类型的方法
+        Assert.assertEquals("5", CacheKeyExpression.compile("#player.getGuild().getLevel()", TYPES, NAMES)
+                .getValue(new Object[]{1L, new Player(new Guild("guild"))}));
+    }
+
+    @Test
+    public void nullInMethodChain() {
+        CacheKeyExpression expression = CacheKeyExpression.compile("#player.getGuild().getName()", TYPES, NAMES);
+        Assert.assertNull(expression.getValue(new Object[]{1L, new Player(null)}));
+        Assert.assertNull(expression.getValue(new Object[]{1L, null}));
+    }
+
+    @Test
+    public void jexlFallback() {
+        Object[] args = {7L, new Player(new Guild("guild"))};
+        // 属性访问、运算等复杂表达式
+        CacheKeyExpression property = CacheKeyExpression.compile("#player.guild.name", TYPES, NAMES);
+        Assert.assertEquals("Jexl", property.getClass().getSimpleName());
+        Assert.assertEquals("guild", property.getValue(args));
+        CacheKeyExpression concat = CacheKeyExpression.compile("#id + '_' + player.getGuild().getName()", TYPES, NAMES);
+        Assert.assertEquals("Jexl", concat.getClass().getSimpleName());
+        Assert.assertEquals("7_guild", concat.getValue(args));
+        // 方法只存在于运行时类型上
+        CacheKeyExpression runtime = CacheKeyExpression.compile("#player.getGuild().getTag()", TYPES, NAMES);
+        Assert.assertEquals("Jexl", runtime.getClass().getSimpleName());
+        Assert.assertEquals("tag", runtime.getValue(new Object[]{1L, new Player(new TaggedGuild("guild"))}));
+        // 无法获取参数名称
+        Assert.assertEquals("Jexl", CacheKeyExpression.compile("#id", TYPES, null).getClass().getSimpleName());
+        // 参数名称不存在
+        Assert.assertEquals("Jexl", CacheKeyExpression.compile("#other", TYPES, NAMES).getClass().getSimpleName());
+    }
+
+    public static class Player {
+
+        private final Guild guild;
+
+        public Player(Guild guild) {
+            this.guild = guild;
+        }
+
+        public Guild getGuild() {
+            return guild;
+        }
+    }
+
+    public static class Guild {
+
+        private final String name;
+
+        public Guild(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getLevel() {
+            return 5;
+        }
+    }
+
+    public static class TaggedGuild extends Guild {
+
+        public TaggedGuild(String name) {
+            super(name);
+        }
+
+        public String getTag() {
+            return "tag";
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.echo.ramcache.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author: li-yuanwen
+ */
+public class LongKeyCacheTest {
+
+    private static final int COUNT = 10_000;
+
+    @Test
+    public void cleanUpRemovesOnlyExpiredEntries() {
+        ManualClockCache cache = new ManualClockCache(COUNT * 2, 4);
+        for (long key = 0; key < COUNT; key++) {
+            cache.put(key, (Object) key);
+        }
+        cache.time = 3;
+        for (long key = 0; key < COUNT; key += 2) {
+            Assert.assertEquals(Long.valueOf(key), cache.get(key, Long.class));
+        }
+        cache.time = 5;
+
+        cache.cleanUp();
+        Assert.assertEquals(COUNT / 2, cache.size());
+        for (long key = 0; key < COUNT; key++) {
+            Object value = cache.get(key, Long.class);
+            Assert.assertEquals(String.valueOf(key), key % 2 == 0 ? Long.valueOf(key) : null, value);
+        }
+
+        cache.time = 9;
+        cache.cleanUp();
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void getRemovesExpiredEntry() {
+        ManualClockCache cache = new ManualClockCache(COUNT * 2, 4);
+        cache.put(1L, (Object) 1L);
+        cache.time = 3;
+        Assert.assertEquals(Long.valueOf(1L), cache.get(1L, Long.class));
+        // 访问刷新访问时间
+        cache.time = 6;
+        Assert.assertEquals(Long.valueOf(1L), cache.get(1L, Long.class));
+        cache.time = 10;
+        Assert.assertNull(cache.get(1L, Long.class));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void cleanUpKeepsEntriesWithoutExpire() {
+        ManualClockCache cache = new ManualClockCache(COUNT * 2, 0);
+        for (long key = 0; key < COUNT; key++) {
+            cache.put(key, (Object) key);
+        }
+        cache.time = Integer.MAX_VALUE;
+        cache.cleanUp();
+        Assert.assertEquals(COUNT, cache.size());
+    }
+
+    /**
+     * 手动推进时间的缓存
+     **/
+    private static final class ManualClockCache extends LongKeyCache {
+
+        private volatile int time;
+
+        ManualClockCache(long maximum, long expire) {
+            super("test", maximum, expire);
+        }
+
+        @Override
+        protected int now() {
+            return time;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.echo.ramcache.enhance;
+
+import cn.hutool.core.bean.BeanUtil;
+import com.echo.ramcache.entity.AbstractEntity;
+import com.echo.ramcache.entity.Commit;
+import com.echo.ramcache.entity.PersistentFields;
+import javassist.ClassPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author: li-yuanwen
+ */
+public class DirtyFieldAnalyzerTest {
+
+    private static final long NAME = 1L;
+    private static final long LEVEL = 1L << 1;
+    private static final long ITEMS = 1L << 2;
+
+    @Test
+    public void fieldWrite() throws Exception {
+        Assert.assertEquals(NAME, analyze("rename", String.class));
+        Assert.assertEquals(LEVEL, analyze("levelUp"));
+        // 读取可变类型的字段视为修改
+        Assert.assertEquals(ITEMS, analyze("addItem", int.class));
+        // 调用实体自身的方法
+        Assert.assertEquals(NAME | LEVEL, analyze("reset"));
+    }
+
+    @Test
+    public void externalCallWithoutEntity() throws Exception {
+        Assert.assertEquals(NAME, analyze("trimName"));
+    }
+
+    @Test
+    public void entityPassedToExternalMethod() throws Exception {
+        Assert.assertEquals(PersistentFields.ALL, analyze("copyFrom", Bag.class));
+        Assert.assertEquals(PersistentFields.ALL, analyze("holdObject"));
+        Assert.assertEquals(PersistentFields.ALL, analyze("holdSerializable"));
+        Assert.assertEquals(PersistentFields.ALL, analyze("holdComparable"));
+        Assert.assertEquals(PersistentFields.ALL, analyze("holdNamed"));
+        Assert.assertEquals(PersistentFields.ALL, analyze("holdVarargs"));
+    }
+
+    private static long analyze(String name, Class<?>... parameterTypes) throws Exception {
+        return DirtyFieldAnalyzer.analyze(ClassPool.getDefault(), Bag.class
+                , Bag.class.getMethod(name, parameterTypes), false);
+    }
+
+    public interface Named {
+
+        String getName();
+    }
+
+    public static final class Holder {
+
+        static void hold(Object o) {
+        }
+
+        static void holdSerializable(Serializable o) {
+        }
+
+        static void holdComparable(Comparable<?> o) {
+        }
+
+        static void holdNamed(Named o) {
+        }
+
+        static void holdAll(Object... o) {
+        }
+    }
+
+    public static class Bag extends AbstractEntity<Long> implements Named, Comparable<Bag>, Serializable {
+
+        private String name;
+        private int level;
+        private List<Integer> items = new ArrayList<>();
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+
+        @Override
+        public int compareTo(Bag o) {
+            return Integer.compare(level, o.level);
+        }
+
+        @Commit
+        public void rename(String name) {
+            this.name = name;
+        }
+
+        @Commit
+        public void levelUp() {
+            level++;
+        }
+
+        @Commit
+        public void addItem(int item) {
+            items.add(item);
+        }
+
+        @Commit
+        public void reset() {
+            rename(null);
+            level = 0;
+        }
+
+        @Commit
+        public void trimName() {
+            name = name.trim();
+        }
+
+        @Commit
+        public void copyFrom(Bag source) {
+            BeanUtil.copyProperties(source, this);
+        }
+
+        @Commit
+        public void holdObject() {
+            Holder.hold(this);
+        }
+
+        @Commit
+        public void holdSerializable() {
+            Holder.holdSerializable(this);
+        }
+
+        @Commit
+        public void holdComparable() {
+            Holder.holdComparable(this);
+        }
+
+        @Commit
+        public void holdNamed() {
+            Holder.holdNamed(this);
+        }
+
+        @Commit
+        public void holdVarargs() {
+            Holder.holdAll(level, this);
+        }
+    }
+}
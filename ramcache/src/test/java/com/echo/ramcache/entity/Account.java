@@ -0,0 +1,26 @@
+package com.echo.ramcache.entity;
+
+/**
+ * @author: li-yuanwen
+ */
+@Persisted(intervalSecond = 3600, batchSize = 1000, maxRetries = 1)
+public class Account extends AbstractEntity<Long> {
+
+    private long gold;
+
+    public Account() {
+        super();
+    }
+
+    public Account(Long id) {
+        super(id);
+    }
+
+    public long getGold() {
+        return gold;
+    }
+
+    public void setGold(long gold) {
+        this.gold = gold;
+    }
+}
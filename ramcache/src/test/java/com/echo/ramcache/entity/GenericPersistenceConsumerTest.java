@@ -0,0 +1,136 @@
+package com.echo.ramcache.entity;
+
+import cn.hutool.core.io.FileUtil;
+import com.echo.common.concurrency.MultiThreadRunnableLoopGroup;
+import com.echo.common.concurrency.RunnableLoop;
+import com.echo.common.concurrency.RunnableLoopGroup;
+import com.echo.ramcache.journal.MappedJournal;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author: li-yuanwen
+ */
+public class GenericPersistenceConsumerTest {
+
+    private RunnableLoopGroup group;
+    private RunnableLoop loop;
+
+    @Before
+    public void setUp() {
+        group = new MultiThreadRunnableLoopGroup(1);
+        loop = group.next();
+    }
+
+    @After
+    public void tearDown() {
+        group.shutdownGracefully();
+    }
+
+    @Test
+    public void retryPartiallyWrittenBatch() throws Exception {
+        MemoryDataAccessor accessor = new MemoryDataAccessor();
+        GenericPersistenceConsumer consumer = new GenericPersistenceConsumer(accessor, Account.class
+                , loop, 3600, 100, 3);
+        for (long id = 1; id <= 3; id++) {
+            consumer.accept(new Account(id));
+        }
+        // 默认逐条写入,部分实体已插入后整批失败
+        accessor.failing.add(3L);
+        flush(consumer);
+        Assert.assertTrue(accessor.store.size() < 3);
+        Assert.assertEquals(3, consumer.getBacklog());
+
+        // 重试已插入的新建实体不会因主键重复而失败
+        accessor.failing.clear();
+        flush(consumer);
+        Assert.assertEquals(3, accessor.store.size());
+        Assert.assertEquals(0, consumer.getBacklog());
+        Assert.assertEquals(0, consumer.getStat().getStalledNum());
+    }
+
+    @Test
+    public void keepRetryingAfterMaxRetries() throws Exception {
+        MemoryDataAccessor accessor = new MemoryDataAccessor();
+        GenericPersistenceConsumer consumer = new GenericPersistenceConsumer(accessor, Account.class
+                , loop, 3600, 100, 1);
+        Account account = new Account(1L);
+        consumer.accept(account);
+        accessor.failing.add(1L);
+        for (int i = 0; i < 10; i++) {
+            flush(consumer);
+        }
+        Assert.assertSame(account, consumer.findById(1L));
+        Assert.assertEquals(1, consumer.getBacklog());
+        Assert.assertEquals(1, consumer.getStat().getStalledNum());
+
+        // 退避最多间隔8次回写
+        accessor.failing.clear();
+        for (int i = 0; i < 9 && consumer.getBacklog() > 0; i++) {
+            flush(consumer);
+        }
+        Assert.assertEquals(0, consumer.getBacklog());
+        Assert.assertSame(account, accessor.store.get(1L));
+    }
+
+    @Test
+    public void stalledEntityPinsJournal() throws Exception {
+        File directory = Files.createTempDirectory("journal").toFile();
+        try {
+            MemoryDataAccessor accessor = new MemoryDataAccessor();
+            MappedJournal mappedJournal = new MappedJournal(directory, 4096, 100, TimeUnit.MICROSECONDS);
+            EntityJournal journal = new EntityJournal(mappedJournal);
+            GenericPersistenceConsumer[] consumers = new GenericPersistenceConsumer[1];
+            GenericPersistenceConsumer consumer = new GenericPersistenceConsumer(accessor, Account.class
+                    , loop, 3600, 1000, 1, journal, () -> journal.checkpoint(Collections.singletonList(consumers[0])));
+            consumers[0] = consumer;
+
+            for (long id = 100; id < 300; id++) {
+                consumer.accept(new Account(id));
+            }
+            flush(consumer);
+
+            Account stalled = new Account(1L);
+            stalled.setGold(42);
+            accessor.failing.add(1L);
+            consumer.accept(stalled);
+            for (long id = 300; id < 500; id++) {
+                consumer.accept(new Account(id));
+            }
+            for (int i = 0; i < 5; i++) {
+                flush(consumer);
+            }
+            Assert.assertEquals(1, consumer.getBacklog());
+            Assert.assertEquals(400, accessor.store.size());
+            // 宕机
+            mappedJournal.close();
+
+            // 重启后重放预写日志
+            MemoryDataAccessor recovered = new MemoryDataAccessor();
+            GenericDataPersistence persistence = new GenericDataPersistence(recovered, 1
+                    , new MappedJournal(directory, 4096, 100, TimeUnit.MICROSECONDS));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!recovered.store.containsKey(1L) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(42, ((Account) recovered.store.get(1L)).getGold());
+            // 已回写的记录已被截断
+            Assert.assertFalse(recovered.store.containsKey(100L));
+            // 优雅关闭本身最长等待30秒,超过该时长仍会完成
+            persistence.shutdownGracefully().get(60, TimeUnit.SECONDS);
+        } finally {
+            FileUtil.del(directory);
+        }
+    }
+
+    private void flush(GenericPersistenceConsumer consumer) throws Exception {
+        loop.submit(consumer).get(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,70 @@
+package com.echo.ramcache.entity;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存数据访问,create为insert语义(主键重复时失败),update为save语义
+ *
+ * @author: li-yuanwen
+ */
+public class MemoryDataAccessor implements DataAccessor {
+
+    /**
+     * 已写入的实体
+     **/
+    final Map<Object, AbstractEntity<?>> store = new ConcurrentHashMap<>();
+    /**
+     * 写入时失败的主键
+     **/
+    final Set<Object> failing = ConcurrentHashMap.newKeySet();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <PK extends Comparable<PK> & Serializable, T extends IEntity<PK>> T load(PK id, Class<T> tClass) {
+        return (T) store.get(id);
+    }
+
+    @Override
+    public void remove(AbstractEntity<?> entity) {
+        check(entity);
+        store.remove(entity.getId());
+    }
+
+    @Override
+    public void update(AbstractEntity<?> entity) {
+        check(entity);
+        store.put(entity.getId(), entity);
+    }
+
+    @Override
+    public void create(AbstractEntity<?> entity) {
+        check(entity);
+        if (store.putIfAbsent(entity.getId(), entity) != null) {
+            throw new IllegalStateException("duplicate key: " + entity.getId());
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <FK extends Comparable<FK> & Serializable, T extends IEntity<?>> Collection<T> list(FK owner, Class<T> tClass) {
+        List<T> list = new ArrayList<>();
+        for (AbstractEntity<?> entity : store.values()) {
+            if (entity instanceof AbstractRegionEntity && owner.equals(((AbstractRegionEntity<?, ?>) entity).getOwner())) {
+                list.add((T) entity);
+            }
+        }
+        return list;
+    }
+
+    private void check(AbstractEntity<?> entity) {
+        if (failing.contains(entity.getId())) {
+            throw new IllegalStateException("write failed: " + entity.getId());
+        }
+    }
+}
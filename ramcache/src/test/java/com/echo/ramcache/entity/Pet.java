@@ -0,0 +1,35 @@
+package com.echo.ramcache.entity;
+
+/**
+ * @author: li-yuanwen
+ */
+public class Pet extends AbstractRegionEntity<Long, Long> {
+
+    @RegionIndex(unique = true)
+    private String name;
+
+    @RegionIndex
+    private int kind;
+
+    public Pet() {
+        super();
+    }
+
+    public Pet(Long id, Long owner, String name, int kind) {
+        super(id, owner);
+        this.name = name;
+        this.kind = kind;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getKind() {
+        return kind;
+    }
+}
@@ -0,0 +1,106 @@
+package com.echo.ramcache.entity;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * @author: li-yuanwen
+ */
+public class RegionIndexTest {
+
+    private static AbstractRegionEntityContext<Long, Long, Pet> context(Pet... pets) {
+        return new AbstractRegionEntityContext<Long, Long, Pet>(1L, Arrays.asList(pets)) {
+        };
+    }
+
+    @Test
+    public void duplicateDoesNotDisplaceHolder() {
+        Pet first = new Pet(1L, 1L, "cat", 1);
+        Pet second = new Pet(2L, 1L, "cat", 1);
+        AbstractRegionEntityContext<Long, Long, Pet> context = context(first);
+        context.add(second);
+        Assert.assertSame(first, context.findByIndex("name", "cat"));
+        Assert.assertEquals(2, context.findAllByIndex("kind", 1).size());
+    }
+
+    @Test
+    public void displacedEntityRestoredWhenHolderRemoved() {
+        Pet first = new Pet(1L, 1L, "cat", 1);
+        Pet second = new Pet(2L, 1L, "cat", 1);
+        Pet third = new Pet(3L, 1L, "cat", 1);
+        AbstractRegionEntityContext<Long, Long, Pet> context = context(first, second, third);
+        context.remove(first);
+        Assert.assertSame(second, context.findByIndex("name", "cat"));
+        context.remove(second);
+        Assert.assertSame(third, context.findByIndex("name", "cat"));
+        context.remove(third);
+        Assert.assertNull(context.findByIndex("name", "cat"));
+    }
+
+    @Test
+    public void displacedEntityRestoredWhenHolderRenamed() {
+        Pet first = new Pet(1L, 1L, "cat", 1);
+        Pet second = new Pet(2L, 1L, "dog", 1);
+        AbstractRegionEntityContext<Long, Long, Pet> context = context(first, second);
+
+        // 回写后second改名与first冲突,first继续持有
+        second.setName("cat");
+        context.reindex(second, PersistentFields.ALL);
+        Assert.assertSame(first, context.findByIndex("name", "cat"));
+        Assert.assertNull(context.findByIndex("name", "dog"));
+
+        // first改名离开,second补位
+        first.setName("tiger");
+        context.reindex(first, PersistentFields.ALL);
+        Assert.assertSame(first, context.findByIndex("name", "tiger"));
+        Assert.assertSame(second, context.findByIndex("name", "cat"));
+    }
+
+    @Test
+    public void waitingEntityLeavesQueue() {
+        Pet first = new Pet(1L, 1L, "cat", 1);
+        Pet second = new Pet(2L, 1L, "cat", 1);
+        Pet third = new Pet(3L, 1L, "cat", 1);
+        AbstractRegionEntityContext<Long, Long, Pet> context = context(first, second, third);
+
+        // 等待者改名或移除后不再补位
+        second.setName("dog");
+        context.reindex(second, PersistentFields.ALL);
+        Assert.assertSame(second, context.findByIndex("name", "dog"));
+        context.remove(third);
+
+        context.remove(first);
+        Assert.assertNull(context.findByIndex("name", "cat"));
+        Assert.assertEquals(Collections.singleton(second), context.findAllByIndex("kind", 1));
+    }
+
+    @Test
+    public void replacedInstanceIsIndexed() {
+        Pet first = new Pet(1L, 1L, "cat", 1);
+        Pet second = new Pet(2L, 1L, "cat", 1);
+        AbstractRegionEntityContext<Long, Long, Pet> context = context(first, second);
+
+        // 同一主键、同一索引值的新实例替换旧实例
+        Pet reloaded = new Pet(1L, 1L, "cat", 1);
+        context.add(reloaded);
+        Assert.assertSame(reloaded, context.findByIndex("name", "cat"));
+        Assert.assertEquals(2, context.findAllByIndex("kind", 1).size());
+        Assert.assertTrue(context.findAllByIndex("kind", 1).contains(reloaded));
+        Assert.assertFalse(context.findAllByIndex("kind", 1).contains(first));
+
+        // 等待者被替换后仍按原顺序补位
+        Pet secondReloaded = new Pet(2L, 1L, "cat", 1);
+        context.add(secondReloaded);
+        context.remove(reloaded);
+        Assert.assertSame(secondReloaded, context.findByIndex("name", "cat"));
+
+        // 新实例的修改同步至索引
+        secondReloaded.setName("dog");
+        context.reindex(secondReloaded, PersistentFields.ALL);
+        Assert.assertSame(secondReloaded, context.findByIndex("name", "dog"));
+        Assert.assertNull(context.findByIndex("name", "cat"));
+    }
+}